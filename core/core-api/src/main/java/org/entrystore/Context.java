@@ -177,7 +177,8 @@ public interface Context extends Resource{
 	void removeQuota();
 	
 	/**
-	 * @return The use amount of data in bytes (not percentage).
+	 * @return The use amount of data in bytes (not percentage), or
+	 *         Quota.VALUE_UNKNOWN if the amount is being recounted.
 	 */
 	long getQuotaFillLevel();
 	
@@ -105,6 +105,15 @@ public interface ContextManager extends Context {
 	 */
 	Set<Entry> getLinks(URI resourceURI);
 
+	/**
+	 * Finds all entries within the repository with the given resource URI, regardless
+	 * of entry type and context. Access control is not taken into account.
+	 *
+	 * @param resourceURI is any URI that you wish to find entries for.
+	 * @return a set of entry URIs, empty if no entry was found.
+	 */
+	Set<URI> getEntryURIsByResourceURI(URI resourceURI);
+
 	//***********************************************************************//
 	// Methods for searching metadata (across item and context boundaries).  //
 	//***********************************************************************//
@@ -286,6 +286,16 @@ public interface Entry {
 	
 	void setMimetype(String mt);
 
+	/**
+	 * Applies several changes to the entry information at once, in one transaction
+	 * and with a single {@link org.entrystore.repository.RepositoryEvent#EntryUpdated}
+	 * event. Should be preferred over calling the separate setters in a row, e.g.,
+	 * after a file has been uploaded.
+	 *
+	 * @param update the changes, unset properties are left unchanged.
+	 */
+	void update(EntryUpdate update);
+
 	void setResourceURI(URI resourceURI);
 
 	void setExternalMetadataURI(URI externalMetadataURI);
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore;
+
+/**
+ * A set of changes to the properties of an entry that are applied together,
+ * see {@link Entry#update(EntryUpdate)}. Properties that are not set are left
+ * unchanged.
+ */
+public class EntryUpdate {
+
+	private GraphType graphType;
+
+	private ResourceType resourceType;
+
+	private String filename;
+
+	private Long fileSize;
+
+	private String mimetype;
+
+	public GraphType getGraphType() {
+		return graphType;
+	}
+
+	public EntryUpdate setGraphType(GraphType graphType) {
+		this.graphType = graphType;
+		return this;
+	}
+
+	public ResourceType getResourceType() {
+		return resourceType;
+	}
+
+	public EntryUpdate setResourceType(ResourceType resourceType) {
+		this.resourceType = resourceType;
+		return this;
+	}
+
+	public String getFilename() {
+		return filename;
+	}
+
+	public EntryUpdate setFilename(String filename) {
+		this.filename = filename;
+		return this;
+	}
+
+	public Long getFileSize() {
+		return fileSize;
+	}
+
+	public EntryUpdate setFileSize(long fileSize) {
+		this.fileSize = fileSize;
+		return this;
+	}
+
+	public String getMimetype() {
+		return mimetype;
+	}
+
+	public EntryUpdate setMimetype(String mimetype) {
+		this.mimetype = mimetype;
+		return this;
+	}
+
+	/**
+	 * @return True if any of the properties that require write access to the resource is set.
+	 */
+	public boolean hasResourceProperties() {
+		return filename != null || fileSize != null || mimetype != null;
+	}
+
+	/**
+	 * @return True if any of the properties that require administration rights is set.
+	 */
+	public boolean hasTypes() {
+		return graphType != null || resourceType != null;
+	}
+
+	public boolean isEmpty() {
+		return !hasResourceProperties() && !hasTypes();
+	}
+
+}
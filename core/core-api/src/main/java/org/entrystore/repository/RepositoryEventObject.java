@@ -30,6 +30,8 @@ public class RepositoryEventObject extends EventObject {
 	
 	Model updatedGraph;
 
+	Model previousGraph;
+
 	public RepositoryEventObject(Entry source, RepositoryEvent event) {
 		super(source);
 		this.event = event;
@@ -39,6 +41,11 @@ public class RepositoryEventObject extends EventObject {
 		this(source, event);
 		this.updatedGraph = updatedGraph;
 	}
+
+	public RepositoryEventObject(Entry source, RepositoryEvent event, Model updatedGraph, Model previousGraph) {
+		this(source, event, updatedGraph);
+		this.previousGraph = previousGraph;
+	}
 	
 	public RepositoryEvent getEvent() {
 		return event;
@@ -52,6 +59,15 @@ public class RepositoryEventObject extends EventObject {
 	public Model getUpdatedGraph() {
 		return updatedGraph;
 	}
+
+	/**
+	 * @return Can be null. The graph before the update, or the metadata of an
+	 *         entry that has been deleted. Allows listeners to work with the
+	 *         difference without having to keep a copy of the graph.
+	 */
+	public Model getPreviousGraph() {
+		return previousGraph;
+	}
 	
 	@Override
 	public String toString() {
@@ -0,0 +1,302 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.impl;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Content-addressed store for the files of local resources, located in the folder
+ * {@value #FOLDER_NAME} of the data folder. Every distinct content is stored once
+ * under <code>&lt;first two characters of SHA-256&gt;/&lt;SHA-256&gt;</code> and the
+ * files in the context folders (<code>&lt;context ID&gt;/&lt;entry ID&gt;</code>) are hard
+ * links to the blobs. All code that reads files from context folders therefore keeps
+ * working, and identical files are only stored once across all contexts.
+ *
+ * <p>The link count of a blob serves as its reference count: a blob with no other link
+ * than the one in the store is not used by any entry anymore and is removed by
+ * {@link #collectGarbage()}. Quotas are not affected, every context is charged for the
+ * files of its entries independent of whether they are shared.</p>
+ *
+ * <p>This relies on files in context folders never being modified in place, see
+ * {@link DataImpl}.</p>
+ */
+public class BlobStore {
+
+	private static final Logger log = LoggerFactory.getLogger(BlobStore.class);
+
+	public static final String FOLDER_NAME = ".blobs";
+
+	private static final String MIGRATED_MARKER = ".migrated";
+
+	/**
+	 * Temporary files in context folders which are older than this are left over from
+	 * aborted uploads and are removed by the garbage collector.
+	 */
+	private static final Duration STALE_TEMP_FILE_AGE = Duration.ofDays(1);
+
+	private final Path dataFolder;
+
+	private final Path blobFolder;
+
+	/**
+	 * Linking is done while holding the read lock, the garbage collector removes
+	 * blobs while holding the write lock. This prevents that a blob is removed
+	 * between checking for its existence and linking to it.
+	 */
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * @throws IOException If the blob folder cannot be created or if the file system
+	 * does not support link counts.
+	 */
+	public BlobStore(Path dataFolder) throws IOException {
+		this.dataFolder = dataFolder;
+		this.blobFolder = dataFolder.resolve(FOLDER_NAME);
+		Files.createDirectories(blobFolder);
+		try {
+			linkCount(blobFolder);
+		} catch (UnsupportedOperationException | IllegalArgumentException e) {
+			throw new IOException("The file system of the data folder does not support link counts");
+		}
+	}
+
+	Path getBlobPath(String digest) {
+		return blobFolder.resolve(digest.substring(0, 2)).resolve(digest);
+	}
+
+	/**
+	 * Moves a new file to its place in a context folder. The file is linked into the store
+	 * if there is no blob with the same content yet, otherwise the target becomes a link to
+	 * the existing blob. The target is replaced atomically.
+	 *
+	 * @param file The new file, it must be in the same file system as the store and must not be
+	 *             modified afterwards. It is left in place if the content was already stored and
+	 *             has to be removed by the caller.
+	 * @param digest The SHA-256 digest of the file.
+	 * @param target The path of the file in the context folder.
+	 */
+	public void store(Path file, String digest, Path target) throws IOException {
+		Path blob = getBlobPath(digest);
+		Path link = null;
+		lock.readLock().lock();
+		try {
+			Files.createDirectories(blob.getParent());
+			Path source = file;
+			try {
+				Files.createLink(blob, file);
+			} catch (FileAlreadyExistsException e) {
+				// the modification date must not be touched, as it is shared by all links to the blob,
+				// including those in backup snapshots; backups detect the new link by its change time
+				link = DataImpl.getTempPath(target);
+				Files.createLink(link, blob);
+				source = link;
+			} catch (UnsupportedOperationException | FileSystemException e) {
+				log.warn("Unable to link {} into blob store, storing it without deduplication: {}", target, e.getMessage());
+			}
+			DataImpl.replaceFile(source, target);
+		} finally {
+			lock.readLock().unlock();
+			// renaming a link over a link to the same blob has no effect
+			if (link != null) {
+				Files.deleteIfExists(link);
+			}
+		}
+	}
+
+	/**
+	 * Replaces an existing file in a context folder with a link to a blob with the same content.
+	 *
+	 * @return True if the file was deduplicated, false if the file was already linked
+	 * or has been modified or removed meanwhile.
+	 */
+	public boolean deduplicate(Path file) throws IOException {
+		BasicFileAttributes attrs;
+		try {
+			attrs = Files.readAttributes(file, BasicFileAttributes.class);
+			if (linkCount(file) > 1) {
+				return false;
+			}
+		} catch (NoSuchFileException e) {
+			return false;
+		}
+		String digest = digest(file);
+		Path blob = getBlobPath(digest);
+
+		// nothing else may be linked while the file is checked for modifications and linked
+		lock.writeLock().lock();
+		Path link = null;
+		try {
+			BasicFileAttributes current = Files.readAttributes(file, BasicFileAttributes.class);
+			if (!Objects.equals(attrs.fileKey(), current.fileKey()) || attrs.size() != current.size() ||
+					!attrs.lastModifiedTime().equals(current.lastModifiedTime())) {
+				return false;
+			}
+			Files.createDirectories(blob.getParent());
+			try {
+				Files.createLink(blob, file);
+			} catch (FileAlreadyExistsException e) {
+				link = DataImpl.getTempPath(file);
+				Files.createLink(link, blob);
+				DataImpl.replaceFile(link, file);
+			}
+			return true;
+		} catch (NoSuchFileException e) {
+			return false;
+		} finally {
+			lock.writeLock().unlock();
+			if (link != null) {
+				Files.deleteIfExists(link);
+			}
+		}
+	}
+
+	/**
+	 * Links all existing files of all context folders into the store. Does nothing if the
+	 * migration has been completed before.
+	 */
+	public void migrate() throws IOException {
+		Path marker = blobFolder.resolve(MIGRATED_MARKER);
+		if (Files.exists(marker)) {
+			return;
+		}
+		long before = System.currentTimeMillis();
+		log.info("Migrating files of data folder {} to blob store", dataFolder);
+		long deduplicated = 0;
+		for (Path contextFolder : listContextFolders()) {
+			List<Path> files;
+			try (Stream<Path> s = Files.list(contextFolder)) {
+				files = s.filter(QuotaReconciler::isDataFile).toList();
+			}
+			for (Path file : files) {
+				try {
+					if (deduplicate(file)) {
+						deduplicated++;
+					}
+				} catch (IOException e) {
+					log.warn("Unable to migrate {} to blob store: {}", file, e.getMessage());
+				}
+			}
+		}
+		Files.writeString(marker, Instant.now().toString(), UTF_8);
+		log.info("Migrated {} files to blob store in {} ms", deduplicated, System.currentTimeMillis() - before);
+	}
+
+	/**
+	 * Removes all blobs that are not referenced by any entry anymore, and temporary
+	 * files of aborted uploads.
+	 *
+	 * @return The number of bytes that have been freed.
+	 */
+	public long collectGarbage() throws IOException {
+		long before = System.currentTimeMillis();
+		List<Path> candidates;
+		try (Stream<Path> s = Files.walk(blobFolder, 2)) {
+			candidates = s.filter(p -> p.getParent() != null && !p.getParent().equals(blobFolder))
+					.filter(Files::isRegularFile)
+					.filter(p -> isUnreferenced(p))
+					.toList();
+		}
+
+		long freed = 0;
+		int removed = 0;
+		for (Path blob : candidates) {
+			lock.writeLock().lock();
+			try {
+				if (isUnreferenced(blob)) {
+					long size = Files.size(blob);
+					Files.delete(blob);
+					freed += size;
+					removed++;
+				}
+			} catch (NoSuchFileException ignored) {
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+
+		Instant staleBefore = Instant.now().minus(STALE_TEMP_FILE_AGE);
+		for (Path contextFolder : listContextFolders()) {
+			List<Path> tempFiles;
+			try (Stream<Path> s = Files.list(contextFolder)) {
+				tempFiles = s.filter(p -> p.getFileName().toString().startsWith(".") && p.getFileName().toString().endsWith(".tmp")).toList();
+			}
+			for (Path tempFile : tempFiles) {
+				try {
+					if (Files.getLastModifiedTime(tempFile).toInstant().isBefore(staleBefore)) {
+						Files.deleteIfExists(tempFile);
+						removed++;
+					}
+				} catch (NoSuchFileException ignored) {
+				}
+			}
+		}
+
+		log.info("Garbage collection of blob store removed {} files and freed {} bytes in {} ms", removed, freed, System.currentTimeMillis() - before);
+		return freed;
+	}
+
+	private boolean isUnreferenced(Path blob) {
+		try {
+			return linkCount(blob) <= 1;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private List<Path> listContextFolders() throws IOException {
+		try (Stream<Path> s = Files.list(dataFolder)) {
+			return s.filter(Files::isDirectory).filter(p -> !p.getFileName().toString().startsWith(".")).toList();
+		}
+	}
+
+	private static int linkCount(Path path) throws IOException {
+		return (Integer) Files.getAttribute(path, "unix:nlink");
+	}
+
+	/**
+	 * Computes the SHA-256 digest of a file. The digest that is stored alongside the file
+	 * is not used, as it may be outdated, e.g., if the file was rewritten by an older
+	 * version, and a blob that is filed under a wrong digest would be linked to by
+	 * unrelated files of other contexts.
+	 */
+	static String digest(Path file) throws IOException {
+		try (InputStream in = Files.newInputStream(file)) {
+			return DigestUtils.sha256Hex(in);
+		}
+	}
+
+}
@@ -28,7 +28,6 @@ import org.eclipse.rdf4j.repository.RepositoryException;
 import org.eclipse.rdf4j.repository.RepositoryResult;
 import org.entrystore.AuthorizationException;
 import org.entrystore.Context;
-import org.entrystore.Data;
 import org.entrystore.DeletedEntryInfo;
 import org.entrystore.Entry;
 import org.entrystore.EntryType;
@@ -44,6 +43,7 @@ import org.entrystore.repository.RepositoryEventObject;
 import org.entrystore.repository.security.DisallowedException;
 import org.entrystore.repository.test.TestSuite;
 import org.entrystore.repository.util.NS;
+import org.entrystore.repository.util.RequestTimings;
 import org.entrystore.repository.util.URISplit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,7 +51,6 @@ import org.slf4j.LoggerFactory;
 import javax.xml.datatype.DatatypeConfigurationException;
 import javax.xml.datatype.DatatypeFactory;
 import javax.xml.datatype.XMLGregorianCalendar;
-import java.io.File;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -63,6 +62,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.eclipse.rdf4j.model.util.Values.iri;
 import static org.eclipse.rdf4j.model.util.Values.literal;
@@ -83,7 +83,13 @@ public class ContextImpl extends ResourceImpl implements Context {
 	public static final IRI DCTermsModified;
 
 	private final Object quotaMutex = new Object();
-	protected long quotaFillLevel = Quota.VALUE_UNCACHED;
+	protected volatile long quotaFillLevel = Quota.VALUE_UNCACHED;
+	private final AtomicLong quotaFillLevelChanges = new AtomicLong();
+	/**
+	 * Bytes written while the fill level is unknown, writes are checked against this
+	 * optimistic fill level until the recount has finished. Guarded by the quota mutex.
+	 */
+	private long quotaFillLevelWhileUnknown;
 	protected long quota = Quota.VALUE_UNCACHED;
 
 	@Getter
@@ -184,10 +190,28 @@ public class ContextImpl extends ResourceImpl implements Context {
 
 		this.res2entry = null;
 		this.extMdUri2entry = null;
+		if (entry.getRepositoryManager().getContextManager() instanceof ContextManagerImpl cm) {
+			cm.invalidateResourceIndex();
+		}
 
 		loadIndex();
 	}
 
+	/**
+	 * Drops the in-memory indexes after modifications of this context have been rolled
+	 * back, they are reloaded from the repository.
+	 */
+	void discardIndex() {
+		synchronized (this.entry) {
+			this.res2entry = null;
+			this.extMdUri2entry = null;
+		}
+		if (entry.getRepositoryManager().getContextManager() instanceof ContextManagerImpl cm) {
+			cm.invalidateResourceIndex();
+		}
+		loadIndex();
+	}
+
 	private void push(URI from, URI to, HashMap<URI, Object> map) {
 		if (from == null || to == null) {
 			return;
@@ -240,6 +264,18 @@ public class ContextImpl extends ResourceImpl implements Context {
 		pop(oldResourceURI, entryURI, res2entry);
 		log.debug("Adding resource to entry mapping: {} -> {}", newResourceURI, entryURI);
 		push(newResourceURI, entryURI, res2entry);
+		updateGlobalResourceIndex(oldResourceURI, newResourceURI, entryURI);
+	}
+
+	/**
+	 * Keeps the repository-wide resource to entry index of the context manager in sync
+	 * with the index of this context. The per-context index is loaded lazily, the global
+	 * index is therefore updated regardless of whether the per-context index is loaded.
+	 */
+	private void updateGlobalResourceIndex(URI oldResourceURI, URI newResourceURI, URI entryURI) {
+		if (entry.getRepositoryManager().getContextManager() instanceof ContextManagerImpl cm) {
+			cm.updateResourceIndex(oldResourceURI, newResourceURI, entryURI);
+		}
 	}
 
 	void updateExternalMetadata2EntryIndex(URI oldExtMdURI, URI newExtMdURI, URI entryURI) {
@@ -304,10 +340,11 @@ public class ContextImpl extends ResourceImpl implements Context {
 				push(mdURI, euri, extMdUri2entry);
 			}
 		}
+		URI resourceURI = URI.create(resURI.toString());
 		if (res2entry != null) {
-			URI resourceURI = URI.create(resURI.toString());
 			push(resourceURI, euri, res2entry);
 		}
+		updateGlobalResourceIndex(null, resourceURI, euri);
 	}
 
 	protected void removeFromIndex(EntryImpl entry, RepositoryConnection rc) throws RepositoryException {
@@ -326,6 +363,7 @@ public class ContextImpl extends ResourceImpl implements Context {
 		if (res2entry != null) {
 			pop(entry.getResourceURI(), entry.getEntryURI(), res2entry);
 		}
+		updateGlobalResourceIndex(entry.getResourceURI(), null, entry.getEntryURI());
 
 		if (RepositoryManagerImpl.trackDeletedEntries) {
 			// add deletion information to index
@@ -721,6 +759,7 @@ public class ContextImpl extends ResourceImpl implements Context {
 	private Entry getByMMdURIDirect(URI entryURI) throws RepositoryException {
 		RepositoryConnection rc = null;
 		Entry result;
+		long start = System.nanoTime();
 		try {
 			rc = this.entry.getRepository().getConnection();
 			result = getByMMdURIDirect(entryURI, rc);
@@ -729,6 +768,7 @@ public class ContextImpl extends ResourceImpl implements Context {
 			throw new org.entrystore.repository.RepositoryException("Failed to connect to Repository", e);
 		} finally {
 			rc.close();
+			RequestTimings.add(RequestTimings.Category.STORE, start);
 		}
 		return result;
 	}
@@ -867,6 +907,9 @@ public class ContextImpl extends ResourceImpl implements Context {
 				throw new org.entrystore.repository.RepositoryException("An error occurred when removing the entry from one or more lists", e);
 			}
 
+			// the metadata is passed on to listeners, it cannot be read after the removal
+			Model removedMetadata = removeEntry.getMetadataGraph();
+
 			RepositoryConnection rc = null;
 			try {
 				rc = entry.repository.getConnection();
@@ -876,7 +919,7 @@ public class ContextImpl extends ResourceImpl implements Context {
 				this.entry.updateModifiedDateSynchronized(rc, this.entry.repository.getValueFactory());
 				rc.commit();
 				softCache.remove(removeEntry);
-				entry.getRepositoryManager().fireRepositoryEvent(new RepositoryEventObject(removeEntry, RepositoryEvent.EntryDeleted));
+				entry.getRepositoryManager().fireRepositoryEvent(new RepositoryEventObject(removeEntry, RepositoryEvent.EntryDeleted, null, removedMetadata));
 			} catch (Exception e) {
 				try {
 					rc.rollback();
@@ -951,7 +994,7 @@ public class ContextImpl extends ResourceImpl implements Context {
 					List<Statement> quotaStatement = rc.getStatements(this.resourceURI, RepositoryProperties.Quota, null, false, this.resourceURI).stream().toList();
 					for (Statement statement : quotaStatement) {
 						if (statement.getObject() instanceof Literal) {
-							queriedQuota = ((Literal) statement).longValue();
+							queriedQuota = ((Literal) statement.getObject()).longValue();
 							break;
 						}
 					}
@@ -1045,34 +1088,50 @@ public class ContextImpl extends ResourceImpl implements Context {
 
 	/**
 	 * @see Context#getQuotaFillLevel()
+	 *
+	 * <p>Does not block once the fill level is cached. If no fill level has been persisted
+	 * yet, a recount is scheduled in the background and {@link Quota#VALUE_UNKNOWN} is
+	 * returned until it has finished.</p>
 	 */
 	public long getQuotaFillLevel() {
+		long fillLevel = this.quotaFillLevel;
+		if (fillLevel == Quota.VALUE_UNCACHED) {
+			synchronized (quotaMutex) {
+				if (this.quotaFillLevel == Quota.VALUE_UNCACHED) {
+					this.quotaFillLevel = loadQuotaFillLevel();
+				}
+				fillLevel = this.quotaFillLevel;
+			}
+		}
+		if (fillLevel == Quota.VALUE_UNKNOWN) {
+			QuotaReconciler reconciler = entry.repositoryManager.getQuotaReconciler();
+			if (reconciler != null) {
+				reconciler.reconcile(this);
+			}
+		}
+		return fillLevel;
+	}
+
+	private long loadQuotaFillLevel() {
 		long queriedQuotaFillLevel = Quota.VALUE_UNKNOWN;
-		if (this.quotaFillLevel == Quota.VALUE_UNCACHED) {
-			synchronized (this.entry.repository) {
-				RepositoryConnection rc = null;
-				try {
-					rc = entry.repository.getConnection();
-					List<Statement> quotaStatement = rc.getStatements(this.resourceURI, RepositoryProperties.QuotaFillLevel, null, false, this.resourceURI).stream().toList();
-					for (Statement statement : quotaStatement) {
-						if (statement.getObject() instanceof Literal) {
-							queriedQuotaFillLevel = ((Literal) statement.getObject()).longValue();
-							break;
-						}
-					}
-				} catch (RepositoryException re) {
-					log.error(re.getMessage(), re);
-				} finally {
-					try {
-						rc.close();
-					} catch (NullPointerException | RepositoryException e) {
-						log.error(e.getMessage());
+		synchronized (this.entry.repository) {
+			RepositoryConnection rc = null;
+			try {
+				rc = entry.repository.getConnection();
+				List<Statement> quotaStatement = rc.getStatements(this.resourceURI, RepositoryProperties.QuotaFillLevel, null, false, this.resourceURI).stream().toList();
+				for (Statement statement : quotaStatement) {
+					if (statement.getObject() instanceof Literal) {
+						queriedQuotaFillLevel = ((Literal) statement.getObject()).longValue();
+						break;
 					}
 				}
-			}
-			if (queriedQuotaFillLevel == Quota.VALUE_UNKNOWN) {
-				synchronized (quotaMutex) {
-					setQuotaFillLevel(recalculateQuotaFillLevel());
+			} catch (RepositoryException re) {
+				log.error(re.getMessage(), re);
+			} finally {
+				try {
+					rc.close();
+				} catch (NullPointerException | RepositoryException e) {
+					log.error(e.getMessage());
 				}
 			}
 		}
@@ -1080,26 +1139,36 @@ public class ContextImpl extends ResourceImpl implements Context {
 	}
 
 	/**
-	 * Helper method which calculates the current quota fill level. Used inside
-	 * getQuotaFillLevel, should not be called unsynchronized.
+	 * @return The sum of all changes of the fill level. Used to account for changes that
+	 * happen while the fill level is recounted.
 	 */
-	private long recalculateQuotaFillLevel() {
-		long fillLevel = 0;
-		Date before = new Date();
-		Set<URI> entries = getEntries();
-		for (URI uri : entries) {
-			Entry e = getByEntryURI(uri);
-			if (EntryType.Local.equals(e.getEntryType())) {
-				if (e.getResource() instanceof Data) {
-					File f = ((Data) e.getResource()).getDataFile();
-					if (f != null) {
-						fillLevel += f.length();
-					}
+	long getQuotaFillLevelChanges() {
+		return quotaFillLevelChanges.get();
+	}
+
+	/**
+	 * Sets the fill level to a recounted value, taking into account changes that happened
+	 * during the recount.
+	 *
+	 * @param measuredFillLevel The recounted fill level.
+	 * @param changesBefore The value of {@link #getQuotaFillLevelChanges()} before the recount started.
+	 */
+	void reconcileQuotaFillLevel(long measuredFillLevel, long changesBefore) {
+		long quota = getQuota();
+		synchronized (quotaMutex) {
+			long fillLevel = Math.max(0, measuredFillLevel + quotaFillLevelChanges.get() - changesBefore);
+			long currentFillLevel = this.quotaFillLevel;
+			if (fillLevel != currentFillLevel) {
+				if (currentFillLevel >= 0) {
+					log.info("Corrected quota fill level of context {} from {} to {} bytes", entry.getId(), currentFillLevel, fillLevel);
 				}
+				setQuotaFillLevel(fillLevel);
 			}
+			if (currentFillLevel == Quota.VALUE_UNKNOWN && quota > -1 && fillLevel > quota) {
+				log.warn("Context {} exceeded its quota while the fill level was recounted, further writes are rejected", entry.getId());
+			}
+			quotaFillLevelWhileUnknown = 0;
 		}
-		log.info("Calculation of quota fill level took {} ms", new Date().getTime() - before.getTime());
-		return fillLevel;
 	}
 
 	/**
@@ -1108,10 +1177,22 @@ public class ContextImpl extends ResourceImpl implements Context {
 	public void increaseQuotaFillLevel(long bytes) throws QuotaException {
 		long quota = getQuota();
 		synchronized (quotaMutex) {
-			long newFillLevel = getQuotaFillLevel() + bytes;
+			long fillLevel = getQuotaFillLevel();
+			if (fillLevel == Quota.VALUE_UNKNOWN) {
+				// writes do not wait for the recount, which runs in the background and takes
+				// this change into account; until then only the bytes written since are checked
+				if (quota > -1 && quotaFillLevelWhileUnknown + bytes > quota) {
+					throw new QuotaException(QuotaException.QUOTA_EXCEEDED);
+				}
+				quotaFillLevelWhileUnknown += bytes;
+				quotaFillLevelChanges.addAndGet(bytes);
+				return;
+			}
+			long newFillLevel = fillLevel + bytes;
 			if (quota > -1 && newFillLevel > quota) {
 				throw new QuotaException(QuotaException.QUOTA_EXCEEDED);
 			} else {
+				quotaFillLevelChanges.addAndGet(bytes);
 				setQuotaFillLevel(newFillLevel);
 			}
 		}
@@ -1122,15 +1203,23 @@ public class ContextImpl extends ResourceImpl implements Context {
 	 */
 	public void decreaseQuotaFillLevel(long bytes) {
 		synchronized (quotaMutex) {
-			setQuotaFillLevel(getQuotaFillLevel() - bytes);
+			quotaFillLevelChanges.addAndGet(-bytes);
+			long fillLevel = getQuotaFillLevel();
+			if (fillLevel != Quota.VALUE_UNKNOWN) {
+				setQuotaFillLevel(Math.max(0, fillLevel - bytes));
+			} else {
+				quotaFillLevelWhileUnknown = Math.max(0, quotaFillLevelWhileUnknown - bytes);
+			}
 		}
 	}
 
 	/**
 	 * FIXME ENTRYSTORE-418
 	 * <p>
-	 * This method should only be called by increaseQuotaFillLevel() and
-	 * decreaseQuotaFillLevel().
+	 * This method should only be called by increaseQuotaFillLevel(),
+	 * decreaseQuotaFillLevel() and reconcileQuotaFillLevel() while holding
+	 * the quota mutex. The new fill level is persisted before it becomes
+	 * visible to readers.
 	 *
 	 * @param bytes
 	 */
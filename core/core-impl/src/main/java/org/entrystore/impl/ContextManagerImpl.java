@@ -88,6 +88,7 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Matthias Palmer
@@ -97,6 +98,13 @@ public class ContextManagerImpl extends EntryNamesContext implements ContextMana
 
 	Logger log = LoggerFactory.getLogger(ContextManagerImpl.class);
 
+	/**
+	 * Repository-wide index of resource URIs to entry URIs, loaded on first use.
+	 */
+	private volatile Map<URI, Set<URI>> resourceIndex;
+
+	private final Object resourceIndexLock = new Object();
+
 	public ContextManagerImpl(RepositoryManagerImpl rman, Repository repo) {
 		super(new EntryImpl(rman,repo), URISplit.createURI(rman.getRepositoryURL().toString(),
 				RepositoryProperties.SYSTEM_CONTEXTS_ID,
@@ -380,6 +388,10 @@ public class ContextManagerImpl extends EntryNamesContext implements ContextMana
 				File dst = new File(dstDir, src.getName());
 				log.info("Copying {} to {}", src, dst);
 				FileOperations.copyFile(src, dst);
+				BlobStore blobStore = entry.repositoryManager.getBlobStore();
+				if (blobStore != null && !src.getName().endsWith(DataImpl.SHA_256_POSTFIX)) {
+					blobStore.deduplicate(dst.toPath());
+				}
 			}
 		}
 
@@ -573,6 +585,12 @@ public class ContextManagerImpl extends EntryNamesContext implements ContextMana
 		log.info("Reindexing {}", cont.getEntry().getEntryURI());
 		cont.reIndex();
 
+		// statements were added without firing events
+		ContextStatisticsManager statisticsManager = entry.repositoryManager.getStatisticsManager();
+		if (statisticsManager != null) {
+			statisticsManager.invalidate(contextEntry.getId());
+		}
+
 		log.info("Import finished in {} ms", new Date().getTime() - before.getTime());
 		log.info("Imported {} triples", importedTriples);
 		log.info("Skipped {} triples", amountTriples - importedTriples);
@@ -912,6 +930,80 @@ public class ContextManagerImpl extends EntryNamesContext implements ContextMana
 		return getLinksOrReferences(metadataURI, false);
 	}
 
+	public Set<URI> getEntryURIsByResourceURI(URI resourceURI) {
+		Map<URI, Set<URI>> index = resourceIndex;
+		if (index == null) {
+			index = loadResourceIndex();
+		}
+		Set<URI> entryURIs = index.get(resourceURI);
+		return entryURIs != null ? new HashSet<>(entryURIs) : Collections.emptySet();
+	}
+
+	private Map<URI, Set<URI>> loadResourceIndex() {
+		synchronized (resourceIndexLock) {
+			if (resourceIndex != null) {
+				return resourceIndex;
+			}
+			long before = System.currentTimeMillis();
+			Map<URI, Set<URI>> index = new ConcurrentHashMap<>();
+			try (RepositoryConnection rc = entry.repository.getConnection();
+			     RepositoryResult<Statement> statements = rc.getStatements(null, RepositoryProperties.resHasEntry, null, false)) {
+				for (Statement statement : statements) {
+					try {
+						URI resourceURI = URI.create(statement.getSubject().stringValue());
+						URI entryURI = URI.create(statement.getObject().stringValue());
+						index.computeIfAbsent(resourceURI, k -> ConcurrentHashMap.newKeySet()).add(entryURI);
+					} catch (IllegalArgumentException e) {
+						log.error(e.getMessage());
+					}
+				}
+			} catch (RepositoryException e) {
+				log.error("Repository error", e);
+				throw new org.entrystore.repository.RepositoryException("Repository error", e);
+			}
+			log.info("Loaded resource index with {} resource URIs in {} ms", index.size(), System.currentTimeMillis() - before);
+			resourceIndex = index;
+			return index;
+		}
+	}
+
+	/**
+	 * Updates the repository-wide resource index, called by contexts when the resource
+	 * URI of an entry changes or when an entry is added or removed.
+	 *
+	 * @param oldResourceURI The previous resource URI, null if the entry has been added.
+	 * @param newResourceURI The new resource URI, null if the entry has been removed.
+	 */
+	void updateResourceIndex(URI oldResourceURI, URI newResourceURI, URI entryURI) {
+		synchronized (resourceIndexLock) {
+			Map<URI, Set<URI>> index = resourceIndex;
+			if (index == null) {
+				return;
+			}
+			if (oldResourceURI != null) {
+				Set<URI> entryURIs = index.get(oldResourceURI);
+				if (entryURIs != null) {
+					entryURIs.remove(entryURI);
+					if (entryURIs.isEmpty()) {
+						index.remove(oldResourceURI);
+					}
+				}
+			}
+			if (newResourceURI != null) {
+				index.computeIfAbsent(newResourceURI, k -> ConcurrentHashMap.newKeySet()).add(entryURI);
+			}
+		}
+	}
+
+	/**
+	 * Drops the repository-wide resource index, it is reloaded on next use.
+	 */
+	void invalidateResourceIndex() {
+		synchronized (resourceIndexLock) {
+			resourceIndex = null;
+		}
+	}
+
 	private Set<Entry> getLinksOrReferences(URI uri, boolean findLinks) {
 		HashSet<Entry> entries = new HashSet<Entry>();
 		try {
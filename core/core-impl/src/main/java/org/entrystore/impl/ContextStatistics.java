@@ -0,0 +1,342 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.impl;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.entrystore.repository.util.NS;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.eclipse.rdf4j.model.util.Values.iri;
+
+/**
+ * Aggregated statistics about the metadata of the entries of a context: property usage,
+ * usage of ontology predicates and terms, and keyword frequencies. The aggregates are
+ * maintained incrementally by adding and removing the contributions of single entries,
+ * see {@link ContextStatisticsManager}.
+ *
+ * <p>Only entries with graph type None that are not in the trash are counted.</p>
+ */
+public class ContextStatistics {
+
+	private static final int FORMAT_VERSION = 1;
+
+	private static final String OE_PREDICATES = "http://www.cc.uah.es/ie/ont/OE-Predicates#";
+
+	static final Set<IRI> ONTOLOGY_PREDICATES = Set.of(
+			iri(OE_PREDICATES + "Supports"),
+			iri(OE_PREDICATES + "ProvidesAlternativeViewOn"),
+			iri(OE_PREDICATES + "ProvidesExamplesOn"),
+			iri(OE_PREDICATES + "Methodology"),
+			iri(OE_PREDICATES + "Summarizes"),
+			iri(OE_PREDICATES + "ProvidesDataOn"),
+			iri(OE_PREDICATES + "ProvidesBackgroundOn"),
+			iri(OE_PREDICATES + "Details"),
+			iri(OE_PREDICATES + "IsAbout"),
+			iri(OE_PREDICATES + "ProvidesTheoreticalInformationOn"),
+			iri(OE_PREDICATES + "ProvidesNewInformationOn"),
+			iri(OE_PREDICATES + "CommentsOn"),
+			iri(OE_PREDICATES + "Refutes"),
+			iri(OE_PREDICATES + "Explains"),
+			iri(OE_PREDICATES + "ProvidesExamplesOf"));
+
+	static final Set<IRI> KEYWORD_PREDICATES = Set.of(
+			iri(NS.dc + "subject"),
+			iri(NS.dcterms + "subject"));
+
+	/**
+	 * The number of statements in which a property, term or keyword is used and the
+	 * number of entries that use it.
+	 */
+	public static class Usage {
+
+		private long statements;
+
+		private long entries;
+
+		public long getStatements() {
+			return statements;
+		}
+
+		public long getEntries() {
+			return entries;
+		}
+
+	}
+
+	private final Set<String> entries = new HashSet<>();
+
+	private final Map<String, Usage> propertyUsage = new HashMap<>();
+
+	private final Map<String, Usage> ontologyPredicateUsage = new HashMap<>();
+
+	private final Map<String, Usage> ontologyTermUsage = new HashMap<>();
+
+	private final Map<String, Usage> keywordUsage = new HashMap<>();
+
+	private long entriesWithOntologyTerm;
+
+	private long entriesWithKeyword;
+
+	private Date computed;
+
+	ContextStatistics() {
+		this.computed = new Date();
+	}
+
+	synchronized boolean isCounted(String entryId) {
+		return entries.contains(entryId);
+	}
+
+	synchronized void add(String entryId, Contribution contribution) {
+		if (entries.add(entryId)) {
+			apply(contribution, 1);
+		}
+	}
+
+	synchronized void remove(String entryId, Contribution contribution) {
+		if (entries.remove(entryId)) {
+			apply(contribution, -1);
+		}
+	}
+
+	synchronized void update(String entryId, Contribution oldContribution, Contribution newContribution) {
+		if (entries.contains(entryId)) {
+			apply(oldContribution, -1);
+			apply(newContribution, 1);
+		}
+	}
+
+	private void apply(Contribution contribution, int sign) {
+		apply(propertyUsage, contribution.properties, sign);
+		apply(ontologyPredicateUsage, contribution.ontologyPredicates, sign);
+		apply(ontologyTermUsage, contribution.ontologyTerms, sign);
+		apply(keywordUsage, contribution.keywords, sign);
+		if (contribution.ontologyTerm) {
+			entriesWithOntologyTerm += sign;
+		}
+		if (contribution.keyword) {
+			entriesWithKeyword += sign;
+		}
+	}
+
+	private static void apply(Map<String, Usage> usage, Map<String, Integer> counts, int sign) {
+		for (Map.Entry<String, Integer> count : counts.entrySet()) {
+			Usage u = usage.computeIfAbsent(count.getKey(), k -> new Usage());
+			u.statements += (long) sign * count.getValue();
+			u.entries += sign;
+			if (u.entries <= 0) {
+				usage.remove(count.getKey());
+			}
+		}
+	}
+
+	public synchronized int getEntryCount() {
+		return entries.size();
+	}
+
+	public synchronized long getEntryCountWithOntologyTerm() {
+		return entriesWithOntologyTerm;
+	}
+
+	public synchronized long getEntryCountWithKeyword() {
+		return entriesWithKeyword;
+	}
+
+	/**
+	 * @return Usage of the properties of the entries' resources, with the property URIs as keys.
+	 */
+	public synchronized Map<String, Usage> getPropertyUsage() {
+		return copy(propertyUsage);
+	}
+
+	/**
+	 * @return Usage of ontology predicates, with the local names of the predicates as keys.
+	 */
+	public synchronized Map<String, Usage> getOntologyPredicateUsage() {
+		return copy(ontologyPredicateUsage);
+	}
+
+	/**
+	 * @return Usage of ontology terms, with the local names of the terms as keys.
+	 */
+	public synchronized Map<String, Usage> getOntologyTermUsage() {
+		return copy(ontologyTermUsage);
+	}
+
+	/**
+	 * @return Usage of keywords, with the lower-cased keywords as keys.
+	 */
+	public synchronized Map<String, Usage> getKeywordUsage() {
+		return copy(keywordUsage);
+	}
+
+	/**
+	 * @return The time of the full computation that the statistics are based on.
+	 */
+	public synchronized Date getComputed() {
+		return computed;
+	}
+
+	private static Map<String, Usage> copy(Map<String, Usage> usage) {
+		Map<String, Usage> result = new HashMap<>(usage.size());
+		for (Map.Entry<String, Usage> e : usage.entrySet()) {
+			Usage u = new Usage();
+			u.statements = e.getValue().statements;
+			u.entries = e.getValue().entries;
+			result.put(e.getKey(), u);
+		}
+		return result;
+	}
+
+	synchronized void write(DataOutputStream out) throws IOException {
+		out.writeInt(FORMAT_VERSION);
+		out.writeLong(computed.getTime());
+		out.writeLong(entriesWithOntologyTerm);
+		out.writeLong(entriesWithKeyword);
+		out.writeInt(entries.size());
+		for (String entryId : entries) {
+			writeString(out, entryId);
+		}
+		for (Map<String, Usage> usage : usageMaps()) {
+			out.writeInt(usage.size());
+			for (Map.Entry<String, Usage> e : usage.entrySet()) {
+				writeString(out, e.getKey());
+				out.writeLong(e.getValue().statements);
+				out.writeLong(e.getValue().entries);
+			}
+		}
+	}
+
+	static ContextStatistics read(DataInputStream in) throws IOException {
+		int version = in.readInt();
+		if (version != FORMAT_VERSION) {
+			throw new IOException("Unsupported format version of context statistics: " + version);
+		}
+		ContextStatistics stats = new ContextStatistics();
+		stats.computed = new Date(in.readLong());
+		stats.entriesWithOntologyTerm = in.readLong();
+		stats.entriesWithKeyword = in.readLong();
+		int entryCount = in.readInt();
+		for (int i = 0; i < entryCount; i++) {
+			stats.entries.add(readString(in));
+		}
+		for (Map<String, Usage> usage : stats.usageMaps()) {
+			int size = in.readInt();
+			for (int i = 0; i < size; i++) {
+				String key = readString(in);
+				Usage u = new Usage();
+				u.statements = in.readLong();
+				u.entries = in.readLong();
+				usage.put(key, u);
+			}
+		}
+		return stats;
+	}
+
+	/**
+	 * @return The usage maps in the order in which they are serialized.
+	 */
+	private List<Map<String, Usage>> usageMaps() {
+		return List.of(propertyUsage, ontologyPredicateUsage, ontologyTermUsage, keywordUsage);
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		// writeUTF() is limited to 64 KB, which may not be enough for literals
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * The part of the statistics that stems from the metadata of a single entry.
+	 */
+	static class Contribution {
+
+		final Map<String, Integer> properties = new HashMap<>();
+
+		final Map<String, Integer> ontologyPredicates = new HashMap<>();
+
+		final Map<String, Integer> ontologyTerms = new HashMap<>();
+
+		final Map<String, Integer> keywords = new HashMap<>();
+
+		boolean ontologyTerm;
+
+		boolean keyword;
+
+		static Contribution of(Model metadata, IRI resource) {
+			Contribution c = new Contribution();
+			if (metadata == null) {
+				return c;
+			}
+			for (Statement statement : metadata.filter(resource, null, null)) {
+				IRI predicate = statement.getPredicate();
+				Value object = statement.getObject();
+				c.properties.merge(predicate.stringValue(), 1, Integer::sum);
+
+				if (ONTOLOGY_PREDICATES.contains(predicate)) {
+					c.ontologyTerm = true;
+					c.ontologyPredicates.merge(localName(predicate), 1, Integer::sum);
+					c.ontologyTerms.merge(localName(object), 1, Integer::sum);
+				}
+
+				if (KEYWORD_PREDICATES.contains(predicate)) {
+					c.keyword = true;
+					if (object instanceof Resource) {
+						for (Statement valueStatement : metadata.filter((Resource) object, RDF.VALUE, null)) {
+							if (valueStatement.getObject() instanceof Literal) {
+								c.keywords.merge(localName(valueStatement.getObject()).toLowerCase(), 1, Integer::sum);
+							}
+						}
+					} else if (object instanceof Literal) {
+						c.keywords.merge(localName(object).toLowerCase(), 1, Integer::sum);
+					}
+				}
+			}
+			return c;
+		}
+
+		private static String localName(Value value) {
+			String s = value.stringValue();
+			return s.substring(s.lastIndexOf("#") + 1);
+		}
+
+	}
+
+}
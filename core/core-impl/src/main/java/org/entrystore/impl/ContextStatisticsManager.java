@@ -0,0 +1,434 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.impl;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.entrystore.Context;
+import org.entrystore.Entry;
+import org.entrystore.EntryType;
+import org.entrystore.GraphType;
+import org.entrystore.Metadata;
+import org.entrystore.PrincipalManager;
+import org.entrystore.impl.ContextStatistics.Contribution;
+import org.entrystore.repository.RepositoryEvent;
+import org.entrystore.repository.RepositoryEventObject;
+import org.entrystore.repository.config.Settings;
+import org.entrystore.repository.util.EntryUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static org.eclipse.rdf4j.model.util.Values.iri;
+
+/**
+ * Maintains materialized {@link ContextStatistics} of contexts. The statistics of a
+ * context are computed once when they are requested for the first time and are then
+ * updated from repository events, using the difference between the previous and the
+ * new metadata of an entry.
+ *
+ * <p>The statistics are persisted in the data folder of the respective context,
+ * modifications are written periodically and on shutdown. A marker file is created with
+ * the first modification after the statistics have been written and is removed when they
+ * are written again. Persisted statistics with a marker have missed modifications, e.g.
+ * because EntryStore was killed, and are recomputed.</p>
+ */
+public class ContextStatisticsManager {
+
+	private static final Logger log = LoggerFactory.getLogger(ContextStatisticsManager.class);
+
+	private static final String FILE_NAME = ".statistics";
+
+	private static final String DIRTY_MARKER = ".statistics.dirty";
+
+	private final RepositoryManagerImpl rm;
+
+	private final Path dataFolder;
+
+	private final Map<String, ContextStatistics> statistics = new ConcurrentHashMap<>();
+
+	/**
+	 * Contexts for which it is known that no persisted statistics exist.
+	 */
+	private final Set<String> notMaterialized = ConcurrentHashMap.newKeySet();
+
+	private final Set<String> modified = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Guards {@link #modified} together with the dirty markers on disk.
+	 */
+	private final Object dirtyLock = new Object();
+
+	/**
+	 * Entries that have been modified while the statistics of their context were recomputed.
+	 */
+	private final Map<String, Set<String>> recomputing = new HashMap<>();
+
+	private final Map<String, Object> recomputeLocks = new ConcurrentHashMap<>();
+
+	private final ScheduledExecutorService persistExecutor;
+
+	public ContextStatisticsManager(RepositoryManagerImpl rm) {
+		this.rm = rm;
+		String dataFolderStr = rm.getConfiguration().getString(Settings.DATA_FOLDER);
+		this.dataFolder = dataFolderStr != null ? Path.of(dataFolderStr) : null;
+		if (dataFolder != null) {
+			long interval = rm.getConfiguration().getDuration(Settings.STATISTICS_PERSIST_INTERVAL, Duration.ofMinutes(1)).toMillis();
+			persistExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "context-statistics-persister");
+				t.setDaemon(true);
+				return t;
+			});
+			persistExecutor.scheduleWithFixedDelay(this::persist, interval, interval, TimeUnit.MILLISECONDS);
+		} else {
+			persistExecutor = null;
+			log.warn("No data folder configured, context statistics will not be persisted");
+		}
+	}
+
+	/**
+	 * Returns the statistics of a context. If the statistics have not been materialized
+	 * yet they are computed, which requires loading all entries of the context.
+	 */
+	public ContextStatistics getStatistics(Context context) {
+		String contextId = context.getEntry().getId();
+		ContextStatistics stats = getMaterialized(contextId);
+		if (stats == null) {
+			stats = recompute(context);
+		}
+		return stats;
+	}
+
+	/**
+	 * Computes the statistics of a context from scratch and replaces the materialized statistics.
+	 */
+	public ContextStatistics recompute(Context context) {
+		String contextId = context.getEntry().getId();
+		synchronized (recomputeLocks.computeIfAbsent(contextId, k -> new Object())) {
+			Set<String> touched = ConcurrentHashMap.newKeySet();
+			synchronized (recomputing) {
+				recomputing.put(contextId, touched);
+			}
+			long before = System.currentTimeMillis();
+			ContextStatistics stats = new ContextStatistics();
+			// contributions are kept until the computation is complete, to be able
+			// to correct entries that are modified while the context is traversed
+			Map<String, Contribution> contributions = new HashMap<>();
+			try {
+				runAsAdmin(() -> {
+					for (URI entryURI : context.getEntries()) {
+						Entry entry = context.getByEntryURI(entryURI);
+						if (entry != null) {
+							evaluate(entry, stats, contributions);
+						}
+					}
+				});
+
+				while (true) {
+					Set<String> batch;
+					synchronized (recomputing) {
+						if (touched.isEmpty()) {
+							statistics.put(contextId, stats);
+							notMaterialized.remove(contextId);
+							recomputing.remove(contextId);
+							break;
+						}
+						batch = new HashSet<>(touched);
+						touched.removeAll(batch);
+					}
+					runAsAdmin(() -> {
+						for (String entryId : batch) {
+							Contribution previous = contributions.remove(entryId);
+							if (previous != null) {
+								stats.remove(entryId, previous);
+							}
+							Entry entry = context.get(entryId);
+							if (entry != null) {
+								evaluate(entry, stats, contributions);
+							}
+						}
+					});
+				}
+			} finally {
+				synchronized (recomputing) {
+					recomputing.remove(contextId);
+				}
+			}
+			markModified(contextId);
+			log.info("Computed statistics of context {} with {} entries in {} ms", contextId, stats.getEntryCount(), System.currentTimeMillis() - before);
+			return stats;
+		}
+	}
+
+	private void evaluate(Entry entry, ContextStatistics stats, Map<String, Contribution> contributions) {
+		if (isCounted(entry)) {
+			Contribution c = Contribution.of(entry.getMetadataGraph(), resourceOf(entry));
+			stats.add(entry.getId(), c);
+			contributions.put(entry.getId(), c);
+		}
+	}
+
+	/**
+	 * Drops the materialized statistics of a context, e.g. if the context was removed or
+	 * its content was replaced without events being fired. They are recomputed on next access.
+	 */
+	public void invalidate(String contextId) {
+		statistics.remove(contextId);
+		modified.remove(contextId);
+		notMaterialized.add(contextId);
+		Path file = getFile(contextId);
+		if (file != null) {
+			try {
+				Files.deleteIfExists(file);
+				Files.deleteIfExists(file.resolveSibling(DIRTY_MARKER));
+			} catch (IOException e) {
+				log.warn("Unable to delete statistics of context {}: {}", contextId, e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Updates the statistics of the context of the event's entry, if they are materialized.
+	 */
+	void handleEvent(RepositoryEventObject event) {
+		if (!(event.getSource() instanceof Entry entry) || entry.getContext() == null) {
+			return;
+		}
+		if (RepositoryEvent.EntryDeleted.equals(event.getEvent()) && GraphType.Context.equals(entry.getGraphType())) {
+			invalidate(entry.getId());
+		}
+		String contextId = entry.getContext().getEntry().getId();
+		synchronized (recomputing) {
+			Set<String> touched = recomputing.get(contextId);
+			if (touched != null) {
+				touched.add(entry.getId());
+			}
+		}
+		ContextStatistics stats = getMaterialized(contextId);
+		if (stats == null) {
+			return;
+		}
+
+		runAsAdmin(() -> {
+			RepositoryEvent type = event.getEvent();
+			if (RepositoryEvent.EntryDeleted.equals(type)) {
+				if (stats.isCounted(entry.getId())) {
+					stats.remove(entry.getId(), Contribution.of(event.getPreviousGraph(), resourceOf(entry)));
+				}
+			} else if (stats.isCounted(entry.getId()) &&
+					(RepositoryEvent.MetadataUpdated.equals(type) || RepositoryEvent.ExternalMetadataUpdated.equals(type))) {
+				if (event.getPreviousGraph() == null) {
+					log.warn("Statistics of context {} cannot be updated without previous metadata of {}", contextId, entry.getEntryURI());
+					return;
+				}
+				boolean external = RepositoryEvent.ExternalMetadataUpdated.equals(type);
+				Model previous = getMetadataGraph(entry, external ? null : event.getPreviousGraph(), external ? event.getPreviousGraph() : null);
+				Model current = getMetadataGraph(entry, external ? null : event.getUpdatedGraph(), external ? event.getUpdatedGraph() : null);
+				IRI resource = resourceOf(entry);
+				stats.update(entry.getId(), Contribution.of(previous, resource), Contribution.of(current, resource));
+			} else {
+				// created entries and changes of graph type or trash membership
+				boolean counted = isCounted(entry);
+				if (counted != stats.isCounted(entry.getId())) {
+					Contribution c = Contribution.of(entry.getMetadataGraph(), resourceOf(entry));
+					if (counted) {
+						stats.add(entry.getId(), c);
+					} else {
+						stats.remove(entry.getId(), c);
+					}
+				}
+			}
+		});
+		markModified(contextId);
+	}
+
+	/**
+	 * Records that the statistics of a context have to be written. The dirty marker is
+	 * created with the first modification after the statistics have been written.
+	 */
+	private void markModified(String contextId) {
+		synchronized (dirtyLock) {
+			if (!modified.add(contextId)) {
+				return;
+			}
+			Path file = getFile(contextId);
+			if (file == null || !Files.isDirectory(file.getParent())) {
+				return;
+			}
+			try {
+				Files.write(file.resolveSibling(DIRTY_MARKER), new byte[0]);
+			} catch (IOException e) {
+				log.warn("Unable to mark statistics of context {} as modified: {}", contextId, e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Same as {@link Entry#getMetadataGraph()}, but with the local or the cached external
+	 * metadata replaced by the provided graph.
+	 */
+	private Model getMetadataGraph(Entry entry, Model local, Model external) {
+		EntryType type = entry.getEntryType();
+		if (EntryType.Local.equals(type) || EntryType.Link.equals(type)) {
+			return local != null ? local : graphOf(entry.getLocalMetadata());
+		} else if (EntryType.Reference.equals(type)) {
+			return external != null ? external : graphOf(entry.getCachedExternalMetadata());
+		} else if (EntryType.LinkReference.equals(type)) {
+			Model merged = new LinkedHashModel();
+			merged.addAll(local != null ? local : graphOf(entry.getLocalMetadata()));
+			merged.addAll(external != null ? external : graphOf(entry.getCachedExternalMetadata()));
+			return merged;
+		}
+		return new LinkedHashModel();
+	}
+
+	private static Model graphOf(Metadata metadata) {
+		if (metadata != null && metadata.getGraph() != null) {
+			return metadata.getGraph();
+		}
+		return new LinkedHashModel();
+	}
+
+	private static boolean isCounted(Entry entry) {
+		return GraphType.None.equals(entry.getGraphType()) && !EntryUtil.isDeleted(entry);
+	}
+
+	private static IRI resourceOf(Entry entry) {
+		return iri(entry.getResourceURI().toString());
+	}
+
+	private ContextStatistics getMaterialized(String contextId) {
+		ContextStatistics stats = statistics.get(contextId);
+		if (stats != null || notMaterialized.contains(contextId)) {
+			return stats;
+		}
+		synchronized (statistics) {
+			stats = statistics.get(contextId);
+			if (stats == null && !notMaterialized.contains(contextId)) {
+				stats = load(contextId);
+				if (stats != null) {
+					statistics.put(contextId, stats);
+				} else {
+					notMaterialized.add(contextId);
+				}
+			}
+		}
+		return stats;
+	}
+
+	private ContextStatistics load(String contextId) {
+		Path file = getFile(contextId);
+		if (file == null || !Files.exists(file)) {
+			return null;
+		}
+		if (Files.exists(file.resolveSibling(DIRTY_MARKER))) {
+			log.info("Statistics of context {} have not been written after their last modification, they will be recomputed", contextId);
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			ContextStatistics stats = ContextStatistics.read(in);
+			log.debug("Loaded statistics of context {} from {}", contextId, file);
+			return stats;
+		} catch (IOException e) {
+			log.warn("Unable to load statistics of context {}, they will be recomputed: {}", contextId, e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Writes the statistics of all contexts that have been modified since they were written last.
+	 */
+	public void persist() {
+		for (String contextId : Set.copyOf(modified)) {
+			synchronized (dirtyLock) {
+				modified.remove(contextId);
+			}
+			ContextStatistics stats = statistics.get(contextId);
+			Path file = getFile(contextId);
+			if (stats == null || file == null || !Files.isDirectory(file.getParent())) {
+				continue;
+			}
+			Path tmp = file.resolveSibling(FILE_NAME + ".tmp");
+			try {
+				try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+					stats.write(out);
+				}
+				try {
+					Files.move(tmp, file, REPLACE_EXISTING, ATOMIC_MOVE);
+				} catch (AtomicMoveNotSupportedException e) {
+					Files.move(tmp, file, REPLACE_EXISTING);
+				}
+				synchronized (dirtyLock) {
+					// the marker is kept if the statistics have been modified while they were written
+					if (!modified.contains(contextId)) {
+						Files.deleteIfExists(file.resolveSibling(DIRTY_MARKER));
+					}
+				}
+			} catch (IOException e) {
+				log.error("Unable to write statistics of context {}: {}", contextId, e.getMessage());
+				markModified(contextId);
+			}
+		}
+	}
+
+	private Path getFile(String contextId) {
+		if (dataFolder == null) {
+			return null;
+		}
+		return dataFolder.resolve(contextId).resolve(FILE_NAME);
+	}
+
+	private void runAsAdmin(Runnable runnable) {
+		PrincipalManager pm = rm.getPrincipalManager();
+		URI currentUser = pm.getAuthenticatedUserURI();
+		try {
+			pm.setAuthenticatedUserURI(pm.getAdminUser().getURI());
+			runnable.run();
+		} finally {
+			pm.setAuthenticatedUserURI(currentUser);
+		}
+	}
+
+	public void shutdown() {
+		if (persistExecutor != null) {
+			persistExecutor.shutdown();
+			persist();
+		}
+	}
+
+}
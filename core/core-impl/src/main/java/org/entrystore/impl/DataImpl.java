@@ -27,18 +27,23 @@ import org.entrystore.QuotaException;
 import org.entrystore.repository.RepositoryEvent;
 import org.entrystore.repository.RepositoryEventObject;
 import org.entrystore.repository.config.Settings;
-import org.entrystore.repository.util.FileOperations;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
 
 import static org.apache.commons.codec.Charsets.UTF_8;
 import static org.apache.commons.codec.digest.MessageDigestAlgorithms.SHA_256;
@@ -103,17 +108,61 @@ public class DataImpl extends ResourceImpl implements Data {
 	public void setData(InputStream is) throws QuotaException, IOException {
 		this.entry.getRepositoryManager().getPrincipalManager().checkAuthenticatedUserAuthorized(entry, AccessProperty.WriteResource);
 
-		MessageDigest sha;
-		try {
-			sha = MessageDigest.getInstance(SHA_256);
-		} catch (NoSuchAlgorithmException e) {
-			throw new RuntimeException(e);
+		Path dataPath = getFile().toPath();
+		long sizeBefore = 0;
+		if (entry.getRepositoryManager().hasQuotas() && Files.exists(dataPath)) {
+			sizeBefore = Files.size(dataPath);
 		}
+		long bytes = writeFile(is, dataPath);
+		updateQuotaFillLevel(sizeBefore, bytes);
+
+		entry.getRepositoryManager().fireRepositoryEvent(new RepositoryEventObject(entry, RepositoryEvent.ResourceUpdated));
+	}
+
+	/**
+	 * Replaces the data with a file that has been written completely, e.g., by a chunked
+	 * upload. The file is moved into place, it must have been synced to disk and must
+	 * be in the same file system as the data folder.
+	 *
+	 * <p>The quota is checked before the file is moved, so the file and the existing
+	 * data are left untouched if the quota is exceeded.</p>
+	 *
+	 * @param file The new file, it is left in place if it cannot be moved into place.
+	 * @param digest The SHA-256 digest of the file.
+	 */
+	void setData(Path file, String digest) throws QuotaException, IOException {
+		this.entry.getRepositoryManager().getPrincipalManager().checkAuthenticatedUserAuthorized(entry, AccessProperty.WriteResource);
+
 		Path dataPath = getFile().toPath();
-		long bytes = FileOperations.copyFile(new DigestInputStream(is, sha), Files.newOutputStream(dataPath));
-		writeDigest(sha);
+		boolean hasQuotas = entry.getRepositoryManager().hasQuotas();
+		long sizeBefore = 0;
+		if (hasQuotas && Files.exists(dataPath)) {
+			sizeBefore = Files.size(dataPath);
+		}
+		long growth = Files.size(file) - sizeBefore;
+		if (hasQuotas && growth > 0) {
+			entry.getContext().increaseQuotaFillLevel(growth);
+		}
+		try {
+			installFile(file, digest, dataPath);
+		} catch (IOException | RuntimeException e) {
+			if (hasQuotas && growth > 0) {
+				entry.getContext().decreaseQuotaFillLevel(growth);
+			}
+			throw e;
+		}
+		if (hasQuotas && growth < 0) {
+			entry.getContext().decreaseQuotaFillLevel(-growth);
+		}
+
+		entry.getRepositoryManager().fireRepositoryEvent(new RepositoryEventObject(entry, RepositoryEvent.ResourceUpdated));
+	}
 
+	private void updateQuotaFillLevel(long sizeBefore, long bytes) throws QuotaException {
 		if (entry.getRepositoryManager().hasQuotas()) {
+			if (sizeBefore > 0) {
+				entry.getContext().decreaseQuotaFillLevel(sizeBefore);
+			}
 			try {
 				entry.getContext().increaseQuotaFillLevel(bytes);
 			} catch (QuotaException qe) {
@@ -127,8 +176,6 @@ public class DataImpl extends ResourceImpl implements Data {
 				throw qe;
 			}
 		}
-
-		entry.getRepositoryManager().fireRepositoryEvent(new RepositoryEventObject(entry, RepositoryEvent.ResourceUpdated));
 	}
 
 	public void useData(File file) throws IOException {
@@ -149,7 +196,7 @@ public class DataImpl extends ResourceImpl implements Data {
 			}
 		}
 
-		FileOperations.copyFile(file, getFile());
+		writeFile(Files.newInputStream(file.toPath()), getFile().toPath());
 
 		if (entry.getRepositoryManager().hasQuotas()) {
 			entry.getContext().decreaseQuotaFillLevel(sizeBefore);
@@ -219,10 +266,75 @@ public class DataImpl extends ResourceImpl implements Data {
 		return new File(digestFileName);
 	}
 
-	private void writeDigest(MessageDigest messageDigest) throws IOException {
-		byte[] digest = messageDigest.digest();
-		String s = String.valueOf(Hex.encodeHex(digest));
-		FileUtils.writeStringToFile(getDigestFile(), s, UTF_8);
+	/**
+	 * Writes a new data file and its digest. The data is written to a temporary file
+	 * which is synced to disk before it replaces the existing file, so that the file is
+	 * either completely replaced or not at all. If a blob store is configured, the file
+	 * becomes a link to the blob with the same content.
+	 *
+	 * @return The number of bytes written.
+	 */
+	private long writeFile(InputStream is, Path dataPath) throws IOException {
+		MessageDigest sha;
+		try {
+			sha = MessageDigest.getInstance(SHA_256);
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+		Path tmpPath = getTempPath(dataPath);
+		long bytes;
+		try {
+			try (InputStream in = new DigestInputStream(is, sha);
+			     FileChannel channel = FileChannel.open(tmpPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+				bytes = in.transferTo(Channels.newOutputStream(channel));
+				channel.force(true);
+			}
+			installFile(tmpPath, String.valueOf(Hex.encodeHex(sha.digest())), dataPath);
+		} finally {
+			Files.deleteIfExists(tmpPath);
+		}
+		return bytes;
+	}
+
+	/**
+	 * Moves a new file that has been synced to disk into place and writes its digest.
+	 */
+	private void installFile(Path file, String digest, Path dataPath) throws IOException {
+		BlobStore blobStore = entry.repositoryManager.getBlobStore();
+		if (blobStore != null) {
+			blobStore.store(file, digest, dataPath);
+		} else {
+			replaceFile(file, dataPath);
+		}
+		writeDigest(digest);
+	}
+
+	private void writeDigest(String s) throws IOException {
+		Path digestPath = getDigestFile().toPath();
+		Path tmpPath = getTempPath(digestPath);
+		try {
+			FileUtils.writeStringToFile(tmpPath.toFile(), s, UTF_8);
+			replaceFile(tmpPath, digestPath);
+		} finally {
+			Files.deleteIfExists(tmpPath);
+		}
+	}
+
+	/**
+	 * Files are never modified in place, but written to a temporary file which then
+	 * replaces the existing file. This way, hard-linked copies of the data folder
+	 * (e.g., backup snapshots) are not affected by later modifications.
+	 */
+	static Path getTempPath(Path target) {
+		return target.resolveSibling("." + target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+	}
+
+	static void replaceFile(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
 	}
 
 	public String readDigest() {
@@ -36,6 +36,7 @@ import org.eclipse.rdf4j.repository.RepositoryResult;
 import org.entrystore.Context;
 import org.entrystore.Entry;
 import org.entrystore.EntryType;
+import org.entrystore.EntryUpdate;
 import org.entrystore.GraphType;
 import org.entrystore.Group;
 import org.entrystore.Metadata;
@@ -978,6 +979,7 @@ public class EntryImpl implements Entry {
 						}
 					}
 					rc.commit();
+					repositoryManager.increaseAclVersion();
 					if (replace) {
 						setCachedAllowedPrincipalsFor(prop, principals);
 					} else {
@@ -1032,9 +1034,7 @@ public class EntryImpl implements Entry {
 
 	public void setGraphType(GraphType gt) {
 		checkAdministerRights();
-		if (this.graphType != gt && this.locType == EntryType.Local) {
-			throw new org.entrystore.repository.RepositoryException("Cannot change the graph type of a local resource");
-		}
+		checkGraphTypeChange(gt);
 		try {
 			synchronized (this.repository) {
 				RepositoryConnection rc = this.repository.getConnection();
@@ -1043,6 +1043,7 @@ public class EntryImpl implements Entry {
 					setGraphType(gt, rc);
 					registerEntryModified(rc, this.repository.getValueFactory());
 					rc.commit();
+					getRepositoryManager().fireRepositoryEvent(new RepositoryEventObject(this, RepositoryEvent.EntryUpdated));
 				} catch (Exception e) {
 					rc.rollback();
 					throw new org.entrystore.repository.RepositoryException("Error in repository connection.", e);
@@ -1090,9 +1091,7 @@ public class EntryImpl implements Entry {
 
 	public void setResourceType(ResourceType resType) {
 		checkAdministerRights();
-		if (this.repType != resType && this.locType == EntryType.Local && (this.graphType != GraphType.None && this.graphType != GraphType.Pipeline && this.graphType != GraphType.PipelineResult)) {
-			throw new org.entrystore.repository.RepositoryException("Cannot change the resource type of a local and/or built-in resource");
-		}
+		checkResourceTypeChange(resType);
 		try {
 			synchronized (this.repository) {
 				RepositoryConnection rc = this.repository.getConnection();
@@ -1114,6 +1113,18 @@ public class EntryImpl implements Entry {
 		}
 	}
 
+	private void checkGraphTypeChange(GraphType gt) {
+		if (this.graphType != gt && this.locType == EntryType.Local) {
+			throw new org.entrystore.repository.RepositoryException("Cannot change the graph type of a local resource");
+		}
+	}
+
+	private void checkResourceTypeChange(ResourceType resType) {
+		if (this.repType != resType && this.locType == EntryType.Local && (this.graphType != GraphType.None && this.graphType != GraphType.Pipeline && this.graphType != GraphType.PipelineResult)) {
+			throw new org.entrystore.repository.RepositoryException("Cannot change the resource type of a local and/or built-in resource");
+		}
+	}
+
 	protected void setResourceType(ResourceType resType, RepositoryConnection rc) throws RepositoryException {
 		List<Statement> statements = Iterations.asList(rc.getStatements(resURI, RDF.TYPE, null, false, entryURI));
 		for (Statement statement : statements) {
@@ -1376,6 +1387,9 @@ public class EntryImpl implements Entry {
 					// we reload the internal cache
 					loadFromStatements(Iterations.asList(rc.getStatements(null, null, null, false, entryURI)));
 					initMetadataObjects();
+					if (hasAclChanged(oldGraph, metametadata)) {
+						repositoryManager.increaseAclVersion();
+					}
 					getRepositoryManager().fireRepositoryEvent(new RepositoryEventObject(this, RepositoryEvent.EntryUpdated));
 					if (GraphType.Context.equals(this.getGraphType())) {
 						if (hasAclChangedForGuest(oldGraph, metametadata)) {
@@ -1399,6 +1413,26 @@ public class EntryImpl implements Entry {
 		}
 	}
 
+	private boolean hasAclChanged(Model oldGraph, Model newGraph) {
+		if (oldGraph == null || newGraph == null) {
+			return true;
+		}
+		return !getAcl(oldGraph).equals(getAcl(newGraph));
+	}
+
+	/**
+	 * @return The ACL statements of an entry graph without their contexts.
+	 */
+	private Set<List<Value>> getAcl(Model graph) {
+		Set<List<Value>> acl = new HashSet<>();
+		for (Statement s : graph) {
+			if (RepositoryProperties.Read.equals(s.getPredicate()) || RepositoryProperties.Write.equals(s.getPredicate())) {
+				acl.add(List.of(s.getSubject(), s.getPredicate(), s.getObject()));
+			}
+		}
+		return acl;
+	}
+
 	private boolean hasAclChangedForGuest(Model oldGraph, Model newGraph) {
 		if (oldGraph == null || newGraph == null) {
 			throw new IllegalArgumentException("Parameters must not be null");
@@ -1683,6 +1717,76 @@ public class EntryImpl implements Entry {
 		}
 	}
 
+	public void update(EntryUpdate update) {
+		if (update.isEmpty()) {
+			return;
+		}
+		if (update.hasTypes()) {
+			checkAdministerRights();
+		}
+		if (update.hasResourceProperties()) {
+			this.getRepositoryManager().getPrincipalManager().checkAuthenticatedUserAuthorized(this, AccessProperty.WriteResource);
+		}
+		if (update.getGraphType() != null) {
+			checkGraphTypeChange(update.getGraphType());
+		}
+		if (update.getResourceType() != null) {
+			checkResourceTypeChange(update.getResourceType());
+		}
+
+		try {
+			synchronized (this.repository) {
+				RepositoryConnection rc = this.repository.getConnection();
+				ValueFactory vf = this.repository.getValueFactory();
+				rc.begin();
+				try {
+					if (update.getGraphType() != null) {
+						setGraphType(update.getGraphType(), rc);
+					}
+					if (update.getResourceType() != null) {
+						setResourceType(update.getResourceType(), rc);
+					}
+					if (update.getFilename() != null) {
+						rc.remove(resURI, RepositoryProperties.filename, null, entryURI);
+						rc.add(resURI, RepositoryProperties.filename, vf.createLiteral(update.getFilename()), entryURI);
+					}
+					if (update.getFileSize() != null) {
+						rc.remove(resURI, RepositoryProperties.fileSize, null, entryURI);
+						rc.add(resURI, RepositoryProperties.fileSize, vf.createLiteral(update.getFileSize().longValue()), entryURI);
+					}
+					if (update.getMimetype() != null) {
+						rc.remove(resURI, RepositoryProperties.format, null, entryURI);
+						rc.add(resURI, RepositoryProperties.format, vf.createLiteral(update.getMimetype()), entryURI);
+					}
+					registerEntryModified(rc, vf);
+					rc.commit();
+				} catch (Exception e) {
+					rc.rollback();
+					// the cached types may have been changed before the rollback
+					refreshFromRepository(rc);
+					throw new org.entrystore.repository.RepositoryException("Error in repository connection.", e);
+				} finally {
+					rc.close();
+				}
+			}
+		} catch (RepositoryException e) {
+			throw new org.entrystore.repository.RepositoryException("Failed to connect to Repository.", e);
+		}
+
+		if (update.getFilename() != null) {
+			this.filename = update.getFilename();
+		}
+		if (update.getFileSize() != null) {
+			this.fileSize = update.getFileSize();
+		}
+		if (update.getMimetype() != null) {
+			// if the mime-type is set (overwritten) in the metadata, we take that one instead
+			String mtMd = getMimetypeFromMetadata();
+			this.format = mtMd != null ? mtMd : update.getMimetype();
+		}
+		getRepositoryManager().fireRepositoryEvent(new RepositoryEventObject(this, RepositoryEvent.EntryUpdated));
+	}
+
 	private String getMimetypeFromMetadata() {
 		Statement st = getStatementFromLocalMetadata(resURI, RepositoryProperties.format, null);
 		if (st != null) {
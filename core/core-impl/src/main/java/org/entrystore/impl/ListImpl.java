@@ -23,7 +23,6 @@ import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.model.Value;
 import org.eclipse.rdf4j.model.ValueFactory;
 import org.eclipse.rdf4j.model.impl.LinkedHashModel;
-import org.eclipse.rdf4j.model.vocabulary.RDF;
 import org.eclipse.rdf4j.repository.RepositoryConnection;
 import org.eclipse.rdf4j.repository.RepositoryException;
 import org.eclipse.rdf4j.repository.RepositoryResult;
@@ -40,6 +39,7 @@ import org.entrystore.Resource;
 import org.entrystore.ResourceType;
 import org.entrystore.repository.RepositoryEvent;
 import org.entrystore.repository.RepositoryEventObject;
+import org.entrystore.repository.config.Settings;
 import org.entrystore.repository.security.DisallowedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,17 +47,15 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.Vector;
 
 public class ListImpl extends RDFResource implements List {
 
 	private static final Logger log = LoggerFactory.getLogger(ListImpl.class);
 
-	private Vector<URI> children;
+	private OrderedChildren children;
 
 	public ListImpl(EntryImpl entry, String uri) {
 		super(entry, uri);
@@ -92,46 +90,27 @@ public class ListImpl extends RDFResource implements List {
 		if (graph == null) {
 			throw new IllegalArgumentException("Graph must not be null");
 		}
-		children = loadChildren(graph);
-		saveChildren();
+		children = new OrderedChildren(isSparseOrdering());
+		children.update(OrderedChildren.load(graph, isSparseOrdering()).asList());
+		saveChildren(null);
 	}
 
-	private Vector<URI> loadChildren(Model graph) {
-		if (graph == null) {
-			throw new IllegalArgumentException("Graph must not be null");
-		}
-
-		Vector<URI> result = new Vector<>();
-		for (Statement statement : graph) {
-			IRI predicate = statement.getPredicate();
-			if (!predicate.toString().startsWith(RDF.NAMESPACE + "_")) {
-				continue;
-			}
-
-			try {
-				String value = predicate.toString().substring(RDF.NAMESPACE.length());
-				int index = Integer.parseInt(value.substring(value.lastIndexOf("_") + 1));
-				if (index > result.size()) {
-					result.setSize(index);
-				}
-				result.set(index - 1, URI.create(statement.getObject().stringValue()));
-			} catch (IndexOutOfBoundsException iobe) {
-				log.error(iobe.getMessage());
-			} catch (NumberFormatException nfe) {
-				log.error("{}; affected statement: {}", nfe.getMessage(), statement);
-			}
-		}
-		result.trimToSize();
-		return result;
+	private boolean isSparseOrdering() {
+		return entry.getRepositoryManager().getConfiguration().getBoolean(Settings.REPOSITORY_LIST_SPARSE_ORDERING, true);
 	}
 
 	private synchronized void loadChildren() {
 		if (children == null) {
-			children = loadChildren(getGraph());
+			children = OrderedChildren.load(getGraph(), isSparseOrdering());
 		}
 	}
 
-	private synchronized void saveChildren() {
+	/**
+	 * Persists changes of the children in a transaction of its own.
+	 *
+	 * @param changes The changed positions, or null to rewrite the whole list.
+	 */
+	private synchronized void saveChildren(OrderedChildren.Changes changes) {
 		if (children == null) {
 			return;
 		}
@@ -139,11 +118,13 @@ public class ListImpl extends RDFResource implements List {
 			RepositoryConnection rc = entry.repository.getConnection();
 			try {
 				rc.begin();
-				saveChildren(rc);
+				saveChildren(rc, changes);
 				rc.commit();
 				entry.getRepositoryManager().fireRepositoryEvent(new RepositoryEventObject(entry, RepositoryEvent.ResourceUpdated));
 			} catch (Exception e) {
 				rc.rollback();
+				// the children are reloaded from the repository on next access
+				children = null;
 				log.error(e.getMessage());
 			} finally {
 				rc.close();
@@ -153,17 +134,13 @@ public class ListImpl extends RDFResource implements List {
 		}
 	}
 
-	private void saveChildren(RepositoryConnection rc) throws RepositoryException {
-		ValueFactory vf = entry.repository.getValueFactory();
-		children.trimToSize();
-		rc.clear(this.resourceURI);
+	private void saveChildren(RepositoryConnection rc, OrderedChildren.Changes changes) throws RepositoryException {
+		if (changes == null) {
+			children.writeAll(rc, this.resourceURI);
+		} else if (!changes.isEmpty()) {
+			OrderedChildren.write(rc, this.resourceURI, changes, children.isEmpty());
+		}
 		if (!children.isEmpty()) {
-			rc.add(this.resourceURI, RDF.TYPE, RDF.SEQ, this.resourceURI);
-			for (int i = 0; i < children.size(); i++) {
-				IRI li = vf.createIRI(RDF.NAMESPACE + "_" + (i + 1));
-				IRI child = vf.createIRI(children.get(i).toString());
-				rc.add(this.resourceURI, li, child, this.resourceURI);
-			}
 			entry.registerEntryModified(rc, rc.getValueFactory());
 		}
 	}
@@ -209,16 +186,8 @@ public class ListImpl extends RDFResource implements List {
 					if (isOwnerOfContext) {
 						childEntry.setOriginalListSynchronized(null, rc, vf);
 					}
-					if (children.isEmpty()) {
-						rc.add(this.resourceURI, RDF.TYPE, RDF.SEQ, this.resourceURI);
-					}
-
-					IRI li = vf.createIRI(RDF.NAMESPACE + "_" + (children.size() + 1));
-					IRI childURI = vf.createIRI(nEntry.toString());
-					rc.add(this.resourceURI, li, childURI, this.resourceURI);
+					saveChildren(rc, children.append(nEntry));
 					childEntry.addReferringList(this, rc); //TODO deprecate addReferringList.
-					children.add(nEntry);
-					entry.registerEntryModified(rc, vf);
 					rc.commit();
 					
 					entry.getRepositoryManager().fireRepositoryEvent(new RepositoryEventObject(childEntry, RepositoryEvent.EntryUpdated));
@@ -226,6 +195,7 @@ public class ListImpl extends RDFResource implements List {
 				} catch (Exception e) {
 					((EntryImpl) this.entry.getContext().getByEntryURI(nEntry)).refreshFromRepository(rc);
 					rc.rollback();
+					children = null;
 					log.error(e.getMessage());
 				} finally {
 					rc.close();
@@ -470,10 +440,11 @@ public class ListImpl extends RDFResource implements List {
 		if (children == null) {
 			loadChildren();
 		}
-		java.util.List<URI> toRemove = new java.util.ArrayList<>(children);
-		toRemove.removeAll(newChildren);
+		Set<URI> newChildrenSet = new HashSet<>(newChildren);
+		java.util.List<URI> toRemove = new java.util.ArrayList<>(children.asList());
+		toRemove.removeIf(newChildrenSet::contains);
 		java.util.List<URI> toAdd = new java.util.ArrayList<>(newChildren);
-		toAdd.removeAll(children);
+		toAdd.removeIf(children::contains);
 
 		for (URI uri : toAdd) {
 			EntryImpl childEntry = (EntryImpl) this.entry.getContext().getByEntryURI(uri);
@@ -488,8 +459,7 @@ public class ListImpl extends RDFResource implements List {
 		}
 
 		if (orderedSetRequirement) {
-			HashSet<URI> set = new HashSet<>(newChildren);
-			if (set.size() < newChildren.size()) {
+			if (newChildrenSet.size() < newChildren.size()) {
 				throw new org.entrystore.repository.RepositoryException("Cannot set the list since some of its children occur multiple times.");
 			}
 		}
@@ -508,12 +478,10 @@ public class ListImpl extends RDFResource implements List {
 		try {
 			synchronized (this.entry.repository) {
 				RepositoryConnection rc = entry.repository.getConnection();
-				Vector<URI> oldChildrenList = children;
 				try {
 					rc.begin();
-					children = new Vector<>(newChildren);
 					java.util.List<EntryImpl> updatedChildEntries = new ArrayList<>();
-					saveChildren(rc);
+					saveChildren(rc, children.update(newChildren));
 					for (URI uri : toAdd) {
 						EntryImpl childEntry = (EntryImpl) this.entry.getContext().getByEntryURI(uri);
 						if (childEntry != null) {
@@ -553,7 +521,7 @@ public class ListImpl extends RDFResource implements List {
 						childEntry.refreshFromRepository(rc);
 						entry.getRepositoryManager().fireRepositoryEvent(new RepositoryEventObject(childEntry, RepositoryEvent.EntryUpdated));
 					}
-					children = oldChildrenList;
+					children = null;
 					throw new org.entrystore.repository.RepositoryException("Cannot set the list since: " + e.getMessage());
 				} finally {
 					rc.close();
@@ -571,7 +539,7 @@ public class ListImpl extends RDFResource implements List {
 		if (children == null) {
 			loadChildren();
 		}
-		return Collections.unmodifiableList(children);
+		return children.asList();
 	}
 
 	public void moveChildAfter(URI child, URI afterChild) {
@@ -581,9 +549,12 @@ public class ListImpl extends RDFResource implements List {
 			loadChildren();
 		}
 		synchronized (this.entry.repository) {
-			children.remove(child);
-			children.add(children.indexOf(afterChild) + 1, child);
-			saveChildren();
+			if (!children.contains(child)) {
+				return;
+			}
+			java.util.List<URI> others = new ArrayList<>(children.asList());
+			others.remove(child);
+			saveChildren(children.move(child, others.indexOf(afterChild) + 1));
 		}
 	}
 
@@ -594,9 +565,12 @@ public class ListImpl extends RDFResource implements List {
 			loadChildren();
 		}
 		synchronized (this.entry.repository) {
-			children.remove(child);
-			children.add(children.indexOf(beforeChild), child);
-			saveChildren();
+			if (!children.contains(child)) {
+				return;
+			}
+			java.util.List<URI> others = new ArrayList<>(children.asList());
+			others.remove(child);
+			saveChildren(children.move(child, Math.max(others.indexOf(beforeChild), 0)));
 		}
 	}
 
@@ -627,7 +601,6 @@ public class ListImpl extends RDFResource implements List {
 
 			EntryImpl childEntry = (EntryImpl) this.entry.getContext().getByEntryURI(child);
 			if (canRemove(checkOrphaned, childEntry, isOwnerOfContext)) {
-				children.remove(child);
 				try {
 					RepositoryConnection rc = entry.repository.getConnection();
 					ValueFactory vf = entry.repository.getValueFactory();
@@ -636,7 +609,7 @@ public class ListImpl extends RDFResource implements List {
 						if (checkOrphaned && isOwnerOfContext) {
 							childEntry.setOriginalListSynchronized(null, rc, vf); //remains to do the same for list case.
 						}
-						saveChildren(rc);
+						saveChildren(rc, children.remove(child));
 						childEntry.removeReferringList(this, rc);
 						rc.commit();
 						entry.getRepositoryManager().fireRepositoryEvent(new RepositoryEventObject(childEntry, RepositoryEvent.EntryUpdated));
@@ -645,6 +618,7 @@ public class ListImpl extends RDFResource implements List {
 						log.error(e.getMessage());
 						rc.rollback();
 						childEntry.refreshFromRepository(rc);
+						children = null;
 						return false;
 					} finally {
 						rc.close();
@@ -679,7 +653,7 @@ public class ListImpl extends RDFResource implements List {
 				loadChildren();
 			}
 			rc.clear(this.resourceURI);
-			for (URI uri : children) {
+			for (URI uri : children.asList()) {
 				EntryImpl childEntry = ((EntryImpl) this.entry.getContext().getByEntryURI(uri));
 				childEntry.removeReferringList(this, rc);
 				entry.getRepositoryManager().fireRepositoryEvent(new RepositoryEventObject(childEntry, RepositoryEvent.EntryUpdated));
@@ -696,7 +670,7 @@ public class ListImpl extends RDFResource implements List {
 			loadChildren();
 		}
 
-		java.util.List<URI> tchildren = new ArrayList<>(children);
+		java.util.List<URI> tchildren = new ArrayList<>(children.asList());
 		setChildren(new ArrayList<>(), false, false);
 		for (URI uri : tchildren) {
 			EntryImpl childEntry = (EntryImpl) this.entry.getContext().getByEntryURI(uri);
@@ -721,7 +695,7 @@ public class ListImpl extends RDFResource implements List {
 			loadChildren();
 		}
 
-		for (URI uri : children) {
+		for (URI uri : children.asList()) {
 			Entry childEntry = entry.getContext().getByEntryURI(uri);
 			if (childEntry != null) {
 				for (AccessProperty ap : AccessProperty.values()) {
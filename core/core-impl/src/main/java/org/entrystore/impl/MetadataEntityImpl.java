@@ -18,12 +18,10 @@ package org.entrystore.impl;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.eclipse.rdf4j.common.iteration.Iterations;
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Literal;
 import org.eclipse.rdf4j.model.Model;
 import org.eclipse.rdf4j.model.Statement;
-import org.eclipse.rdf4j.model.impl.LinkedHashModel;
 import org.eclipse.rdf4j.repository.RepositoryConnection;
 import org.eclipse.rdf4j.repository.RepositoryException;
 import org.eclipse.rdf4j.repository.RepositoryResult;
@@ -111,20 +109,7 @@ public class MetadataEntityImpl implements GraphEntity {
         if (this.latest) {
             return this.entry.getMetadataGraph();
         } else {
-            RepositoryConnection rc = null;
-            try {
-                rc = this.entry.repositoryManager.getProvenanceRepository().getConnection();
-                return Iterations.addAll(rc.getStatements(null, null, null, false, uri), new LinkedHashModel());
-            } catch (RepositoryException e) {
-                log.error(e.getMessage());
-                return null;
-            } finally {
-                try {
-                    rc.close();
-                } catch (RepositoryException e) {
-                    log.error(e.getMessage());
-                }
-            }
+            return ((ProvenanceImpl) this.entry.getProvenance()).getRevisionGraph(uri);
         }
     }
 
@@ -141,7 +126,7 @@ public class MetadataEntityImpl implements GraphEntity {
 
     public void remove(RepositoryConnection rc) throws RepositoryException {
         if (!this.latest) {
-            rc.clear(this.uri);
+            MetadataRevisionStore.remove(rc, this.uri);
         }
     }
 }
\ No newline at end of file
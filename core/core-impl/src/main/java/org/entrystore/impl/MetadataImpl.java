@@ -33,6 +33,7 @@ import org.entrystore.PrincipalManager;
 import org.entrystore.PrincipalManager.AccessProperty;
 import org.entrystore.repository.RepositoryEvent;
 import org.entrystore.repository.RepositoryEventObject;
+import org.entrystore.repository.util.RequestTimings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -72,6 +73,7 @@ public class MetadataImpl implements Metadata {
 			}
 		}*/
 		RepositoryConnection rc = null;
+		long start = System.nanoTime();
 		try {
 			rc = this.entry.repository.getConnection();
 			return Iterations.addAll(rc.getStatements(null, null, null, false, mdContext), new LinkedHashModel());
@@ -84,6 +86,7 @@ public class MetadataImpl implements Metadata {
 			} catch (RepositoryException e) {
 				log.error(e.getMessage());
 			} 
+			RequestTimings.add(RequestTimings.Category.STORE, start);
 		}
 	}
 
@@ -106,6 +109,8 @@ public class MetadataImpl implements Metadata {
 			pm.checkAuthenticatedUserAuthorized(entry, AccessProperty.WriteMetadata);
 		}
 		
+		long start = System.nanoTime();
+		boolean timed = false;
 		try {
 			synchronized (this.entry.repository) {
 				RepositoryConnection rc = this.entry.repository.getConnection();
@@ -118,10 +123,13 @@ public class MetadataImpl implements Metadata {
 						provenance.addMetadataEntity(oldGraph, rc);
 					}
 					rc.commit();
+					// the listeners that are notified below are not attributed to the store
+					RequestTimings.add(RequestTimings.Category.STORE, start);
+					timed = true;
 					if (cached) {
-						entry.getRepositoryManager().fireRepositoryEvent(new RepositoryEventObject(entry, RepositoryEvent.ExternalMetadataUpdated, graph));
+						entry.getRepositoryManager().fireRepositoryEvent(new RepositoryEventObject(entry, RepositoryEvent.ExternalMetadataUpdated, graph, oldGraph));
 					} else {
-						entry.getRepositoryManager().fireRepositoryEvent(new RepositoryEventObject(entry, RepositoryEvent.MetadataUpdated, graph));
+						entry.getRepositoryManager().fireRepositoryEvent(new RepositoryEventObject(entry, RepositoryEvent.MetadataUpdated, graph, oldGraph));
 					}
 				} catch (AuthorizationException ae) {
 					rc.rollback();
@@ -138,6 +146,11 @@ public class MetadataImpl implements Metadata {
 		} catch (RepositoryException e) {
 			log.error(e.getMessage());
 			throw new org.entrystore.repository.RepositoryException("Failed to connect to Repository.", e);
+		} finally {
+			// failed writes are attributed to the store as well
+			if (!timed) {
+				RequestTimings.add(RequestTimings.Category.STORE, start);
+			}
 		}
 	}
 	public Model removeGraphSynchronized(RepositoryConnection rc) throws RepositoryException {
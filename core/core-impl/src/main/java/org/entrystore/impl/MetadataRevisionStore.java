@@ -0,0 +1,347 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.impl;
+
+import org.eclipse.rdf4j.model.BNode;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.eclipse.rdf4j.model.vocabulary.OWL;
+import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.RepositoryException;
+import org.eclipse.rdf4j.repository.RepositoryResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static org.eclipse.rdf4j.model.util.Values.getValueFactory;
+import static org.eclipse.rdf4j.model.util.Values.iri;
+
+/**
+ * Stores the graphs of metadata revisions in the provenance repository.
+ *
+ * <p>The graph of the latest revision is the current metadata graph of the entry and
+ * is not stored in the provenance repository. Every other revision is stored either
+ * as a full snapshot or as a delta relative to a base revision:</p>
+ * <ul>
+ *     <li>Snapshot: the named graph <code>&lt;revision URI&gt;</code> contains the
+ *     complete graph of the revision. Revisions created before deltas were introduced
+ *     are snapshots.</li>
+ *     <li>Delta: the named graph <code>&lt;revision URI&gt;</code> contains the statements
+ *     to be added to the graph of the base, the named graph
+ *     <code>&lt;revision URI&gt;&amp;delta</code> contains the statements to be removed
+ *     from it and the statement <code>&lt;revision URI&gt; es:deltaOf &lt;base URI&gt;</code>.</li>
+ * </ul>
+ *
+ * <p>The base of a delta is the predecessor of the revision. Each chain of deltas starts
+ * with a snapshot, every n-th revision is stored as snapshot to limit the number of
+ * deltas that have to be applied when reconstructing a revision. Revisions are thus
+ * reconstructed from the provenance repository only and do not depend on the current
+ * metadata graph, which may be modified without creating a revision. Deltas relative
+ * to the successor, as written by earlier versions, can still be read and are rewritten
+ * by {@link #compact(Repository, Repository, int)}.</p>
+ *
+ * <p>Statements with blank nodes cannot be reliably compared between revisions. A delta
+ * therefore replaces all statements with blank nodes of the base with those of the
+ * revision.</p>
+ */
+public final class MetadataRevisionStore {
+
+	private static final Logger log = LoggerFactory.getLogger(MetadataRevisionStore.class);
+
+	public static final int DEFAULT_SNAPSHOT_INTERVAL = 10;
+
+	private static final String DELTA_SUFFIX = "&delta";
+
+	private static final String REVISION_PARAMETER = "?rev=";
+
+	private MetadataRevisionStore() {
+	}
+
+	static IRI getDeltaGraph(IRI revision) {
+		return iri(revision.stringValue() + DELTA_SUFFIX);
+	}
+
+	/**
+	 * @return The number of a revision, or -1 if the URI is not a revision URI.
+	 */
+	static int getRevisionNumber(IRI revision) {
+		String uri = revision.stringValue();
+		int index = uri.lastIndexOf(REVISION_PARAMETER);
+		if (index < 0) {
+			return -1;
+		}
+		try {
+			return Integer.parseInt(uri.substring(index + REVISION_PARAMETER.length()));
+		} catch (NumberFormatException nfe) {
+			return -1;
+		}
+	}
+
+	static IRI getRevisionURI(IRI metadataURI, int revision) {
+		return iri(metadataURI.stringValue() + REVISION_PARAMETER + revision);
+	}
+
+	/**
+	 * Stores the graph of a revision that has just been superseded.
+	 *
+	 * @param rc                Connection to the provenance repository.
+	 * @param revision          The revision to store.
+	 * @param graph             The graph of the revision.
+	 * @param predecessor       The revision preceding the stored revision, or null if
+	 *                          there is none.
+	 * @param predecessorGraph  Provides the graph of the predecessor, only called if the
+	 *                          revision is stored as delta.
+	 * @param snapshotInterval  Every n-th revision starts a new chain of deltas with a
+	 *                          snapshot; 1 or less disables deltas.
+	 * @return True if the revision was stored as delta.
+	 */
+	static boolean store(RepositoryConnection rc, IRI revision, Model graph, IRI predecessor, Supplier<Model> predecessorGraph, int snapshotInterval) throws RepositoryException {
+		int number = getRevisionNumber(revision);
+		Model base = null;
+		// a delta must not be based on a predecessor that is itself a delta of this revision
+		if (snapshotInterval > 1 && predecessor != null && number > 1 && (number - 1) % snapshotInterval != 0 &&
+				!revision.equals(getBase(rc, predecessor))) {
+			base = predecessorGraph.get();
+		}
+
+		IRI deltaGraph = getDeltaGraph(revision);
+		rc.clear(revision, deltaGraph);
+
+		if (base != null) {
+			Model additions = new LinkedHashModel();
+			Model deletions = new LinkedHashModel();
+			Set<Statement> current = withoutContext(graph);
+			Set<Statement> previous = withoutContext(base);
+			for (Statement st : current) {
+				if (hasBlankNode(st) || !previous.contains(st)) {
+					additions.add(st);
+				}
+			}
+			for (Statement st : previous) {
+				if (!hasBlankNode(st) && !current.contains(st)) {
+					deletions.add(st);
+				}
+			}
+			// a delta is only stored if it is smaller than the snapshot
+			if (additions.size() + deletions.size() < current.size()) {
+				rc.add(additions, revision);
+				rc.add(deletions, deltaGraph);
+				rc.add(revision, RepositoryProperties.deltaOf, predecessor, deltaGraph);
+				return true;
+			}
+		}
+
+		rc.add(graph, revision);
+		return false;
+	}
+
+	/**
+	 * Reconstructs the graph of a revision.
+	 *
+	 * @param rc           Connection to the provenance repository.
+	 * @param revision     The revision to reconstruct.
+	 * @param latest       The latest revision, its graph is the current metadata.
+	 * @param latestGraph  Provides the current metadata graph, only called for deltas
+	 *                     relative to the successor as written by earlier versions.
+	 * @return The graph of the revision, without context information.
+	 */
+	static Model reconstruct(RepositoryConnection rc, IRI revision, IRI latest, Supplier<Model> latestGraph) throws RepositoryException {
+		Deque<IRI> deltas = new ArrayDeque<>();
+		Set<IRI> visited = new HashSet<>();
+		IRI current = revision;
+		Set<Statement> result;
+		while (true) {
+			if (current.equals(latest)) {
+				result = withoutContext(latestGraph.get());
+				break;
+			}
+			IRI base = getBase(rc, current);
+			if (base == null) {
+				result = withoutContext(getStatements(rc, current));
+				break;
+			}
+			if (!visited.add(current)) {
+				throw new RepositoryException("Circular chain of metadata revisions at " + current);
+			}
+			deltas.push(current);
+			current = base;
+		}
+
+		// deltas are applied starting with the revision closest to the snapshot
+		while (!deltas.isEmpty()) {
+			IRI delta = deltas.pop();
+			result.removeIf(MetadataRevisionStore::hasBlankNode);
+			for (Statement st : getStatements(rc, getDeltaGraph(delta))) {
+				if (!RepositoryProperties.deltaOf.equals(st.getPredicate()) || !delta.equals(st.getSubject())) {
+					result.remove(withoutContext(st));
+				}
+			}
+			result.addAll(withoutContext(getStatements(rc, delta)));
+		}
+
+		return new LinkedHashModel(result);
+	}
+
+	/**
+	 * Removes the stored graphs of a revision.
+	 */
+	static void remove(RepositoryConnection rc, IRI revision) throws RepositoryException {
+		rc.clear(revision, getDeltaGraph(revision));
+	}
+
+	/**
+	 * Rewrites all metadata revisions in the provenance repository according to the
+	 * given snapshot interval. Used to migrate provenance data that was created with
+	 * full snapshots only or with deltas relative to the successor. The revisions of
+	 * an entry are reconstructed first and then rewritten starting with the oldest one;
+	 * each entry is migrated in its own transaction.
+	 *
+	 * @param repository           The main repository.
+	 * @param provenanceRepository The provenance repository.
+	 * @param snapshotInterval     Every n-th revision is stored as snapshot.
+	 */
+	public static void compact(Repository repository, Repository provenanceRepository, int snapshotInterval) {
+		log.info("Compacting metadata revisions using a snapshot interval of {}", snapshotInterval);
+		long before = System.currentTimeMillis();
+		long sizeBefore;
+		int entries = 0;
+		int deltas = 0;
+		int failed = 0;
+
+		try (RepositoryConnection rc = repository.getConnection();
+		     RepositoryConnection provRc = provenanceRepository.getConnection()) {
+			sizeBefore = provRc.size();
+
+			// the latest revision of each entry points to the local metadata graph via owl:sameAs
+			List<Statement> latestRevisions = new ArrayList<>();
+			try (RepositoryResult<Statement> rr = rc.getStatements(null, OWL.SAMEAS, null, false)) {
+				for (Statement st : rr) {
+					if (st.getSubject() instanceof IRI subject && st.getObject() instanceof IRI metadata &&
+							subject.stringValue().startsWith(metadata.stringValue() + REVISION_PARAMETER)) {
+						latestRevisions.add(st);
+					}
+				}
+			}
+
+			for (Statement st : latestRevisions) {
+				IRI latest = (IRI) st.getSubject();
+				IRI metadataURI = (IRI) st.getObject();
+				int latestNumber = getRevisionNumber(latest);
+				if (latestNumber < 2) {
+					continue;
+				}
+				try {
+					provRc.begin();
+					Model latestGraph = getStatements(rc, metadataURI);
+					List<Model> graphs = new ArrayList<>();
+					int first = latestNumber;
+					for (int i = latestNumber - 1; i > 0; i--) {
+						IRI revision = getRevisionURI(metadataURI, i);
+						if (!provRc.hasStatement(null, null, null, false, revision, getDeltaGraph(revision))) {
+							// older revisions are not available (or empty) and are left untouched
+							break;
+						}
+						graphs.add(reconstruct(provRc, revision, latest, () -> latestGraph));
+						first = i;
+					}
+					Collections.reverse(graphs);
+
+					IRI predecessor = null;
+					Model predecessorGraph = null;
+					for (int i = first; i < latestNumber; i++) {
+						IRI revision = getRevisionURI(metadataURI, i);
+						Model graph = graphs.get(i - first);
+						final Model base = predecessorGraph;
+						if (store(provRc, revision, graph, predecessor, () -> base, snapshotInterval)) {
+							deltas++;
+						}
+						predecessor = revision;
+						predecessorGraph = graph;
+					}
+					provRc.commit();
+					if (++entries % 1000 == 0) {
+						log.info("Compacted metadata revisions of {} entries", entries);
+					}
+				} catch (RepositoryException e) {
+					provRc.rollback();
+					log.error("Unable to compact revisions of {}: {}", metadataURI, e.getMessage());
+					failed++;
+				}
+			}
+
+			log.info("Compacted metadata revisions of {} entries ({} failed) in {} ms, {} revisions are stored as deltas, provenance repository size changed from {} to {} statements",
+					entries, failed, System.currentTimeMillis() - before, deltas, sizeBefore, provRc.size());
+		} catch (RepositoryException e) {
+			log.error("Unable to compact metadata revisions: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * @return The revision a delta is based on, or null if the revision is a snapshot.
+	 */
+	private static IRI getBase(RepositoryConnection rc, IRI revision) throws RepositoryException {
+		try (RepositoryResult<Statement> rr = rc.getStatements(revision, RepositoryProperties.deltaOf, null, false, getDeltaGraph(revision))) {
+			for (Statement st : rr) {
+				if (st.getObject() instanceof IRI base) {
+					return base;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static Model getStatements(RepositoryConnection rc, IRI context) throws RepositoryException {
+		Model result = new LinkedHashModel();
+		try (RepositoryResult<Statement> rr = rc.getStatements(null, null, null, false, context)) {
+			for (Statement st : rr) {
+				result.add(st);
+			}
+		}
+		return result;
+	}
+
+	private static Set<Statement> withoutContext(Iterable<Statement> statements) {
+		Set<Statement> result = new HashSet<>();
+		for (Statement st : statements) {
+			result.add(withoutContext(st));
+		}
+		return result;
+	}
+
+	private static Statement withoutContext(Statement st) {
+		if (st.getContext() == null) {
+			return st;
+		}
+		return getValueFactory().createStatement(st.getSubject(), st.getPredicate(), st.getObject());
+	}
+
+	private static boolean hasBlankNode(Statement st) {
+		return st.getSubject() instanceof BNode || st.getObject() instanceof BNode;
+	}
+
+}
@@ -0,0 +1,388 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.impl;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.RepositoryException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.eclipse.rdf4j.model.util.Values.iri;
+
+/**
+ * The ordered children of a list together with the ordering keys they are
+ * persisted with.
+ *
+ * <p>Children are stored as <code>rdf:_N</code> statements of an <code>rdf:Seq</code>,
+ * where N is the ordering key. By default the keys are sparse, i.e. they have gaps,
+ * so that a child can be inserted or moved by rewriting its own statement only; the
+ * keys are renumbered if there is no gap left at the target position. Lists that were
+ * stored with dense keys (plain rdf:Seq) are migrated to sparse keys the first time
+ * they are renumbered. Dense mode, with the keys 1..n as in a regular sequence, is
+ * only a fallback for consumers that expect a sequence without gaps. Consumers that
+ * sort the members by index see the same order in both modes.</p>
+ *
+ * <p>Every modification returns the statements that have to be removed and added,
+ * only positions whose child has changed are rewritten. Membership is tracked in a
+ * hash index. Not thread-safe.</p>
+ */
+final class OrderedChildren {
+
+	private static final Logger log = LoggerFactory.getLogger(OrderedChildren.class);
+
+	static final long SPARSE_STEP = 1024;
+
+	private final boolean sparse;
+
+	private final ArrayList<URI> children = new ArrayList<>();
+
+	private final ArrayList<Long> keys = new ArrayList<>();
+
+	private final HashMap<URI, Integer> occurrences = new HashMap<>();
+
+	/**
+	 * Statements to be removed from and added to the list graph, as maps from
+	 * ordering key to child.
+	 */
+	record Changes(Map<Long, URI> removed, Map<Long, URI> added) {
+
+		boolean isEmpty() {
+			return removed.isEmpty() && added.isEmpty();
+		}
+
+	}
+
+	OrderedChildren() {
+		this(true);
+	}
+
+	/**
+	 * @param sparse False to fall back to dense keys.
+	 */
+	OrderedChildren(boolean sparse) {
+		this.sparse = sparse;
+	}
+
+	/**
+	 * Reads the children from the <code>rdf:_N</code> statements of a list graph
+	 * using sparse keys for modifications.
+	 */
+	static OrderedChildren load(Model graph) {
+		return load(graph, true);
+	}
+
+	/**
+	 * Reads the children from the <code>rdf:_N</code> statements of a list graph.
+	 * Gaps between indexes are allowed.
+	 */
+	static OrderedChildren load(Model graph, boolean sparse) {
+		if (graph == null) {
+			throw new IllegalArgumentException("Graph must not be null");
+		}
+
+		List<Map.Entry<Long, URI>> members = new ArrayList<>();
+		for (Statement statement : graph) {
+			long key = getKey(statement.getPredicate());
+			if (key < 1) {
+				continue;
+			}
+			try {
+				members.add(Map.entry(key, URI.create(statement.getObject().stringValue())));
+			} catch (IllegalArgumentException iae) {
+				log.error("{}; affected statement: {}", iae.getMessage(), statement);
+			}
+		}
+		members.sort(Map.Entry.comparingByKey());
+
+		OrderedChildren result = new OrderedChildren(sparse);
+		long previous = 0;
+		for (Map.Entry<Long, URI> member : members) {
+			if (member.getKey() == previous) {
+				log.warn("Ignoring duplicate list index {} with value {}", previous, member.getValue());
+				continue;
+			}
+			result.insert(result.size(), member.getKey(), member.getValue());
+			previous = member.getKey();
+		}
+		result.children.trimToSize();
+		result.keys.trimToSize();
+		return result;
+	}
+
+	/**
+	 * @return The index of an <code>rdf:_N</code> predicate, or -1 if the predicate
+	 * is not a container membership property.
+	 */
+	static long getKey(IRI predicate) {
+		String uri = predicate.stringValue();
+		if (!uri.startsWith(RDF.NAMESPACE + "_")) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(uri.substring(RDF.NAMESPACE.length() + 1));
+		} catch (NumberFormatException nfe) {
+			log.error("{}; affected predicate: {}", nfe.getMessage(), predicate);
+			return -1;
+		}
+	}
+
+	static IRI getPredicate(long key) {
+		return iri(RDF.NAMESPACE + "_" + key);
+	}
+
+	List<URI> asList() {
+		return Collections.unmodifiableList(children);
+	}
+
+	int size() {
+		return children.size();
+	}
+
+	boolean isEmpty() {
+		return children.isEmpty();
+	}
+
+	boolean contains(URI child) {
+		return occurrences.containsKey(child);
+	}
+
+	int indexOf(URI child) {
+		return contains(child) ? children.indexOf(child) : -1;
+	}
+
+	/**
+	 * Appends a child, only the statement of the new child has to be added.
+	 */
+	Changes append(URI child) {
+		long key = keys.isEmpty() ? (sparse ? SPARSE_STEP : 1) : keys.get(keys.size() - 1) + (sparse ? SPARSE_STEP : 1);
+		insert(children.size(), key, child);
+		return new Changes(Collections.emptyMap(), Collections.singletonMap(key, child));
+	}
+
+	/**
+	 * Replaces the children and assigns new ordering keys. In sparse mode the keys of
+	 * the longest subsequence of children that is still in order are kept.
+	 */
+	Changes update(List<URI> newChildren) {
+		long[] newKeys = sparse ? assignSparseKeys(newChildren) : assignDenseKeys(newChildren.size());
+
+		Map<Long, URI> before = toMap(keys, children);
+		Map<Long, URI> after = new LinkedHashMap<>();
+		for (int i = 0; i < newKeys.length; i++) {
+			after.put(newKeys[i], newChildren.get(i));
+		}
+
+		Map<Long, URI> removed = new LinkedHashMap<>();
+		for (Map.Entry<Long, URI> e : before.entrySet()) {
+			if (!e.getValue().equals(after.get(e.getKey()))) {
+				removed.put(e.getKey(), e.getValue());
+			}
+		}
+		Map<Long, URI> added = new LinkedHashMap<>();
+		for (Map.Entry<Long, URI> e : after.entrySet()) {
+			if (!e.getValue().equals(before.get(e.getKey()))) {
+				added.put(e.getKey(), e.getValue());
+			}
+		}
+
+		children.clear();
+		keys.clear();
+		occurrences.clear();
+		for (int i = 0; i < newKeys.length; i++) {
+			insert(i, newKeys[i], newChildren.get(i));
+		}
+		return new Changes(removed, added);
+	}
+
+	/**
+	 * Moves a child to a new index, the index refers to the list without the moved child.
+	 */
+	Changes move(URI child, int index) {
+		List<URI> newChildren = new ArrayList<>(children);
+		newChildren.remove(child);
+		newChildren.add(index, child);
+		return update(newChildren);
+	}
+
+	/**
+	 * Removes the first occurrence of a child.
+	 */
+	Changes remove(URI child) {
+		List<URI> newChildren = new ArrayList<>(children);
+		newChildren.remove(child);
+		return update(newChildren);
+	}
+
+	/**
+	 * Applies changes to the list graph.
+	 */
+	static void write(RepositoryConnection rc, IRI list, Changes changes, boolean empty) throws RepositoryException {
+		if (empty) {
+			rc.clear(list);
+			return;
+		}
+		// removals first, a key may be reused for another child
+		for (Map.Entry<Long, URI> e : changes.removed().entrySet()) {
+			rc.remove(list, getPredicate(e.getKey()), iri(e.getValue().toString()), list);
+		}
+		rc.add(list, RDF.TYPE, RDF.SEQ, list);
+		for (Map.Entry<Long, URI> e : changes.added().entrySet()) {
+			rc.add(list, getPredicate(e.getKey()), iri(e.getValue().toString()), list);
+		}
+	}
+
+	/**
+	 * Writes all children, the list graph is cleared first.
+	 */
+	void writeAll(RepositoryConnection rc, IRI list) throws RepositoryException {
+		rc.clear(list);
+		write(rc, list, new Changes(Collections.emptyMap(), toMap(keys, children)), children.isEmpty());
+	}
+
+	private void insert(int index, long key, URI child) {
+		children.add(index, child);
+		keys.add(index, key);
+		occurrences.merge(child, 1, Integer::sum);
+	}
+
+	private static long[] assignDenseKeys(int size) {
+		long[] result = new long[size];
+		for (int i = 0; i < size; i++) {
+			result[i] = i + 1;
+		}
+		return result;
+	}
+
+	private long[] assignSparseKeys(List<URI> newChildren) {
+		int n = newChildren.size();
+
+		// current keys of the children, in case of duplicates in their current order
+		Map<URI, Deque<Long>> available = new HashMap<>();
+		for (int i = 0; i < children.size(); i++) {
+			available.computeIfAbsent(children.get(i), k -> new ArrayDeque<>()).addLast(keys.get(i));
+		}
+		long[] oldKeys = new long[n];
+		for (int i = 0; i < n; i++) {
+			Deque<Long> candidates = available.get(newChildren.get(i));
+			oldKeys[i] = (candidates == null || candidates.isEmpty()) ? -1 : candidates.pollFirst();
+		}
+
+		boolean[] keep = longestIncreasingSubsequence(oldKeys);
+		long[] result = new long[n];
+		long lower = 0;
+		int i = 0;
+		while (i < n) {
+			if (keep[i]) {
+				result[i] = oldKeys[i];
+				lower = oldKeys[i];
+				i++;
+				continue;
+			}
+			int runEnd = i;
+			while (runEnd < n && !keep[runEnd]) {
+				runEnd++;
+			}
+			int runLength = runEnd - i;
+			if (runEnd == n) {
+				for (int j = 0; j < runLength; j++) {
+					result[i + j] = lower + SPARSE_STEP * (j + 1);
+				}
+			} else {
+				long upper = oldKeys[runEnd];
+				if (upper - lower - 1 < runLength) {
+					return renumber(n);
+				}
+				long spacing = (upper - lower) / (runLength + 1);
+				for (int j = 0; j < runLength; j++) {
+					result[i + j] = lower + spacing * (j + 1);
+				}
+			}
+			i = runEnd;
+		}
+		return result;
+	}
+
+	private static long[] renumber(int size) {
+		long[] result = new long[size];
+		for (int i = 0; i < size; i++) {
+			result[i] = SPARSE_STEP * (i + 1);
+		}
+		return result;
+	}
+
+	/**
+	 * Marks the elements of the longest strictly increasing subsequence of positive
+	 * values, O(n log n).
+	 */
+	static boolean[] longestIncreasingSubsequence(long[] values) {
+		int n = values.length;
+		int[] tails = new int[n];
+		int[] predecessors = new int[n];
+		int length = 0;
+		for (int i = 0; i < n; i++) {
+			if (values[i] < 1) {
+				continue;
+			}
+			int low = 0;
+			int high = length;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (values[tails[mid]] < values[i]) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			predecessors[i] = low > 0 ? tails[low - 1] : -1;
+			tails[low] = i;
+			if (low == length) {
+				length++;
+			}
+		}
+
+		boolean[] result = new boolean[n];
+		int k = length > 0 ? tails[length - 1] : -1;
+		for (int j = 0; j < length; j++) {
+			result[k] = true;
+			k = predecessors[k];
+		}
+		return result;
+	}
+
+	private static Map<Long, URI> toMap(List<Long> keys, List<URI> children) {
+		Map<Long, URI> result = new LinkedHashMap<>();
+		for (int i = 0; i < keys.size(); i++) {
+			result.put(keys.get(i), children.get(i));
+		}
+		return result;
+	}
+
+}
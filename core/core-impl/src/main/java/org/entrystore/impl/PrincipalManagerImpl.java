@@ -31,6 +31,7 @@ import org.entrystore.Group;
 import org.entrystore.PrincipalManager;
 import org.entrystore.User;
 import org.entrystore.repository.security.Password;
+import org.entrystore.repository.util.RequestTimings;
 import org.entrystore.repository.util.URISplit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -332,6 +333,8 @@ public class PrincipalManagerImpl extends EntryNamesContext implements Principal
 			return;
 		}
 
+		// checks that are made as admin within this check return early and are not timed
+		long start = System.nanoTime();
 		try {
 			//Switch to admin so that the PrincipalManager can perform all
 			//neccessary checks without being hindered by itself (results in loops).
@@ -381,6 +384,7 @@ public class PrincipalManagerImpl extends EntryNamesContext implements Principal
 		} finally {
 			//Switch back to the current user.
 			setAuthenticatedUserURI(currentUserURI);
+			RequestTimings.add(RequestTimings.Category.ACL, start);
 		}
 	}
 
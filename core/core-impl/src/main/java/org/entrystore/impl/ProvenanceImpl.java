@@ -19,6 +19,8 @@ package org.entrystore.impl;
 import com.google.common.collect.Lists;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.eclipse.rdf4j.common.iteration.Iterations;
+import org.eclipse.rdf4j.common.transaction.IsolationLevels;
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Literal;
 import org.eclipse.rdf4j.model.Model;
@@ -33,6 +35,7 @@ import org.entrystore.Entity;
 import org.entrystore.GraphEntity;
 import org.entrystore.Provenance;
 import org.entrystore.ProvenanceType;
+import org.entrystore.repository.config.Settings;
 
 import javax.xml.datatype.DatatypeConfigurationException;
 import javax.xml.datatype.DatatypeFactory;
@@ -128,8 +131,57 @@ public class ProvenanceImpl implements Provenance {
     }
 
 
+    /**
+     * Revisions are numbered consecutively and their dates are increasing, the
+     * revision is therefore found using a binary search over the revision numbers.
+     * Each step is a lookup of a single revision by its URI.
+     */
     @Override
     public Entity getEntityAt(Date date, ProvenanceType type) {
+        RepositoryConnection rc = null;
+        try {
+            rc = this.entry.repository.getConnection();
+            MetadataEntityImpl latest = getLatestEntity(rc);
+            if (latest == null) {
+                return null;
+            }
+            if (latest.getGeneratedDate().before(date)) {
+                return latest;
+            }
+
+            MetadataEntityImpl result = null;
+            int low = 1;
+            int high = MetadataRevisionStore.getRevisionNumber(latest.getSesameURI()) - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                MetadataEntityImpl e = getEntity(rc, MetadataRevisionStore.getRevisionURI(this.entry.getSesameLocalMetadataURI(), mid), latest.getSesameURI());
+                if (e == null) {
+                    // revisions are not numbered consecutively
+                    return getEntityAtByScan(date, type);
+                }
+                if (e.getGeneratedDate().before(date)) {
+                    result = e;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return result;
+        } catch (RepositoryException e) {
+            log.error(e.getMessage());
+        } finally {
+            if (rc != null) {
+                try {
+                    rc.close();
+                } catch (RepositoryException e) {
+                    log.error(e.getMessage());
+                }
+            }
+        }
+        return null;
+    }
+
+    private Entity getEntityAtByScan(Date date, ProvenanceType type) {
         List<Entity> list = Lists.reverse(this.getEntities(type));
         for (Entity e : list) {
             if (e.getGeneratedDate().before(date)) {
@@ -139,6 +191,64 @@ public class ProvenanceImpl implements Provenance {
         return null;
     }
 
+    /**
+     * @return The latest revision, i.e., the revision that points to the current metadata.
+     */
+    protected MetadataEntityImpl getLatestEntity(RepositoryConnection rc) throws RepositoryException {
+        IRI latestURI = getLatestRevision(rc);
+        return latestURI != null ? getEntity(rc, latestURI, latestURI) : null;
+    }
+
+    protected IRI getLatestRevision(RepositoryConnection rc) throws RepositoryException {
+        try (RepositoryResult<Statement> latestStmt = rc.getStatements(null, OWL.SAMEAS, this.entry.getSesameLocalMetadataURI(), false, this.entry.entryURI)) {
+            return latestStmt.hasNext() ? (IRI) latestStmt.next().getSubject() : null;
+        }
+    }
+
+    private MetadataEntityImpl getEntity(RepositoryConnection rc, IRI revision, IRI latestURI) throws RepositoryException {
+        try (RepositoryResult<Statement> rr = rc.getStatements(revision, RepositoryProperties.generatedAtTime, null, false, this.entry.entryURI)) {
+            return rr.hasNext() ? new MetadataEntityImpl(this.entry, rr.next(), latestURI) : null;
+        }
+    }
+
+    /**
+     * Reconstructs the graph of a revision that is not the latest one.
+     */
+    protected Model getRevisionGraph(IRI revision) {
+        RepositoryConnection rc = null;
+        RepositoryConnection provRc = null;
+        try {
+            rc = this.entry.repository.getConnection();
+            // the latest revision and the current metadata are read from the same state
+            rc.begin(IsolationLevels.SNAPSHOT);
+            IRI latest = getLatestRevision(rc);
+            provRc = this.entry.repositoryManager.getProvenanceRepository().getConnection();
+            final RepositoryConnection mainRc = rc;
+            Model result = MetadataRevisionStore.reconstruct(provRc, revision, latest, () ->
+                    Iterations.addAll(mainRc.getStatements(null, null, null, false, this.entry.getSesameLocalMetadataURI()), new LinkedHashModel()));
+            rc.commit();
+            return result;
+        } catch (RepositoryException e) {
+            log.error(e.getMessage());
+            return null;
+        } finally {
+            if (provRc != null) {
+                try {
+                    provRc.close();
+                } catch (RepositoryException e) {
+                    log.error(e.getMessage());
+                }
+            }
+            if (rc != null) {
+                try {
+                    rc.close();
+                } catch (RepositoryException e) {
+                    log.error(e.getMessage());
+                }
+            }
+        }
+    }
+
     @Override
     public Entity getEntityFor(URI uri) {
         RepositoryConnection rc = null;
@@ -240,12 +350,24 @@ public class ProvenanceImpl implements Provenance {
         return null;
     }
 
+    private int getSnapshotInterval() {
+        return this.entry.repositoryManager.getConfiguration().getInt(Settings.REPOSITORY_PROVENANCE_SNAPSHOT_INTERVAL, MetadataRevisionStore.DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    /**
+     * Stores the graph of a superseded revision, as delta relative to the graph of its
+     * predecessor as far as possible.
+     */
     protected void storeProvenanceGraph(IRI ng, Model graph) {
         RepositoryConnection rc = null;
         try {
             rc = this.entry.repositoryManager.getProvenanceRepository().getConnection();
             rc.begin();
-            rc.add(graph, ng);
+            int number = MetadataRevisionStore.getRevisionNumber(ng);
+            IRI predecessor = number > 1 ? MetadataRevisionStore.getRevisionURI(this.entry.getSesameLocalMetadataURI(), number - 1) : null;
+            final RepositoryConnection provRc = rc;
+            MetadataRevisionStore.store(rc, ng, graph, predecessor,
+                    () -> MetadataRevisionStore.reconstruct(provRc, predecessor, ng, () -> graph), getSnapshotInterval());
             rc.commit();
         } catch (RepositoryException e) {
             if (rc != null) {
@@ -268,7 +390,7 @@ public class ProvenanceImpl implements Provenance {
     }
 
     protected GraphEntity addMetadataEntity(Model oldgraph, RepositoryConnection rc) throws RepositoryException {
-        MetadataEntityImpl latestEntity = (MetadataEntityImpl) getEntityAt(new Date(), ProvenanceType.Metadata);
+        MetadataEntityImpl latestEntity = getLatestEntity(rc);
         ValueFactory vf = rc.getValueFactory();
         IRI attr = this.getUserURI(vf);
         if (attr == null) {
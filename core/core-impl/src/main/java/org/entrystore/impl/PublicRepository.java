@@ -176,11 +176,6 @@ public class PublicRepository {
 			log.error(e.getMessage());
 		}
 
-		if (getTripleCount() == 0 ||
-				"on".equalsIgnoreCase(config.getString(Settings.REPOSITORY_PUBLIC_REBUILD_ON_STARTUP, "off"))) {
-			rebuildRepository();
-		}
-
 		entrySubmitter = new PublicRepository.EntrySubmitter();
 		entrySubmitter.start();
 	}
@@ -401,6 +396,26 @@ public class PublicRepository {
 		}
 	}
 
+	/**
+	 * Rebuilds the repository if it is empty or if a rebuild on startup is configured.
+	 * Called after construction so that the rebuild can take place in the background.
+	 */
+	public void rebuildIfNeeded() {
+		if (repository == null) {
+			return;
+		}
+		if (getTripleCount() == 0 ||
+				"on".equalsIgnoreCase(rm.getConfiguration().getString(Settings.REPOSITORY_PUBLIC_REBUILD_ON_STARTUP, "off"))) {
+			URI currentUser = pm.getAuthenticatedUserURI();
+			try {
+				pm.setAuthenticatedUserURI(pm.getGuestUser().getURI());
+				rebuildRepository();
+			} finally {
+				pm.setAuthenticatedUserURI(currentUser);
+			}
+		}
+	}
+
 	public void rebuildRepository() {
 		synchronized (repository) {
 			if (rebuilding) {
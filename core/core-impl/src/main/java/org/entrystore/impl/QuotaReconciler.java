@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.impl;
+
+import org.apache.commons.lang3.StringUtils;
+import org.entrystore.Context;
+import org.entrystore.PrincipalManager;
+import org.entrystore.repository.config.Settings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Recounts the quota fill levels of contexts by summing up the sizes of the files in
+ * their data folders. This happens in the background, either for single contexts whose
+ * fill level is unknown or periodically for all contexts to correct drift. Only writes to
+ * a context with a quota and an unknown fill level wait for a recount.
+ *
+ * <p>Changes of the fill level that happen while a context is recounted are added to
+ * the recounted value. A file that is written during the walk may be counted twice,
+ * such an error is corrected by the next reconciliation.</p>
+ */
+public class QuotaReconciler {
+
+	private static final Logger log = LoggerFactory.getLogger(QuotaReconciler.class);
+
+	private final RepositoryManagerImpl rm;
+
+	private final Path dataFolder;
+
+	private final ExecutorService executor;
+
+	private final ScheduledExecutorService scheduler;
+
+	private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+	public QuotaReconciler(RepositoryManagerImpl rm) {
+		this.rm = rm;
+		String dataFolderStr = rm.getConfiguration().getString(Settings.DATA_FOLDER);
+		if (dataFolderStr != null) {
+			dataFolderStr = StringUtils.removeStart(dataFolderStr, "file://");
+			dataFolderStr = StringUtils.removeStart(dataFolderStr, "file:");
+			this.dataFolder = Path.of(dataFolderStr);
+		} else {
+			this.dataFolder = null;
+		}
+
+		int threads = rm.getConfiguration().getInt(Settings.DATA_QUOTA_RECONCILIATION_THREADS, Runtime.getRuntime().availableProcessors());
+		AtomicInteger threadCount = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+			Thread t = new Thread(r, "quota-reconciler-" + threadCount.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+
+		Duration interval = rm.getConfiguration().getDuration(Settings.DATA_QUOTA_RECONCILIATION_INTERVAL, Duration.ofDays(1));
+		if (dataFolder != null && !interval.isZero() && !interval.isNegative()) {
+			this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "quota-reconciler-scheduler");
+				t.setDaemon(true);
+				return t;
+			});
+			scheduler.scheduleWithFixedDelay(this::reconcileAll, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+			log.info("Quota fill levels are reconciled every {}", interval);
+		} else {
+			this.scheduler = null;
+		}
+	}
+
+	/**
+	 * Schedules a recount of the fill level of a context, unless one is already pending.
+	 */
+	public void reconcile(ContextImpl context) {
+		String contextId = context.getEntry().getId();
+		if (dataFolder == null || !pending.add(contextId)) {
+			return;
+		}
+		try {
+			executor.execute(() -> {
+				try {
+					reconcileNow(context);
+				} finally {
+					pending.remove(contextId);
+				}
+			});
+		} catch (RuntimeException e) {
+			pending.remove(contextId);
+			log.warn("Unable to schedule reconciliation of quota fill level of context {}: {}", contextId, e.getMessage());
+		}
+	}
+
+	/**
+	 * Schedules a recount of the fill levels of all contexts that have a folder in the data folder.
+	 */
+	public void reconcileAll() {
+		List<String> contextIds;
+		try (Stream<Path> folders = Files.list(dataFolder)) {
+			contextIds = folders.filter(Files::isDirectory)
+					.map(p -> p.getFileName().toString())
+					.filter(name -> !name.startsWith("."))
+					.toList();
+		} catch (IOException e) {
+			log.error("Unable to list data folder: {}", e.getMessage());
+			return;
+		}
+		log.info("Reconciling quota fill levels of {} contexts", contextIds.size());
+		for (String contextId : contextIds) {
+			ContextImpl context = getContext(contextId);
+			if (context != null) {
+				reconcile(context);
+			}
+		}
+	}
+
+	/**
+	 * Recounts the fill level of a context in the calling thread.
+	 */
+	void reconcileNow(ContextImpl context) {
+		if (dataFolder == null) {
+			return;
+		}
+		String contextId = context.getEntry().getId();
+		long changesBefore = context.getQuotaFillLevelChanges();
+		long before = System.currentTimeMillis();
+		long size;
+		try {
+			size = measure(dataFolder.resolve(contextId));
+		} catch (IOException | UncheckedIOException e) {
+			log.error("Unable to recount quota fill level of context {}: {}", contextId, e.getMessage());
+			return;
+		}
+		log.debug("Recounting quota fill level of context {} took {} ms", contextId, System.currentTimeMillis() - before);
+		context.reconcileQuotaFillLevel(size, changesBefore);
+	}
+
+	/**
+	 * @return The accumulated size of all data files in a context's data folder. Digests and
+	 * hidden files (e.g., temporary files) are not counted.
+	 */
+	static long measure(Path contextFolder) throws IOException {
+		if (!Files.isDirectory(contextFolder)) {
+			return 0;
+		}
+		try (Stream<Path> files = Files.list(contextFolder)) {
+			return files.parallel()
+					.filter(QuotaReconciler::isDataFile)
+					.mapToLong(p -> {
+						try {
+							return Files.size(p);
+						} catch (IOException e) {
+							// the file may have been deleted during the walk
+							return 0;
+						}
+					})
+					.sum();
+		}
+	}
+
+	/**
+	 * @return True if the file is the data file of an entry.
+	 */
+	static boolean isDataFile(Path file) {
+		String name = file.getFileName().toString();
+		return !name.startsWith(".") && !name.endsWith(DataImpl.SHA_256_POSTFIX) && Files.isRegularFile(file);
+	}
+
+	private ContextImpl getContext(String contextId) {
+		PrincipalManager pm = rm.getPrincipalManager();
+		URI currentUser = pm.getAuthenticatedUserURI();
+		try {
+			pm.setAuthenticatedUserURI(pm.getAdminUser().getURI());
+			Context context = rm.getContextManager().getContext(contextId);
+			return context instanceof ContextImpl ? (ContextImpl) context : null;
+		} catch (RuntimeException e) {
+			log.debug("No context for folder {} in data folder: {}", contextId, e.getMessage());
+			return null;
+		} finally {
+			pm.setAuthenticatedUserURI(currentUser);
+		}
+	}
+
+	public void shutdown() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+		executor.shutdownNow();
+	}
+
+}
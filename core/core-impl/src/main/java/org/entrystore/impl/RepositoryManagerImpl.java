@@ -34,10 +34,14 @@ import org.apache.solr.client.solrj.request.CoreAdminRequest;
 import org.apache.solr.client.solrj.request.CoreStatus;
 import org.apache.solr.core.NodeConfig;
 import org.apache.solr.util.SolrVersion;
+import org.eclipse.rdf4j.common.transaction.IsolationLevels;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.model.ValueFactory;
 import org.eclipse.rdf4j.repository.Repository;
 import org.eclipse.rdf4j.repository.RepositoryConnection;
 import org.eclipse.rdf4j.repository.RepositoryException;
+import org.eclipse.rdf4j.repository.RepositoryResult;
 import org.eclipse.rdf4j.repository.http.HTTPRepository;
 import org.eclipse.rdf4j.repository.sail.SailRepository;
 import org.eclipse.rdf4j.repository.sparql.SPARQLRepository;
@@ -49,6 +53,8 @@ import org.eclipse.rdf4j.rio.binary.BinaryRDFWriterFactory;
 import org.eclipse.rdf4j.rio.nquads.NQuadsWriterFactory;
 import org.eclipse.rdf4j.rio.trig.TriGWriterFactory;
 import org.eclipse.rdf4j.rio.trix.TriXWriterFactory;
+import org.eclipse.rdf4j.sail.NotifyingSail;
+import org.eclipse.rdf4j.sail.Sail;
 import org.eclipse.rdf4j.sail.lmdb.LmdbStore;
 import org.eclipse.rdf4j.sail.lmdb.config.LmdbStoreConfig;
 import org.eclipse.rdf4j.sail.memory.MemoryStore;
@@ -65,11 +71,17 @@ import org.entrystore.repository.RepositoryEvent;
 import org.entrystore.repository.RepositoryEventObject;
 import org.entrystore.repository.RepositoryListener;
 import org.entrystore.repository.RepositoryManager;
+import org.entrystore.repository.backup.BackupJob;
+import org.entrystore.repository.backup.ChangeJournal;
+import org.entrystore.repository.backup.JournalingSail;
 import org.entrystore.repository.config.ConfigurationManager;
 import org.entrystore.repository.config.Settings;
+import org.entrystore.repository.util.BatchingRepository;
 import org.entrystore.repository.util.DataCorrection;
 import org.entrystore.repository.util.FileOperations;
 import org.entrystore.repository.util.NS;
+import org.entrystore.repository.util.ParallelGzipOutputStream;
+import org.entrystore.repository.util.PooledHttpClient;
 import org.entrystore.repository.util.SolrSearchIndex;
 import org.entrystore.repository.util.StringUtils;
 import org.quartz.SchedulerException;
@@ -91,7 +103,9 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.text.SimpleDateFormat;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.EnumMap;
@@ -101,7 +115,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.zip.GZIPOutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class RepositoryManagerImpl implements RepositoryManager {
 
@@ -110,6 +132,14 @@ public class RepositoryManagerImpl implements RepositoryManager {
 	@Getter
 	private Repository repository;
 
+	private BatchingRepository batchingRepository;
+
+	/**
+	 * Events fired during a transaction of {@link #runInTransaction(Runnable)}, they are
+	 * only passed on to the listeners after the commit.
+	 */
+	private final ThreadLocal<List<RepositoryEventObject>> deferredEvents = new ThreadLocal<>();
+
 	private ContextManagerImpl contextManager;
 
 	private PrincipalManager principalManager;
@@ -128,7 +158,7 @@ public class RepositoryManagerImpl implements RepositoryManager {
 
 	private boolean modificationLockout = false;
 
-	private boolean shutdown = false;
+	private volatile boolean shutdown = false;
 
 	private final Object mutex = new Object();
 
@@ -157,12 +187,62 @@ public class RepositoryManagerImpl implements RepositoryManager {
 
 	private SolrSearchIndex solrIndex;
 
+	/**
+	 * The embedded Solr core that is being built in the background, null if no rebuild is running.
+	 */
+	private SolrClient solrRebuildServer;
+
+	private String solrCoreName;
+
+	private String solrRebuildCoreName;
+
 	@Getter
 	private PublicRepository publicRepository;
 
 	@Getter
 	private Repository provenanceRepository;
 
+	private final Map<String, ChangeJournal> changeJournals = new ConcurrentHashMap<>();
+
+	private volatile PooledHttpClient httpClient;
+
+	/**
+	 * Null if materialized context statistics are disabled.
+	 */
+	@Getter
+	private ContextStatisticsManager statisticsManager;
+
+	/**
+	 * Null if quotas are disabled.
+	 */
+	@Getter
+	private QuotaReconciler quotaReconciler;
+
+	/**
+	 * Null if deduplication of files is disabled.
+	 */
+	@Getter
+	private BlobStore blobStore;
+
+	private ScheduledExecutorService blobStoreMaintenance;
+
+	/**
+	 * Null if no data folder is configured.
+	 */
+	@Getter
+	private UploadManager uploadManager;
+
+	/**
+	 * Increased whenever access control lists or group memberships change, see {@link #getAclVersion()}.
+	 */
+	private final AtomicLong aclVersion = new AtomicLong(System.currentTimeMillis());
+
+	/**
+	 * Records the startup of the repositories, Solr and other subsystems, see {@link #isReady()}.
+	 */
+	@Getter
+	private final StartupTracker startupTracker = new StartupTracker();
+
 	static boolean trackDeletedEntries;
 
 	private static String VERSION = null;
@@ -170,6 +250,24 @@ public class RepositoryManagerImpl implements RepositoryManager {
 	public RepositoryManagerImpl(String baseURL, Config configuration) {
 		System.setProperty("org.openrdf.repository.debug", "true");
 		this.configuration = configuration;
+
+		// subsystems that do not depend on the main repository are started in parallel to it,
+		// others that are not needed to serve requests are completed in the background
+		ExecutorService startupExecutor = Executors.newCachedThreadPool(Thread.ofPlatform().name("entrystore-startup-", 0).daemon().factory());
+		startupTracker.begin("repository", true);
+
+		Future<?> provenanceStartup = null;
+		if ("on".equalsIgnoreCase(configuration.getString(Settings.REPOSITORY_PROVENANCE, "off"))) {
+			provenanceStartup = startupExecutor.submit(() -> startupTracker.track("provenance", true, this::initializeProvenanceRepository));
+		}
+
+		Future<SolrStartup> solrStartup = null;
+		if ("on".equalsIgnoreCase(configuration.getString(Settings.SOLR, "off")) && configuration.containsKey(Settings.SOLR_URL)) {
+			log.info("Initializing Solr");
+			startupTracker.begin("solr", true);
+			solrStartup = startupExecutor.submit(this::startSolr);
+		}
+
 		String storeType = configuration.getString(Settings.STORE_TYPE, "memory").trim();
 
 		log.info("Store type: {}", storeType);
@@ -180,9 +278,9 @@ public class RepositoryManagerImpl implements RepositoryManager {
 				MemoryStore ms = new MemoryStore(new File(configuration.getURI(Settings.STORE_PATH)));
 				ms.setPersist(true);
 				ms.setSyncDelay(5000);
-				this.repository = new SailRepository(ms);
+				this.repository = new SailRepository(createJournalingSail(ms, BackupJob.MAIN_REPOSITORY));
 			} else {
-				this.repository = new SailRepository(new MemoryStore());
+				this.repository = new SailRepository(createJournalingSail(new MemoryStore(), BackupJob.MAIN_REPOSITORY));
 			}
 		} else if (storeType.equalsIgnoreCase("native")) {
 			if (!configuration.containsKey(Settings.STORE_PATH)) {
@@ -199,7 +297,7 @@ public class RepositoryManagerImpl implements RepositoryManager {
 				} else {
 					store = new NativeStore(path);
 				}
-				this.repository = new SailRepository(store);
+				this.repository = new SailRepository(createJournalingSail(store, BackupJob.MAIN_REPOSITORY));
 			}
 		} else if (storeType.equalsIgnoreCase("http")) {
 			if (!configuration.containsKey(Settings.STORE_URL)) {
@@ -245,7 +343,7 @@ public class RepositoryManagerImpl implements RepositoryManager {
 				} else {
 					store = new LmdbStore(path);
 				}
-				this.repository = new SailRepository(store);
+				this.repository = new SailRepository(createJournalingSail(store, BackupJob.MAIN_REPOSITORY));
 			}
 		}
 
@@ -253,6 +351,8 @@ public class RepositoryManagerImpl implements RepositoryManager {
 			log.error("Failed to create SailRepository");
 			throw new IllegalStateException("Failed to create SailRepository");
 		}
+		this.batchingRepository = new BatchingRepository(this.repository);
+		this.repository = batchingRepository;
 
 		// create soft cache
 		softCache = new SoftCache();
@@ -287,10 +387,16 @@ public class RepositoryManagerImpl implements RepositoryManager {
 				defaultQuota = StringUtils.convertUnitStringToByteSize(quotaValue);
 				log.info("Quota default set to {} bytes", defaultQuota);
 			}
+			quotaReconciler = new QuotaReconciler(this);
 		} else {
 			log.info("Context quotas disabled");
 		}
 
+		if ("on".equalsIgnoreCase(configuration.getString(Settings.DATA_DEDUPLICATION, "off"))) {
+			initBlobStore();
+		}
+		initUploadManager();
+
 		String maxFileSizeValue = configuration.getString(Settings.DATA_MAX_FILE_SIZE);
 		if (maxFileSizeValue == null) {
 			log.info("Maximum file size set to UNLIMITED");
@@ -320,11 +426,17 @@ public class RepositoryManagerImpl implements RepositoryManager {
 				log.error(e.getMessage());
 			}
 
-			if ("on".equalsIgnoreCase(configuration.getString(Settings.REPOSITORY_PROVENANCE, "off"))) {
-				initializeProvenanceRepository();
+			if (provenanceStartup != null) {
+				awaitStartup(provenanceStartup);
+				// revisions must not be written while they are compacted
+				if (provenanceRepository != null && configuration.getBoolean(Settings.REPOSITORY_PROVENANCE_COMPACT_ON_STARTUP, false)) {
+					startupTracker.track("provenance.compaction", true, () -> MetadataRevisionStore.compact(repository, provenanceRepository,
+							configuration.getInt(Settings.REPOSITORY_PROVENANCE_SNAPSHOT_INTERVAL, MetadataRevisionStore.DEFAULT_SNAPSHOT_INTERVAL)));
+				}
 			}
 
 			this.initialize();
+			startupTracker.ready("repository");
 
 			String baseURI = configuration.getString(Settings.BASE_URL);
 			if (instances.containsKey(baseURI) || instances.containsValue(this)) {
@@ -344,17 +456,41 @@ public class RepositoryManagerImpl implements RepositoryManager {
 			DataCorrection.cleanupTrackedDeletedEntries(repository);
 		}
 
-		if ("on".equalsIgnoreCase(configuration.getString(Settings.SOLR, "off")) && configuration.containsKey(Settings.SOLR_URL)) {
-			log.info("Initializing Solr");
-			initSolr();
-			registerSolrListeners();
+		if (solrStartup != null) {
+			SolrStartup startup = awaitStartup(solrStartup);
+			if (startup != null) {
+				initSolrIndex(startup, startupExecutor);
+				registerSolrListeners();
+			} else {
+				startupTracker.failed("solr");
+			}
 		}
 
 		if ("on".equalsIgnoreCase(configuration.getString(Settings.REPOSITORY_PUBLIC, "off"))) {
 			log.info("Initializing public repository");
+			startupTracker.begin("publicRepository", false);
 			publicRepository = new PublicRepository(this);
 			registerPublicRepositoryListeners();
+			// the SPARQL endpoint returns incomplete results until the rebuild is complete
+			PublicRepository pr = publicRepository;
+			startupExecutor.submit(() -> {
+				try {
+					pr.rebuildIfNeeded();
+					startupTracker.ready("publicRepository");
+				} catch (RuntimeException e) {
+					log.error("Rebuild of public repository failed: {}", e.getMessage());
+					startupTracker.failed("publicRepository");
+				}
+			});
 		}
+		startupExecutor.shutdown();
+
+		if (configuration.getBoolean(Settings.STATISTICS_MATERIALIZED, true)) {
+			statisticsManager = new ContextStatisticsManager(this);
+			registerStatisticsListeners();
+		}
+
+		registerAclListeners();
 
 		log.info("Adding shutdown hook");
 		Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown));
@@ -365,7 +501,7 @@ public class RepositoryManagerImpl implements RepositoryManager {
 		log.info("Provenance repository type: " + storeType);
 
 		if (storeType.equalsIgnoreCase("memory")) {
-			this.provenanceRepository = new SailRepository(new MemoryStore());
+			this.provenanceRepository = new SailRepository(createJournalingSail(new MemoryStore(), BackupJob.PROVENANCE_REPOSITORY));
 		} else if (storeType.equalsIgnoreCase("native")) {
 			if (!configuration.containsKey(Settings.REPOSITORY_PROVENANCE_PATH)) {
 				log.error("Incomplete configuration of provenance repository");
@@ -381,7 +517,7 @@ public class RepositoryManagerImpl implements RepositoryManager {
 				} else {
 					store = new NativeStore(path);
 				}
-				this.provenanceRepository = new SailRepository(store);
+				this.provenanceRepository = new SailRepository(createJournalingSail(store, BackupJob.PROVENANCE_REPOSITORY));
 			}
 		}
 		try {
@@ -428,17 +564,8 @@ public class RepositoryManagerImpl implements RepositoryManager {
 		RepositoryConnection con = null;
 		OutputStream out = null;
 		Date before = new Date();
-		RDFWriterFactory rdfWriterFactory;
-
-		if (RDFFormat.TRIG.equals(format)) {
-			rdfWriterFactory = new TriGWriterFactory();
-		} else if (RDFFormat.TRIX.equals(format)) {
-			rdfWriterFactory = new TriXWriterFactory();
-		} else if (RDFFormat.NQUADS.equals(format)) {
-			rdfWriterFactory = new NQuadsWriterFactory();
-		} else if (RDFFormat.BINARY.equals(format)) {
-			rdfWriterFactory = new BinaryRDFWriterFactory();
-		} else {
+		RDFWriterFactory rdfWriterFactory = getBackupWriterFactory(format);
+		if (rdfWriterFactory == null) {
 			log.error("RDF format is not supported for backups: {}", format);
 			return;
 		}
@@ -446,11 +573,7 @@ public class RepositoryManagerImpl implements RepositoryManager {
 		log.info("Exporting repository to {}", file);
 		try {
 			con = repo.getConnection();
-			out = Files.newOutputStream(new File(file).toPath());
-			if (gzip) {
-				out = new GZIPOutputStream(out);
-			}
-			out = new BufferedOutputStream(out);
+			out = openBackupStream(file, gzip);
 			RDFWriter writer = rdfWriterFactory.getWriter(out);
 			con.export(writer);
 		} catch (RepositoryException | IOException | RDFHandlerException e) {
@@ -475,6 +598,206 @@ public class RepositoryManagerImpl implements RepositoryManager {
 		log.info("Export finished after {} ms", timeDiff);
 	}
 
+	/**
+	 * Export a subset of the named graphs of a repository.
+	 *
+	 * @param graphs The named graphs to export; null denotes the default graph.
+	 * @param file File to export the graphs to.
+	 */
+	public void exportGraphsToFile(Repository repo, Collection<Resource> graphs, URI file, boolean gzip, RDFFormat format) throws IOException {
+		RDFWriterFactory rdfWriterFactory = getBackupWriterFactory(format);
+		if (rdfWriterFactory == null) {
+			throw new IllegalArgumentException("RDF format is not supported for backups: " + format);
+		}
+
+		Date before = new Date();
+		log.info("Exporting {} named graphs to {}", graphs.size(), file);
+		try (RepositoryConnection con = repo.getConnection(); OutputStream out = openBackupStream(file, gzip)) {
+			// all chunks are read from the same state of the repository
+			con.begin(IsolationLevels.SNAPSHOT);
+			RDFWriter writer = rdfWriterFactory.getWriter(out);
+			writer.startRDF();
+			List<Resource> chunk = new ArrayList<>(1000);
+			for (Resource graph : graphs) {
+				chunk.add(graph);
+				if (chunk.size() == 1000) {
+					exportStatements(con, chunk, writer);
+					chunk.clear();
+				}
+			}
+			exportStatements(con, chunk, writer);
+			writer.endRDF();
+			con.rollback();
+		}
+		log.info("Export of named graphs finished after {} ms", new Date().getTime() - before.getTime());
+	}
+
+	private void exportStatements(RepositoryConnection con, List<Resource> graphs, RDFWriter writer) {
+		if (graphs.isEmpty()) {
+			return;
+		}
+		try (RepositoryResult<Statement> statements = con.getStatements(null, null, null, false, graphs.toArray(new Resource[0]))) {
+			for (Statement st : statements) {
+				writer.handleStatement(st);
+			}
+		}
+	}
+
+	/**
+	 * Exports several repositories from consistent snapshots. Each repository is
+	 * exported by its own thread within a read-only transaction with snapshot
+	 * isolation. Modifications are locked out only while the snapshots are taken,
+	 * so that the snapshots of all repositories reflect the same state; the export
+	 * itself does not block modifications.
+	 *
+	 * @param exports The repositories to export and the files to export them to.
+	 * @param afterSnapshot Run after the snapshots of all repositories have been
+	 *                      taken, before modifications are allowed again, e.g. to
+	 *                      link files that belong to the same state. May be null.
+	 * @return The point in time when the snapshots were taken.
+	 */
+	public Date exportSnapshotToFiles(Map<Repository, URI> exports, boolean gzip, RDFFormat format, Runnable afterSnapshot) throws IOException {
+		RDFWriterFactory rdfWriterFactory = getBackupWriterFactory(format);
+		if (rdfWriterFactory == null) {
+			throw new IllegalArgumentException("RDF format is not supported for backups: " + format);
+		}
+
+		Date before = new Date();
+		CountDownLatch snapshotsTaken = new CountDownLatch(exports.size());
+		ExecutorService executor = Executors.newFixedThreadPool(exports.size());
+		boolean lockedOut = hasModificationLockOut();
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			Date snapshotDate;
+			// modifications that are committed in between would only be part of some snapshots
+			setModificationLockOut(true);
+			try {
+				for (Map.Entry<Repository, URI> e : exports.entrySet()) {
+					futures.add(executor.submit(() -> {
+						exportSnapshot(e.getKey(), e.getValue(), gzip, rdfWriterFactory, snapshotsTaken);
+						return null;
+					}));
+				}
+
+				snapshotsTaken.await();
+				snapshotDate = new Date();
+				log.info("Took snapshot of {} repositories after {} ms", exports.size(), snapshotDate.getTime() - before.getTime());
+				if (afterSnapshot != null) {
+					afterSnapshot.run();
+				}
+			} finally {
+				if (!lockedOut) {
+					setModificationLockOut(false);
+				}
+			}
+
+			for (Future<?> future : futures) {
+				try {
+					future.get();
+				} catch (ExecutionException ee) {
+					throw new IOException("Unable to export snapshot: " + ee.getCause().getMessage(), ee.getCause());
+				}
+			}
+			log.info("Export of snapshots finished after {} ms", new Date().getTime() - before.getTime());
+			return snapshotDate;
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while exporting snapshot", ie);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private void exportSnapshot(Repository repo, URI file, boolean gzip, RDFWriterFactory rdfWriterFactory, CountDownLatch snapshotTaken) throws IOException {
+		log.info("Exporting snapshot of repository to {}", file);
+		try (RepositoryConnection con = repo.getConnection()) {
+			try {
+				con.begin(IsolationLevels.SNAPSHOT);
+				// the snapshot is established by the first read operation
+				con.hasStatement(null, null, null, false);
+			} finally {
+				snapshotTaken.countDown();
+			}
+			try (OutputStream out = openBackupStream(file, gzip)) {
+				con.export(rdfWriterFactory.getWriter(out));
+			} finally {
+				con.rollback();
+			}
+		}
+	}
+
+	private OutputStream openBackupStream(URI file, boolean gzip) throws IOException {
+		OutputStream out = Files.newOutputStream(new File(file).toPath());
+		if (gzip) {
+			out = new ParallelGzipOutputStream(out);
+		}
+		return new BufferedOutputStream(out, 65536);
+	}
+
+	private RDFWriterFactory getBackupWriterFactory(RDFFormat format) {
+		if (RDFFormat.TRIG.equals(format)) {
+			return new TriGWriterFactory();
+		} else if (RDFFormat.TRIX.equals(format)) {
+			return new TriXWriterFactory();
+		} else if (RDFFormat.NQUADS.equals(format)) {
+			return new NQuadsWriterFactory();
+		} else if (RDFFormat.BINARY.equals(format)) {
+			return new BinaryRDFWriterFactory();
+		}
+		return null;
+	}
+
+	/**
+	 * Wraps a store with a journal of modified named graphs if incremental backups
+	 * are activated.
+	 */
+	private Sail createJournalingSail(NotifyingSail sail, String journalName) {
+		String backupFolder = configuration.getString(Settings.BACKUP_FOLDER);
+		if (!configuration.getBoolean(Settings.BACKUP_INCREMENTAL, false)) {
+			if (backupFolder != null) {
+				// modifications are not recorded from now on, so an earlier base must not be used anymore
+				ChangeJournal.clearBase(new File(backupFolder, BackupJob.JOURNAL_FOLDER));
+			}
+			return sail;
+		}
+		if (backupFolder == null) {
+			log.warn("Incremental backups activated, but no backup folder configured; not recording modifications");
+			return sail;
+		}
+		try {
+			ChangeJournal journal = new ChangeJournal(new File(backupFolder, BackupJob.JOURNAL_FOLDER), journalName);
+			changeJournals.put(journalName, journal);
+			return new JournalingSail(sail, journal);
+		} catch (IOException e) {
+			log.error("Unable to create change journal, incremental backups will not be possible: {}", e.getMessage());
+			return sail;
+		}
+	}
+
+	/**
+	 * @param name Either "repository" for the main repository or "repository_prov"
+	 *             for the provenance repository.
+	 * @return The journal of modified named graphs, or null if there is no journal
+	 * for the repository.
+	 */
+	public ChangeJournal getChangeJournal(String name) {
+		return changeJournals.get(name);
+	}
+
+	/**
+	 * @return True if all subsystems that are needed to serve requests have been started.
+	 */
+	public boolean isReady() {
+		return !shutdown && startupTracker.isReady();
+	}
+
+	/**
+	 * @return False if the repository manager has been shut down.
+	 */
+	public boolean isAlive() {
+		return !shutdown;
+	}
+
 	@Override
 	public void shutdown() {
 		synchronized (mutex) {
@@ -527,11 +850,42 @@ public class RepositoryManagerImpl implements RepositoryManager {
 						log.error("Error when shutting down Solr Server");
 					}
 				}
+				if (quotaReconciler != null) {
+					quotaReconciler.shutdown();
+				}
+				if (blobStoreMaintenance != null) {
+					blobStoreMaintenance.shutdownNow();
+				}
+				if (uploadManager != null) {
+					uploadManager.shutdown();
+				}
+				if (statisticsManager != null) {
+					log.info("Persisting context statistics");
+					statisticsManager.shutdown();
+				}
+				if (httpClient != null) {
+					log.info("Shutting down HTTP client");
+					httpClient.close();
+				}
 				shutdown = true;
 			}
 		}
 	}
 
+	/**
+	 * @return The shared HTTP client for outgoing requests. It is created on first use.
+	 */
+	public PooledHttpClient getHttpClient() {
+		if (httpClient == null) {
+			synchronized (mutex) {
+				if (httpClient == null) {
+					httpClient = new PooledHttpClient(configuration);
+				}
+			}
+		}
+		return httpClient;
+	}
+
 	public ContextManager getContextManager() {
 		return this.contextManager;
 	}
@@ -575,6 +929,11 @@ public class RepositoryManagerImpl implements RepositoryManager {
 	}
 
 	public void fireRepositoryEvent(RepositoryEventObject eventObject) {
+		List<RepositoryEventObject> deferred = deferredEvents.get();
+		if (deferred != null) {
+			deferred.add(eventObject);
+			return;
+		}
 		// because of concurrency problems the events are fired synchronously,
 		// not sure whether this event has a negative impact on performance.
 		// async-code is commented out.
@@ -596,6 +955,51 @@ public class RepositoryManagerImpl implements RepositoryManager {
 		}
 	}
 
+	/**
+	 * Runs a task in one transaction of the main repository, so that all its modifications
+	 * are committed together or not at all. Repository events are fired after the commit;
+	 * if the transaction is rolled back they are dropped and the modified entries are
+	 * removed from the cache. Writes to the provenance repository are not part of the
+	 * transaction.
+	 *
+	 * @throws RuntimeException If the task fails or its transaction cannot be committed,
+	 *                          nothing of the task is written in that case.
+	 */
+	public void runInTransaction(Runnable task) {
+		if (deferredEvents.get() != null) {
+			task.run();
+			return;
+		}
+		List<RepositoryEventObject> events = new ArrayList<>();
+		deferredEvents.set(events);
+		try {
+			batchingRepository.runBatch(task);
+		} catch (RuntimeException e) {
+			discardModifiedEntries(events);
+			throw e;
+		} finally {
+			deferredEvents.remove();
+		}
+		events.forEach(this::fireRepositoryEvent);
+	}
+
+	/**
+	 * Removes the entries of rolled back events from the cache and the indexes of their
+	 * contexts, they are reloaded from the repository on next use.
+	 */
+	private void discardModifiedEntries(List<RepositoryEventObject> events) {
+		Set<ContextImpl> contexts = new HashSet<>();
+		for (RepositoryEventObject event : events) {
+			if (event.getSource() instanceof Entry e) {
+				softCache.remove(e);
+				if (e.getContext() instanceof ContextImpl c) {
+					contexts.add(c);
+				}
+			}
+		}
+		contexts.forEach(ContextImpl::discardIndex);
+	}
+
 	public void registerListener(RepositoryListener listener, RepositoryEvent event) {
 		synchronized (repositoryListeners) {
 			Set<RepositoryListener> listeners = repositoryListeners.get(event);
@@ -619,7 +1023,35 @@ public class RepositoryManagerImpl implements RepositoryManager {
 		}
 	}
 
-	private void initSolr() {
+	/**
+	 * The outcome of starting the Solr server, which determines how the index is populated.
+	 */
+	private record SolrStartup(boolean reindex, boolean reindexWait) {
+	}
+
+	/**
+	 * Waits for a subsystem that is started in parallel to the main repository.
+	 *
+	 * @return The result of the startup, or null if waiting has been interrupted.
+	 */
+	private <T> T awaitStartup(Future<T> startup) {
+		try {
+			return startup.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException re) {
+				throw re;
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Starts the Solr server without loading the index, which requires the main repository.
+	 */
+	private SolrStartup startSolr() {
 		log.info("Manually setting property \"javax.xml.parsers.DocumentBuilderFactory\" to \"com.sun.org.apache.xerces.internal.jaxp.DocumentBuilderFactoryImpl\"");
 		System.setProperty("javax.xml.parsers.DocumentBuilderFactory", "com.sun.org.apache.xerces.internal.jaxp.DocumentBuilderFactoryImpl");
 
@@ -657,12 +1089,15 @@ public class RepositoryManagerImpl implements RepositoryManager {
 			solrServer = httpSolrClient;
 		} else {
 			log.info("Using embedded Solr server");
-			String coreName = "core1";
 			String schemaFileName = "SCHEMA_VERSION";
 			String solrFileName = "SOLR_VERSION";
+			String activeCoreFileName = "ACTIVE_CORE";
 			File solrDir = new File(solrURL);
 			File solrSchemaVersionFile = new File(solrDir, schemaFileName);
 			File solrVersionFile = new File(solrDir, solrFileName);
+			File activeCoreFile = new File(solrDir, activeCoreFileName);
+			String coreName = readActiveSolrCore(activeCoreFile);
+			String rebuildCoreName = null;
 
 			// we remove only files if we actually find a version file in the folder as we don't want
 			// to risk removing the wrong files because of a misconfigured Solr path
@@ -694,14 +1129,35 @@ public class RepositoryManagerImpl implements RepositoryManager {
 				}
 
 				if (!getVersion().equals(schemaVersion) || solrVersionMismatch) {
+					// an index of the same major version can still be read by the running Solr version,
+					// so the old core can answer queries while a new core is built next to it
+					boolean readable = solrVersion != null && SolrVersion.LATEST.getMajorVersion() == SolrVersion.valueOf(solrVersion).getMajorVersion();
 					if (solrVersion == null) {
 						solrVersion = "<unknown>";
 					}
 					log.warn("Solr index was created with: EntryStore {} (running version is {}) and Solr {} (running version is {})", schemaVersion, getVersion(), solrVersion,
 							SolrVersion.LATEST);
-					log.warn("Deleting contents of Solr directory at {} to trigger a clean reindex with current Solr schema", solrDir);
+					if (readable && configuration.getBoolean(Settings.SOLR_REBUILD_IN_BACKGROUND, true) && new File(solrDir, coreName).isDirectory()) {
+						rebuildCoreName = "core1".equals(coreName) ? "core2" : "core1";
+						log.warn("Rebuilding Solr index in core {} in the background, core {} answers queries until the rebuild is complete", rebuildCoreName, coreName);
+					} else {
+						log.warn("Deleting contents of Solr directory at {} to trigger a clean reindex with current Solr schema", solrDir);
+						try {
+							FileUtils.cleanDirectory(solrDir);
+						} catch (IOException e) {
+							log.error(e.getMessage());
+						}
+						coreName = "core1";
+					}
+				}
+
+				// a core next to the active one is left over from a rebuild that has been interrupted,
+				// it is either built from scratch again or not needed anymore
+				File staleCoreDir = new File(solrDir, "core1".equals(coreName) ? "core2" : "core1");
+				if (staleCoreDir.isDirectory()) {
+					log.info("Deleting Solr core directory {} of an incomplete rebuild", staleCoreDir);
 					try {
-						FileUtils.cleanDirectory(solrDir);
+						FileUtils.deleteDirectory(staleCoreDir);
 					} catch (IOException e) {
 						log.error(e.getMessage());
 					}
@@ -727,7 +1183,8 @@ public class RepositoryManagerImpl implements RepositoryManager {
 				}
 			}
 
-			File solrCoreConfDir = new File(new File(solrDir, coreName), "conf");
+			// the configuration of a core that is being replaced is left untouched, as it may not match its index
+			File solrCoreConfDir = new File(new File(solrDir, rebuildCoreName != null ? rebuildCoreName : coreName), "conf");
 			if (!solrCoreConfDir.exists()) {
 				if (!solrCoreConfDir.mkdirs()) {
 					log.warn("Unable to create directory {}", solrCoreConfDir);
@@ -773,26 +1230,102 @@ public class RepositoryManagerImpl implements RepositoryManager {
 					reindex = true;
 					reindexWait = true;
 				}
+
+				if (rebuildCoreName != null) {
+					log.info("Creating Solr core {} to be rebuilt", rebuildCoreName);
+					CoreAdminRequest.Create createRequest = new CoreAdminRequest.Create();
+					createRequest.setCoreName(rebuildCoreName);
+					createRequest.setConfigSet("");
+					createRequest.process(solrServer);
+					solrRebuildServer = new EmbeddedSolrServer(((EmbeddedSolrServer) solrServer).getCoreContainer(), rebuildCoreName);
+					solrRebuildCoreName = rebuildCoreName;
+				}
+				solrCoreName = coreName;
 			} catch (Exception e) {
 				log.error("Failed to initialize Solr: {}", e.getMessage());
 			}
 		}
+		return new SolrStartup(reindex, reindexWait);
+	}
+
+	/**
+	 * Creates the search index after the main repository has been initialized and populates it
+	 * in the background if necessary. If the index has to be built from scratch, EntryStore is
+	 * not ready until the reindexing is complete, see {@link #isReady()}.
+	 */
+	private void initSolrIndex(SolrStartup startup, ExecutorService startupExecutor) {
 		if (solrServer != null) {
 			solrIndex = new SolrSearchIndex(this, solrServer);
-			if (reindex) {
-				if (reindexWait) {
+			startupTracker.ready("solr");
+			if (solrRebuildServer != null) {
+				solrIndex.rebuild(solrRebuildServer, replaced -> finishSolrRebuild(new File(configuration.getString(Settings.SOLR_URL))));
+			} else if (startup.reindex()) {
+				if (startup.reindexWait()) {
+					// the index is cleared before any updates are accepted, so none of them get lost
 					solrIndex.clearSolrIndex(solrServer);
-					solrIndex.reindexSync(false);
+					startupTracker.begin("solr.reindex", true);
+					startupExecutor.submit(() -> {
+						try {
+							solrIndex.reindexSync(false);
+							startupTracker.ready("solr.reindex");
+						} catch (RuntimeException e) {
+							log.error("Reindexing of Solr failed: {}", e.getMessage());
+							startupTracker.failed("solr.reindex");
+						}
+					});
 				} else {
 					solrIndex.reindex(false);
 				}
 			}
 		} else {
 			log.error("Unable to initialize Solr");
+			startupTracker.failed("solr");
 			this.shutdown();
 		}
 	}
 
+	private String readActiveSolrCore(File activeCoreFile) {
+		if (activeCoreFile.isFile()) {
+			try {
+				String coreName = IOUtils.toString(activeCoreFile.toURI(), StandardCharsets.UTF_8).trim();
+				if ("core1".equals(coreName) || "core2".equals(coreName)) {
+					return coreName;
+				}
+				log.warn("Ignoring unknown Solr core name in {}: {}", activeCoreFile, coreName);
+			} catch (IOException e) {
+				log.error(e.getMessage());
+			}
+		}
+		return "core1";
+	}
+
+	/**
+	 * Makes a rebuilt embedded Solr core the active one, after it has replaced the previous
+	 * core in the search index. The version files are written after the active core so that
+	 * an interruption in between leads to another rebuild instead of an outdated index.
+	 */
+	private void finishSolrRebuild(File solrDir) {
+		try {
+			log.info("Activating rebuilt Solr core {}", solrRebuildCoreName);
+			FileOperations.writeStringToFile(new File(solrDir, "ACTIVE_CORE"), solrRebuildCoreName);
+			FileOperations.writeStringToFile(new File(solrDir, "SCHEMA_VERSION"), getVersion());
+			FileOperations.writeStringToFile(new File(solrDir, "SOLR_VERSION"), SolrVersion.LATEST.toString());
+		} catch (IOException e) {
+			log.error("Unable to activate rebuilt Solr core, the index will be rebuilt again after the next restart: {}", e.getMessage());
+		}
+
+		// the clients of both cores share the core container, so the replaced core is unloaded instead of closing its client
+		try {
+			log.info("Unloading and deleting replaced Solr core {}", solrCoreName);
+			CoreAdminRequest.unloadCore(solrCoreName, true, true, solrServer);
+		} catch (Exception e) {
+			log.error("Unable to unload replaced Solr core {}: {}", solrCoreName, e.getMessage());
+		}
+		solrCoreName = solrRebuildCoreName;
+		solrRebuildCoreName = null;
+		solrRebuildServer = null;
+	}
+
 	private void registerSolrListeners() {
 		if (solrServer != null) {
 			RepositoryListener updater = new RepositoryListener() {
@@ -869,6 +1402,109 @@ public class RepositoryManagerImpl implements RepositoryManager {
 		}
 	}
 
+	/**
+	 * Changes of group memberships and deleted principals change the effective
+	 * access rights on entries whose own modification date does not change.
+	 */
+	private void registerAclListeners() {
+		RepositoryListener aclUpdater = new RepositoryListener() {
+			@Override
+			public void repositoryUpdated(RepositoryEventObject eventObject) {
+				if (eventObject.getSource() instanceof Entry e &&
+						(GraphType.Group.equals(e.getGraphType()) || GraphType.User.equals(e.getGraphType()))) {
+					increaseAclVersion();
+				}
+			}
+		};
+		registerListener(aclUpdater, RepositoryEvent.ResourceUpdated);
+		registerListener(aclUpdater, RepositoryEvent.EntryDeleted);
+	}
+
+	/**
+	 * Returns a version of the access control of the whole repository. It is increased
+	 * whenever an access control list or a group membership changes, and it is the time
+	 * of the last change (or of startup) in milliseconds, so that it can be compared with
+	 * modification dates and versions of different runs do not collide. Together with the
+	 * modification date of an entry it can be used to detect whether a cached
+	 * representation of the entry is still valid for a principal.
+	 */
+	public long getAclVersion() {
+		return aclVersion.get();
+	}
+
+	void increaseAclVersion() {
+		aclVersion.accumulateAndGet(System.currentTimeMillis(), (previous, now) -> Math.max(previous + 1, now));
+	}
+
+	private void initBlobStore() {
+		String dataFolder = configuration.getString(Settings.DATA_FOLDER);
+		if (dataFolder == null) {
+			log.warn("No data folder configured, deduplication of files is disabled");
+			return;
+		}
+		dataFolder = org.apache.commons.lang3.StringUtils.removeStart(dataFolder, "file://");
+		dataFolder = org.apache.commons.lang3.StringUtils.removeStart(dataFolder, "file:");
+		try {
+			blobStore = new BlobStore(Path.of(dataFolder));
+		} catch (IOException e) {
+			log.warn("Deduplication of files is disabled: {}", e.getMessage());
+			return;
+		}
+		log.info("Deduplication of files enabled");
+
+		blobStoreMaintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "blob-store-maintenance");
+			t.setDaemon(true);
+			return t;
+		});
+		blobStoreMaintenance.execute(() -> {
+			try {
+				blobStore.migrate();
+			} catch (IOException e) {
+				log.error("Migration of files to blob store failed: {}", e.getMessage());
+			}
+		});
+		Duration gcInterval = configuration.getDuration(Settings.DATA_DEDUPLICATION_GC_INTERVAL, Duration.ofDays(1));
+		if (!gcInterval.isZero() && !gcInterval.isNegative()) {
+			blobStoreMaintenance.scheduleWithFixedDelay(() -> {
+				try {
+					blobStore.collectGarbage();
+				} catch (IOException | RuntimeException e) {
+					log.error("Garbage collection of blob store failed: {}", e.getMessage());
+				}
+			}, gcInterval.toMillis(), gcInterval.toMillis(), TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void initUploadManager() {
+		String dataFolder = configuration.getString(Settings.DATA_FOLDER);
+		if (dataFolder == null) {
+			return;
+		}
+		dataFolder = org.apache.commons.lang3.StringUtils.removeStart(dataFolder, "file://");
+		dataFolder = org.apache.commons.lang3.StringUtils.removeStart(dataFolder, "file:");
+		Duration expiration = configuration.getDuration(Settings.DATA_UPLOAD_EXPIRATION, Duration.ofDays(1));
+		try {
+			uploadManager = new UploadManager(this, Path.of(dataFolder), expiration);
+		} catch (IOException e) {
+			log.warn("Resumable uploads are disabled: {}", e.getMessage());
+		}
+	}
+
+	private void registerStatisticsListeners() {
+		RepositoryListener listener = new RepositoryListener() {
+			@Override
+			public void repositoryUpdated(RepositoryEventObject eventObject) {
+				statisticsManager.handleEvent(eventObject);
+			}
+		};
+		registerListener(listener, RepositoryEvent.EntryCreated);
+		registerListener(listener, RepositoryEvent.EntryUpdated);
+		registerListener(listener, RepositoryEvent.EntryDeleted);
+		registerListener(listener, RepositoryEvent.MetadataUpdated);
+		registerListener(listener, RepositoryEvent.ExternalMetadataUpdated);
+	}
+
 	public ValueFactory getValueFactory() {
 		if (repository != null) {
 			return repository.getValueFactory();
@@ -962,7 +1598,7 @@ public class RepositoryManagerImpl implements RepositoryManager {
 		}
 	}
 
-	public static String getVersion() {
+	public static synchronized String getVersion() {
 		if (VERSION == null) {
 			URI versionFile = ConfigurationManager.getConfigurationURI("VERSION.txt");
 			if (versionFile != null) {
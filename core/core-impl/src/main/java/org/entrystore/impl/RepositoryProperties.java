@@ -144,6 +144,7 @@ public class RepositoryProperties {
 	public static final IRI wasAttributedTo;
 	public static final IRI generatedAtTime;
 	public static final IRI wasRevisionOf;
+	public static final IRI deltaOf;
 
 
 	static {
@@ -225,5 +226,6 @@ public class RepositoryProperties {
 		wasAttributedTo = vf.createIRI(NSPROV, "wasAttributedTo");
 		generatedAtTime = vf.createIRI(NSPROV, "generatedAtTime");
 		wasRevisionOf = vf.createIRI(NSPROV, "wasRevisionOf");
+		deltaOf = vf.createIRI(NSbase, "deltaOf");
 	}
 }
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps track of the subsystems that are started when EntryStore starts up, some of them
+ * in parallel or in the background, and of how long each of them took.
+ *
+ * <p>EntryStore is ready when all critical subsystems have been started. Subsystems that
+ * are not critical, such as the public repository, may still be starting or may even have
+ * failed; requests that depend on them are answered with partial results meanwhile.</p>
+ */
+public class StartupTracker {
+
+	private static final Logger log = LoggerFactory.getLogger(StartupTracker.class);
+
+	public enum State {
+		STARTING, READY, FAILED
+	}
+
+	/**
+	 * The startup of one subsystem.
+	 */
+	public static class Component {
+
+		private final String name;
+
+		private final boolean critical;
+
+		private final long start = System.nanoTime();
+
+		private volatile long end;
+
+		private volatile State state = State.STARTING;
+
+		Component(String name, boolean critical) {
+			this.name = name;
+			this.critical = critical;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public boolean isCritical() {
+			return critical;
+		}
+
+		public State getState() {
+			return state;
+		}
+
+		/**
+		 * @return The time in milliseconds that the startup took, or has taken so far if
+		 * the component is still starting.
+		 */
+		public long getDuration() {
+			return ((state == State.STARTING ? System.nanoTime() : end) - start) / 1_000_000;
+		}
+
+	}
+
+	private final Map<String, Component> components = Collections.synchronizedMap(new LinkedHashMap<>());
+
+	/**
+	 * Marks the beginning of a component's startup.
+	 *
+	 * @param critical Whether EntryStore is ready only after the component has been started.
+	 */
+	public void begin(String name, boolean critical) {
+		components.put(name, new Component(name, critical));
+	}
+
+	public void ready(String name) {
+		finish(name, State.READY);
+	}
+
+	public void failed(String name) {
+		finish(name, State.FAILED);
+	}
+
+	private void finish(String name, State state) {
+		Component component = components.get(name);
+		if (component == null) {
+			throw new IllegalArgumentException("Startup of " + name + " has not begun");
+		}
+		component.end = System.nanoTime();
+		component.state = state;
+		log.info("Startup of {} {} after {} ms", name, state == State.READY ? "completed" : "failed", component.getDuration());
+	}
+
+	/**
+	 * Runs the startup of a component and records its duration and outcome.
+	 */
+	public void track(String name, boolean critical, Runnable startup) {
+		begin(name, critical);
+		try {
+			startup.run();
+			ready(name);
+		} catch (RuntimeException e) {
+			failed(name);
+			throw e;
+		}
+	}
+
+	/**
+	 * @return The startup of all components in the order in which they have begun.
+	 */
+	public Map<String, Component> getComponents() {
+		synchronized (components) {
+			return new LinkedHashMap<>(components);
+		}
+	}
+
+	/**
+	 * @return True if all critical components have been started.
+	 */
+	public boolean isReady() {
+		synchronized (components) {
+			return components.values().stream().noneMatch(c -> c.isCritical() && c.getState() != State.READY);
+		}
+	}
+
+}
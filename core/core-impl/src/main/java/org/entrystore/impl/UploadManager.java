@@ -0,0 +1,427 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.impl;
+
+import org.apache.commons.codec.binary.Hex;
+import org.entrystore.Context;
+import org.entrystore.Entry;
+import org.entrystore.EntryType;
+import org.entrystore.GraphType;
+import org.entrystore.PrincipalManager;
+import org.entrystore.PrincipalManager.AccessProperty;
+import org.entrystore.Quota;
+import org.entrystore.QuotaException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.commons.codec.digest.MessageDigestAlgorithms.SHA_256;
+
+/**
+ * Resumable uploads of the files of local resources. An upload is created for an
+ * entry, its content is appended in chunks at given offsets, and it is committed,
+ * which moves the file into place atomically. Chunks are written directly to a
+ * file in the folder {@value #FOLDER_NAME} of the data folder and the SHA-256
+ * digest is computed incrementally, so the content is written only once.
+ *
+ * <p>Acknowledged chunks are synced to disk. The state of an upload is stored
+ * alongside its file, so uploads can be resumed after a restart. Uploads that
+ * have not been written to for longer than the expiration period are removed.</p>
+ *
+ * <p>The upload folder is excluded from backups, since its files are modified in
+ * place.</p>
+ */
+public class UploadManager {
+
+	private static final Logger log = LoggerFactory.getLogger(UploadManager.class);
+
+	public static final String FOLDER_NAME = ".uploads";
+
+	private static final String PROPERTIES_POSTFIX = ".properties";
+
+	private static final Pattern UPLOAD_ID = Pattern.compile("[0-9a-f]{32}");
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final RepositoryManagerImpl rm;
+
+	private final Path uploadFolder;
+
+	private final Duration expiration;
+
+	private final Map<String, Upload> uploads = new ConcurrentHashMap<>();
+
+	private final ScheduledExecutorService cleaner;
+
+	/**
+	 * An upload in progress.
+	 */
+	public static class Upload {
+
+		private final String id;
+
+		private final String contextId;
+
+		private final String entryId;
+
+		private final URI owner;
+
+		private final Path file;
+
+		private MessageDigest digest;
+
+		private long size;
+
+		private boolean closed;
+
+		private Upload(String id, String contextId, String entryId, URI owner, Path file, MessageDigest digest, long size) {
+			this.id = id;
+			this.contextId = contextId;
+			this.entryId = entryId;
+			this.owner = owner;
+			this.file = file;
+			this.digest = digest;
+			this.size = size;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		/**
+		 * @return The number of bytes received so far, i.e., the offset of the next chunk.
+		 */
+		public synchronized long getSize() {
+			return size;
+		}
+
+	}
+
+	public UploadManager(RepositoryManagerImpl rm, Path dataFolder, Duration expiration) throws IOException {
+		this.rm = rm;
+		this.uploadFolder = dataFolder.resolve(FOLDER_NAME);
+		this.expiration = expiration;
+		Files.createDirectories(uploadFolder);
+
+		this.cleaner = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "upload-cleaner");
+			t.setDaemon(true);
+			return t;
+		});
+		long interval = Math.max(60_000, Math.min(expiration.toMillis(), Duration.ofHours(1).toMillis()));
+		cleaner.scheduleWithFixedDelay(this::removeExpired, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Creates a new upload for the file of a local entry.
+	 */
+	public Upload create(Entry entry) throws IOException {
+		checkEntry(entry);
+		String id = UUID.randomUUID().toString().replace("-", "");
+		URI owner = rm.getPrincipalManager().getAuthenticatedUserURI();
+		Upload upload = new Upload(id, entry.getContext().getEntry().getId(), entry.getId(), owner,
+				uploadFolder.resolve(id), createDigest(), 0);
+
+		Properties state = new Properties();
+		state.setProperty("context", upload.contextId);
+		state.setProperty("entry", upload.entryId);
+		if (owner != null) {
+			state.setProperty("owner", owner.toString());
+		}
+		state.setProperty("created", Instant.now().toString());
+		Files.createFile(upload.file);
+		try (Writer writer = Files.newBufferedWriter(getPropertiesPath(id), UTF_8)) {
+			state.store(writer, null);
+		}
+
+		uploads.put(id, upload);
+		log.debug("Created upload {} for {}", id, entry.getEntryURI());
+		return upload;
+	}
+
+	/**
+	 * @return The upload with the provided ID, or null if there is no such upload for the
+	 * entry or if it has been created by another user.
+	 */
+	public Upload get(Entry entry, String uploadId) throws IOException {
+		rm.getPrincipalManager().checkAuthenticatedUserAuthorized(entry, AccessProperty.WriteResource);
+		if (uploadId == null || !UPLOAD_ID.matcher(uploadId).matches()) {
+			return null;
+		}
+		Upload upload = uploads.get(uploadId);
+		if (upload == null) {
+			upload = load(uploadId);
+		}
+		if (upload == null ||
+				!upload.contextId.equals(entry.getContext().getEntry().getId()) ||
+				!upload.entryId.equals(entry.getId())) {
+			return null;
+		}
+		PrincipalManager pm = rm.getPrincipalManager();
+		URI currentUser = pm.getAuthenticatedUserURI();
+		if (upload.owner != null && !upload.owner.equals(currentUser) && !pm.getAdminUser().getURI().equals(currentUser)) {
+			return null;
+		}
+		return upload;
+	}
+
+	/**
+	 * Appends a chunk to an upload. Bytes that have been written are kept if reading
+	 * the chunk fails, so that the upload can be resumed at the new offset.
+	 *
+	 * @param offset The offset of the chunk, must be the number of bytes received so far.
+	 * @return The number of bytes received so far.
+	 * @throws IllegalStateException If the offset does not match or the upload has been closed.
+	 * @throws QuotaException If the upload exceeds the maximum file size or the quota of
+	 * the context, the chunk is discarded in this case.
+	 */
+	public long append(Upload upload, Entry entry, long offset, InputStream in) throws IOException, QuotaException {
+		rm.getPrincipalManager().checkAuthenticatedUserAuthorized(entry, AccessProperty.WriteResource);
+		synchronized (upload) {
+			if (upload.closed) {
+				throw new IllegalStateException("Upload has been closed");
+			}
+			if (offset != upload.size) {
+				throw new IllegalStateException("Offset " + offset + " does not match the size of the upload: " + upload.size);
+			}
+
+			long limit = getLimit(entry);
+			long sizeBefore = upload.size;
+			MessageDigest digestBefore = cloneDigest(upload.digest);
+			try (FileChannel channel = FileChannel.open(upload.file, StandardOpenOption.WRITE)) {
+				byte[] bytes = new byte[BUFFER_SIZE];
+				ByteBuffer buffer = ByteBuffer.wrap(bytes);
+				int read;
+				try {
+					while ((read = in.read(bytes)) != -1) {
+						if (limit != Quota.VALUE_UNLIMITED && upload.size + read > limit) {
+							channel.truncate(sizeBefore);
+							upload.size = sizeBefore;
+							upload.digest = digestBefore;
+							throw new QuotaException(limit == rm.getMaximumFileSize() ? QuotaException.QUOTA_FILE_TOO_BIG : QuotaException.QUOTA_EXCEEDED);
+						}
+						buffer.clear().limit(read);
+						while (buffer.hasRemaining()) {
+							channel.write(buffer, upload.size + buffer.position());
+						}
+						upload.digest.update(bytes, 0, read);
+						upload.size += read;
+					}
+				} catch (IOException e) {
+					// drops a partially written buffer, the bytes before have been hashed
+					channel.truncate(upload.size);
+					throw e;
+				} finally {
+					channel.force(true);
+				}
+			}
+			return upload.size;
+		}
+	}
+
+	/**
+	 * Replaces the file of the entry with the uploaded file.
+	 *
+	 * @param expectedDigest The SHA-256 digest of the complete file as computed by the client, or null.
+	 * @return The SHA-256 digest of the file.
+	 * @throws IllegalArgumentException If the digest does not match, the upload is kept in this case.
+	 * @throws QuotaException If the file exceeds the quota of the context. The upload is kept,
+	 * so that it can be committed again after space has been freed.
+	 */
+	public String commit(Upload upload, Entry entry, String expectedDigest) throws IOException, QuotaException {
+		rm.getPrincipalManager().checkAuthenticatedUserAuthorized(entry, AccessProperty.WriteResource);
+		synchronized (upload) {
+			if (upload.closed) {
+				throw new IllegalStateException("Upload has been closed");
+			}
+			String digest = String.valueOf(Hex.encodeHex(cloneDigest(upload.digest).digest()));
+			if (expectedDigest != null && !expectedDigest.equalsIgnoreCase(digest)) {
+				throw new IllegalArgumentException("The SHA-256 digest of the upload does not match: " + digest);
+			}
+			DataImpl data = entry.getResource() instanceof DataImpl d ? d : new DataImpl(entry);
+			// the upload is only removed once its file is in place, otherwise it can be committed again
+			data.setData(upload.file, digest);
+			upload.closed = true;
+			uploads.remove(upload.id);
+			Files.deleteIfExists(upload.file);
+			Files.deleteIfExists(getPropertiesPath(upload.id));
+			log.debug("Committed upload {} with {} bytes to {}", upload.id, upload.size, entry.getEntryURI());
+			return digest;
+		}
+	}
+
+	/**
+	 * Removes an upload and its file.
+	 */
+	public void abort(Upload upload) throws IOException {
+		synchronized (upload) {
+			upload.closed = true;
+			uploads.remove(upload.id);
+			Files.deleteIfExists(upload.file);
+			Files.deleteIfExists(getPropertiesPath(upload.id));
+		}
+	}
+
+	/**
+	 * Removes all uploads that have not been written to during the expiration period.
+	 */
+	void removeExpired() {
+		Instant expiredBefore = Instant.now().minus(expiration);
+		List<Path> files;
+		try (Stream<Path> s = Files.list(uploadFolder)) {
+			files = s.filter(p -> UPLOAD_ID.matcher(p.getFileName().toString()).matches()).toList();
+		} catch (IOException e) {
+			log.error("Unable to list upload folder: {}", e.getMessage());
+			return;
+		}
+		for (Path file : files) {
+			try {
+				if (Files.getLastModifiedTime(file).toInstant().isBefore(expiredBefore)) {
+					String id = file.getFileName().toString();
+					Upload upload = uploads.get(id);
+					if (upload != null) {
+						abort(upload);
+					} else {
+						Files.deleteIfExists(file);
+						Files.deleteIfExists(getPropertiesPath(id));
+					}
+					log.info("Removed expired upload {}", id);
+				}
+			} catch (NoSuchFileException ignored) {
+			} catch (IOException e) {
+				log.warn("Unable to remove expired upload {}: {}", file, e.getMessage());
+			}
+		}
+	}
+
+	public void shutdown() {
+		cleaner.shutdownNow();
+	}
+
+	/**
+	 * Restores an upload after a restart, the digest is computed from the file received so far.
+	 */
+	private synchronized Upload load(String uploadId) throws IOException {
+		Upload upload = uploads.get(uploadId);
+		if (upload != null) {
+			return upload;
+		}
+		Path file = uploadFolder.resolve(uploadId);
+		Path propertiesPath = getPropertiesPath(uploadId);
+		if (!Files.isRegularFile(file) || !Files.isRegularFile(propertiesPath)) {
+			return null;
+		}
+		Properties state = new Properties();
+		try (Reader reader = Files.newBufferedReader(propertiesPath, UTF_8)) {
+			state.load(reader);
+		}
+		MessageDigest digest = createDigest();
+		long size = 0;
+		try (InputStream in = Files.newInputStream(file)) {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+				size += read;
+			}
+		}
+		String owner = state.getProperty("owner");
+		upload = new Upload(uploadId, state.getProperty("context"), state.getProperty("entry"),
+				owner != null ? URI.create(owner) : null, file, digest, size);
+		uploads.put(uploadId, upload);
+		log.debug("Restored upload {} with {} bytes", uploadId, size);
+		return upload;
+	}
+
+	private void checkEntry(Entry entry) {
+		rm.getPrincipalManager().checkAuthenticatedUserAuthorized(entry, AccessProperty.WriteResource);
+		if (!EntryType.Local.equals(entry.getEntryType()) || !GraphType.None.equals(entry.getGraphType())) {
+			throw new IllegalArgumentException("Uploads are only supported for local entries with graph type None");
+		}
+	}
+
+	/**
+	 * @return The maximum size of the upload, given by the maximum file size and the
+	 * remaining quota of the context. The existing file of the entry is replaced by the
+	 * upload and does not count.
+	 */
+	private long getLimit(Entry entry) throws IOException {
+		long limit = rm.getMaximumFileSize();
+		if (rm.hasQuotas()) {
+			Context context = entry.getContext();
+			long quota = context.getQuota();
+			long fillLevel = context.getQuotaFillLevel();
+			if (quota != Quota.VALUE_UNLIMITED && fillLevel >= 0) {
+				long existing = 0;
+				DataImpl data = new DataImpl(entry);
+				if (data.getDataFile() != null) {
+					existing = Files.size(data.getDataFile().toPath());
+				}
+				long remaining = Math.max(0, quota - fillLevel + existing);
+				limit = limit == Quota.VALUE_UNLIMITED ? remaining : Math.min(limit, remaining);
+			}
+		}
+		return limit;
+	}
+
+	private Path getPropertiesPath(String uploadId) {
+		return uploadFolder.resolve(uploadId + PROPERTIES_POSTFIX);
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance(SHA_256);
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static MessageDigest cloneDigest(MessageDigest digest) {
+		try {
+			return (MessageDigest) digest.clone();
+		} catch (CloneNotSupportedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+}
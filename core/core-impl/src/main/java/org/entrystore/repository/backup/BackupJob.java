@@ -17,6 +17,9 @@
 package org.entrystore.repository.backup;
 
 import org.apache.commons.io.FileUtils;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.RepositoryException;
 import org.eclipse.rdf4j.rio.RDFFormat;
 import org.eclipse.rdf4j.sail.SailException;
 import org.entrystore.impl.RepositoryManagerImpl;
@@ -34,12 +37,22 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.eclipse.rdf4j.model.util.Values.iri;
 
 /**
  * Runs a backup of the repository.
@@ -51,6 +64,24 @@ public class BackupJob implements Job, InterruptableJob {
 
 	private static final Logger log = LoggerFactory.getLogger(BackupJob.class);
 
+	public static final String MAIN_REPOSITORY = "repository";
+
+	public static final String PROVENANCE_REPOSITORY = "repository_prov";
+
+	public static final String JOURNAL_FOLDER = "journal";
+
+	public static final String TYPE_FULL = "full";
+
+	public static final String TYPE_INCREMENTAL = "incremental";
+
+	static final String BACKUP_TYPE_FILE = "BACKUP_TYPE";
+
+	static final String BACKUP_BASE_FILE = "BACKUP_BASE";
+
+	static final String GRAPHS_SUFFIX = ".graphs";
+
+	static final String SNAPSHOT_DATE_FILE = "SNAPSHOT_DATE";
+
 	private static boolean interrupted = false;
 
 	private static void writeErrorStatus(File errorFile, List<String> errors, String backupDateTime) {
@@ -75,15 +106,22 @@ public class BackupJob implements Job, InterruptableJob {
 			JobDataMap dataMap = context.getJobDetail().getJobDataMap();
 			RepositoryManagerImpl rm = (RepositoryManagerImpl) dataMap.get("rm");
 
+			boolean snapshot = (Boolean) dataMap.getOrDefault("snapshot", false);
 			URI realURI = rm.getPrincipalManager().getAuthenticatedUserURI();
 			try {
 				// temporarily make the current user to admin
 				rm.getPrincipalManager().setAuthenticatedUserURI(rm.getPrincipalManager().getAdminUser().getURI());
-				// we just allow the GET requests during the backup
-				rm.setModificationLockOut(true);
+				if (snapshot) {
+					log.info("Running online backup, modifications are only locked out while the snapshots are taken");
+				} else {
+					// we just allow the GET requests during the backup
+					rm.setModificationLockOut(true);
+				}
 				runBackup(context);
 			} finally {
-				rm.setModificationLockOut(false);
+				if (!snapshot) {
+					rm.setModificationLockOut(false);
+				}
 				// sets the current user back to the actually logged-in user
 				rm.getPrincipalManager().setAuthenticatedUserURI(realURI);
 			}
@@ -118,6 +156,8 @@ public class BackupJob implements Job, InterruptableJob {
 		boolean gzip = dataMap.getBoolean("gzip");
 		boolean includeFiles = dataMap.getBoolean("includeFiles");
 		RDFFormat format = (RDFFormat) dataMap.getOrDefault("format", RDFFormat.TRIX);
+		boolean incremental = (Boolean) dataMap.getOrDefault("incremental", false);
+		boolean snapshot = (Boolean) dataMap.getOrDefault("snapshot", false);
 		log.info("Backup gzip: {}", gzip);
 
 		String exportPath = rm.getConfiguration().getString(Settings.BACKUP_FOLDER);
@@ -172,53 +212,47 @@ public class BackupJob implements Job, InterruptableJob {
 					}
 				}
 
-				// Main repo
-				long beforeMainExport = System.currentTimeMillis();
-				log.info("Exporting main repository");
-				String mainRepoFile = "repository." + format.getDefaultFileExtension() + (gzip ? ".gz" : "");
-				try {
-					rm.exportToFile(rm.getRepository(), new File(newBackupDirectory, mainRepoFile).toURI(), gzip, format);
-					log.info("Exporting main repository took {} ms", System.currentTimeMillis() - beforeMainExport);
-				} catch (SailException se) {
-					log.error("Unable to export main repository {}", se.getMessage());
-					errors.add(se.getMessage());
+				// Journals of modified named graphs are rotated for every backup, the
+				// rotated segments are discarded after the backup was successful
+				ChangeJournal mainJournal = rm.getChangeJournal(MAIN_REPOSITORY);
+				ChangeJournal provJournal = rm.getChangeJournal(PROVENANCE_REPOSITORY);
+				List<File> mainSegments = mainJournal != null ? mainJournal.rotate() : null;
+				List<File> provSegments = provJournal != null ? provJournal.rotate() : null;
+
+				String base = null;
+				if (incremental) {
+					base = findIncrementalBase(rm, new File(exportPath), simple, includeFiles);
+					if (base == null) {
+						log.info("No suitable base for an incremental backup found, performing full backup instead");
+					} else {
+						log.info("Performing incremental backup relative to {}", base);
+					}
 				}
 
-				// Provenance repo
-				if (rm.getProvenanceRepository() != null) {
-					long beforeProvExport = System.currentTimeMillis();
-					log.info("Exporting provenance repository");
-					String provRepoFile = "repository_prov." + format.getDefaultFileExtension() + (gzip ? ".gz" : "");
-					try {
-						rm.exportToFile(rm.getProvenanceRepository(), new File(newBackupDirectory, provRepoFile).toURI(), gzip, format);
-						log.info("Exporting provenance repository took {} ms", System.currentTimeMillis() - beforeProvExport);
-					} catch (SailException se) {
-						log.error("Unable to export provenance repository {}", se.getMessage());
-						errors.add(se.getMessage());
-					}
+				if (base == null && snapshot) {
+					runSnapshotBackup(rm, newBackupDirectory, gzip, includeFiles, format, errors);
+				} else if (base == null) {
+					runFullBackup(rm, newBackupDirectory, gzip, includeFiles, format, errors);
 				} else {
-					log.info("Provenance repository is not configured and is therefore not be included in the backup");
+					runIncrementalBackup(rm, new File(exportPath), newBackupDirectory, base, mainSegments, provSegments, gzip, includeFiles, format, errors);
 				}
 
-				// Files/binary data
-				if (includeFiles) {
-					String dataPath = rm.getConfiguration().getString(Settings.DATA_FOLDER);
-					if (dataPath == null) {
-						log.error("Unknown data path, please check the following setting: {}", Settings.DATA_FOLDER);
+				if (errors.isEmpty()) {
+					if (mainSegments != null) {
+						mainJournal.discard(mainSegments);
+					}
+					if (provSegments != null) {
+						provJournal.discard(provSegments);
+					}
+					File journalFolder = new File(exportPath, JOURNAL_FOLDER);
+					boolean journalsComplete = mainJournal != null && !mainJournal.isIncompleteSinceRotation() &&
+							(provJournal != null ? !provJournal.isIncompleteSinceRotation() : rm.getProvenanceRepository() == null);
+					if (journalsComplete && !simple) {
+						ChangeJournal.writeBase(journalFolder, newBackupDirectory.getName());
 					} else {
-						long beforeFileExport = System.currentTimeMillis();
-						File dataPathFile = new File(dataPath);
-						log.info("Copying data folder from {} to {}", dataPathFile, newBackupDirectory);
-						try {
-							FileOperations.copyPath(dataPathFile.toPath(), newBackupDirectory.toPath());
-							log.info("Copying data folder took {} ms", System.currentTimeMillis() - beforeFileExport);
-						} catch (IOException ioe) {
-							log.error("Unable to copy data folder from {} to {}", dataPathFile, newBackupDirectory);
-							errors.add(ioe.getMessage());
-						}
+						// modifications have not been recorded since this backup, it cannot be the base
+						ChangeJournal.clearBase(journalFolder);
 					}
-				} else {
-					log.warn("Files not included in backup due to configuration");
 				}
 
 				// Clean-up with "delete-after"
@@ -258,6 +292,229 @@ public class BackupJob implements Job, InterruptableJob {
 		log.info("Backup job done with execution, took {} ms in total", System.currentTimeMillis() - beforeTotal);
 	}
 
+	private static void runFullBackup(RepositoryManagerImpl rm, File newBackupDirectory, boolean gzip, boolean includeFiles, RDFFormat format, List<String> errors) throws IOException {
+		// Main repo
+		long beforeMainExport = System.currentTimeMillis();
+		log.info("Exporting main repository");
+		String mainRepoFile = MAIN_REPOSITORY + "." + format.getDefaultFileExtension() + (gzip ? ".gz" : "");
+		try {
+			rm.exportToFile(rm.getRepository(), new File(newBackupDirectory, mainRepoFile).toURI(), gzip, format);
+			log.info("Exporting main repository took {} ms", System.currentTimeMillis() - beforeMainExport);
+		} catch (SailException se) {
+			log.error("Unable to export main repository {}", se.getMessage());
+			errors.add(se.getMessage());
+		}
+
+		// Provenance repo
+		if (rm.getProvenanceRepository() != null) {
+			long beforeProvExport = System.currentTimeMillis();
+			log.info("Exporting provenance repository");
+			String provRepoFile = PROVENANCE_REPOSITORY + "." + format.getDefaultFileExtension() + (gzip ? ".gz" : "");
+			try {
+				rm.exportToFile(rm.getProvenanceRepository(), new File(newBackupDirectory, provRepoFile).toURI(), gzip, format);
+				log.info("Exporting provenance repository took {} ms", System.currentTimeMillis() - beforeProvExport);
+			} catch (SailException se) {
+				log.error("Unable to export provenance repository {}", se.getMessage());
+				errors.add(se.getMessage());
+			}
+		} else {
+			log.info("Provenance repository is not configured and is therefore not be included in the backup");
+		}
+
+		// Files/binary data
+		if (includeFiles) {
+			String dataPath = rm.getConfiguration().getString(Settings.DATA_FOLDER);
+			if (dataPath == null) {
+				log.error("Unknown data path, please check the following setting: {}", Settings.DATA_FOLDER);
+			} else {
+				long beforeFileExport = System.currentTimeMillis();
+				File dataPathFile = new File(dataPath);
+				log.info("Copying data folder from {} to {}", dataPathFile, newBackupDirectory);
+				try {
+					// the manifest is created before copying, files that are modified
+					// while copying are then included in the next incremental backup
+					Map<String, FileManifest.Item> manifest = FileManifest.scan(dataPathFile.toPath());
+					FileOperations.copyPath(dataPathFile.toPath(), newBackupDirectory.toPath(), FileManifest::includeInBackup);
+					FileManifest.write(new File(newBackupDirectory, FileManifest.FILE_NAME).toPath(), manifest);
+					log.info("Copying data folder took {} ms", System.currentTimeMillis() - beforeFileExport);
+				} catch (IOException ioe) {
+					log.error("Unable to copy data folder from {} to {}", dataPathFile, newBackupDirectory);
+					errors.add(ioe.getMessage());
+				}
+			}
+		} else {
+			log.warn("Files not included in backup due to configuration");
+		}
+
+		FileOperations.writeStringToFile(new File(newBackupDirectory, BACKUP_TYPE_FILE), TYPE_FULL);
+	}
+
+	/**
+	 * Runs a full backup from consistent snapshots of the repositories. Modifications
+	 * are locked out while the snapshots are taken and the data folder is hard-linked,
+	 * so that the repositories and the files belong to the same state; the export of
+	 * the repositories runs afterwards without blocking modifications.
+	 */
+	private static void runSnapshotBackup(RepositoryManagerImpl rm, File newBackupDirectory, boolean gzip, boolean includeFiles, RDFFormat format, List<String> errors) throws IOException {
+		String extension = "." + format.getDefaultFileExtension() + (gzip ? ".gz" : "");
+		Map<Repository, URI> exports = new LinkedHashMap<>();
+		exports.put(rm.getRepository(), new File(newBackupDirectory, MAIN_REPOSITORY + extension).toURI());
+		if (rm.getProvenanceRepository() != null) {
+			exports.put(rm.getProvenanceRepository(), new File(newBackupDirectory, PROVENANCE_REPOSITORY + extension).toURI());
+		} else {
+			log.info("Provenance repository is not configured and is therefore not be included in the backup");
+		}
+
+		String dataPath = rm.getConfiguration().getString(Settings.DATA_FOLDER);
+		if (includeFiles && dataPath == null) {
+			log.error("Unknown data path, please check the following setting: {}", Settings.DATA_FOLDER);
+		} else if (!includeFiles) {
+			log.warn("Files not included in backup due to configuration");
+		}
+
+		List<String> fileErrors = new ArrayList<>();
+		Runnable linkDataFolder = () -> {
+			if (!includeFiles || dataPath == null) {
+				return;
+			}
+			long beforeFileExport = System.currentTimeMillis();
+			Path dataFolder = new File(dataPath).toPath();
+			log.info("Linking data folder from {} to {}", dataFolder, newBackupDirectory);
+			try {
+				Map<String, FileManifest.Item> manifest = FileManifest.scan(dataFolder);
+				long linked = FileOperations.linkPath(dataFolder, newBackupDirectory.toPath(), FileManifest::includeInBackup);
+				FileManifest.write(new File(newBackupDirectory, FileManifest.FILE_NAME).toPath(), manifest);
+				log.info("Linking {} files of data folder took {} ms", linked, System.currentTimeMillis() - beforeFileExport);
+			} catch (IOException ioe) {
+				log.error("Unable to link data folder from {} to {}: {}", dataFolder, newBackupDirectory, ioe.getMessage());
+				fileErrors.add(ioe.getMessage());
+			}
+		};
+
+		try {
+			Date snapshotDate = rm.exportSnapshotToFiles(exports, gzip, format, linkDataFolder);
+			FileOperations.writeStringToFile(new File(newBackupDirectory, SNAPSHOT_DATE_FILE), snapshotDate.toInstant().toString());
+		} catch (IOException | RepositoryException | IllegalArgumentException e) {
+			log.error("Unable to export snapshot of repositories: {}", e.getMessage());
+			errors.add(e.getMessage());
+		}
+		errors.addAll(fileErrors);
+
+		FileOperations.writeStringToFile(new File(newBackupDirectory, BACKUP_TYPE_FILE), TYPE_FULL);
+	}
+
+	private static void runIncrementalBackup(RepositoryManagerImpl rm, File backupFolder, File newBackupDirectory, String base, List<File> mainSegments, List<File> provSegments,
+	                                         boolean gzip, boolean includeFiles, RDFFormat format, List<String> errors) throws IOException {
+		long beforeMainExport = System.currentTimeMillis();
+		log.info("Exporting modified named graphs of main repository");
+		try {
+			exportDelta(rm, rm.getRepository(), mainSegments, newBackupDirectory, MAIN_REPOSITORY, gzip, format);
+			log.info("Exporting modified named graphs of main repository took {} ms", System.currentTimeMillis() - beforeMainExport);
+		} catch (IOException | RuntimeException e) {
+			log.error("Unable to export main repository {}", e.getMessage());
+			errors.add(e.getMessage());
+		}
+
+		if (rm.getProvenanceRepository() != null) {
+			long beforeProvExport = System.currentTimeMillis();
+			log.info("Exporting modified named graphs of provenance repository");
+			try {
+				exportDelta(rm, rm.getProvenanceRepository(), provSegments, newBackupDirectory, PROVENANCE_REPOSITORY, gzip, format);
+				log.info("Exporting modified named graphs of provenance repository took {} ms", System.currentTimeMillis() - beforeProvExport);
+			} catch (IOException | RuntimeException e) {
+				log.error("Unable to export provenance repository {}", e.getMessage());
+				errors.add(e.getMessage());
+			}
+		}
+
+		if (includeFiles) {
+			String dataPath = rm.getConfiguration().getString(Settings.DATA_FOLDER);
+			if (dataPath == null) {
+				log.error("Unknown data path, please check the following setting: {}", Settings.DATA_FOLDER);
+			} else {
+				long beforeFileExport = System.currentTimeMillis();
+				try {
+					Map<String, FileManifest.Item> previous = FileManifest.read(new File(new File(backupFolder, base), FileManifest.FILE_NAME).toPath());
+					Map<String, FileManifest.Item> current = FileManifest.createIncremental(new File(dataPath).toPath(), previous,
+							new File(backupFolder, FileManifest.BLOB_FOLDER).toPath());
+					FileManifest.write(new File(newBackupDirectory, FileManifest.FILE_NAME).toPath(), current);
+					log.info("Storing modified files took {} ms", System.currentTimeMillis() - beforeFileExport);
+				} catch (IOException ioe) {
+					log.error("Unable to store modified files of data folder {}: {}", dataPath, ioe.getMessage());
+					errors.add(ioe.getMessage());
+				}
+			}
+		}
+
+		FileOperations.writeStringToFile(new File(newBackupDirectory, BACKUP_TYPE_FILE), TYPE_INCREMENTAL);
+		FileOperations.writeStringToFile(new File(newBackupDirectory, BACKUP_BASE_FILE), base);
+	}
+
+	/**
+	 * Exports all named graphs that are listed in the journal segments. The list of
+	 * graphs is written alongside the export, as the graphs that do not exist anymore
+	 * have to be removed upon restore.
+	 */
+	private static void exportDelta(RepositoryManagerImpl rm, Repository repository, List<File> segments, File backupDirectory, String name, boolean gzip, RDFFormat format) throws IOException {
+		Set<String> graphs = ChangeJournal.readGraphs(segments);
+		log.info("Found {} modified named graphs", graphs.size());
+		List<Resource> contexts = new ArrayList<>(graphs.size());
+		for (String graph : graphs) {
+			contexts.add(ChangeJournal.DEFAULT_GRAPH.equals(graph) ? null : iri(graph));
+		}
+		Files.write(new File(backupDirectory, name + GRAPHS_SUFFIX).toPath(), graphs, UTF_8);
+		String fileName = name + "." + format.getDefaultFileExtension() + (gzip ? ".gz" : "");
+		rm.exportGraphsToFile(repository, contexts, new File(backupDirectory, fileName).toURI(), gzip, format);
+	}
+
+	/**
+	 * @return The name of the backup folder that the next incremental backup can be
+	 * based upon, or null if an incremental backup is not possible.
+	 */
+	private static String findIncrementalBase(RepositoryManagerImpl rm, File backupFolder, boolean simple, boolean includeFiles) {
+		if (simple) {
+			log.warn("Incremental backups are not supported with the simple backup strategy");
+			return null;
+		}
+		if (rm.getChangeJournal(MAIN_REPOSITORY) == null ||
+				(rm.getProvenanceRepository() != null && rm.getChangeJournal(PROVENANCE_REPOSITORY) == null)) {
+			log.warn("Modifications are not recorded, please check the following setting: {}", Settings.BACKUP_INCREMENTAL);
+			return null;
+		}
+		String base = ChangeJournal.readBase(new File(backupFolder, JOURNAL_FOLDER));
+		if (base == null) {
+			return null;
+		}
+		File baseFolder = new File(backupFolder, base);
+		if (!baseFolder.isDirectory() || getErrorStatusFile(baseFolder).exists() || !new File(baseFolder, BACKUP_TYPE_FILE).exists()) {
+			log.info("Previous backup {} is missing or incomplete", baseFolder);
+			return null;
+		}
+		if (includeFiles && !new File(baseFolder, FileManifest.FILE_NAME).exists()) {
+			log.info("Previous backup {} does not contain a file manifest", baseFolder);
+			return null;
+		}
+		return base;
+	}
+
+	/**
+	 * @return The name of the backup that the given backup depends on, or null if the
+	 * backup is a full backup.
+	 */
+	static String readBackupBase(File backupDirectory) {
+		File baseFile = new File(backupDirectory, BACKUP_BASE_FILE);
+		if (!baseFile.isFile()) {
+			return null;
+		}
+		try {
+			String base = Files.readString(baseFile.toPath(), UTF_8).trim();
+			return base.isEmpty() ? null : base;
+		} catch (IOException e) {
+			log.warn("Unable to read {}: {}", baseFile, e.getMessage());
+			return null;
+		}
+	}
+
 	synchronized public static void runBackupMaintenance(JobExecutionContext jobContext) {
 		if (interrupted) {
 			throw new RuntimeException("Backup job \"runBackupMaintenance()\" was interrupted");
@@ -320,44 +577,105 @@ public class BackupJob implements Job, InterruptableJob {
 				if (backupFolders.size() > upperLimit) {
 					int nrRemoveItems = backupFolders.size() - upperLimit;
 					log.info("Upper limit is {}, will delete {} backup folder(s)", upperLimit, nrRemoveItems);
-					for (int i = 0; i < nrRemoveItems; i++) {
-						String folder = formatter.format(backupFolders.get(i));
-						File f = new File(exportPath, folder);
-						if (FileOperations.deleteDirectory(f)) {
-							backupFolders.remove(i);
-							log.info("Deleted {}", f);
-						} else {
-							log.info("Unable to delete {}", f);
-						}
-					}
+					deleteBackups(exportPath, formatter, backupFolders, new ArrayList<>(backupFolders.subList(0, nrRemoveItems)));
 				}
 
 				Date oldestDate = backupFolders.getFirst();
 
 				if (DateUtils.daysBetween(oldestDate, today) > expiresAfterDays) {
-					for (int size = backupFolders.size(), i = 0; lowerLimit < size; size--) {
-						Date d = backupFolders.get(i);
-						if (DateUtils.daysBetween(d, today) > expiresAfterDays) {
-							String folder = formatter.format(backupFolders.get(i));
-							File f = new File(exportPath, folder);
-							if (FileOperations.deleteDirectory(f)) {
-								backupFolders.remove(i);
-								log.info("Deleted {}", f);
-							} else {
-								log.info("Unable to delete {}", f);
-							}
-						} else {
+					List<Date> expired = new ArrayList<>();
+					for (Date d : backupFolders) {
+						if (backupFolders.size() - expired.size() <= lowerLimit || DateUtils.daysBetween(d, today) <= expiresAfterDays) {
 							break;
 						}
+						expired.add(d);
 					}
+					deleteBackups(exportPath, formatter, backupFolders, expired);
 				}
 
+				deleteUnreferencedBlobs(backupFolder);
 			}
 		}
 
 		log.info("Backup maintenance job done with execution");
 	}
 
+	/**
+	 * Deletes backup folders, newest first. A backup is only deleted if no remaining
+	 * incremental backup depends on it, so that every remaining backup can be
+	 * restored from its delta chain.
+	 */
+	private static void deleteBackups(String exportPath, DateFormat formatter, List<Date> backupFolders, List<Date> toDelete) {
+		Map<String, String> bases = new HashMap<>();
+		for (Date d : backupFolders) {
+			String name = formatter.format(d);
+			bases.put(name, readBackupBase(new File(exportPath, name)));
+		}
+
+		for (int i = toDelete.size() - 1; i >= 0; i--) {
+			Date d = toDelete.get(i);
+			String folder = formatter.format(d);
+			File f = new File(exportPath, folder);
+			if (bases.containsValue(folder)) {
+				log.info("Not deleting {}, it is the base of an incremental backup", f);
+				continue;
+			}
+			if (FileOperations.deleteDirectory(f)) {
+				backupFolders.remove(d);
+				bases.remove(folder);
+				log.info("Deleted {}", f);
+			} else {
+				log.info("Unable to delete {}", f);
+			}
+		}
+	}
+
+	/**
+	 * Removes all files from the blob store that are not referenced by the
+	 * manifest of any remaining backup.
+	 */
+	private static void deleteUnreferencedBlobs(File backupFolder) {
+		File blobFolder = new File(backupFolder, FileManifest.BLOB_FOLDER);
+		if (!blobFolder.isDirectory()) {
+			return;
+		}
+
+		Set<String> referenced = new HashSet<>();
+		File[] backups = backupFolder.listFiles(File::isDirectory);
+		if (backups != null) {
+			for (File backup : backups) {
+				File manifest = new File(backup, FileManifest.FILE_NAME);
+				if (manifest.isFile()) {
+					try {
+						for (FileManifest.Item item : FileManifest.read(manifest.toPath()).values()) {
+							referenced.add(item.digest());
+						}
+					} catch (IOException e) {
+						log.warn("Unable to read {}, skipping removal of unreferenced files: {}", manifest, e.getMessage());
+						return;
+					}
+				}
+			}
+		}
+
+		int deleted = 0;
+		File[] prefixFolders = blobFolder.listFiles(File::isDirectory);
+		if (prefixFolders != null) {
+			for (File prefixFolder : prefixFolders) {
+				File[] blobs = prefixFolder.listFiles();
+				if (blobs == null) {
+					continue;
+				}
+				for (File blob : blobs) {
+					if (!referenced.contains(blob.getName()) && blob.delete()) {
+						deleted++;
+					}
+				}
+			}
+		}
+		log.info("Deleted {} unreferenced files from {}", deleted, blobFolder);
+	}
+
 	public void interrupt() {
 		interrupted = true;
 	}
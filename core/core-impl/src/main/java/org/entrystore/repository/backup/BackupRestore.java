@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.repository.backup;
+
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.sail.SailRepository;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.Rio;
+import org.eclipse.rdf4j.sail.nativerdf.NativeStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.eclipse.rdf4j.model.util.Values.iri;
+
+/**
+ * Restores a backup by replaying the full backup at the beginning of its chain
+ * followed by all incremental backups up to and including the given backup.
+ *
+ * <p>Can be run from the command line to create Native Stores and a data folder
+ * from a backup:</p>
+ * <pre>
+ * BackupRestore &lt;backup folder&gt; &lt;target folder&gt;
+ * </pre>
+ * <p>The target folder will contain the subfolders <code>repository</code>,
+ * <code>repository_prov</code> (if the backup contains provenance) and
+ * <code>data</code>.</p>
+ */
+public class BackupRestore {
+
+	private static final Logger log = LoggerFactory.getLogger(BackupRestore.class);
+
+	private BackupRestore() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.out.println("Usage: BackupRestore <backup folder> <target folder>");
+			System.exit(1);
+		}
+
+		File backup = new File(args[0]);
+		File target = new File(args[1]);
+		if (target.exists() && target.list() != null && target.list().length > 0) {
+			System.out.println("Target folder " + target + " must be empty");
+			System.exit(1);
+		}
+
+		Repository main = new SailRepository(new NativeStore(new File(target, BackupJob.MAIN_REPOSITORY)));
+		Repository prov = null;
+		if (findRepositoryFile(backup, BackupJob.PROVENANCE_REPOSITORY) != null) {
+			prov = new SailRepository(new NativeStore(new File(target, BackupJob.PROVENANCE_REPOSITORY)));
+		}
+		main.init();
+		if (prov != null) {
+			prov.init();
+		}
+		try {
+			restore(backup, main, prov, new File(target, "data"));
+		} finally {
+			main.shutDown();
+			if (prov != null) {
+				prov.shutDown();
+			}
+		}
+	}
+
+	/**
+	 * Restores a backup into empty repositories and an empty data folder.
+	 *
+	 * @param backup The backup folder to restore, may be a full or an incremental backup.
+	 * @param repository The repository to restore the main repository into.
+	 * @param provenanceRepository The repository to restore provenance into, may be null.
+	 * @param dataFolder The folder to restore the files into, may be null.
+	 */
+	public static void restore(File backup, Repository repository, Repository provenanceRepository, File dataFolder) throws IOException {
+		List<File> chain = resolveChain(backup);
+		log.info("Restoring {} from a chain of {} backups", backup, chain.size());
+
+		for (File b : chain) {
+			long before = System.currentTimeMillis();
+			restoreRepository(b, BackupJob.MAIN_REPOSITORY, repository);
+			if (provenanceRepository != null) {
+				restoreRepository(b, BackupJob.PROVENANCE_REPOSITORY, provenanceRepository);
+			}
+			log.info("Replayed {} in {} ms", b, System.currentTimeMillis() - before);
+		}
+
+		if (dataFolder != null) {
+			restoreFiles(chain, dataFolder);
+		}
+	}
+
+	/**
+	 * @return The backups that have to be replayed to restore the given backup,
+	 * starting with the full backup.
+	 */
+	public static List<File> resolveChain(File backup) throws IOException {
+		List<File> chain = new ArrayList<>();
+		File current = backup;
+		while (current != null) {
+			if (!current.isDirectory()) {
+				throw new IOException("Backup " + current + " does not exist");
+			}
+			if (chain.contains(current)) {
+				throw new IOException("Circular backup chain detected at " + current);
+			}
+			chain.add(current);
+			String base = BackupJob.readBackupBase(current);
+			current = base != null ? new File(current.getParentFile(), base) : null;
+		}
+		Collections.reverse(chain);
+		return chain;
+	}
+
+	private static void restoreRepository(File backup, String name, Repository repository) throws IOException {
+		File file = findRepositoryFile(backup, name);
+		if (file == null) {
+			log.info("No export of {} found in {}", name, backup);
+			return;
+		}
+
+		String fileName = file.getName();
+		boolean gzip = fileName.endsWith(".gz");
+		RDFFormat format = Rio.getParserFormatForFileName(gzip ? fileName.substring(0, fileName.length() - 3) : fileName).
+				orElseThrow(() -> new IOException("Unknown RDF format of " + file));
+
+		try (RepositoryConnection rc = repository.getConnection();
+		     InputStream in = openStream(file, gzip)) {
+			rc.begin();
+			File graphsFile = new File(backup, name + BackupJob.GRAPHS_SUFFIX);
+			if (graphsFile.isFile()) {
+				// incremental backup, the modified graphs are replaced
+				List<String> graphs = Files.readAllLines(graphsFile.toPath(), UTF_8);
+				for (String graph : graphs) {
+					if (ChangeJournal.DEFAULT_GRAPH.equals(graph)) {
+						rc.clear((Resource) null);
+					} else if (!graph.isBlank()) {
+						rc.clear(iri(graph));
+					}
+				}
+			}
+			rc.add(in, "", format);
+			rc.commit();
+		}
+	}
+
+	private static void restoreFiles(List<File> chain, File dataFolder) throws IOException {
+		File fullBackup = chain.getFirst();
+		File latest = chain.getLast();
+		Path manifestFile = new File(latest, FileManifest.FILE_NAME).toPath();
+		if (!Files.isRegularFile(manifestFile)) {
+			log.warn("{} does not contain a file manifest, files are not restored", latest);
+			return;
+		}
+
+		Path blobFolder = latest.getParentFile().toPath().resolve(FileManifest.BLOB_FOLDER);
+		Map<String, FileManifest.Item> manifest = FileManifest.read(manifestFile);
+		int missing = 0;
+		for (Map.Entry<String, FileManifest.Item> e : manifest.entrySet()) {
+			Path source;
+			if (FileManifest.NO_DIGEST.equals(e.getValue().digest())) {
+				source = fullBackup.toPath().resolve(e.getKey());
+			} else {
+				source = FileManifest.getBlobPath(blobFolder, e.getValue().digest());
+			}
+			if (!Files.isRegularFile(source)) {
+				log.error("Unable to restore {}, {} does not exist", e.getKey(), source);
+				missing++;
+				continue;
+			}
+			Path destination = dataFolder.toPath().resolve(e.getKey());
+			Files.createDirectories(destination.getParent());
+			Files.copy(source, destination, StandardCopyOption.REPLACE_EXISTING);
+		}
+		log.info("Restored {} files to {}", manifest.size() - missing, dataFolder);
+		if (missing > 0) {
+			throw new IOException(missing + " files could not be restored");
+		}
+	}
+
+	static File findRepositoryFile(File backup, String name) {
+		File[] files = backup.listFiles((dir, fileName) -> fileName.startsWith(name + ".") && !fileName.endsWith(BackupJob.GRAPHS_SUFFIX));
+		if (files == null || files.length == 0) {
+			return null;
+		}
+		return files[0];
+	}
+
+	private static InputStream openStream(File file, boolean gzip) throws IOException {
+		InputStream in = new BufferedInputStream(Files.newInputStream(file.toPath()));
+		return gzip ? new GZIPInputStream(in) : in;
+	}
+
+}
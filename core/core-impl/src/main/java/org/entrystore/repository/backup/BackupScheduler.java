@@ -50,6 +50,8 @@ public class BackupScheduler {
 
 	JobDetail job;
 
+	JobDetail incrementalJob;
+
 	RepositoryManager rm;
 
 	boolean gzip;
@@ -57,6 +59,9 @@ public class BackupScheduler {
 	@Getter
 	String cronExpression;
 
+	@Getter
+	String incrementalCronExpression;
+
 	boolean maintenance;
 
 	int upperLimit;
@@ -71,11 +76,13 @@ public class BackupScheduler {
 
 	boolean includeFiles;
 
+	boolean snapshot;
+
 	RDFFormat format;
 
 	public static BackupScheduler instance;
 
-	private BackupScheduler(RepositoryManager rm, String cronExp, boolean gzip, boolean deleteAfter, boolean includeFiles, boolean maintenance, int upperLimit, int lowerLimit, int expiresAfterDays, RDFFormat format) {
+	private BackupScheduler(RepositoryManager rm, String cronExp, String incrementalCronExp, boolean gzip, boolean deleteAfter, boolean includeFiles, boolean snapshot, boolean maintenance, int upperLimit, int lowerLimit, int expiresAfterDays, RDFFormat format) {
 		try {
 			scheduler = StdSchedulerFactory.getDefaultScheduler();
 		} catch (SchedulerException e) {
@@ -86,7 +93,9 @@ public class BackupScheduler {
 		this.gzip = gzip;
 		this.deleteAfter = deleteAfter;
 		this.cronExpression = cronExp;
+		this.incrementalCronExpression = incrementalCronExp;
 		this.includeFiles = includeFiles;
+		this.snapshot = snapshot;
 		this.maintenance = maintenance;
 		this.upperLimit = upperLimit;
 		this.lowerLimit = lowerLimit;
@@ -97,6 +106,10 @@ public class BackupScheduler {
 			log.info("Switching to simple backup strategy with one folder without date and time in name");
 			this.simple = true;
 			this.maintenance = false;
+			if (incrementalCronExp != null) {
+				log.warn("Incremental backups are not supported with the simple backup strategy");
+				this.incrementalCronExpression = null;
+			}
 		}
 
 		log.info("Created backup scheduler");
@@ -114,6 +127,7 @@ public class BackupScheduler {
 			boolean maintenance = config.getBoolean(Settings.BACKUP_MAINTENANCE, false);
 			boolean deleteAfter = config.getBoolean(Settings.BACKUP_DELETE_AFTER, false);
 			boolean includeFiles = config.getBoolean(Settings.BACKUP_INCLUDE_FILES, true);
+			boolean snapshot = config.getBoolean(Settings.BACKUP_SNAPSHOT, false);
 			int upperLimit = config.getInt(Settings.BACKUP_MAINTENANCE_UPPER_LIMIT, -1);
 			int lowerLimit = config.getInt(Settings.BACKUP_MAINTENANCE_LOWER_LIMIT, -1);
 			int expiresAfterDays = config.getInt(Settings.BACKUP_MAINTENANCE_EXPIRES_AFTER_DAYS, -1);
@@ -128,16 +142,26 @@ public class BackupScheduler {
 				cronExp = randomizeCronString(cronExp);
 			}
 
+			String incrementalCronExp = null;
+			if (config.getBoolean(Settings.BACKUP_INCREMENTAL, false)) {
+				incrementalCronExp = config.getString(Settings.BACKUP_INCREMENTAL_CRONEXP);
+				if (incrementalCronExp != null && incrementalCronExp.toLowerCase().contains("rnd")) {
+					incrementalCronExp = randomizeCronString(incrementalCronExp);
+				}
+			}
+
 			log.info("Cron expression: {}", cronExp);
+			log.info("Cron expression for incremental backups: {}", incrementalCronExp);
 			log.info("GZIP: {}", gzip);
 			log.info("Include files: {}", includeFiles);
+			log.info("Online backup from snapshot: {}", snapshot);
 			log.info("Delete previous backup after new backup: {}", deleteAfter);
 			log.info("Maintenance: {}", maintenance);
 			log.info("Maintenance upper limit: {}", upperLimit);
 			log.info("Maintenance lower limit: {}", lowerLimit);
 			log.info("Maintenance expires after days: {}", expiresAfterDays);
 
-			instance = new BackupScheduler(rm, cronExp, gzip, deleteAfter, includeFiles, maintenance, upperLimit, lowerLimit, expiresAfterDays, format);
+			instance = new BackupScheduler(rm, cronExp, incrementalCronExp, gzip, deleteAfter, includeFiles, snapshot, maintenance, upperLimit, lowerLimit, expiresAfterDays, format);
 		}
 
 		return instance;
@@ -229,29 +253,40 @@ public class BackupScheduler {
 				index = Integer.parseInt(names[names.length - 1]);
 				index++;
 			}
-			String jobIndex = String.valueOf(index);
-
-			job = new JobDetail(jobIndex, "backupGroup", BackupJob.class);
-			job.getJobDataMap().put("rm", this.rm);
-			job.getJobDataMap().put("gzip", this.gzip);
-			job.getJobDataMap().put("includeFiles", this.includeFiles);
-			job.getJobDataMap().put("deleteAfter", this.deleteAfter);
-			job.getJobDataMap().put("maintenance", this.maintenance);
-			job.getJobDataMap().put("upperLimit", this.upperLimit);
-			job.getJobDataMap().put("lowerLimit", this.lowerLimit);
-			job.getJobDataMap().put("expiresAfterDays", this.expiresAfterDays);
-			job.getJobDataMap().put("format", this.format);
-			job.getJobDataMap().put("simple", this.simple);
-
-			CronTrigger trigger = new CronTrigger("trigger" + jobIndex, "backupGroup", jobIndex, "backupGroup", this.cronExpression);
-			scheduler.addJob(job, true);
-			scheduler.scheduleJob(trigger);
+
+			job = scheduleJob(index++, this.cronExpression, false);
+			if (incrementalCronExpression != null) {
+				// full and incremental backups do not run concurrently as BackupJob.runBackup() is synchronized
+				incrementalJob = scheduleJob(index, this.incrementalCronExpression, true);
+			}
 			scheduler.start();
 		} catch (ParseException | SchedulerException e) {
 			log.error(e.getMessage());
 		}
 	}
 
+	private JobDetail scheduleJob(int index, String cronExp, boolean incremental) throws ParseException, SchedulerException {
+		String jobIndex = String.valueOf(index);
+		JobDetail jobDetail = new JobDetail(jobIndex, "backupGroup", BackupJob.class);
+		jobDetail.getJobDataMap().put("rm", this.rm);
+		jobDetail.getJobDataMap().put("gzip", this.gzip);
+		jobDetail.getJobDataMap().put("includeFiles", this.includeFiles);
+		jobDetail.getJobDataMap().put("snapshot", this.snapshot);
+		jobDetail.getJobDataMap().put("deleteAfter", this.deleteAfter);
+		jobDetail.getJobDataMap().put("maintenance", this.maintenance);
+		jobDetail.getJobDataMap().put("upperLimit", this.upperLimit);
+		jobDetail.getJobDataMap().put("lowerLimit", this.lowerLimit);
+		jobDetail.getJobDataMap().put("expiresAfterDays", this.expiresAfterDays);
+		jobDetail.getJobDataMap().put("format", this.format);
+		jobDetail.getJobDataMap().put("simple", this.simple);
+		jobDetail.getJobDataMap().put("incremental", incremental);
+
+		CronTrigger trigger = new CronTrigger("trigger" + jobIndex, "backupGroup", jobIndex, "backupGroup", cronExp);
+		scheduler.addJob(jobDetail, true);
+		scheduler.scheduleJob(trigger);
+		return jobDetail;
+	}
+
 //	public void stop() {
 //		try {
 //			scheduler.standby();
@@ -276,6 +311,11 @@ public class BackupScheduler {
 				scheduler.deleteJob(job.getName(), job.getGroup());
 				job = null;
 			}
+			if (incrementalJob != null) {
+				log.info("Deleting incremental backup job");
+				scheduler.deleteJob(incrementalJob.getName(), incrementalJob.getGroup());
+				incrementalJob = null;
+			}
 		} catch (SchedulerException e) {
 			log.error(e.getMessage());
 			return false;
@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.repository.backup;
+
+import lombok.Getter;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Append-only journal of the named graphs that have been modified in a repository.
+ *
+ * <p>The journal is written to <code>&lt;name&gt;.journal</code> in the journal folder
+ * and contains one graph IRI per line; the default graph is recorded as
+ * {@link #DEFAULT_GRAPH}. Upon a backup the journal is rotated into a segment, which
+ * is only discarded after the backup has been written successfully. This way no
+ * modifications are lost if a backup fails.</p>
+ *
+ * <p>The journal is only complete if it has been recorded without interruption since
+ * the last backup. A marker file is written when the journal is closed upon a clean
+ * shutdown; if it is missing upon startup, e.g. after a crash that lost appended lines,
+ * or if a line cannot be written, the base of incremental backups is removed so that
+ * the next backup is a full backup.</p>
+ */
+public class ChangeJournal {
+
+	private static final Logger log = LoggerFactory.getLogger(ChangeJournal.class);
+
+	public static final String DEFAULT_GRAPH = "-";
+
+	private static final String BASE_FILE = "BASE";
+
+	private static final String CLOSED_SUFFIX = ".closed";
+
+	@Getter
+	private final File folder;
+
+	@Getter
+	private final String name;
+
+	private final File journalFile;
+
+	private FileChannel channel;
+
+	private BufferedWriter writer;
+
+	// whether modifications may have been missed since the last rotation
+	private boolean incompleteSinceRotation;
+
+	// graphs written to the current segment, used to avoid duplicate lines
+	private final Set<String> recorded = new HashSet<>();
+
+	public ChangeJournal(File folder, String name) throws IOException {
+		this.folder = folder;
+		this.name = name;
+		if (!folder.exists() && !folder.mkdirs()) {
+			throw new IOException("Unable to create journal folder " + folder);
+		}
+		this.journalFile = new File(folder, name + ".journal");
+		File closedMarker = new File(folder, name + CLOSED_SUFFIX);
+		if (!closedMarker.isFile() && readBase(folder) != null) {
+			log.warn("Journal {} has not been closed cleanly, the next backup will be a full backup", journalFile);
+			clearBase(folder);
+		}
+		Files.deleteIfExists(closedMarker.toPath());
+		log.info("Recording modified named graphs in {}", journalFile);
+	}
+
+	/**
+	 * Records a set of modified named graphs. A null value denotes the default graph.
+	 */
+	public synchronized void append(Collection<Resource> graphs) {
+		if (graphs.isEmpty()) {
+			return;
+		}
+		try {
+			boolean written = false;
+			for (Resource graph : graphs) {
+				String line;
+				if (graph == null) {
+					line = DEFAULT_GRAPH;
+				} else if (graph instanceof IRI) {
+					line = graph.stringValue();
+				} else {
+					log.warn("Named graph {} is not an IRI and cannot be recorded in the journal", graph);
+					continue;
+				}
+				if (recorded.add(line)) {
+					getWriter().write(line);
+					getWriter().newLine();
+					written = true;
+				}
+			}
+			if (written) {
+				writer.flush();
+			}
+		} catch (IOException e) {
+			log.error("Unable to write to journal {}, the next backup will be a full backup: {}", journalFile, e.getMessage());
+			incompleteSinceRotation = true;
+			clearBase(folder);
+		}
+	}
+
+	/**
+	 * Closes the current segment of the journal and starts a new one. The closed segment
+	 * is forced to disk.
+	 *
+	 * @return All segments that have not yet been discarded, in chronological order.
+	 */
+	public synchronized List<File> rotate() throws IOException {
+		closeWriter();
+		if (journalFile.exists()) {
+			File segment = new File(folder, name + ".journal." + System.currentTimeMillis());
+			Files.move(journalFile.toPath(), segment.toPath());
+		}
+		recorded.clear();
+		incompleteSinceRotation = false;
+
+		List<File> segments = new ArrayList<>();
+		File[] files = folder.listFiles((dir, fileName) -> fileName.startsWith(name + ".journal."));
+		if (files != null) {
+			segments.addAll(Arrays.asList(files));
+		}
+		segments.sort((a, b) -> Long.compare(segmentTimestamp(a), segmentTimestamp(b)));
+		return segments;
+	}
+
+	/**
+	 * Removes segments that have been consumed by a successful backup.
+	 */
+	public synchronized void discard(List<File> segments) {
+		for (File segment : segments) {
+			try {
+				Files.deleteIfExists(segment.toPath());
+			} catch (IOException e) {
+				log.warn("Unable to delete journal segment {}: {}", segment, e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * @return The distinct named graphs contained in the given segments. The default
+	 * graph is represented by {@link #DEFAULT_GRAPH}.
+	 */
+	public static Set<String> readGraphs(List<File> segments) throws IOException {
+		Set<String> result = new LinkedHashSet<>();
+		for (File segment : segments) {
+			for (String line : Files.readAllLines(segment.toPath(), UTF_8)) {
+				if (!line.isBlank()) {
+					result.add(line.trim());
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return The name of the backup folder the journal is relative to, or null
+	 * if it is unknown.
+	 */
+	public static String readBase(File journalFolder) {
+		File baseFile = new File(journalFolder, BASE_FILE);
+		if (!baseFile.isFile()) {
+			return null;
+		}
+		try {
+			String base = Files.readString(baseFile.toPath(), UTF_8).trim();
+			return base.isEmpty() ? null : base;
+		} catch (IOException e) {
+			log.warn("Unable to read {}: {}", baseFile, e.getMessage());
+			return null;
+		}
+	}
+
+	public static void writeBase(File journalFolder, String backupName) throws IOException {
+		Files.writeString(new File(journalFolder, BASE_FILE).toPath(), backupName, UTF_8);
+	}
+
+	/**
+	 * Removes the base of incremental backups, so that the next backup is a full backup.
+	 * Has to be called whenever modifications may not have been recorded.
+	 */
+	public static void clearBase(File journalFolder) {
+		try {
+			Files.deleteIfExists(new File(journalFolder, BASE_FILE).toPath());
+		} catch (IOException e) {
+			log.error("Unable to remove base of incremental backups in {}: {}", journalFolder, e.getMessage());
+		}
+	}
+
+	/**
+	 * @return True if modifications may have been missed since the last rotation, in which
+	 * case the backup that consumes the rotated segments must not become the base of
+	 * incremental backups.
+	 */
+	public synchronized boolean isIncompleteSinceRotation() {
+		return incompleteSinceRotation;
+	}
+
+	/**
+	 * Closes the journal and marks it as closed cleanly.
+	 */
+	public synchronized void close() {
+		if (closeWriter() && !incompleteSinceRotation) {
+			try {
+				Files.writeString(new File(folder, name + CLOSED_SUFFIX).toPath(), "", UTF_8);
+			} catch (IOException e) {
+				log.warn("Unable to mark journal {} as closed: {}", journalFile, e.getMessage());
+			}
+		}
+	}
+
+	private BufferedWriter getWriter() throws IOException {
+		if (writer == null) {
+			channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+			writer = new BufferedWriter(Channels.newWriter(channel, UTF_8));
+		}
+		return writer;
+	}
+
+	/**
+	 * @return False if the journal could not be forced to disk.
+	 */
+	private boolean closeWriter() {
+		boolean success = true;
+		if (writer != null) {
+			try {
+				writer.flush();
+				channel.force(true);
+			} catch (IOException e) {
+				log.error("Unable to force journal {} to disk: {}", journalFile, e.getMessage());
+				incompleteSinceRotation = true;
+				clearBase(folder);
+				success = false;
+			}
+			try {
+				writer.close();
+			} catch (IOException e) {
+				log.warn("Unable to close journal {}: {}", journalFile, e.getMessage());
+			}
+			writer = null;
+			channel = null;
+		}
+		return success;
+	}
+
+	private long segmentTimestamp(File segment) {
+		String fileName = segment.getName();
+		try {
+			return Long.parseLong(fileName.substring(fileName.lastIndexOf('.') + 1));
+		} catch (NumberFormatException nfe) {
+			return 0;
+		}
+	}
+
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.repository.backup;
+
+import org.apache.commons.codec.binary.Hex;
+import org.entrystore.impl.BlobStore;
+import org.entrystore.impl.UploadManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.commons.codec.digest.MessageDigestAlgorithms.SHA_256;
+
+/**
+ * Manifest of the files in the data folder at the time of a backup, and the
+ * content-addressed blob store that holds the files of incremental backups.
+ *
+ * <p>Each line of a manifest has the format
+ * <code>&lt;sha256&gt;\t&lt;size&gt;\t&lt;modified&gt;\t&lt;relative path&gt;</code>.
+ * The digest is {@link #NO_DIGEST} for files which have not been modified since the
+ * full backup at the beginning of the chain; such files are restored from the copy
+ * of the data folder in the full backup. All other files are stored once in the
+ * blob store under <code>blobs/&lt;first two characters of digest&gt;/&lt;digest&gt;</code>,
+ * independent of how many entries or backups refer to them.</p>
+ */
+public class FileManifest {
+
+	private static final Logger log = LoggerFactory.getLogger(FileManifest.class);
+
+	public static final String FILE_NAME = "files.manifest";
+
+	public static final String BLOB_FOLDER = "blobs";
+
+	public static final String NO_DIGEST = "-";
+
+	public record Item(String digest, long size, long modified) {
+
+		boolean isUnchanged(Item other) {
+			return other != null && size == other.size && modified == other.modified;
+		}
+
+	}
+
+	private FileManifest() {
+	}
+
+	/**
+	 * Lists all files of the data folder without computing any digests. The blob store
+	 * of deduplicated files is not included, as all its files are also linked from the
+	 * context folders.
+	 */
+	public static Map<String, Item> scan(Path dataFolder) throws IOException {
+		Map<String, Item> result = new TreeMap<>();
+		Files.walkFileTree(dataFolder, new SimpleFileVisitor<>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+				return includeInBackup(dir) ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				if (attrs.isRegularFile()) {
+					String relPath = dataFolder.relativize(file).toString().replace('\\', '/');
+					result.put(relPath, new Item(NO_DIGEST, attrs.size(), changeTime(file, attrs)));
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Files in context folders may be replaced by links to existing blobs of the blob store,
+	 * which keep the modification date of the blob. The change time of the file is updated
+	 * when a link is created, so the later of both also detects such replacements.
+	 */
+	private static long changeTime(Path file, BasicFileAttributes attrs) {
+		long modified = attrs.lastModifiedTime().toMillis();
+		try {
+			FileTime ctime = (FileTime) Files.getAttribute(file, "unix:ctime");
+			return Math.max(modified, ctime.toMillis());
+		} catch (UnsupportedOperationException | IllegalArgumentException | IOException e) {
+			return modified;
+		}
+	}
+
+	/**
+	 * @return False for the blob store of deduplicated files, which is recreated from
+	 * the context folders after a restore, and for unfinished uploads, which are
+	 * modified in place.
+	 */
+	public static boolean includeInBackup(Path dir) {
+		String name = String.valueOf(dir.getFileName());
+		return !BlobStore.FOLDER_NAME.equals(name) && !UploadManager.FOLDER_NAME.equals(name);
+	}
+
+	public static Map<String, Item> read(Path manifestFile) throws IOException {
+		Map<String, Item> result = new TreeMap<>();
+		for (String line : Files.readAllLines(manifestFile, UTF_8)) {
+			String[] parts = line.split("\t", 4);
+			if (parts.length < 4) {
+				continue;
+			}
+			result.put(parts[3], new Item(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2])));
+		}
+		return result;
+	}
+
+	public static void write(Path manifestFile, Map<String, Item> manifest) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(manifestFile, UTF_8)) {
+			for (Map.Entry<String, Item> e : manifest.entrySet()) {
+				Item item = e.getValue();
+				writer.write(item.digest() + "\t" + item.size() + "\t" + item.modified() + "\t" + e.getKey());
+				writer.newLine();
+			}
+		}
+	}
+
+	/**
+	 * Creates the manifest for an incremental backup. Files which are unchanged
+	 * compared to the previous manifest keep their digest, all other files are
+	 * hashed and put into the blob store unless the blob store already contains
+	 * a file with the same digest.
+	 *
+	 * @return The manifest describing the current state of the data folder.
+	 */
+	public static Map<String, Item> createIncremental(Path dataFolder, Map<String, Item> previous, Path blobFolder) throws IOException {
+		Map<String, Item> current = scan(dataFolder);
+		int stored = 0;
+		int deduplicated = 0;
+		for (Map.Entry<String, Item> e : current.entrySet()) {
+			Item prevItem = previous.get(e.getKey());
+			Item item = e.getValue();
+			if (item.isUnchanged(prevItem)) {
+				e.setValue(new Item(prevItem.digest(), item.size(), item.modified()));
+				continue;
+			}
+			Path file = dataFolder.resolve(e.getKey());
+			String digest = digest(file);
+			e.setValue(new Item(digest, item.size(), item.modified()));
+			if (storeBlob(blobFolder, file, digest)) {
+				stored++;
+			} else {
+				deduplicated++;
+			}
+		}
+		log.info("Stored {} new files in blob store, {} files were already present", stored, deduplicated);
+		return current;
+	}
+
+	public static Path getBlobPath(Path blobFolder, String digest) {
+		return blobFolder.resolve(digest.substring(0, 2)).resolve(digest);
+	}
+
+	/**
+	 * @return True if the file was added to the blob store, false if the store
+	 * already contained a blob with the same digest.
+	 */
+	static boolean storeBlob(Path blobFolder, Path file, String digest) throws IOException {
+		Path blob = getBlobPath(blobFolder, digest);
+		if (Files.exists(blob)) {
+			return false;
+		}
+		Files.createDirectories(blob.getParent());
+		Path tmp = Files.createTempFile(blob.getParent(), digest, ".tmp");
+		try {
+			Files.copy(file, tmp, StandardCopyOption.REPLACE_EXISTING);
+			Files.move(tmp, blob, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+		return true;
+	}
+
+	/**
+	 * Computes the SHA-256 digest of a file. The digest that is stored alongside uploaded
+	 * files is not used, as the file is filed in the blob store under its digest and an
+	 * outdated digest would restore the wrong content for all files with that digest.
+	 */
+	static String digest(Path file) throws IOException {
+		MessageDigest sha;
+		try {
+			sha = MessageDigest.getInstance(SHA_256);
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+		byte[] buffer = new byte[65536];
+		try (InputStream in = Files.newInputStream(file)) {
+			int len;
+			while ((len = in.read(buffer)) > 0) {
+				sha.update(buffer, 0, len);
+			}
+		}
+		return String.valueOf(Hex.encodeHex(sha.digest()));
+	}
+
+}
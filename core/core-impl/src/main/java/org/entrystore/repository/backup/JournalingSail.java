@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.repository.backup;
+
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.sail.NotifyingSail;
+import org.eclipse.rdf4j.sail.NotifyingSailConnection;
+import org.eclipse.rdf4j.sail.SailConnectionListener;
+import org.eclipse.rdf4j.sail.SailException;
+import org.eclipse.rdf4j.sail.helpers.NotifyingSailConnectionWrapper;
+import org.eclipse.rdf4j.sail.helpers.NotifyingSailWrapper;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Sail wrapper that records the named graphs modified by committed transactions
+ * in a {@link ChangeJournal}. Used as the source of incremental backups.
+ */
+public class JournalingSail extends NotifyingSailWrapper {
+
+	private final ChangeJournal journal;
+
+	public JournalingSail(NotifyingSail baseSail, ChangeJournal journal) {
+		super(baseSail);
+		this.journal = journal;
+	}
+
+	@Override
+	public NotifyingSailConnection getConnection() throws SailException {
+		return new JournalingSailConnection(super.getConnection(), journal);
+	}
+
+	@Override
+	public void shutDown() throws SailException {
+		try {
+			super.shutDown();
+		} finally {
+			journal.close();
+		}
+	}
+
+	private static class JournalingSailConnection extends NotifyingSailConnectionWrapper implements SailConnectionListener {
+
+		private final ChangeJournal journal;
+
+		private final Set<Resource> modifiedGraphs = new HashSet<>();
+
+		JournalingSailConnection(NotifyingSailConnection wrappedCon, ChangeJournal journal) {
+			super(wrappedCon);
+			this.journal = journal;
+			wrappedCon.addConnectionListener(this);
+		}
+
+		@Override
+		public void statementAdded(Statement st) {
+			modifiedGraphs.add(st.getContext());
+		}
+
+		@Override
+		public void statementRemoved(Statement st) {
+			modifiedGraphs.add(st.getContext());
+		}
+
+		@Override
+		public void commit() throws SailException {
+			try {
+				super.commit();
+				journal.append(modifiedGraphs);
+			} finally {
+				modifiedGraphs.clear();
+			}
+		}
+
+		@Override
+		public void rollback() throws SailException {
+			try {
+				super.rollback();
+			} finally {
+				modifiedGraphs.clear();
+			}
+		}
+
+	}
+
+}
@@ -64,6 +64,12 @@ public class Settings {
 	public static String AUTH_COOKIE_REFRESH_EXPIRATION_ON_ACCESS = "entrystore.auth.cookie.refresh-expiration-on-access";
 	public static String AUTH_COOKIE_INVALID_TOKEN_ERROR = "entrystore.auth.cookie.invalid-token-error";
 	@Deprecated public static String AUTH_TOKEN_MAX_AGE = "entrystore.auth.cookie.max-age";
+	public static String AUTH_TOKEN_STORE = "entrystore.auth.token-store";
+	public static String AUTH_TOKEN_STORE_PATH = "entrystore.auth.token-store.path";
+	public static String AUTH_TOKEN_STORE_URL = "entrystore.auth.token-store.url";
+	public static String AUTH_TOKEN_STORE_USER = "entrystore.auth.token-store.user";
+	public static String AUTH_TOKEN_STORE_PASSWORD = "entrystore.auth.token-store.password";
+	public static String AUTH_TOKEN_STORE_SYNC_INTERVAL = "entrystore.auth.token-store.sync-interval";
 
 	public static String AUTH_PASSWORD = "entrystore.auth.password";
 	public static String AUTH_PASSWORD_WHITELIST = "entrystore.auth.password.whitelist";
@@ -108,6 +114,9 @@ public class Settings {
 	public static String BACKUP_FORMAT = "entrystore.backup.format";
 	public static String BACKUP_DELETE_AFTER = "entrystore.backup.delete-after";
 	public static String BACKUP_INCLUDE_FILES = "entrystore.backup.include-files";
+	public static String BACKUP_INCREMENTAL = "entrystore.backup.incremental";
+	public static String BACKUP_INCREMENTAL_CRONEXP = "entrystore.backup.incremental.cronexp";
+	public static String BACKUP_SNAPSHOT = "entrystore.backup.snapshot";
 
 	public static String BACKUP_MAINTENANCE = "entrystore.backup.maintenance";
 	public static String BACKUP_MAINTENANCE_UPPER_LIMIT = "entrystore.backup.maintenance.upper-limit";
@@ -117,7 +126,12 @@ public class Settings {
 	public static String DATA_FOLDER = "entrystore.data.folder";
 	public static String DATA_QUOTA = "entrystore.data.quota";
 	public static String DATA_QUOTA_DEFAULT = "entrystore.data.quota.default";
+	public static String DATA_QUOTA_RECONCILIATION_INTERVAL = "entrystore.data.quota.reconciliation.interval";
+	public static String DATA_QUOTA_RECONCILIATION_THREADS = "entrystore.data.quota.reconciliation.threads";
 	public static String DATA_MAX_FILE_SIZE = "entrystore.data.max-file-size";
+	public static String DATA_DEDUPLICATION = "entrystore.data.deduplication";
+	public static String DATA_DEDUPLICATION_GC_INTERVAL = "entrystore.data.deduplication.gc-interval";
+	public static String DATA_UPLOAD_EXPIRATION = "entrystore.data.upload.expiration";
 
 	public static String BASE_URL = "entrystore.baseurl.folder";
 
@@ -125,10 +139,17 @@ public class Settings {
 	public static String HARVESTER_OAI_MULTITHREADED = "entrystore.harvester.oai.multithreaded";
 	public static String HARVESTER_OAI_METADATA_POLICY = "entrystore.harvester.oai.policy"; // skip | replace
 	public static String HARVESTER_OAI_FROM_AUTO_DETECT = "entrystore.harvester.oai.from.auto-detect";
+	public static String HARVESTER_OAI_BATCH_SIZE = "entrystore.harvester.oai.batch-size"; // records per repository transaction
 	public static String HARVESTER_FAO = "entrystore.harvester.fao";
 
 	public static String HARVESTING_TARGET_OAI_BASE_URI = "Identify.scam.baseuri";
 
+	public static String HTTP_CLIENT_CONNECT_TIMEOUT = "entrystore.http.client.connect-timeout";
+	public static String HTTP_CLIENT_SOCKET_TIMEOUT = "entrystore.http.client.socket-timeout";
+	public static String HTTP_CLIENT_MAX_CONNECTIONS = "entrystore.http.client.max-connections";
+	public static String HTTP_CLIENT_MAX_CONNECTIONS_PER_HOST = "entrystore.http.client.max-connections-per-host";
+	public static String HTTP_CLIENT_KEEP_ALIVE = "entrystore.http.client.keep-alive";
+
 	public static String STORE_USER = "entrystore.repository.store.user";
 	public static String STORE_PWD = "entrystore.repository.store.password";
 	public static String STORE_DBNAME = "entrystore.repository.store.database.name";
@@ -149,6 +170,7 @@ public class Settings {
 	public static String SOLR_URL = "entrystore.solr.url";
 	public static String SOLR_REINDEX_ON_STARTUP = "entrystore.solr.reindex-on-startup";
 	public static String SOLR_REINDEX_ON_STARTUP_WAIT = "entrystore.solr.reindex-on-startup.wait";
+	public static String SOLR_REBUILD_IN_BACKGROUND = "entrystore.solr.rebuild-in-background";
 	public static String SOLR_EXTRACT_FULLTEXT = "entrystore.solr.extract-fulltext";
 	public static String SOLR_MAX_LIMIT = "entrystore.solr.max-limit";
 	public static String SOLR_FACET_MAX_LIMIT = "entrystore.solr.facet-max-limit";
@@ -160,6 +182,9 @@ public class Settings {
 	public static String SOLR_RELATED = "entrystore.solr.related";
 	public static String SOLR_RELATED_PROPERTIES = "entrystore.solr.related.properties";
 
+	public static String STATISTICS_MATERIALIZED = "entrystore.statistics.materialized";
+	public static String STATISTICS_PERSIST_INTERVAL = "entrystore.statistics.persist-interval";
+
 	public static String SYNDICATION_URL_TEMPLATE = "entrystore.syndication.url-template";
 
 	public static String REPOSITORY_REWRITE_BASEREFERENCE = "entrystore.repository.rewrite-basereference";
@@ -179,10 +204,19 @@ public class Settings {
 	public static String REPOSITORY_PROVENANCE_INDEXES = "entrystore.repository.provenance.indexes";
 	public static String REPOSITORY_PROVENANCE_TYPE = "entrystore.repository.provenance.type";
 	public static String REPOSITORY_PROVENANCE_REBUILD_ON_STARTUP = "entrystore.repository.provenance.rebuild-on-startup";
+	public static String REPOSITORY_PROVENANCE_SNAPSHOT_INTERVAL = "entrystore.repository.provenance.snapshot-interval";
+	public static String REPOSITORY_PROVENANCE_COMPACT_ON_STARTUP = "entrystore.repository.provenance.compact-on-startup";
+
+	public static String REPOSITORY_LIST_SPARSE_ORDERING = "entrystore.repository.list.sparse-ordering";
 
 	public static String REPOSITORY_TRACK_DELETED = "entrystore.repository.track-deleted-entries";
 	public static String REPOSITORY_TRACK_DELETED_CLEANUP = "entrystore.repository.track-deleted-entries.cleanup";
 
+	public static String PIPELINE_EXECUTOR_THREADS = "entrystore.pipeline.executor.threads";
+	public static String PIPELINE_EXECUTOR_QUEUE_SIZE = "entrystore.pipeline.executor.queue-size";
+	public static String PIPELINE_EXECUTOR_CONTEXT_LIMIT = "entrystore.pipeline.executor.context-limit";
+	public static String PIPELINE_EXECUTOR_JOB_RETENTION = "entrystore.pipeline.executor.job-retention";
+
 	public static String PROXY_WHITELIST_ANONYMOUS = "entrystore.proxy.whitelist.anonymous";
 	public static String PROXY_WHITELIST_LOCAL = "entrystore.proxy.whitelist.local";
 
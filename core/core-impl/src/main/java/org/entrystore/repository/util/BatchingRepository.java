@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.repository.util;
+
+import org.eclipse.rdf4j.common.transaction.IsolationLevel;
+import org.eclipse.rdf4j.common.transaction.TransactionSetting;
+import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.RepositoryException;
+import org.eclipse.rdf4j.repository.base.RepositoryConnectionWrapper;
+import org.eclipse.rdf4j.repository.base.RepositoryWrapper;
+
+/**
+ * Repository wrapper that can run several writes in one transaction. The entry API opens
+ * and commits a connection for every modification; while a batch is running in a thread,
+ * all connections of that thread share the transaction of the batch instead, and their
+ * begin, commit and close calls have no effect.
+ *
+ * <p>A rollback of a shared connection marks the batch as failed, the whole batch is
+ * rolled back when it ends.</p>
+ */
+public class BatchingRepository extends RepositoryWrapper {
+
+	private final ThreadLocal<Batch> batch = new ThreadLocal<>();
+
+	public BatchingRepository(Repository delegate) {
+		super(delegate);
+	}
+
+	@Override
+	public RepositoryConnection getConnection() throws RepositoryException {
+		Batch current = batch.get();
+		if (current != null) {
+			return new BatchConnection(this, current);
+		}
+		return super.getConnection();
+	}
+
+	/**
+	 * @return True if a batch is running in the calling thread.
+	 */
+	public boolean isBatchActive() {
+		return batch.get() != null;
+	}
+
+	/**
+	 * Runs a task in one transaction, a batch that is already running in the calling
+	 * thread is joined.
+	 *
+	 * @throws RepositoryException If a write of the task has been rolled back or the
+	 *                             transaction cannot be committed. Nothing of the task
+	 *                             is written in that case.
+	 */
+	public void runBatch(Runnable task) throws RepositoryException {
+		if (isBatchActive()) {
+			task.run();
+			return;
+		}
+		try (RepositoryConnection rc = super.getConnection()) {
+			rc.begin();
+			Batch current = new Batch(rc);
+			batch.set(current);
+			try {
+				task.run();
+			} catch (RuntimeException e) {
+				rc.rollback();
+				throw e;
+			} finally {
+				batch.remove();
+			}
+			if (current.failed) {
+				rc.rollback();
+				throw new RepositoryException("A write of the batch has been rolled back");
+			}
+			rc.commit();
+		}
+	}
+
+	private static class Batch {
+
+		private final RepositoryConnection connection;
+
+		private boolean failed;
+
+		Batch(RepositoryConnection connection) {
+			this.connection = connection;
+		}
+
+	}
+
+	private static class BatchConnection extends RepositoryConnectionWrapper {
+
+		private final Batch batch;
+
+		BatchConnection(Repository repository, Batch batch) {
+			super(repository, batch.connection);
+			this.batch = batch;
+		}
+
+		@Override
+		public void begin() {
+		}
+
+		@Override
+		public void begin(IsolationLevel level) {
+		}
+
+		@Override
+		public void begin(TransactionSetting... settings) {
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		public void prepare() {
+		}
+
+		@Override
+		public void commit() {
+		}
+
+		@Override
+		public void rollback() {
+			batch.failed = true;
+		}
+
+		@Override
+		public void close() {
+		}
+
+	}
+
+}
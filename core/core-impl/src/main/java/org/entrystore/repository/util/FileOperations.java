@@ -33,14 +33,17 @@ import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileSystemException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Predicate;
 import java.util.zip.CRC32;
 import java.util.zip.CheckedInputStream;
 import java.util.zip.ZipEntry;
@@ -331,10 +334,22 @@ public class FileOperations {
 	}
 
 	public static void copyPath(Path src, Path dst) throws IOException {
+		copyPath(src, dst, dir -> true);
+	}
+
+	/**
+	 * @param src Source directory
+	 * @param dst Destination directory
+	 * @param includeDirectory Decides whether a directory and its contents are copied.
+	 */
+	public static void copyPath(Path src, Path dst, Predicate<Path> includeDirectory) throws IOException {
 		Files.walkFileTree(src, new SimpleFileVisitor<>() {
 			@Override
 			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
 				throws IOException {
+				if (!includeDirectory.test(dir)) {
+					return FileVisitResult.SKIP_SUBTREE;
+				}
 				Files.createDirectories(dst.resolve(src.relativize(dir)));
 				return FileVisitResult.CONTINUE;
 			}
@@ -348,6 +363,77 @@ public class FileOperations {
 		});
 	}
 
+	/**
+	 * Recreates a directory tree using hard links instead of copying file contents.
+	 * Falls back to copying if a file cannot be linked, e.g., because source and
+	 * destination are on different file systems. Files that are removed while
+	 * the tree is traversed are skipped.
+	 *
+	 * <p>The result is only a snapshot if files in the source tree are never
+	 * modified in place, but replaced by renaming a new file over an existing one.</p>
+	 *
+	 * @param src Source directory
+	 * @param dst Destination directory
+	 * @return The number of files that have been linked.
+	 * @throws IOException
+	 */
+	public static long linkPath(Path src, Path dst) throws IOException {
+		return linkPath(src, dst, dir -> true);
+	}
+
+	/**
+	 * @see #linkPath(Path, Path)
+	 * @param includeDirectory Decides whether a directory and its contents are linked.
+	 */
+	public static long linkPath(Path src, Path dst, Predicate<Path> includeDirectory) throws IOException {
+		long[] linked = new long[1];
+		long[] copied = new long[1];
+		Files.walkFileTree(src, new SimpleFileVisitor<>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+				throws IOException {
+				if (!includeDirectory.test(dir)) {
+					return FileVisitResult.SKIP_SUBTREE;
+				}
+				Files.createDirectories(dst.resolve(src.relativize(dir)));
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+				throws IOException {
+				Path target = dst.resolve(src.relativize(file));
+				try {
+					Files.deleteIfExists(target);
+					try {
+						Files.createLink(target, file);
+						linked[0]++;
+					} catch (NoSuchFileException nsfe) {
+						throw nsfe;
+					} catch (UnsupportedOperationException | FileSystemException e) {
+						Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+						copied[0]++;
+					}
+				} catch (NoSuchFileException nsfe) {
+					log.debug("File disappeared while linking: {}", file);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+				if (exc instanceof NoSuchFileException) {
+					return FileVisitResult.CONTINUE;
+				}
+				throw exc;
+			}
+		});
+		if (copied[0] > 0) {
+			log.warn("Unable to create hard links for {} files, they were copied instead", copied[0]);
+		}
+		return linked[0];
+	}
+
 	@Deprecated
 	public static void copyDirectory(File srcPath, File dstPath) throws IOException {
 		if (srcPath.isDirectory()) {
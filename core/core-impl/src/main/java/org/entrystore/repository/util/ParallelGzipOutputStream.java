@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.repository.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * GZIP output stream that compresses blocks of data in parallel.
+ *
+ * <p>Every block is written as a separate GZIP member. Concatenated members
+ * form a valid GZIP file (RFC 1952) which can be read with
+ * {@link java.util.zip.GZIPInputStream} or any other GZIP implementation.
+ * The number of blocks that are compressed concurrently is bounded, so memory
+ * consumption does not depend on the amount of data written.</p>
+ *
+ * <p>Not thread-safe, the stream must be written to by one thread only.</p>
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+	public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+	private final OutputStream out;
+
+	private final Executor executor;
+
+	private final int maxPending;
+
+	private final Deque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+
+	private byte[] buffer;
+
+	private int count;
+
+	private boolean written;
+
+	private boolean closed;
+
+	public ParallelGzipOutputStream(OutputStream out) {
+		this(out, DEFAULT_BLOCK_SIZE, ForkJoinPool.commonPool(), Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param out The stream to write the compressed data to.
+	 * @param blockSize Size of the uncompressed blocks.
+	 * @param executor The executor to run compression tasks in.
+	 * @param parallelism Number of blocks to compress concurrently.
+	 */
+	public ParallelGzipOutputStream(OutputStream out, int blockSize, Executor executor, int parallelism) {
+		if (blockSize <= 0 || parallelism <= 0) {
+			throw new IllegalArgumentException("Block size and parallelism must be positive");
+		}
+		this.out = out;
+		this.executor = executor;
+		this.maxPending = parallelism * 2;
+		this.buffer = new byte[blockSize];
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		ensureOpen();
+		buffer[count++] = (byte) b;
+		if (count == buffer.length) {
+			submitBlock();
+		}
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		while (len > 0) {
+			int n = Math.min(len, buffer.length - count);
+			System.arraycopy(b, off, buffer, count, n);
+			count += n;
+			off += n;
+			len -= n;
+			if (count == buffer.length) {
+				submitBlock();
+			}
+		}
+	}
+
+	/**
+	 * Compresses all buffered data and writes it to the underlying stream. Each
+	 * flush ends a GZIP member, frequent flushing therefore reduces compression.
+	 */
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		if (count > 0) {
+			submitBlock();
+		}
+		drain(0);
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		try {
+			// an empty GZIP file must still contain one member
+			if (count > 0 || !written) {
+				submitBlock();
+			}
+			drain(0);
+		} finally {
+			closed = true;
+			buffer = null;
+			out.close();
+		}
+	}
+
+	private void submitBlock() throws IOException {
+		final byte[] block = buffer;
+		final int length = count;
+		pending.addLast(CompletableFuture.supplyAsync(() -> compress(block, length), executor));
+		buffer = new byte[block.length];
+		count = 0;
+		written = true;
+		drain(maxPending);
+	}
+
+	/**
+	 * Writes completed blocks in order until at most the given number of blocks
+	 * is pending.
+	 */
+	private void drain(int maxRemaining) throws IOException {
+		while (pending.size() > maxRemaining) {
+			try {
+				out.write(pending.removeFirst().get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while compressing data", e);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+				throw new IOException("Unable to compress data: " + cause.getMessage(), cause);
+			}
+		}
+	}
+
+	private static byte[] compress(byte[] block, int length) {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream(Math.max(length / 3, 64));
+		try (GZIPOutputStream gz = new GZIPOutputStream(bos, 8192)) {
+			gz.write(block, 0, length);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bos.toByteArray();
+	}
+
+	private void ensureOpen() throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+	}
+
+}
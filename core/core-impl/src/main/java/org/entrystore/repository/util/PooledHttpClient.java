@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.repository.util;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.config.ConnectionConfig;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.HttpConnectionFactory;
+import org.apache.http.conn.ManagedHttpClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.ManagedHttpClientConnectionFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.entrystore.config.Config;
+import org.entrystore.impl.RepositoryManagerImpl;
+import org.entrystore.repository.config.Settings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A shared HTTP client with a pool of persistent connections, to be used for all
+ * outgoing requests of EntryStore, e.g. to RowStore or for proxied resources.
+ * Redirects are not followed automatically, callers that follow redirects have to
+ * check every location themselves.
+ *
+ * <p>Responses must be closed after their entity has been consumed, otherwise
+ * the connection is not returned to the pool.</p>
+ */
+public class PooledHttpClient implements Closeable {
+
+	private static final Logger log = LoggerFactory.getLogger(PooledHttpClient.class);
+
+	private final PoolingHttpClientConnectionManager connectionManager;
+
+	private final CloseableHttpClient client;
+
+	private final RequestConfig requestConfig;
+
+	private final LongAdder requestCount = new LongAdder();
+
+	private final LongAdder connectionCount = new LongAdder();
+
+	private final LongAdder totalLatency = new LongAdder();
+
+	private final AtomicLong maxLatency = new AtomicLong();
+
+	public PooledHttpClient(Config config) {
+		this(config.getDuration(Settings.HTTP_CLIENT_CONNECT_TIMEOUT, Duration.ofSeconds(10)),
+				config.getDuration(Settings.HTTP_CLIENT_SOCKET_TIMEOUT, Duration.ofSeconds(60)),
+				config.getInt(Settings.HTTP_CLIENT_MAX_CONNECTIONS, 100),
+				config.getInt(Settings.HTTP_CLIENT_MAX_CONNECTIONS_PER_HOST, 10),
+				config.getDuration(Settings.HTTP_CLIENT_KEEP_ALIVE, Duration.ofSeconds(30)));
+	}
+
+	/**
+	 * @param connectTimeout Timeout for establishing a connection and for leasing a connection from the pool
+	 * @param socketTimeout Maximum period of inactivity between two data packets
+	 * @param maxConnections Maximum number of connections in the pool
+	 * @param maxConnectionsPerHost Maximum number of connections per route
+	 * @param keepAlive Period that idle connections are kept open if the server does not send a keep-alive timeout
+	 */
+	public PooledHttpClient(Duration connectTimeout, Duration socketTimeout, int maxConnections, int maxConnectionsPerHost, Duration keepAlive) {
+		HttpConnectionFactory<HttpRoute, ManagedHttpClientConnection> connectionFactory = new CountingConnectionFactory();
+		connectionManager = new PoolingHttpClientConnectionManager(
+				RegistryBuilder.<ConnectionSocketFactory>create()
+						.register("http", PlainConnectionSocketFactory.getSocketFactory())
+						.register("https", SSLConnectionSocketFactory.getSocketFactory())
+						.build(),
+				connectionFactory);
+		connectionManager.setMaxTotal(maxConnections);
+		connectionManager.setDefaultMaxPerRoute(maxConnectionsPerHost);
+		// connections that were idle for longer than this are checked before they are reused
+		connectionManager.setValidateAfterInactivity(2000);
+
+		requestConfig = RequestConfig.custom()
+				.setConnectTimeout((int) connectTimeout.toMillis())
+				.setConnectionRequestTimeout((int) connectTimeout.toMillis())
+				.setSocketTimeout((int) socketTimeout.toMillis())
+				.setRedirectsEnabled(false)
+				.build();
+
+		client = HttpClients.custom()
+				.setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(requestConfig)
+				.setKeepAliveStrategy((response, context) -> {
+					long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+					return serverKeepAlive > 0 ? Math.min(serverKeepAlive, keepAlive.toMillis()) : keepAlive.toMillis();
+				})
+				.evictExpiredConnections()
+				.evictIdleConnections(keepAlive.toMillis(), TimeUnit.MILLISECONDS)
+				.setUserAgent("EntryStore/" + RepositoryManagerImpl.getVersion())
+				.build();
+
+		log.info("Initialized pooled HTTP client with at most {} connections ({} per host), connect timeout {} and socket timeout {}",
+				maxConnections, maxConnectionsPerHost, connectTimeout, socketTimeout);
+	}
+
+	/**
+	 * Executes a request. The response entity is streamed from the connection; the
+	 * response has to be closed by the caller.
+	 */
+	public CloseableHttpResponse execute(HttpUriRequest request) throws IOException {
+		long before = System.nanoTime();
+		try {
+			return client.execute(request);
+		} finally {
+			long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - before);
+			requestCount.increment();
+			totalLatency.add(latency);
+			maxLatency.accumulateAndGet(latency, Math::max);
+		}
+	}
+
+	/**
+	 * @return The default request configuration with the provided timeout for connecting,
+	 * leasing a connection and reading instead, to be set on requests to services
+	 * that are expected to respond faster or slower than others.
+	 */
+	public RequestConfig getRequestConfig(Duration timeout) {
+		int millis = (int) timeout.toMillis();
+		return RequestConfig.copy(requestConfig)
+				.setConnectTimeout(millis)
+				.setConnectionRequestTimeout(millis)
+				.setSocketTimeout(millis)
+				.build();
+	}
+
+	/**
+	 * Creates a request entity that is streamed from the provided stream, using chunked
+	 * transfer encoding since the length is not known in advance.
+	 */
+	public static HttpEntity createStreamingEntity(InputStream data, String mediaType) {
+		return new InputStreamEntity(data, -1, mediaType != null ? ContentType.parse(mediaType) : null);
+	}
+
+	public long getRequestCount() {
+		return requestCount.sum();
+	}
+
+	/**
+	 * @return The number of connections that have been opened since the client was created.
+	 */
+	public long getConnectionCount() {
+		return connectionCount.sum();
+	}
+
+	/**
+	 * @return The share of requests that were executed over a reused connection.
+	 */
+	public double getConnectionReuse() {
+		long requests = getRequestCount();
+		if (requests == 0) {
+			return 0;
+		}
+		return Math.max(0, 1 - (double) getConnectionCount() / requests);
+	}
+
+	/**
+	 * @return The average time in milliseconds until the response headers were received.
+	 */
+	public long getAverageLatency() {
+		long requests = getRequestCount();
+		return requests > 0 ? totalLatency.sum() / requests : 0;
+	}
+
+	public long getMaxLatency() {
+		return maxLatency.get();
+	}
+
+	public PoolStats getPoolStatistics() {
+		return connectionManager.getTotalStats();
+	}
+
+	@Override
+	public void close() {
+		try {
+			client.close();
+		} catch (IOException e) {
+			log.error("Error when closing HTTP client: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * Counts the connections that are opened by the pool.
+	 */
+	private class CountingConnectionFactory implements HttpConnectionFactory<HttpRoute, ManagedHttpClientConnection> {
+
+		@Override
+		public ManagedHttpClientConnection create(HttpRoute route, ConnectionConfig config) {
+			connectionCount.increment();
+			return ManagedHttpClientConnectionFactory.INSTANCE.create(route, config);
+		}
+
+	}
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.repository.util;
+
+import java.util.Arrays;
+
+/**
+ * Accumulates the time that the current thread spends in the store, in Solr and in access
+ * control checks, so that the time can be attributed to the request that is handled by the
+ * thread. Recording does not allocate once the thread has recorded for the first time.
+ *
+ * <p>The categories may overlap, e.g., an access control check may load entries from the
+ * store, and the time is then added to both categories.</p>
+ */
+public final class RequestTimings {
+
+	public enum Category {
+		STORE, SOLR, ACL
+	}
+
+	private static final ThreadLocal<long[]> nanos = ThreadLocal.withInitial(() -> new long[Category.values().length]);
+
+	private RequestTimings() {
+	}
+
+	/**
+	 * Sets the accumulated times of the current thread to zero, to be called when a new request is handled.
+	 */
+	public static void reset() {
+		Arrays.fill(nanos.get(), 0L);
+	}
+
+	/**
+	 * Adds the time that has passed since the given start to a category.
+	 *
+	 * @param startNanos The start as returned by {@link System#nanoTime()}.
+	 */
+	public static void add(Category category, long startNanos) {
+		nanos.get()[category.ordinal()] += System.nanoTime() - startNanos;
+	}
+
+	/**
+	 * @return The accumulated time of a category in nanoseconds.
+	 */
+	public static long get(Category category) {
+		return nanos.get()[category.ordinal()];
+	}
+
+}
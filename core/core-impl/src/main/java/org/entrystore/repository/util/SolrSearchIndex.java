@@ -79,10 +79,12 @@ import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 import static java.lang.Thread.interrupted;
 
@@ -114,7 +116,22 @@ public class SolrSearchIndex implements SearchIndex {
 
 	private final RepositoryManager rm;
 
-	private final SolrClient solrServer;
+	private volatile SolrClient solrServer;
+
+	/**
+	 * The index that is being rebuilt in the background. It receives all updates in
+	 * addition to the index that answers queries, until it replaces the latter.
+	 */
+	private volatile SolrClient rebuildTarget;
+
+	/**
+	 * The entries that have been changed or removed while a rebuild is running. Their
+	 * documents are built again before the rebuilt index replaces the current index,
+	 * since the rebuild may have read them before the change.
+	 */
+	private final Set<URI> changedDuringRebuild = ConcurrentHashMap.newKeySet();
+
+	private Thread rebuilder;
 
 	private final Thread documentSubmitter;
 
@@ -132,6 +149,8 @@ public class SolrSearchIndex implements SearchIndex {
 
 	private final Map<URI, DelayedContextIndexerInfo> delayedReindex = Collections.synchronizedMap(new HashMap<>());
 
+	private static final int RELATED_DEPENDENTS_PAGE_SIZE = 1000;
+
 	private ValueFactory valueFactory;
 
 	public class SolrInputDocumentSubmitter extends Thread {
@@ -168,7 +187,7 @@ public class SolrSearchIndex implements SearchIndex {
 							delReq.setCommitWithin(SOLR_COMMIT_WITHIN);
 							try {
 								log.info("Sending request to delete " + batchCount + " entries from Solr, " + deleteQueue.size() + " entries remaining in delete queue");
-								delReq.process(solrServer);
+								processUpdate(delReq);
 							} catch (SolrServerException | IOException e) {
 								log.error(e.getMessage(), e);
 							}
@@ -201,7 +220,7 @@ public class SolrSearchIndex implements SearchIndex {
 							} else {
 								addReq.setCommitWithin(SOLR_COMMIT_WITHIN);
 							}
-							addReq.process(solrServer);
+							processUpdate(addReq);
 						} catch (BaseHttpSolrClient.RemoteSolrException | SolrServerException | IOException e) {
 							log.error(e.getMessage(), e);
 						}
@@ -315,6 +334,12 @@ public class SolrSearchIndex implements SearchIndex {
 
 		reindexExecutor.shutdown();
 
+		synchronized (this) {
+			if (rebuilder != null) {
+				rebuilder.interrupt();
+			}
+		}
+
 		try {
 			log.debug("Sending commit to Solr");
 			solrServer.commit(true, false);
@@ -323,6 +348,172 @@ public class SolrSearchIndex implements SearchIndex {
 		}
 	}
 
+	/**
+	 * Sends an update to the index and, while a rebuild is running, also to the index
+	 * that is being rebuilt. The index that answers queries is replaced before the
+	 * rebuild target is unset, so no update gets lost during the swap.
+	 */
+	private void processUpdate(UpdateRequest request) throws SolrServerException, IOException {
+		SolrClient target = rebuildTarget;
+		if (target != null) {
+			try {
+				request.process(target);
+			} catch (SolrServerException | IOException | SolrException e) {
+				log.error("Unable to send update to the Solr index that is being rebuilt: {}", e.getMessage());
+			}
+		}
+		SolrClient current = solrServer;
+		if (current != target) {
+			request.process(current);
+		}
+	}
+
+	/**
+	 * Builds a new index from all entries in the background, while queries are still answered
+	 * by the current index. Updates that happen during the rebuild are sent to both indexes,
+	 * and entries that have been changed while the rebuild was running are indexed again
+	 * before the new index replaces the current one.
+	 *
+	 * @param target The empty index to be built.
+	 * @param onSwap Called after the rebuilt index has been committed and has replaced the
+	 *               current index; receives the replaced index.
+	 */
+	public synchronized void rebuild(SolrClient target, Consumer<SolrClient> onSwap) {
+		if (target == null) {
+			throw new IllegalArgumentException("Target index must not be null");
+		}
+		if (rebuildTarget != null) {
+			throw new IllegalStateException("A rebuild of the Solr index is already running");
+		}
+		changedDuringRebuild.clear();
+		rebuildTarget = target;
+		rebuilder = new Thread(() -> rebuildSync(target, onSwap), "solr-rebuild");
+		rebuilder.setDaemon(true);
+		rebuilder.start();
+	}
+
+	public boolean isRebuilding() {
+		return rebuildTarget != null;
+	}
+
+	private void rebuildSync(SolrClient target, Consumer<SolrClient> onSwap) {
+		Date rebuildStart = new Date();
+		log.info("Starting rebuild of Solr index in the background, queries are answered by the current index until the rebuild is complete");
+
+		SolrClient previous = null;
+		PrincipalManager pm = rm.getPrincipalManager();
+		URI currentUser = pm.getAuthenticatedUserURI();
+		try {
+			pm.setAuthenticatedUserURI(pm.getAdminUser().getURI());
+			ContextManager cm = rm.getContextManager();
+			long count = 0;
+			List<SolrInputDocument> batch = new ArrayList<>();
+			for (URI contextURI : cm.getEntries()) {
+				String id = contextURI.toString().substring(contextURI.toString().lastIndexOf("/") + 1);
+				Context context = cm.getContext(id);
+				if (context == null) {
+					continue;
+				}
+				for (URI entryURI : context.getEntries()) {
+					if (interrupted()) {
+						log.info("Rebuild of Solr index got interrupted, the rebuild starts over after the next restart");
+						return;
+					}
+					if (entryURI == null) {
+						continue;
+					}
+					try {
+						Entry entry = cm.getEntry(entryURI);
+						if (entry != null && !entry.isDeleted() && !entry.getContext().isDeleted()) {
+							batch.add(constructSolrInputDocument(entry, extractFulltext));
+						}
+					} catch (Exception e) {
+						log.error("Not indexing {} due to error: {}", entryURI, e.getMessage());
+					}
+					if (batch.size() >= BATCH_SIZE_ADD) {
+						count += batch.size();
+						sendBatch(target, batch);
+						if (count % (BATCH_SIZE_ADD * 100) == 0) {
+							log.info("Rebuild of Solr index has indexed {} entries", count);
+						}
+					}
+				}
+			}
+			count += batch.size();
+			sendBatch(target, batch);
+			log.info("Rebuild of Solr index has indexed {} entries, indexing {} entries that have been changed in the meantime", count, changedDuringRebuild.size());
+
+			// entries that are changed while this loop runs are added to the set again
+			for (int pass = 0; pass < 10 && !changedDuringRebuild.isEmpty(); pass++) {
+				for (URI entryURI : new ArrayList<>(changedDuringRebuild)) {
+					changedDuringRebuild.remove(entryURI);
+					Entry entry = null;
+					try {
+						entry = cm.getEntry(entryURI);
+					} catch (Exception e) {
+						log.debug("Unable to load entry {}, removing it from rebuilt index: {}", entryURI, e.getMessage());
+					}
+					if (entry != null && !entry.isDeleted() && !entry.getContext().isDeleted()) {
+						try {
+							batch.add(constructSolrInputDocument(entry, extractFulltext));
+						} catch (Exception e) {
+							log.error("Not indexing {} due to error: {}", entryURI, e.getMessage());
+						}
+					} else {
+						UpdateRequest delReq = new UpdateRequest();
+						delReq.deleteByQuery("uri:" + ClientUtils.escapeQueryChars(entryURI.toString()));
+						delReq.process(target);
+					}
+					if (batch.size() >= BATCH_SIZE_ADD) {
+						sendBatch(target, batch);
+					}
+				}
+				sendBatch(target, batch);
+			}
+
+			target.commit(true, true);
+			synchronized (this) {
+				if (interrupted()) {
+					return;
+				}
+				previous = solrServer;
+				solrServer = target;
+				rebuildTarget = null;
+				rebuilder = null;
+				changedDuringRebuild.clear();
+			}
+			log.info("Finished rebuild of Solr index, took {} ms; the rebuilt index now answers queries", new Date().getTime() - rebuildStart.getTime());
+		} catch (SolrServerException | IOException | RuntimeException e) {
+			log.error("Rebuild of Solr index failed, queries are still answered by the previous index: {}", e.getMessage(), e);
+		} finally {
+			pm.setAuthenticatedUserURI(currentUser);
+			// also reached if the rebuild got interrupted; a rebuild that has been started
+			// after the swap must not be affected
+			synchronized (this) {
+				if (rebuildTarget == target) {
+					rebuildTarget = null;
+					rebuilder = null;
+					changedDuringRebuild.clear();
+				}
+			}
+		}
+
+		if (previous != null) {
+			onSwap.accept(previous);
+		}
+	}
+
+	private void sendBatch(SolrClient target, List<SolrInputDocument> batch) throws SolrServerException, IOException {
+		if (batch.isEmpty()) {
+			return;
+		}
+		UpdateRequest addReq = new UpdateRequest();
+		addReq.add(batch);
+		addReq.setCommitWithin(SOLR_COMMIT_WITHIN_MAX);
+		addReq.process(target);
+		batch.clear();
+	}
+
 	public void clearSolrIndex(SolrClient solrServer) {
 		UpdateRequest req = new UpdateRequest();
 		req.deleteByQuery("*:*");
@@ -914,21 +1105,7 @@ public class SolrSearchIndex implements SearchIndex {
 			throw new IllegalArgumentException("Neither SolrInputDocument nor Entry must be null");
 		}
 
-		Set<Context> contexts = new HashSet<>();
-		if (relatedContainsGlobal) {
-			// TODO there is room for optimization, the contexts are loaded now once per indexed entry.
-			//  possible solution: provide getter method and load only if set is null; set to null when there are
-			//  relevant changes, e.g. context removed or added (ContextManager needs to tell SolrSearchIndex that
-			//  contexts have changed)
-			ContextManager cm = entry.getRepositoryManager().getContextManager();
-			for (URI contextURI : cm.getEntries()) {
-				Context c = cm.getContext(contextURI);
-				if (c instanceof RegularContext) {
-					contexts.add(c);
-				}
-			}
-		}
-
+		ContextManager cm = entry.getRepositoryManager().getContextManager();
 		Set<Entry> relatedEntries = new HashSet<>();
 		for (IRI relProp : relatedProperties.keySet()) {
 			List<String> relatedURIs = EntryUtil.getResourceValues(entry, Collections.singleton(relProp));
@@ -936,9 +1113,12 @@ public class SolrSearchIndex implements SearchIndex {
 				continue;
 			}
 			if (relatedContainsGlobal && relatedProperties.get(relProp)) {
-				for (Context context : contexts) {
-					for (String relEntURI : relatedURIs) {
-						relatedEntries.addAll(context.getByResourceURI(URI.create(relEntURI)));
+				for (String relEntURI : relatedURIs) {
+					for (URI relatedEntryURI : cm.getEntryURIsByResourceURI(URI.create(relEntURI))) {
+						Entry relE = cm.getEntry(relatedEntryURI);
+						if (relE != null && relE.getContext() instanceof RegularContext) {
+							relatedEntries.add(relE);
+						}
 					}
 				}
 			} else {
@@ -948,6 +1128,12 @@ public class SolrSearchIndex implements SearchIndex {
 			}
 		}
 
+		// the related entries are recorded in the document, to find the documents that
+		// have to be updated when a related entry changes, see postRelatedDependents()
+		for (Entry relE : relatedEntries) {
+			addFieldValueOnce(doc, "related.entry", relE.getEntryURI().toString());
+		}
+
 		if (!relatedEntries.isEmpty()) {
 			Set<URI> mainEntryACL = entry.getAllowedPrincipalsFor(AccessProperty.ReadMetadata);
 			for (Entry relE : relatedEntries) {
@@ -975,7 +1161,46 @@ public class SolrSearchIndex implements SearchIndex {
 		return solrDateFormatter.format(c.toGregorianCalendar().getTime());
 	}
 
+	/**
+	 * @return The URIs of the entries whose indexed documents embed the metadata of the
+	 * given entry in their related fields. Documents that have not been committed to
+	 * Solr yet are not taken into account.
+	 */
+	private Set<URI> getRelatedDependents(URI entryURI) {
+		Set<URI> result = new HashSet<>();
+		SolrQuery query = new SolrQuery("related.entry:" + ClientUtils.escapeQueryChars(entryURI.toString()));
+		int offset = 0;
+		long hits;
+		do {
+			hits = sendQueryForEntryURIs(query, result, new ArrayList<>(), solrServer, offset, RELATED_DEPENDENTS_PAGE_SIZE);
+			offset += RELATED_DEPENDENTS_PAGE_SIZE;
+		} while (offset < hits);
+		return result;
+	}
+
+	/**
+	 * Adds the entries that embed the metadata of the given entry in their related
+	 * fields to the post queue, so that they reflect the changes of the given entry.
+	 */
+	private void postRelatedDependents(Entry entry) {
+		if (!related) {
+			return;
+		}
+		ContextManager cm = entry.getRepositoryManager().getContextManager();
+		for (URI dependentURI : getRelatedDependents(entry.getEntryURI())) {
+			Entry dependent = cm.getEntry(dependentURI);
+			if (dependent != null) {
+				log.debug("Re-indexing {} as it depends on {}", dependentURI, entry.getEntryURI());
+				postEntry(dependent, false);
+			}
+		}
+	}
+
 	public void postEntry(Entry entry) {
+		postEntry(entry, true);
+	}
+
+	private void postEntry(Entry entry, boolean includeDependents) {
 		PrincipalManager pm = entry.getRepositoryManager().getPrincipalManager();
 		URI currentUser = pm.getAuthenticatedUserURI();
 		try {
@@ -985,6 +1210,9 @@ public class SolrSearchIndex implements SearchIndex {
 				if (postQueue.getIfPresent(entryURI) != null) {
 					log.debug("Entry {} already exists in post queue, attempting replacement", entryURI);
 				}
+				if (rebuildTarget != null) {
+					changedDuringRebuild.add(entryURI);
+				}
 				if (!entry.isDeleted() && !entry.getContext().isDeleted()) {
 					log.info("Adding document to Solr post queue: {}", entryURI);
 					try {
@@ -996,6 +1224,9 @@ public class SolrSearchIndex implements SearchIndex {
 					log.debug("Not adding deleted entry to post queue: {}", entryURI);
 				}
 			}
+			if (includeDependents) {
+				postRelatedDependents(entry);
+			}
 		} finally {
 			pm.setAuthenticatedUserURI(currentUser);
 		}
@@ -1008,6 +1239,9 @@ public class SolrSearchIndex implements SearchIndex {
 			// we make sure that the entry is not added again after deletion
 			// if the queues are handled at different times
 			postQueue.invalidate(entryURI);
+			if (rebuildTarget != null) {
+				changedDuringRebuild.add(entryURI);
+			}
 		}
 
 		synchronized (deleteQueue) {
@@ -1015,9 +1249,24 @@ public class SolrSearchIndex implements SearchIndex {
 			deleteQueue.add(entryURI);
 		}
 
+		if (related) {
+			PrincipalManager pm = entry.getRepositoryManager().getPrincipalManager();
+			URI currentUser = pm.getAuthenticatedUserURI();
+			try {
+				pm.setAuthenticatedUserURI(pm.getAdminUser().getURI());
+				postRelatedDependents(entry);
+			} finally {
+				pm.setAuthenticatedUserURI(currentUser);
+			}
+		}
+
 		// if entry is a context, also remove all entries inside
 		if (GraphType.Context.equals(entry.getGraphType())) {
 			clearSolrIndex(solrServer, null, entry);
+			SolrClient target = rebuildTarget;
+			if (target != null) {
+				clearSolrIndex(target, null, entry);
+			}
 		}
 	}
 
@@ -1040,7 +1289,7 @@ public class SolrSearchIndex implements SearchIndex {
 		long hits = -1;
 		QueryResponse r;
 		try {
-			r = solrServer.query(query);
+			r = query(solrServer, query);
 			r.getElapsedTime();
 			if (r.getFacetFields() != null) {
 				facetFields.addAll(r.getFacetFields());
@@ -1152,12 +1401,24 @@ public class SolrSearchIndex implements SearchIndex {
 		return new QueryResult(result, adjustedHitCount, facetFields);
 	}
 
+	/**
+	 * Sends a query and attributes the time it takes to the request of the current thread.
+	 */
+	private QueryResponse query(SolrClient client, SolrQuery query) throws SolrServerException, IOException {
+		long start = System.nanoTime();
+		try {
+			return client.query(query);
+		} finally {
+			RequestTimings.add(RequestTimings.Category.SOLR, start);
+		}
+	}
+
 	public SolrDocument fetchDocument(String uri) {
 		try {
 			SolrQuery q = new SolrQuery("uri:" + ClientUtils.escapeQueryChars(uri));
 			q.setStart(0);
 			q.setRows(1);
-			QueryResponse r = solrServer.query(q);
+			QueryResponse r = query(solrServer, q);
 			SolrDocumentList docs = r.getResults();
 			if (!docs.isEmpty()) {
 				return docs.getFirst();
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.impl;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BlobStoreTest {
+
+	@TempDir
+	Path dataFolder;
+
+	private BlobStore blobStore;
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		Files.createDirectories(dataFolder.resolve("1"));
+		Files.createDirectories(dataFolder.resolve("2"));
+		blobStore = new BlobStore(dataFolder);
+	}
+
+	private void store(String content, Path target) throws IOException {
+		Path tmp = DataImpl.getTempPath(target);
+		Files.writeString(tmp, content, UTF_8);
+		try {
+			blobStore.store(tmp, DigestUtils.sha256Hex(content), target);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	private static int linkCount(Path path) throws IOException {
+		return (Integer) Files.getAttribute(path, "unix:nlink");
+	}
+
+	@Test
+	public void storesIdenticalContentOnce() throws IOException {
+		Path file1 = dataFolder.resolve("1").resolve("a");
+		Path file2 = dataFolder.resolve("2").resolve("b");
+		store("logo", file1);
+		store("logo", file2);
+
+		Path blob = blobStore.getBlobPath(DigestUtils.sha256Hex("logo"));
+		assertEquals("logo", Files.readString(file2, UTF_8));
+		assertTrue(Files.isSameFile(file1, file2));
+		assertEquals(3, linkCount(blob));
+		try (var files = Files.list(dataFolder.resolve("2"))) {
+			assertEquals(1, files.count());
+		}
+	}
+
+	@Test
+	public void collectsUnreferencedBlobs() throws IOException {
+		Path file = dataFolder.resolve("1").resolve("a");
+		store("first", file);
+		store("second", file);
+
+		assertEquals("second", Files.readString(file, UTF_8));
+		assertEquals("first".length(), blobStore.collectGarbage());
+		assertFalse(Files.exists(blobStore.getBlobPath(DigestUtils.sha256Hex("first"))));
+		assertTrue(Files.exists(blobStore.getBlobPath(DigestUtils.sha256Hex("second"))));
+	}
+
+	@Test
+	public void migratesExistingFiles() throws IOException {
+		Path file1 = dataFolder.resolve("1").resolve("a");
+		Path file2 = dataFolder.resolve("2").resolve("b");
+		Files.writeString(file1, "licence", UTF_8);
+		Files.writeString(file2, "licence", UTF_8);
+		Files.writeString(dataFolder.resolve("2").resolve("b" + DataImpl.SHA_256_POSTFIX), DigestUtils.sha256Hex("licence"), UTF_8);
+
+		blobStore.migrate();
+		assertTrue(Files.isSameFile(file1, file2));
+		assertEquals(3, linkCount(blobStore.getBlobPath(DigestUtils.sha256Hex("licence"))));
+		assertEquals(0, blobStore.collectGarbage());
+	}
+
+	@Test
+	public void migrationIgnoresOutdatedDigests() throws IOException {
+		Path file = dataFolder.resolve("1").resolve("a");
+		Files.writeString(file, "rewritten", UTF_8);
+		Path sidecar = dataFolder.resolve("1").resolve("a" + DataImpl.SHA_256_POSTFIX);
+		Files.writeString(sidecar, DigestUtils.sha256Hex("original"), UTF_8);
+		Files.setLastModifiedTime(sidecar, Files.getLastModifiedTime(file));
+
+		blobStore.migrate();
+		assertFalse(Files.exists(blobStore.getBlobPath(DigestUtils.sha256Hex("original"))));
+		assertTrue(Files.isSameFile(file, blobStore.getBlobPath(DigestUtils.sha256Hex("rewritten"))));
+
+		// a later upload of the original content must not be linked to the rewritten file
+		Path other = dataFolder.resolve("2").resolve("b");
+		store("original", other);
+		assertEquals("original", Files.readString(other, UTF_8));
+	}
+
+	@Test
+	public void linkingKeepsModificationDateOfBlob() throws IOException {
+		Path file1 = dataFolder.resolve("1").resolve("a");
+		store("logo", file1);
+		FileTime modified = FileTime.fromMillis(1000);
+		Files.setLastModifiedTime(file1, modified);
+
+		store("logo", dataFolder.resolve("2").resolve("b"));
+		assertEquals(modified, Files.getLastModifiedTime(file1));
+	}
+
+}
@@ -17,15 +17,23 @@
 
 package org.entrystore.impl;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.entrystore.Context;
 import org.entrystore.Entry;
 import org.entrystore.GraphType;
 import org.entrystore.List;
+import org.entrystore.Quota;
+import org.entrystore.QuotaException;
+import org.entrystore.repository.RepositoryEvent;
+import org.entrystore.repository.RepositoryEventObject;
+import org.entrystore.repository.RepositoryListener;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
@@ -44,6 +52,59 @@ public class ContextImplTest extends AbstractCoreTest {
 		context = (Context) entry.getResource();
 	}
 
+	@Test
+	public void rolledBackTransactionIsDiscarded() {
+		URI resourceURI = URI.create("http://example.com/transaction");
+		AtomicInteger events = new AtomicInteger();
+		RepositoryListener listener = new RepositoryListener() {
+			@Override
+			public void repositoryUpdated(RepositoryEventObject eventObject) {
+				events.incrementAndGet();
+			}
+		};
+		rm.registerListener(listener, RepositoryEvent.EntryCreated);
+		try {
+			assertThrows(IllegalStateException.class, () -> rm.runInTransaction(() -> {
+				context.createLink(null, resourceURI, null);
+				assertEquals(1, context.getByResourceURI(resourceURI).size());
+				throw new IllegalStateException("Aborting transaction");
+			}));
+			assertTrue(context.getByResourceURI(resourceURI).isEmpty());
+			assertEquals(0, events.get());
+
+			rm.runInTransaction(() -> {
+				context.createLink(null, resourceURI, null);
+				// events are fired after the commit
+				assertEquals(0, events.get());
+			});
+			assertEquals(1, context.getByResourceURI(resourceURI).size());
+			assertEquals(1, events.get());
+		} finally {
+			rm.unregisterListener(listener, RepositoryEvent.EntryCreated);
+		}
+	}
+
+	@Test
+	public void quotaIsEnforcedWhileFillLevelIsUnknown() throws QuotaException {
+		pm.setAuthenticatedUserURI(pm.getAdminUser().getURI());
+		ContextImpl contextImpl = (ContextImpl) context;
+		contextImpl.setQuota(100);
+		assertEquals(Quota.VALUE_UNKNOWN, contextImpl.getQuotaFillLevel());
+
+		// writes do not wait for a recount, they are checked against the bytes written since
+		contextImpl.increaseQuotaFillLevel(60);
+		assertThrows(QuotaException.class, () -> contextImpl.increaseQuotaFillLevel(60));
+		contextImpl.decreaseQuotaFillLevel(20);
+		contextImpl.increaseQuotaFillLevel(60);
+		assertEquals(100, contextImpl.getQuotaFillLevelChanges());
+		assertEquals(Quota.VALUE_UNKNOWN, contextImpl.getQuotaFillLevel());
+
+		// the recount takes the writes into account
+		contextImpl.reconcileQuotaFillLevel(0, 0);
+		assertEquals(100, contextImpl.getQuotaFillLevel());
+		assertThrows(QuotaException.class, () -> contextImpl.increaseQuotaFillLevel(1));
+	}
+
 	@Test
 	public void createAndRemoveEntries() {
 		//Some Entries
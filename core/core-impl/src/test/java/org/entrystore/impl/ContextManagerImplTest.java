@@ -215,4 +215,26 @@ public class ContextManagerImplTest extends AbstractCoreTest {
 
 	}
 
+	@Test
+	public void resourceIndex() {
+		Context context1 = (Context) cm.createResource(null, GraphType.Context, null, null).getResource();
+		Context context2 = (Context) cm.createResource(null, GraphType.Context, null, null).getResource();
+		URI resourceURI = URI.create("http://example.com/resource");
+
+		Entry link1 = context1.createLink(null, resourceURI, null);
+		assertEquals(Set.of(link1.getEntryURI()), cm.getEntryURIsByResourceURI(resourceURI));
+
+		// the index is loaded now and has to be kept up to date from here on
+		Entry link2 = context2.createLink(null, resourceURI, null);
+		assertEquals(Set.of(link1.getEntryURI(), link2.getEntryURI()), cm.getEntryURIsByResourceURI(resourceURI));
+
+		URI otherResourceURI = URI.create("http://example.com/other");
+		link2.setResourceURI(otherResourceURI);
+		assertEquals(Set.of(link1.getEntryURI()), cm.getEntryURIsByResourceURI(resourceURI));
+		assertEquals(Set.of(link2.getEntryURI()), cm.getEntryURIsByResourceURI(otherResourceURI));
+
+		context1.remove(link1.getEntryURI());
+		assertTrue(cm.getEntryURIsByResourceURI(resourceURI).isEmpty());
+	}
+
 }
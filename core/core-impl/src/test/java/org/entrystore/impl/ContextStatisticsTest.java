@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.impl;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.entrystore.Context;
+import org.entrystore.Entry;
+import org.entrystore.GraphType;
+import org.entrystore.repository.RepositoryEvent;
+import org.entrystore.repository.RepositoryEventObject;
+import org.entrystore.repository.config.Settings;
+import org.entrystore.repository.util.NS;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.eclipse.rdf4j.model.util.Values.iri;
+import static org.eclipse.rdf4j.model.util.Values.literal;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+public class ContextStatisticsTest extends AbstractCoreTest {
+
+	private static final IRI DCTERMS_SUBJECT = iri(NS.dcterms + "subject");
+
+	private static final IRI DCTERMS_TITLE = iri(NS.dcterms + "title");
+
+	private Context context;
+
+	private ContextStatisticsManager statisticsManager;
+
+	@BeforeEach
+	public void setUp() {
+		super.setUp();
+		rm.setCheckForAuthorization(false);
+		context = (Context) cm.createResource(null, GraphType.Context, null, null).getResource();
+		statisticsManager = rm.getStatisticsManager();
+		assertNotNull(statisticsManager);
+	}
+
+	private Entry createEntry(String... keywords) {
+		Entry entry = context.createResource(null, GraphType.None, null, null);
+		setKeywords(entry, keywords);
+		return entry;
+	}
+
+	private void setKeywords(Entry entry, String... keywords) {
+		IRI resource = iri(entry.getResourceURI().toString());
+		Model metadata = new LinkedHashModel();
+		metadata.add(resource, DCTERMS_TITLE, literal("Title"));
+		for (String keyword : keywords) {
+			metadata.add(resource, DCTERMS_SUBJECT, literal(keyword));
+		}
+		entry.getLocalMetadata().setGraph(metadata);
+	}
+
+	@Test
+	public void maintainedIncrementally() {
+		Entry e1 = createEntry("Apple", "pear");
+		ContextStatistics stats = statisticsManager.getStatistics(context);
+		assertEquals(1, stats.getEntryCount());
+		assertEquals(1, stats.getEntryCountWithKeyword());
+		assertEquals(2, stats.getPropertyUsage().get(DCTERMS_SUBJECT.stringValue()).getStatements());
+
+		createEntry("apple");
+		assertEquals(2, stats.getEntryCount());
+		assertEquals(2, stats.getKeywordUsage().get("apple").getEntries());
+		assertEquals(2, stats.getPropertyUsage().get(DCTERMS_TITLE.stringValue()).getEntries());
+
+		setKeywords(e1, "banana");
+		assertEquals(2, stats.getEntryCountWithKeyword());
+		assertEquals(1, stats.getKeywordUsage().get("apple").getEntries());
+		assertFalse(stats.getKeywordUsage().containsKey("pear"));
+		assertEquals(1, stats.getKeywordUsage().get("banana").getStatements());
+
+		context.remove(e1.getEntryURI());
+		assertEquals(1, stats.getEntryCount());
+		assertFalse(stats.getKeywordUsage().containsKey("banana"));
+	}
+
+	@Test
+	public void recomputedStatisticsEqualMaintainedStatistics() {
+		ContextStatistics stats = statisticsManager.getStatistics(context);
+		Entry e1 = createEntry("a", "b");
+		createEntry("b", "c");
+		setKeywords(e1, "c");
+
+		ContextStatistics recomputed = statisticsManager.recompute(context);
+		assertEquals(stats.getEntryCount(), recomputed.getEntryCount());
+		assertEquals(stats.getEntryCountWithKeyword(), recomputed.getEntryCountWithKeyword());
+		assertEquals(stats.getKeywordUsage().keySet(), recomputed.getKeywordUsage().keySet());
+		assertEquals(2, recomputed.getKeywordUsage().get("c").getEntries());
+	}
+
+	@Test
+	public void writeAndRead() throws IOException {
+		createEntry("a", "b");
+		ContextStatistics stats = statisticsManager.getStatistics(context);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		stats.write(new DataOutputStream(bytes));
+		ContextStatistics read = ContextStatistics.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		assertEquals(stats.getEntryCount(), read.getEntryCount());
+		assertEquals(stats.getComputed(), read.getComputed());
+		assertEquals(stats.getPropertyUsage().keySet(), read.getPropertyUsage().keySet());
+		assertEquals(stats.getKeywordUsage().keySet(), read.getKeywordUsage().keySet());
+	}
+
+	@Test
+	public void recomputedAfterUncleanShutdown(@TempDir Path dataFolder) throws IOException {
+		rm.getConfiguration().setProperty(Settings.DATA_FOLDER, dataFolder.toString());
+		Files.createDirectories(dataFolder.resolve(context.getEntry().getId()));
+		createEntry("a");
+
+		ContextStatisticsManager manager = new ContextStatisticsManager(rm);
+		assertEquals(1, manager.getStatistics(context).getEntryCount());
+		manager.shutdown();
+
+		// the modification is not persisted, as if EntryStore had been killed
+		manager = new ContextStatisticsManager(rm);
+		assertEquals(1, manager.getStatistics(context).getEntryCount());
+		Entry entry = createEntry("b");
+		manager.handleEvent(new RepositoryEventObject(entry, RepositoryEvent.EntryCreated));
+		assertEquals(2, manager.getStatistics(context).getEntryCount());
+
+		ContextStatisticsManager restarted = new ContextStatisticsManager(rm);
+		assertEquals(2, restarted.getStatistics(context).getEntryCount());
+		restarted.shutdown();
+		manager.shutdown();
+	}
+
+}
@@ -25,14 +25,19 @@ import org.eclipse.rdf4j.model.vocabulary.RDF;
 import org.entrystore.Context;
 import org.entrystore.Entry;
 import org.entrystore.EntryType;
+import org.entrystore.EntryUpdate;
 import org.entrystore.GraphType;
 import org.entrystore.ResourceType;
+import org.entrystore.repository.RepositoryEvent;
+import org.entrystore.repository.RepositoryEventObject;
 import org.entrystore.repository.RepositoryException;
+import org.entrystore.repository.RepositoryListener;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -121,6 +126,42 @@ public class EntryImplTest extends AbstractCoreTest {
 		assertSame(ResourceType.Unknown, refEntry.getResourceType());
 	}
 
+	@Test
+	public void update() {
+		AtomicInteger events = new AtomicInteger();
+		RepositoryListener listener = new RepositoryListener() {
+			@Override
+			public void repositoryUpdated(RepositoryEventObject eventObject) {
+				if (eventObject.getSource() instanceof Entry e && resourceEntry.getEntryURI().equals(e.getEntryURI())) {
+					events.incrementAndGet();
+				}
+			}
+		};
+		rm.registerListener(listener, RepositoryEvent.EntryUpdated);
+		try {
+			resourceEntry.update(new EntryUpdate().setFilename("data.csv").setFileSize(42).setMimetype("text/csv"));
+			assertEquals(1, events.get());
+			assertEquals("data.csv", resourceEntry.getFilename());
+			assertEquals(42, resourceEntry.getFileSize());
+			assertEquals("text/csv", resourceEntry.getMimetype());
+
+			// the graph type of local resources cannot be changed, nothing is applied
+			try {
+				resourceEntry.update(new EntryUpdate().setGraphType(GraphType.List).setMimetype("text/plain"));
+				fail("Successfully (and erroneously) changed the builtin type of a local resource!");
+			} catch (RepositoryException ignored) {
+			}
+			assertEquals("text/csv", resourceEntry.getMimetype());
+			assertEquals(1, events.get());
+
+			linkEntry.update(new EntryUpdate().setGraphType(GraphType.List).setResourceType(ResourceType.NamedResource));
+			assertSame(GraphType.List, linkEntry.getGraphType());
+			assertSame(ResourceType.NamedResource, linkEntry.getResourceType());
+		} finally {
+			rm.unregisterListener(listener, RepositoryEvent.EntryUpdated);
+		}
+	}
+
 	@Test
 	public void dates() {
 		assertNotNull(listEntry.getCreationDate());
@@ -95,6 +95,32 @@ public class ListImplTest extends AbstractCoreTest {
 
 	}
 
+	@Test
+	public void moveChildren() {
+		pm.setAuthenticatedUserURI(pm.getPrincipalEntry("Donald").getResourceURI());
+		Context duck = cm.getContext("duck");
+		Entry listEntry = duck.createResource(null, GraphType.List, null, null);
+		List list = (List) listEntry.getResource();
+		java.util.List<URI> children = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			Entry child = duck.createLink(null, URI.create("https://example.com/" + i), null);
+			list.addChild(child.getEntryURI());
+			children.add(child.getEntryURI());
+		}
+		// children are stored with sparse keys by default
+		assertEquals(1, ((ListImpl) list).getGraph().filter(null, OrderedChildren.getPredicate(5 * OrderedChildren.SPARSE_STEP), null).size());
+		assertTrue(((ListImpl) list).getGraph().filter(null, OrderedChildren.getPredicate(2), null).isEmpty());
+
+		list.moveChildBefore(children.get(4), children.get(0));
+		list.moveChildAfter(children.get(1), children.get(3));
+		list.removeChild(children.get(2));
+		java.util.List<URI> expected = java.util.List.of(children.get(4), children.get(0), children.get(3), children.get(1));
+		assertEquals(expected, list.getChildren());
+
+		// the persisted order matches the order in memory
+		assertEquals(expected, OrderedChildren.load(((ListImpl) list).getGraph(), false).asList());
+	}
+
 	@Test
 	public void moveEntryBetweenLists() throws IOException, QuotaException {
 		pm.setAuthenticatedUserURI(pm.getPrincipalEntry("Donald").getResourceURI());
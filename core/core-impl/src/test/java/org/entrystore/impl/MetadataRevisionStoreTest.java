@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.impl;
+
+import org.eclipse.rdf4j.model.BNode;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.eclipse.rdf4j.model.util.Models;
+import org.eclipse.rdf4j.model.vocabulary.DCTERMS;
+import org.eclipse.rdf4j.model.vocabulary.FOAF;
+import org.eclipse.rdf4j.model.vocabulary.OWL;
+import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.sail.SailRepository;
+import org.eclipse.rdf4j.sail.memory.MemoryStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.eclipse.rdf4j.model.util.Values.bnode;
+import static org.eclipse.rdf4j.model.util.Values.iri;
+import static org.eclipse.rdf4j.model.util.Values.literal;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetadataRevisionStoreTest {
+
+	private static final IRI entryURI = iri("http://example.com/store/1/entry/1");
+	private static final IRI mdURI = iri("http://example.com/store/1/metadata/1");
+	private static final IRI resURI = iri("http://example.com/store/1/resource/1");
+
+	private Repository repository;
+
+	private Repository provenanceRepository;
+
+	@BeforeEach
+	public void setUp() {
+		repository = new SailRepository(new MemoryStore());
+		repository.init();
+		provenanceRepository = new SailRepository(new MemoryStore());
+		provenanceRepository.init();
+	}
+
+	@AfterEach
+	public void tearDown() {
+		repository.shutDown();
+		provenanceRepository.shutDown();
+	}
+
+	private static List<Model> createRevisions(int count) {
+		List<Model> revisions = new ArrayList<>();
+		for (int i = 1; i <= count; i++) {
+			Model graph = new LinkedHashModel();
+			graph.add(resURI, DCTERMS.TITLE, literal("Title"));
+			graph.add(resURI, DCTERMS.DESCRIPTION, literal("Description " + i));
+			for (int j = 0; j < 20; j++) {
+				graph.add(resURI, DCTERMS.SUBJECT, literal("Keyword " + j));
+			}
+			BNode publisher = bnode();
+			graph.add(resURI, DCTERMS.PUBLISHER, publisher);
+			graph.add(publisher, FOAF.NAME, literal("Publisher " + (i / 2)));
+			revisions.add(graph);
+		}
+		return revisions;
+	}
+
+	@Test
+	public void storeAndReconstruct() {
+		List<Model> revisions = createRevisions(12);
+		int deltas = 0;
+		try (RepositoryConnection provRc = provenanceRepository.getConnection()) {
+			for (int i = 1; i < revisions.size(); i++) {
+				IRI revision = MetadataRevisionStore.getRevisionURI(mdURI, i);
+				IRI predecessor = i > 1 ? MetadataRevisionStore.getRevisionURI(mdURI, i - 1) : null;
+				final int index = i;
+				if (MetadataRevisionStore.store(provRc, revision, revisions.get(i - 1), predecessor, () -> revisions.get(index - 2), 5)) {
+					deltas++;
+				}
+			}
+			// every revision except number 1, 6 and 11 is stored as delta
+			assertEquals(8, deltas);
+
+			IRI latest = MetadataRevisionStore.getRevisionURI(mdURI, revisions.size());
+			for (int i = 1; i < revisions.size(); i++) {
+				IRI revision = MetadataRevisionStore.getRevisionURI(mdURI, i);
+				// the current metadata graph is not needed, it may have been modified without a new revision
+				Model reconstructed = MetadataRevisionStore.reconstruct(provRc, revision, latest, () -> {
+					throw new AssertionError("Revision " + revision + " depends on the current metadata");
+				});
+				assertTrue(Models.isomorphic(revisions.get(i - 1), reconstructed), "Revision " + i + " differs");
+			}
+		}
+	}
+
+	@Test
+	public void compactSuccessorDeltas() {
+		List<Model> revisions = createRevisions(7);
+		IRI latest = MetadataRevisionStore.getRevisionURI(mdURI, revisions.size());
+		try (RepositoryConnection rc = repository.getConnection();
+		     RepositoryConnection provRc = provenanceRepository.getConnection()) {
+			rc.add(revisions.get(revisions.size() - 1), mdURI);
+			rc.add(latest, OWL.SAMEAS, mdURI, entryURI);
+			// deltas relative to the successor, as written by earlier versions
+			for (int i = 1; i < revisions.size(); i++) {
+				IRI revision = MetadataRevisionStore.getRevisionURI(mdURI, i);
+				Model graph = revisions.get(i - 1);
+				Model successorGraph = revisions.get(i);
+				Model additions = new LinkedHashModel(graph);
+				additions.removeIf(st -> successorGraph.contains(st) && !(st.getSubject() instanceof BNode) && !(st.getObject() instanceof BNode));
+				Model deletions = new LinkedHashModel(successorGraph);
+				deletions.removeIf(st -> graph.contains(st) || st.getSubject() instanceof BNode || st.getObject() instanceof BNode);
+				provRc.add(additions, revision);
+				provRc.add(deletions, MetadataRevisionStore.getDeltaGraph(revision));
+				provRc.add(revision, RepositoryProperties.deltaOf, MetadataRevisionStore.getRevisionURI(mdURI, i + 1), MetadataRevisionStore.getDeltaGraph(revision));
+			}
+
+			MetadataRevisionStore.compact(repository, provenanceRepository, 10);
+
+			for (int i = 1; i < revisions.size(); i++) {
+				IRI revision = MetadataRevisionStore.getRevisionURI(mdURI, i);
+				Model reconstructed = MetadataRevisionStore.reconstruct(provRc, revision, latest, () -> {
+					throw new AssertionError("Revision " + revision + " depends on the current metadata");
+				});
+				assertTrue(Models.isomorphic(revisions.get(i - 1), reconstructed), "Revision " + i + " differs");
+			}
+		}
+	}
+
+	@Test
+	public void compactFullSnapshots() {
+		List<Model> revisions = createRevisions(7);
+		IRI latest = MetadataRevisionStore.getRevisionURI(mdURI, revisions.size());
+		try (RepositoryConnection rc = repository.getConnection();
+		     RepositoryConnection provRc = provenanceRepository.getConnection()) {
+			rc.add(revisions.get(revisions.size() - 1), mdURI);
+			rc.add(latest, OWL.SAMEAS, mdURI, entryURI);
+			// provenance data as stored before the introduction of deltas
+			for (int i = 1; i < revisions.size(); i++) {
+				provRc.add(revisions.get(i - 1), MetadataRevisionStore.getRevisionURI(mdURI, i));
+			}
+			long sizeBefore = provRc.size();
+
+			MetadataRevisionStore.compact(repository, provenanceRepository, 10);
+
+			assertTrue(provRc.size() < sizeBefore);
+			for (int i = 1; i < revisions.size(); i++) {
+				IRI revision = MetadataRevisionStore.getRevisionURI(mdURI, i);
+				// the chain of deltas starts with a snapshot of the first revision
+				assertEquals(i > 1, provRc.hasStatement(revision, RepositoryProperties.deltaOf, null, false, MetadataRevisionStore.getDeltaGraph(revision)));
+				Model reconstructed = MetadataRevisionStore.reconstruct(provRc, revision, latest, () -> revisions.get(revisions.size() - 1));
+				assertTrue(Models.isomorphic(revisions.get(i - 1), reconstructed), "Revision " + i + " differs");
+			}
+
+			MetadataRevisionStore.remove(provRc, MetadataRevisionStore.getRevisionURI(mdURI, 1));
+			assertFalse(provRc.hasStatement(null, null, null, false, MetadataRevisionStore.getRevisionURI(mdURI, 1)));
+		}
+	}
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.impl;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.query.QueryResults;
+import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.sail.SailRepository;
+import org.eclipse.rdf4j.sail.memory.MemoryStore;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.eclipse.rdf4j.model.util.Values.iri;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OrderedChildrenTest {
+
+	private static final IRI listURI = iri("http://example.com/store/1/resource/1");
+
+	private static List<URI> createChildren(int count) {
+		List<URI> result = new ArrayList<>();
+		for (int i = 1; i <= count; i++) {
+			result.add(URI.create("http://example.com/store/1/entry/" + i));
+		}
+		return result;
+	}
+
+	private static Model readGraph(RepositoryConnection rc) {
+		return QueryResults.asModel(rc.getStatements(null, null, null, false, listURI));
+	}
+
+	@Test
+	public void loadSequenceWithGaps() {
+		List<URI> children = createChildren(3);
+		Model graph = new LinkedHashModel();
+		graph.add(listURI, RDF.TYPE, RDF.SEQ);
+		graph.add(listURI, OrderedChildren.getPredicate(7), iri(children.get(2).toString()));
+		graph.add(listURI, OrderedChildren.getPredicate(1), iri(children.get(0).toString()));
+		graph.add(listURI, OrderedChildren.getPredicate(3), iri(children.get(1).toString()));
+
+		OrderedChildren loaded = OrderedChildren.load(graph, false);
+		assertEquals(children, loaded.asList());
+		assertTrue(loaded.contains(children.get(1)));
+		assertFalse(loaded.contains(URI.create("http://example.com/store/1/entry/4")));
+	}
+
+	@Test
+	public void sparseMoveRewritesOnlyMovedChild() {
+		OrderedChildren children = new OrderedChildren();
+		List<URI> uris = createChildren(100);
+		for (URI uri : uris) {
+			children.append(uri);
+		}
+
+		OrderedChildren.Changes changes = children.move(uris.get(99), 0);
+		assertEquals(1, changes.removed().size());
+		assertEquals(1, changes.added().size());
+		assertEquals(uris.get(99), children.asList().get(0));
+
+		changes = children.remove(uris.get(50));
+		assertEquals(1, changes.removed().size());
+		assertTrue(changes.added().isEmpty());
+		assertEquals(99, children.size());
+	}
+
+	@Test
+	public void migrateDenseSequence() {
+		List<URI> uris = createChildren(10);
+		Repository repository = new SailRepository(new MemoryStore());
+		repository.init();
+		try (RepositoryConnection rc = repository.getConnection()) {
+			// list as stored with rdf:_1..rdf:_n
+			OrderedChildren dense = new OrderedChildren(false);
+			dense.update(uris);
+			dense.writeAll(rc, listURI);
+
+			OrderedChildren sparse = OrderedChildren.load(readGraph(rc));
+			assertEquals(uris, sparse.asList());
+
+			// no gap between dense keys, the list is renumbered using sparse keys
+			List<URI> expected = new ArrayList<>(uris);
+			expected.remove(9);
+			expected.add(3, uris.get(9));
+			OrderedChildren.write(rc, listURI, sparse.move(uris.get(9), 3), false);
+			assertEquals(expected, OrderedChildren.load(readGraph(rc)).asList());
+			assertEquals(11, rc.size(listURI));
+
+			// subsequent moves only rewrite a single statement
+			expected.remove(uris.get(0));
+			expected.add(5, uris.get(0));
+			OrderedChildren.Changes changes = sparse.move(uris.get(0), 5);
+			assertEquals(1, changes.added().size());
+			OrderedChildren.write(rc, listURI, changes, false);
+			assertEquals(expected, OrderedChildren.load(readGraph(rc), false).asList());
+		} finally {
+			repository.shutDown();
+		}
+	}
+
+}
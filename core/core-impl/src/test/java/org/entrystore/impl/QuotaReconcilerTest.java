@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class QuotaReconcilerTest {
+
+	@TempDir
+	Path contextFolder;
+
+	@Test
+	public void measureCountsDataFilesOnly() throws IOException {
+		Files.write(contextFolder.resolve("1"), new byte[100]);
+		Files.write(contextFolder.resolve("2"), new byte[50]);
+		Files.write(contextFolder.resolve("2" + DataImpl.SHA_256_POSTFIX), new byte[64]);
+		Files.write(contextFolder.resolve(".2.tmp"), new byte[1000]);
+		Files.createDirectory(contextFolder.resolve("subfolder"));
+		assertEquals(150, QuotaReconciler.measure(contextFolder));
+	}
+
+	@Test
+	public void measureMissingFolder() throws IOException {
+		assertEquals(0, QuotaReconciler.measure(contextFolder.resolve("missing")));
+	}
+
+}
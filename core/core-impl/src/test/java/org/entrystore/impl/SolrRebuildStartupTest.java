@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.impl;
+
+import org.entrystore.config.Config;
+import org.entrystore.repository.config.PropertiesConfiguration;
+import org.entrystore.repository.config.Settings;
+import org.entrystore.repository.util.SolrSearchIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.BooleanSupplier;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the rebuild of the embedded Solr index in a second core when EntryStore is started.
+ */
+public class SolrRebuildStartupTest {
+
+	@TempDir
+	Path solrDir;
+
+	private RepositoryManagerImpl rm;
+
+	private void start() {
+		Config config = new PropertiesConfiguration("EntryStore Configuration");
+		config.setProperty(Settings.STORE_TYPE, "memory");
+		config.setProperty(Settings.BASE_URL, "http://localhost:8181/");
+		config.setProperty(Settings.REPOSITORY_REWRITE_BASEREFERENCE, false);
+		config.setProperty(Settings.SOLR, "on");
+		config.setProperty(Settings.SOLR_URL, solrDir.toString());
+		rm = new RepositoryManagerImpl("http://localhost:8181/", config);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		if (rm != null) {
+			rm.shutdown();
+		}
+	}
+
+	private static void await(BooleanSupplier condition, String message) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 60000;
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.currentTimeMillis() < deadline, message);
+			Thread.sleep(100);
+		}
+	}
+
+	private String read(String file) throws Exception {
+		return Files.readString(solrDir.resolve(file), UTF_8).trim();
+	}
+
+	@Test
+	public void interruptedRebuildIsRestarted() throws Exception {
+		start();
+		await(rm::isReady, "Initial indexing did not finish");
+		assertTrue(Files.isDirectory(solrDir.resolve("core1")));
+		rm.shutdown();
+		rm = null;
+
+		// an outdated index and an incomplete core next to it, as left by a rebuild that has been interrupted
+		Files.writeString(solrDir.resolve("SCHEMA_VERSION"), "0.1", UTF_8);
+		Path staleFile = Files.createDirectories(solrDir.resolve("core2")).resolve("stale");
+		Files.writeString(staleFile, "left over from an interrupted rebuild", UTF_8);
+
+		start();
+		SolrSearchIndex index = (SolrSearchIndex) rm.getIndex();
+		assertFalse(Files.exists(staleFile));
+		await(() -> !index.isRebuilding() && !Files.isDirectory(solrDir.resolve("core1")), "Rebuild did not finish");
+
+		assertEquals("core2", read("ACTIVE_CORE"));
+		assertEquals(RepositoryManagerImpl.getVersion(), read("SCHEMA_VERSION"));
+		assertTrue(index.ping());
+	}
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StartupTrackerTest {
+
+	@Test
+	public void readyWhenCriticalComponentsAreReady() {
+		StartupTracker tracker = new StartupTracker();
+		tracker.begin("repository", true);
+		tracker.begin("publicRepository", false);
+		assertFalse(tracker.isReady());
+
+		tracker.ready("repository");
+		assertTrue(tracker.isReady());
+
+		tracker.failed("publicRepository");
+		assertTrue(tracker.isReady());
+		assertEquals(StartupTracker.State.FAILED, tracker.getComponents().get("publicRepository").getState());
+	}
+
+	@Test
+	public void notReadyWhenCriticalComponentFails() {
+		StartupTracker tracker = new StartupTracker();
+		assertThrows(IllegalStateException.class, () -> tracker.track("solr", true, () -> {
+			throw new IllegalStateException("Solr is down");
+		}));
+		assertFalse(tracker.isReady());
+		assertEquals(StartupTracker.State.FAILED, tracker.getComponents().get("solr").getState());
+	}
+
+	@Test
+	public void componentsKeepOrderAndDuration() throws InterruptedException {
+		StartupTracker tracker = new StartupTracker();
+		tracker.track("repository", true, () -> {
+			try {
+				Thread.sleep(20);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		tracker.begin("solr", true);
+		assertEquals(List.of("repository", "solr"), List.copyOf(tracker.getComponents().keySet()));
+
+		long duration = tracker.getComponents().get("repository").getDuration();
+		assertTrue(duration >= 20);
+		Thread.sleep(5);
+		assertEquals(duration, tracker.getComponents().get("repository").getDuration());
+	}
+
+}
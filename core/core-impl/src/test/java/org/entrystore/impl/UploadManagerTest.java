@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.impl;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.entrystore.Context;
+import org.entrystore.Entry;
+import org.entrystore.GraphType;
+import org.entrystore.PrincipalManager;
+import org.entrystore.Quota;
+import org.entrystore.QuotaException;
+import org.entrystore.config.Config;
+import org.entrystore.repository.config.PropertiesConfiguration;
+import org.entrystore.repository.config.Settings;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UploadManagerTest {
+
+	@TempDir
+	Path dataFolder;
+
+	private RepositoryManagerImpl rm;
+
+	private Entry entry;
+
+	@BeforeEach
+	public void setUp() {
+		Config config = new PropertiesConfiguration("EntryStore Configuration");
+		config.setProperty(Settings.STORE_TYPE, "memory");
+		config.setProperty(Settings.BASE_URL, "http://localhost:8181/");
+		config.setProperty(Settings.REPOSITORY_REWRITE_BASEREFERENCE, false);
+		config.setProperty(Settings.SOLR, "off");
+		config.setProperty(Settings.DATA_FOLDER, dataFolder.toString());
+		config.setProperty(Settings.DATA_QUOTA, "on");
+		rm = new RepositoryManagerImpl("http://localhost:8181/", config);
+		rm.setCheckForAuthorization(false);
+
+		Context context = (Context) rm.getContextManager().createResource(null, GraphType.Context, null, null).getResource();
+		entry = context.createResource(null, GraphType.None, null, null);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		rm.shutdown();
+	}
+
+	@Test
+	public void uploadInChunks() throws Exception {
+		UploadManager uploadManager = rm.getUploadManager();
+		UploadManager.Upload upload = uploadManager.create(entry);
+		assertEquals(6, uploadManager.append(upload, entry, 0, stream("Hello ")));
+		assertThrows(IllegalStateException.class, () -> uploadManager.append(upload, entry, 0, stream("Hello ")));
+		assertEquals(11, uploadManager.append(upload, entry, 6, stream("world")));
+
+		String digest = uploadManager.commit(upload, entry, DigestUtils.sha256Hex("Hello world"));
+		assertEquals(DigestUtils.sha256Hex("Hello world"), digest);
+		try (InputStream in = new DataImpl(entry).getData()) {
+			assertArrayEquals("Hello world".getBytes(UTF_8), in.readAllBytes());
+		}
+		assertNull(uploadManager.get(entry, upload.getId()));
+		assertFalse(Files.exists(dataFolder.resolve(UploadManager.FOLDER_NAME).resolve(upload.getId())));
+	}
+
+	@Test
+	public void commitWithWrongDigestKeepsUpload() throws Exception {
+		UploadManager uploadManager = rm.getUploadManager();
+		UploadManager.Upload upload = uploadManager.create(entry);
+		uploadManager.append(upload, entry, 0, stream("Hello"));
+		assertThrows(IllegalArgumentException.class, () -> uploadManager.commit(upload, entry, DigestUtils.sha256Hex("Hallo")));
+		assertEquals(DigestUtils.sha256Hex("Hello"), uploadManager.commit(upload, entry, null));
+	}
+
+	@Test
+	public void commitExceedingQuotaKeepsUpload() throws Exception {
+		PrincipalManager pm = rm.getPrincipalManager();
+		pm.setAuthenticatedUserURI(pm.getAdminUser().getURI());
+		Context context = entry.getContext();
+		long deadline = System.currentTimeMillis() + 30000;
+		while (context.getQuotaFillLevel() == Quota.VALUE_UNKNOWN) {
+			assertTrue(System.currentTimeMillis() < deadline, "Quota fill level has not been counted");
+			Thread.sleep(100);
+		}
+
+		UploadManager uploadManager = rm.getUploadManager();
+		UploadManager.Upload upload = uploadManager.create(entry);
+		uploadManager.append(upload, entry, 0, stream("Hello world"));
+		context.setQuota(5);
+		assertThrows(QuotaException.class, () -> uploadManager.commit(upload, entry, null));
+		assertEquals(0, context.getQuotaFillLevel());
+		assertNotNull(uploadManager.get(entry, upload.getId()));
+
+		// the upload can be committed once there is enough space
+		context.setQuota(100);
+		assertEquals(DigestUtils.sha256Hex("Hello world"), uploadManager.commit(upload, entry, null));
+		assertEquals(11, context.getQuotaFillLevel());
+	}
+
+	@Test
+	public void resumeAfterRestart() throws Exception {
+		UploadManager.Upload upload = rm.getUploadManager().create(entry);
+		rm.getUploadManager().append(upload, entry, 0, stream("Hello "));
+
+		UploadManager restarted = new UploadManager(rm, dataFolder, Duration.ofDays(1));
+		try {
+			UploadManager.Upload restored = restarted.get(entry, upload.getId());
+			assertNotNull(restored);
+			assertEquals(6, restored.getSize());
+			restarted.append(restored, entry, 6, stream("world"));
+			assertEquals(DigestUtils.sha256Hex("Hello world"), restarted.commit(restored, entry, null));
+		} finally {
+			restarted.shutdown();
+		}
+	}
+
+	@Test
+	public void expiredUploadsAreRemoved() throws Exception {
+		UploadManager uploadManager = new UploadManager(rm, dataFolder, Duration.ZERO);
+		try {
+			UploadManager.Upload upload = uploadManager.create(entry);
+			uploadManager.append(upload, entry, 0, stream("Hello"));
+			Thread.sleep(10);
+			uploadManager.removeExpired();
+			assertNull(uploadManager.get(entry, upload.getId()));
+		} finally {
+			uploadManager.shutdown();
+		}
+	}
+
+	private static InputStream stream(String s) {
+		return new ByteArrayInputStream(s.getBytes(UTF_8));
+	}
+
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.repository.backup;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.util.Models;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+import org.eclipse.rdf4j.query.QueryResults;
+import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.sail.SailRepository;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.Rio;
+import org.eclipse.rdf4j.sail.memory.MemoryStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.eclipse.rdf4j.model.util.Values.iri;
+import static org.eclipse.rdf4j.model.util.Values.literal;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BackupRestoreTest {
+
+	private static final IRI g1 = iri("http://example.com/g1");
+	private static final IRI g2 = iri("http://example.com/g2");
+	private static final IRI g3 = iri("http://example.com/g3");
+	private static final IRI s = iri("http://example.com/s");
+
+	@TempDir
+	File tempDir;
+
+	private ChangeJournal journal;
+
+	private Repository repository;
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		journal = new ChangeJournal(new File(tempDir, BackupJob.JOURNAL_FOLDER), BackupJob.MAIN_REPOSITORY);
+		repository = new SailRepository(new JournalingSail(new MemoryStore(), journal));
+		repository.init();
+	}
+
+	@AfterEach
+	public void tearDown() {
+		repository.shutDown();
+	}
+
+	@Test
+	public void journalRecordsModifiedGraphs() throws IOException {
+		try (RepositoryConnection rc = repository.getConnection()) {
+			rc.add(s, RDFS.LABEL, literal("a"), g1);
+			rc.add(s, RDFS.LABEL, literal("b"), g2);
+			rc.begin();
+			rc.add(s, RDFS.LABEL, literal("c"), g3);
+			rc.rollback();
+		}
+
+		List<File> segments = journal.rotate();
+		assertEquals(1, segments.size());
+		assertEquals(Set.of(g1.stringValue(), g2.stringValue()), ChangeJournal.readGraphs(segments));
+
+		journal.discard(segments);
+		try (RepositoryConnection rc = repository.getConnection()) {
+			rc.clear(g2);
+		}
+		segments = journal.rotate();
+		assertEquals(Set.of(g2.stringValue()), ChangeJournal.readGraphs(segments));
+	}
+
+	@Test
+	public void uncleanShutdownClearsBase() throws IOException {
+		File journalFolder = new File(tempDir, BackupJob.JOURNAL_FOLDER);
+		try (RepositoryConnection rc = repository.getConnection()) {
+			rc.add(s, RDFS.LABEL, literal("a"), g1);
+		}
+		ChangeJournal.writeBase(journalFolder, "20240101000000");
+
+		// the journal has not been closed, as if the process had been killed
+		new ChangeJournal(journalFolder, BackupJob.MAIN_REPOSITORY);
+		assertNull(ChangeJournal.readBase(journalFolder));
+	}
+
+	@Test
+	public void cleanShutdownKeepsBase() throws IOException {
+		File journalFolder = new File(tempDir, BackupJob.JOURNAL_FOLDER);
+		try (RepositoryConnection rc = repository.getConnection()) {
+			rc.add(s, RDFS.LABEL, literal("a"), g1);
+		}
+		ChangeJournal.writeBase(journalFolder, "20240101000000");
+		journal.close();
+
+		ChangeJournal reopened = new ChangeJournal(journalFolder, BackupJob.MAIN_REPOSITORY);
+		assertEquals("20240101000000", ChangeJournal.readBase(journalFolder));
+		assertEquals(Set.of(g1.stringValue()), ChangeJournal.readGraphs(reopened.rotate()));
+	}
+
+	@Test
+	public void restoreDeltaChain() throws IOException {
+		try (RepositoryConnection rc = repository.getConnection()) {
+			rc.add(s, RDFS.LABEL, literal("a"), g1);
+			rc.add(s, RDFS.LABEL, literal("b"), g2);
+		}
+
+		// full backup
+		File full = new File(tempDir, "20240101000000");
+		assertTrue(full.mkdirs());
+		export(full, null);
+		Files.writeString(new File(full, BackupJob.BACKUP_TYPE_FILE).toPath(), BackupJob.TYPE_FULL);
+		journal.discard(journal.rotate());
+
+		// modifications after the full backup
+		try (RepositoryConnection rc = repository.getConnection()) {
+			rc.clear(g1);
+			rc.remove(s, RDFS.LABEL, literal("b"), g2);
+			rc.add(s, RDFS.LABEL, literal("b2"), g2);
+			rc.add(s, RDFS.LABEL, literal("c"), g3);
+		}
+
+		// incremental backup
+		File delta = new File(tempDir, "20240102000000");
+		assertTrue(delta.mkdirs());
+		List<File> segments = journal.rotate();
+		Set<String> graphs = ChangeJournal.readGraphs(segments);
+		Files.write(new File(delta, BackupJob.MAIN_REPOSITORY + BackupJob.GRAPHS_SUFFIX).toPath(), graphs, UTF_8);
+		List<Resource> contexts = new ArrayList<>();
+		graphs.forEach(g -> contexts.add(iri(g)));
+		export(delta, contexts.toArray(new Resource[0]));
+		Files.writeString(new File(delta, BackupJob.BACKUP_TYPE_FILE).toPath(), BackupJob.TYPE_INCREMENTAL);
+		Files.writeString(new File(delta, BackupJob.BACKUP_BASE_FILE).toPath(), full.getName());
+
+		assertEquals(List.of(full, delta), BackupRestore.resolveChain(delta));
+
+		Repository restored = new SailRepository(new MemoryStore());
+		restored.init();
+		try {
+			BackupRestore.restore(delta, restored, null, null);
+			Model expected;
+			Model actual;
+			try (RepositoryConnection rc = repository.getConnection()) {
+				expected = QueryResults.asModel(rc.getStatements(null, null, null, false));
+			}
+			try (RepositoryConnection rc = restored.getConnection()) {
+				actual = QueryResults.asModel(rc.getStatements(null, null, null, false));
+			}
+			assertEquals(2, actual.size());
+			assertTrue(Models.isomorphic(expected, actual));
+		} finally {
+			restored.shutDown();
+		}
+	}
+
+	private void export(File folder, Resource[] contexts) throws IOException {
+		try (RepositoryConnection rc = repository.getConnection();
+		     OutputStream out = Files.newOutputStream(new File(folder, BackupJob.MAIN_REPOSITORY + ".trig").toPath())) {
+			if (contexts == null) {
+				rc.export(Rio.createWriter(RDFFormat.TRIG, out));
+			} else {
+				rc.export(Rio.createWriter(RDFFormat.TRIG, out), contexts);
+			}
+		}
+	}
+
+}
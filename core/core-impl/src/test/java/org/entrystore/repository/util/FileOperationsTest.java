@@ -31,6 +31,7 @@ import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.Scanner;
 import java.util.UUID;
 
@@ -255,4 +256,26 @@ public class FileOperationsTest {
 		assertThrows(IllegalArgumentException.class, () -> FileOperations.unzipFile(tempFileSource, tempFileSource));
 	}
 
+	@Test
+	public void linkPath_ok() throws IOException {
+		File source = FileOperations.createTempDirectory("temp", "source");
+		File destination = FileOperations.createTempDirectory("temp", "destination");
+		File file = new File(source, "sub/testFile.txt");
+		assertTrue(file.getParentFile().mkdirs());
+		FileOperations.writeStringToFile(file, content);
+
+		assertEquals(1, FileOperations.linkPath(source.toPath(), destination.toPath()));
+		File linked = new File(destination, "sub/testFile.txt");
+		assertEquals(content, readFileToString(linked));
+
+		// replacing the source file must not affect the linked file
+		File replacement = new File(source, "sub/replacement.txt");
+		FileOperations.writeStringToFile(replacement, "changed");
+		Files.move(replacement.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		assertEquals(content, readFileToString(linked));
+
+		FileOperations.deleteDirectory(source);
+		FileOperations.deleteDirectory(destination);
+	}
+
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.repository.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ParallelGzipOutputStreamTest {
+
+	private static byte[] gunzip(byte[] compressed) throws IOException {
+		try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+			return in.readAllBytes();
+		}
+	}
+
+	@Test
+	public void roundTrip_multipleBlocks() throws IOException {
+		byte[] data = new byte[100_000];
+		Random random = new Random(42);
+		for (int i = 0; i < data.length; i++) {
+			// compressible, but not trivially
+			data[i] = (byte) ('a' + random.nextInt(8));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			try (OutputStream out = new ParallelGzipOutputStream(bos, 1000, executor, 2)) {
+				out.write(data, 0, 12_345);
+				out.write(data[12_345]);
+				out.flush();
+				out.write(data, 12_346, data.length - 12_346);
+			}
+			assertArrayEquals(data, gunzip(bos.toByteArray()));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void roundTrip_empty() throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		new ParallelGzipOutputStream(bos).close();
+		assertEquals(0, gunzip(bos.toByteArray()).length);
+	}
+
+	@Test
+	public void write_afterClose() throws IOException {
+		OutputStream out = new ParallelGzipOutputStream(new ByteArrayOutputStream());
+		out.close();
+		assertThrows(IOException.class, () -> out.write(1));
+	}
+
+}
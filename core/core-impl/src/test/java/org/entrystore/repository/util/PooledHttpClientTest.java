@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.repository.util;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.util.EntityUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PooledHttpClientTest {
+
+	private HttpServer server;
+
+	private PooledHttpClient client;
+
+	private String baseURL;
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		// responds with the transfer encoding and the size of the request body
+		server.createContext("/", exchange -> {
+			long size;
+			try (InputStream in = exchange.getRequestBody()) {
+				size = in.transferTo(OutputStream.nullOutputStream());
+			}
+			String encoding = exchange.getRequestHeaders().getFirst("Transfer-Encoding");
+			byte[] response = (encoding + " " + size).getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(200, response.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(response);
+			}
+		});
+		server.start();
+		baseURL = "http://localhost:" + server.getAddress().getPort() + "/";
+		client = new PooledHttpClient(Duration.ofSeconds(5), Duration.ofSeconds(5), 10, 2, Duration.ofSeconds(30));
+	}
+
+	@AfterEach
+	public void tearDown() {
+		client.close();
+		server.stop(0);
+	}
+
+	@Test
+	public void reusesConnections() throws IOException {
+		for (int i = 0; i < 10; i++) {
+			try (CloseableHttpResponse response = client.execute(new HttpGet(baseURL))) {
+				assertEquals(200, response.getStatusLine().getStatusCode());
+				EntityUtils.consume(response.getEntity());
+			}
+		}
+		assertEquals(10, client.getRequestCount());
+		assertEquals(1, client.getConnectionCount());
+		assertEquals(0.9, client.getConnectionReuse(), 0.001);
+		assertEquals(1, client.getPoolStatistics().getAvailable());
+		assertTrue(client.getMaxLatency() >= client.getAverageLatency());
+	}
+
+	@Test
+	public void streamsRequestBody() throws IOException {
+		byte[] data = new byte[1_000_000];
+		HttpPost post = new HttpPost(baseURL);
+		post.setEntity(PooledHttpClient.createStreamingEntity(new ByteArrayInputStream(data), "text/csv"));
+		try (CloseableHttpResponse response = client.execute(post)) {
+			assertEquals("chunked " + data.length, EntityUtils.toString(response.getEntity()));
+		}
+	}
+
+}
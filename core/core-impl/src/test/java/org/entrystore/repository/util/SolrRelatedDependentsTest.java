@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.repository.util;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.embedded.EmbeddedSolrServer;
+import org.apache.solr.client.solrj.request.CoreAdminRequest;
+import org.apache.solr.client.solrj.util.ClientUtils;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.core.NodeConfig;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.entrystore.Context;
+import org.entrystore.Entry;
+import org.entrystore.GraphType;
+import org.entrystore.impl.AbstractCoreTest;
+import org.entrystore.impl.converters.ConverterUtil;
+import org.entrystore.repository.config.Settings;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.eclipse.rdf4j.model.util.Values.iri;
+import static org.eclipse.rdf4j.model.util.Values.literal;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that documents which embed the metadata of related entries are updated when a
+ * related entry changes, also after the index has been restarted.
+ */
+public class SolrRelatedDependentsTest extends AbstractCoreTest {
+
+	private static final IRI TITLE = iri(NS.dcterms, "title");
+
+	private static final IRI SUBJECT = iri(NS.dcterms, "subject");
+
+	@TempDir
+	Path solrDir;
+
+	private EmbeddedSolrServer core;
+
+	private SolrSearchIndex solrIndex;
+
+	private Context context;
+
+	@BeforeEach
+	public void setUp() {
+		setUpWithoutSuite();
+		rm.setCheckForAuthorization(false);
+		rm.getConfiguration().setProperty(Settings.SOLR_RELATED, "on");
+		rm.getConfiguration().setProperty(Settings.SOLR_RELATED_PROPERTIES, SUBJECT.stringValue());
+		context = (Context) cm.createResource(null, GraphType.Context, null, null).getResource();
+		try {
+			Path conf = Files.createDirectories(solrDir.resolve("core1").resolve("conf"));
+			copyResource("solrconfig.xml_default", conf.resolve("solrconfig.xml"));
+			copyResource("schema.xml_default", conf.resolve("schema.xml"));
+			System.setProperty("solr.install.dir", solrDir.toRealPath().toString());
+			NodeConfig config = new NodeConfig.NodeConfigBuilder("embeddedSolrServerNode", solrDir)
+					.setConfigSetBaseDirectory(solrDir.toString())
+					.build();
+			core = new EmbeddedSolrServer(config, "core1");
+			CoreAdminRequest.Create createRequest = new CoreAdminRequest.Create();
+			createRequest.setCoreName("core1");
+			createRequest.setConfigSet("");
+			createRequest.process(core);
+		} catch (IOException | SolrServerException e) {
+			throw new RuntimeException(e);
+		}
+		solrIndex = new SolrSearchIndex(rm, core);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		solrIndex.shutdown();
+		try {
+			core.close();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		super.tearDown();
+	}
+
+	private static void copyResource(String name, Path dest) throws IOException {
+		try (InputStream in = ConverterUtil.findResource(name).openStream()) {
+			Files.copy(in, dest);
+		}
+	}
+
+	private void setMetadata(Entry entry, IRI predicate, Value value) {
+		Model graph = new LinkedHashModel();
+		graph.add(iri(entry.getResourceURI().toString()), predicate, value);
+		entry.getLocalMetadata().setGraph(graph);
+	}
+
+	private void indexAndCommit(Entry entry) throws Exception {
+		solrIndex.postEntry(entry);
+		long deadline = System.currentTimeMillis() + 30000;
+		while (solrIndex.getPostQueueSize() > 0) {
+			assertTrue(System.currentTimeMillis() < deadline, "Solr queue has not been processed");
+			Thread.sleep(100);
+		}
+		// the submitter may still be sending the last batch
+		Thread.sleep(1000);
+		core.commit(true, true);
+	}
+
+	private SolrDocumentList findByRelatedTitle(String title) throws Exception {
+		String field = "related.metadata.predicate.literal_s." + Hashing.hash(TITLE.stringValue(), HashType.MD5).substring(0, 8);
+		SolrQuery query = new SolrQuery(field + ":" + ClientUtils.escapeQueryChars(title));
+		query.setFields("uri");
+		return core.query(query).getResults();
+	}
+
+	@Test
+	public void dependentsAreUpdatedAfterRestart() throws Exception {
+		Entry related = context.createLink(null, URI.create("http://example.com/related"), null);
+		setMetadata(related, TITLE, literal("Old title"));
+		Entry dependent = context.createLink(null, URI.create("http://example.com/dependent"), null);
+		setMetadata(dependent, SUBJECT, iri(related.getResourceURI().toString()));
+		indexAndCommit(related);
+		indexAndCommit(dependent);
+		assertEquals(1, findByRelatedTitle("Old title").getNumFound());
+
+		// a new index instance does not know about dependencies other than from Solr
+		solrIndex.shutdown();
+		solrIndex = new SolrSearchIndex(rm, core);
+
+		setMetadata(related, TITLE, literal("New title"));
+		indexAndCommit(related);
+		SolrDocumentList docs = findByRelatedTitle("New title");
+		assertEquals(1, docs.getNumFound());
+		assertEquals(dependent.getEntryURI().toString(), docs.getFirst().getFieldValue("uri"));
+		assertEquals(0, findByRelatedTitle("Old title").getNumFound());
+	}
+
+}
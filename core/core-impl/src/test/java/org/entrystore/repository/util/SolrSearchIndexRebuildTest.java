@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.repository.util;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.embedded.EmbeddedSolrServer;
+import org.apache.solr.client.solrj.request.CoreAdminRequest;
+import org.apache.solr.client.solrj.request.UpdateRequest;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.core.NodeConfig;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.entrystore.Context;
+import org.entrystore.Entry;
+import org.entrystore.GraphType;
+import org.entrystore.impl.AbstractCoreTest;
+import org.entrystore.impl.converters.ConverterUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.eclipse.rdf4j.model.util.Values.iri;
+import static org.eclipse.rdf4j.model.util.Values.literal;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SolrSearchIndexRebuildTest extends AbstractCoreTest {
+
+	private static final IRI TITLE = iri(NS.dcterms, "title");
+
+	@TempDir
+	Path solrDir;
+
+	private EmbeddedSolrServer currentCore;
+
+	private EmbeddedSolrServer rebuiltCore;
+
+	private SolrSearchIndex solrIndex;
+
+	private Context context;
+
+	/**
+	 * Delegates to the core that is rebuilt and blocks the rebuild thread when it sends its
+	 * first documents, i.e. after it has read the entries, until it is released.
+	 */
+	private static class PausingSolrClient extends SolrClient {
+
+		private final SolrClient delegate;
+
+		private final CountDownLatch paused = new CountDownLatch(1);
+
+		private final CountDownLatch released = new CountDownLatch(1);
+
+		private final AtomicBoolean pausedOnce = new AtomicBoolean();
+
+		PausingSolrClient(SolrClient delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public NamedList<Object> request(SolrRequest<?> request, String collection) throws SolrServerException, IOException {
+			if ("solr-rebuild".equals(Thread.currentThread().getName()) && request instanceof UpdateRequest update &&
+					update.getDocuments() != null && pausedOnce.compareAndSet(false, true)) {
+				paused.countDown();
+				try {
+					released.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException(e);
+				}
+			}
+			return delegate.request(request, collection);
+		}
+
+		@Override
+		public void close() {
+		}
+
+	}
+
+	@BeforeEach
+	public void setUp() {
+		// without the test suite all entries fit into one batch, so they are all read before the rebuild sends them
+		setUpWithoutSuite();
+		rm.setCheckForAuthorization(false);
+		context = (Context) cm.createResource(null, GraphType.Context, null, null).getResource();
+		try {
+			for (String core : new String[]{"core1", "core2"}) {
+				Path conf = Files.createDirectories(solrDir.resolve(core).resolve("conf"));
+				copyResource("solrconfig.xml_default", conf.resolve("solrconfig.xml"));
+				copyResource("schema.xml_default", conf.resolve("schema.xml"));
+			}
+			System.setProperty("solr.install.dir", solrDir.toRealPath().toString());
+			NodeConfig config = new NodeConfig.NodeConfigBuilder("embeddedSolrServerNode", solrDir)
+					.setConfigSetBaseDirectory(solrDir.toString())
+					.build();
+			currentCore = new EmbeddedSolrServer(config, "core1");
+			createCore("core1");
+			createCore("core2");
+			rebuiltCore = new EmbeddedSolrServer(currentCore.getCoreContainer(), "core2");
+		} catch (IOException | SolrServerException e) {
+			throw new RuntimeException(e);
+		}
+		solrIndex = new SolrSearchIndex(rm, currentCore);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		solrIndex.shutdown();
+		try {
+			currentCore.close();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		super.tearDown();
+	}
+
+	private static void copyResource(String name, Path dest) throws IOException {
+		try (InputStream in = ConverterUtil.findResource(name).openStream()) {
+			Files.copy(in, dest);
+		}
+	}
+
+	private void createCore(String name) throws IOException, SolrServerException {
+		CoreAdminRequest.Create createRequest = new CoreAdminRequest.Create();
+		createRequest.setCoreName(name);
+		createRequest.setConfigSet("");
+		createRequest.process(currentCore);
+	}
+
+	private Entry createEntry(String title) {
+		Entry entry = context.createLink(null, URI.create("http://example.com/" + title.replace(' ', '-')), null);
+		setTitle(entry, title);
+		return entry;
+	}
+
+	private void setTitle(Entry entry, String title) {
+		Model graph = new LinkedHashModel();
+		graph.add(iri(entry.getResourceURI().toString()), TITLE, literal(title));
+		entry.getLocalMetadata().setGraph(graph);
+	}
+
+	private void awaitEmptyQueues() throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 30000;
+		while (solrIndex.getPostQueueSize() > 0 || solrIndex.getDeleteQueueSize() > 0) {
+			assertTrue(System.currentTimeMillis() < deadline, "Solr queues have not been processed");
+			Thread.sleep(100);
+		}
+		// the submitter may still be sending the last batch
+		Thread.sleep(1000);
+	}
+
+	@Test
+	public void changesDuringRebuildAreInRebuiltIndex() throws Exception {
+		Entry updated = createEntry("Original title");
+		Entry deleted = createEntry("Deleted entry");
+		Entry unchanged = createEntry("Unchanged entry");
+
+		PausingSolrClient target = new PausingSolrClient(rebuiltCore);
+		AtomicReference<SolrClient> replaced = new AtomicReference<>();
+		CountDownLatch swapped = new CountDownLatch(1);
+		solrIndex.rebuild(target, previous -> {
+			replaced.set(previous);
+			swapped.countDown();
+		});
+		assertTrue(solrIndex.isRebuilding());
+
+		// the rebuild has read all entries but not sent them to the new core yet
+		assertTrue(target.paused.await(60, TimeUnit.SECONDS));
+		setTitle(updated, "Changed during rebuild");
+		solrIndex.postEntry(updated);
+		context.remove(deleted.getEntryURI());
+		solrIndex.removeEntry(deleted);
+		awaitEmptyQueues();
+		target.released.countDown();
+
+		assertTrue(swapped.await(60, TimeUnit.SECONDS));
+		assertFalse(solrIndex.isRebuilding());
+		assertSame(currentCore, replaced.get());
+
+		// queries are now answered by the rebuilt core
+		SolrDocument updatedDoc = solrIndex.fetchDocument(updated.getEntryURI().toString());
+		assertNotNull(updatedDoc);
+		assertTrue(updatedDoc.getFieldValues("title").contains("Changed during rebuild"));
+		assertFalse(updatedDoc.getFieldValues("title").contains("Original title"));
+		assertNull(solrIndex.fetchDocument(deleted.getEntryURI().toString()));
+		assertNotNull(solrIndex.fetchDocument(unchanged.getEntryURI().toString()));
+	}
+
+	@Test
+	public void updatesAfterRebuildGoToRebuiltIndex() throws Exception {
+		Entry entry = createEntry("Before rebuild");
+		CountDownLatch swapped = new CountDownLatch(1);
+		solrIndex.rebuild(rebuiltCore, previous -> swapped.countDown());
+		assertTrue(swapped.await(60, TimeUnit.SECONDS));
+
+		setTitle(entry, "After rebuild");
+		solrIndex.postEntry(entry);
+		awaitEmptyQueues();
+		rebuiltCore.commit(true, true);
+
+		SolrDocument doc = solrIndex.fetchDocument(entry.getEntryURI().toString());
+		assertNotNull(doc);
+		assertTrue(doc.getFieldValues("title").contains("After rebuild"));
+	}
+
+	@Test
+	public void onlyOneRebuildAtATime() throws Exception {
+		createEntry("Some entry");
+		PausingSolrClient target = new PausingSolrClient(rebuiltCore);
+		CountDownLatch swapped = new CountDownLatch(1);
+		solrIndex.rebuild(target, previous -> swapped.countDown());
+		try {
+			assertTrue(target.paused.await(60, TimeUnit.SECONDS));
+			assertThrows(IllegalStateException.class, () -> solrIndex.rebuild(rebuiltCore, previous -> {}));
+		} finally {
+			target.released.countDown();
+		}
+		assertTrue(swapped.await(60, TimeUnit.SECONDS));
+	}
+
+}
@@ -0,0 +1,368 @@
+package org.entrystore;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.io.FileUtils;
+import org.entrystore.config.Config;
+import org.entrystore.generator.ObjectGenerator;
+import org.entrystore.impl.RepositoryManagerImpl;
+import org.entrystore.mapper.ObjectMapper;
+import org.entrystore.repository.config.PropertiesConfiguration;
+import org.entrystore.repository.config.Settings;
+import org.entrystore.repository.util.SolrSearchIndex;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Measures how EntryStore scales with concurrent writers and readers. For every number
+ * of writers a fresh repository is created and seeded, then the writers insert generated
+ * persons while the readers load entries and their metadata, spread over one or many
+ * contexts. Every step is recorded with Java Flight Recorder to show which locks the
+ * threads are waiting for.
+ *
+ * <p>The output directory contains the scaling curve (scaling.csv), the aggregated lock
+ * contention of every step (contention.csv) and the raw recordings (*.jfr).</p>
+ *
+ * <pre>
+ * java -cp entrystore-benchmark-entrystore.jar org.entrystore.ConcurrentBenchmark \
+ *   -s native -w 1,2,4,8,16 -r 4 -x 4 -a true -d 30 -o results
+ * </pre>
+ */
+public class ConcurrentBenchmark {
+
+	/**
+	 * The settings of a benchmark run that are the same for all steps.
+	 */
+	private record Scenario(String store, int readers, int contexts, boolean acl, boolean solr, int seed,
+							Duration warmup, Duration duration, Duration jfrThreshold, boolean jfr, Path output) {
+	}
+
+	/**
+	 * Latencies recorded by a single thread, not thread-safe.
+	 */
+	private static class Latencies {
+
+		private long[] values = new long[1024];
+
+		private int count;
+
+		void add(long nanos) {
+			if (count == values.length) {
+				values = Arrays.copyOf(values, count * 2);
+			}
+			values[count++] = nanos;
+		}
+
+		static long[] merge(List<Latencies> latencies) {
+			long[] merged = new long[latencies.stream().mapToInt(l -> l.count).sum()];
+			int offset = 0;
+			for (Latencies l : latencies) {
+				System.arraycopy(l.values, 0, merged, offset, l.count);
+				offset += l.count;
+			}
+			Arrays.sort(merged);
+			return merged;
+		}
+
+		static double percentileMillis(long[] sorted, double percentile) {
+			if (sorted.length == 0) {
+				return 0;
+			}
+			int rank = (int) Math.ceil(percentile * sorted.length);
+			return sorted[Math.max(0, rank - 1)] / 1e6;
+		}
+
+	}
+
+	private static Config createConfiguration(Scenario scenario, Path directory) throws IOException {
+		Config config = new PropertiesConfiguration("EntryStore Configuration");
+		config.setProperty(Settings.STORE_TYPE, scenario.store());
+		if (!BenchmarkCommons.MEMORY.equals(scenario.store())) {
+			config.addProperty(Settings.STORE_PATH, Files.createDirectories(directory.resolve("store")).toUri().toString());
+		}
+		if (BenchmarkCommons.NATIVE.equals(scenario.store())) {
+			config.addProperty(Settings.STORE_INDEXES, BenchmarkCommons.INDEXES);
+		}
+		config.setProperty(Settings.BASE_URL, BenchmarkCommons.BASE_URL);
+		config.setProperty(Settings.REPOSITORY_REWRITE_BASEREFERENCE, false);
+		if (scenario.solr()) {
+			config.setProperty(Settings.SOLR, "on");
+			config.setProperty(Settings.SOLR_URL, Files.createDirectories(directory.resolve("solr")).toString());
+			config.setProperty(Settings.SOLR_REINDEX_ON_STARTUP, "off");
+		} else {
+			config.setProperty(Settings.SOLR, "off");
+		}
+		return config;
+	}
+
+	/**
+	 * Creates the contexts and, if ACL is on, a user who administers them.
+	 *
+	 * @return The URI of the user that the benchmark threads act as.
+	 */
+	private static URI setUp(RepositoryManagerImpl rm, Scenario scenario, List<Context> contexts) {
+		PrincipalManager pm = rm.getPrincipalManager();
+		URI userURI = pm.getAdminUser().getURI();
+		pm.setAuthenticatedUserURI(userURI);
+
+		User user = null;
+		if (scenario.acl()) {
+			Entry userEntry = pm.createResource(null, GraphType.User, null, null);
+			user = (User) userEntry.getResource();
+			pm.setPrincipalName(userEntry.getResourceURI(), BenchmarkCommons.BENCHMARK_USER);
+			user.setSecret(BenchmarkCommons.BENCHMARK_USER_SECRET);
+			userURI = user.getURI();
+		} else {
+			rm.setCheckForAuthorization(false);
+		}
+
+		for (int i = 1; i <= scenario.contexts(); i++) {
+			Entry contextEntry = rm.getContextManager().createResource(null, GraphType.Context, null, null);
+			rm.getContextManager().setName(contextEntry.getResource().getURI(), BenchmarkCommons.CONTEXT_ALIAS + "_" + i);
+			if (user != null) {
+				contextEntry.addAllowedPrincipalsFor(PrincipalManager.AccessProperty.Administer, user.getURI());
+			}
+			contexts.add((Context) contextEntry.getResource());
+		}
+		return userURI;
+	}
+
+	private static void runStep(Scenario scenario, int writers, List<Object> pool, PrintWriter scaling, PrintWriter contention) throws Exception {
+		Path directory = Files.createTempDirectory("benchmark-concurrent-");
+		RepositoryManagerImpl rm = new RepositoryManagerImpl(BenchmarkCommons.BASE_URL, createConfiguration(scenario, directory));
+		try {
+			List<Context> contexts = new ArrayList<>();
+			URI userURI = setUp(rm, scenario, contexts);
+
+			// seed every context, the readers only access these entries
+			rm.getPrincipalManager().setAuthenticatedUserURI(userURI);
+			List<List<URI>> seeded = new ArrayList<>();
+			for (Context context : contexts) {
+				List<URI> entries = new ArrayList<>();
+				for (int i = 0; i < scenario.seed(); i++) {
+					entries.add(ObjectMapper.mapObjectToContext(context, pool.get(i % pool.size())).getEntryURI());
+				}
+				seeded.add(entries);
+			}
+
+			long start = System.nanoTime();
+			long measureFrom = start + scenario.warmup().toNanos();
+			long end = measureFrom + scenario.duration().toNanos();
+			AtomicInteger next = new AtomicInteger();
+			List<Latencies> writeLatencies = new ArrayList<>();
+			List<Latencies> readLatencies = new ArrayList<>();
+			AtomicInteger errors = new AtomicInteger();
+			CountDownLatch ready = new CountDownLatch(writers + scenario.readers());
+
+			ContentionProfile profile = scenario.jfr() ? new ContentionProfile(scenario.jfrThreshold()) : null;
+			List<Future<?>> futures = new ArrayList<>();
+			// platform threads, since virtual threads would be pinned in synchronized sections
+			try (ExecutorService executor = Executors.newFixedThreadPool(writers + scenario.readers())) {
+				for (int w = 0; w < writers; w++) {
+					Context context = contexts.get(w % contexts.size());
+					Latencies latencies = new Latencies();
+					writeLatencies.add(latencies);
+					futures.add(executor.submit(() -> {
+						rm.getPrincipalManager().setAuthenticatedUserURI(userURI);
+						ready.countDown();
+						long now;
+						while ((now = System.nanoTime()) < end) {
+							try {
+								ObjectMapper.mapObjectToContext(context, pool.get(Math.floorMod(next.getAndIncrement(), pool.size())));
+							} catch (RuntimeException e) {
+								errors.incrementAndGet();
+								LogUtils.log.debug("Write failed: {}", e.getMessage());
+							}
+							if (now >= measureFrom) {
+								latencies.add(System.nanoTime() - now);
+							}
+						}
+						return null;
+					}));
+				}
+				for (int r = 0; r < scenario.readers(); r++) {
+					Latencies latencies = new Latencies();
+					readLatencies.add(latencies);
+					futures.add(executor.submit(() -> {
+						rm.getPrincipalManager().setAuthenticatedUserURI(userURI);
+						ready.countDown();
+						ThreadLocalRandom random = ThreadLocalRandom.current();
+						long now;
+						while ((now = System.nanoTime()) < end) {
+							int c = random.nextInt(contexts.size());
+							List<URI> entries = seeded.get(c);
+							try {
+								Entry entry = contexts.get(c).getByEntryURI(entries.get(random.nextInt(entries.size())));
+								entry.getGraph();
+								entry.getMetadataGraph();
+							} catch (RuntimeException e) {
+								errors.incrementAndGet();
+								LogUtils.log.debug("Read failed: {}", e.getMessage());
+							}
+							if (now >= measureFrom) {
+								latencies.add(System.nanoTime() - now);
+							}
+						}
+						return null;
+					}));
+				}
+
+				ready.await();
+				if (profile != null) {
+					Thread.sleep(Math.max(0, Duration.ofNanos(measureFrom - System.nanoTime()).toMillis()));
+					profile.start();
+				}
+				for (Future<?> future : futures) {
+					future.get();
+				}
+			}
+
+			String step = "w" + writers + "-r" + scenario.readers();
+			long[] writes = Latencies.merge(writeLatencies);
+			long[] reads = Latencies.merge(readLatencies);
+			double seconds = scenario.duration().toNanos() / 1e9;
+			long solrQueue = rm.getIndex() instanceof SolrSearchIndex solrIndex ? solrIndex.getPostQueueSize() : 0;
+
+			long contentionCount = 0;
+			Duration contentionTime = Duration.ZERO;
+			if (profile != null) {
+				List<ContentionProfile.Hotspot> hotspots = profile.stop(scenario.output().resolve(step + ".jfr"));
+				for (ContentionProfile.Hotspot hotspot : hotspots) {
+					contentionCount += hotspot.getCount();
+					contentionTime = contentionTime.plus(hotspot.getDuration());
+					contention.printf("%d,%d,%s,%s,%s,%d,%d%n", writers, scenario.readers(), hotspot.getEvent(),
+							hotspot.getLockClass(), hotspot.getLocation(), hotspot.getCount(), hotspot.getDuration().toMillis());
+				}
+				for (ContentionProfile.Hotspot hotspot : hotspots.subList(0, Math.min(5, hotspots.size()))) {
+					LogUtils.log.info("  {} ms in {} events waiting for {} at {} ({})", hotspot.getDuration().toMillis(),
+							hotspot.getCount(), hotspot.getLockClass(), hotspot.getLocation(), hotspot.getEvent());
+				}
+			}
+
+			LogUtils.log.info("{}: {} writes/s (p50 {} ms, p99 {} ms), {} reads/s (p50 {} ms, p99 {} ms), {} errors, {} ms blocked in {} events",
+					step,
+					String.format("%.1f", writes.length / seconds),
+					String.format("%.2f", Latencies.percentileMillis(writes, 0.5)),
+					String.format("%.2f", Latencies.percentileMillis(writes, 0.99)),
+					String.format("%.1f", reads.length / seconds),
+					String.format("%.2f", Latencies.percentileMillis(reads, 0.5)),
+					String.format("%.2f", Latencies.percentileMillis(reads, 0.99)),
+					errors.get(), contentionTime.toMillis(), contentionCount);
+			scaling.printf("%d,%d,%d,%b,%b,%.1f,%.3f,%.3f,%.1f,%.3f,%.3f,%d,%d,%d,%d%n", writers, scenario.readers(),
+					scenario.contexts(), scenario.acl(), scenario.solr(),
+					writes.length / seconds, Latencies.percentileMillis(writes, 0.5), Latencies.percentileMillis(writes, 0.99),
+					reads.length / seconds, Latencies.percentileMillis(reads, 0.5), Latencies.percentileMillis(reads, 0.99),
+					errors.get(), contentionCount, contentionTime.toMillis(), solrQueue);
+			scaling.flush();
+			contention.flush();
+		} finally {
+			rm.shutdown();
+			FileUtils.deleteDirectory(directory.toFile());
+		}
+	}
+
+	public static void main(String[] args) {
+		Option storeOption = Option.builder("s").longOpt("store").argName("STORE").hasArg()
+				.desc("Type of store: 'native' | 'memory' | 'lmdb', default native.").build();
+		Option writersOption = Option.builder("w").longOpt("writers").argName("WRITERS").hasArg()
+				.desc("Comma separated numbers of writer threads, one step per number: @string, default 1,2,4,8.").build();
+		Option readersOption = Option.builder("r").longOpt("readers").argName("READERS").hasArg()
+				.desc("Number of reader threads in every step: @int, default 4.").build();
+		Option contextsOption = Option.builder("x").longOpt("contexts").argName("CONTEXTS").hasArg()
+				.desc("Number of contexts the writers are distributed over: @int, default 1.").build();
+		Option aclOption = Option.builder("a").longOpt("acl").argName("ACL").hasArg()
+				.desc("Run as a non-admin user with access control: @boolean, default true.").build();
+		Option solrOption = Option.builder("i").longOpt("solr").argName("SOLR").hasArg()
+				.desc("Index all entries in an embedded Solr: @boolean, default false.").build();
+		Option seedOption = Option.builder("u").longOpt("universe").argName("UNIVERSE").hasArg()
+				.desc("Number of persons per context before every step: @int, default 500.").build();
+		Option warmupOption = Option.builder("t").longOpt("warmup").argName("SECONDS").hasArg()
+				.desc("Length of the warmup of every step: @int, default 5.").build();
+		Option durationOption = Option.builder("d").longOpt("duration").argName("SECONDS").hasArg()
+				.desc("Length of the measurement of every step: @int, default 30.").build();
+		Option jfrOption = Option.builder("j").longOpt("jfr-threshold").argName("MILLIS").hasArg()
+				.desc("Minimum duration of recorded lock events in ms, negative to disable recording: @int, default 1.").build();
+		Option outputOption = Option.builder("o").longOpt("output").argName("DIRECTORY").hasArg()
+				.desc("Directory for the results: @string, default concurrent-results.").build();
+
+		Options options = new Options();
+		for (Option option : List.of(storeOption, writersOption, readersOption, contextsOption, aclOption, solrOption,
+				seedOption, warmupOption, durationOption, jfrOption, outputOption)) {
+			options.addOption(option);
+		}
+
+		try {
+			CommandLine commandLine = new DefaultParser().parse(options, args);
+			String store = commandLine.getOptionValue(storeOption, BenchmarkCommons.NATIVE);
+			if (!List.of(BenchmarkCommons.MEMORY, BenchmarkCommons.NATIVE, BenchmarkCommons.LMDB).contains(store)) {
+				throw new IllegalArgumentException("Unsupported store type: " + store);
+			}
+			int[] writers = Arrays.stream(commandLine.getOptionValue(writersOption, "1,2,4,8").split(","))
+					.map(String::trim).mapToInt(Integer::parseInt).toArray();
+			int jfrThreshold = Integer.parseInt(commandLine.getOptionValue(jfrOption, "1"));
+			Scenario scenario = new Scenario(store,
+					Integer.parseInt(commandLine.getOptionValue(readersOption, "4")),
+					Integer.parseInt(commandLine.getOptionValue(contextsOption, "1")),
+					Boolean.parseBoolean(commandLine.getOptionValue(aclOption, "true")),
+					Boolean.parseBoolean(commandLine.getOptionValue(solrOption, "false")),
+					Integer.parseInt(commandLine.getOptionValue(seedOption, "500")),
+					Duration.ofSeconds(Long.parseLong(commandLine.getOptionValue(warmupOption, "5"))),
+					Duration.ofSeconds(Long.parseLong(commandLine.getOptionValue(durationOption, "30"))),
+					Duration.ofMillis(Math.max(0, jfrThreshold)),
+					jfrThreshold >= 0,
+					Path.of(commandLine.getOptionValue(outputOption, "concurrent-results")));
+			if (Arrays.stream(writers).anyMatch(w -> w < 1) || scenario.readers() < 0 || scenario.contexts() < 1 ||
+					scenario.seed() < 1 || scenario.duration().isZero()) {
+				throw new IllegalArgumentException("Writers, contexts, universe and duration must be larger than 0");
+			}
+
+			LogUtils.logType("CONCURRENT");
+			LogUtils.log.info("{} store, {} readers, {} contexts, ACL {}, Solr {}", store, scenario.readers(),
+					scenario.contexts(), scenario.acl() ? "on" : "off", scenario.solr() ? "on" : "off");
+			List<Object> pool = ObjectGenerator.createPersonList(Math.max(1000, scenario.seed()), false).stream()
+					.filter(Objects::nonNull).toList();
+
+			Files.createDirectories(scenario.output());
+			try (PrintWriter scaling = new PrintWriter(Files.newBufferedWriter(scenario.output().resolve("scaling.csv"), UTF_8));
+				 PrintWriter contention = new PrintWriter(Files.newBufferedWriter(scenario.output().resolve("contention.csv"), UTF_8))) {
+				scaling.println("writers,readers,contexts,acl,solr,writes_per_s,write_p50_ms,write_p99_ms," +
+						"reads_per_s,read_p50_ms,read_p99_ms,errors,contention_events,contention_ms,solr_queue");
+				contention.println("writers,readers,event,lock_class,location,count,total_ms");
+				for (int w : writers) {
+					runStep(scenario, w, pool, scaling, contention);
+				}
+			}
+			LogUtils.log.info("Results written to {}", scenario.output().toAbsolutePath());
+			LogUtils.logGoodbye();
+		} catch (ParseException | IllegalArgumentException e) {
+			LogUtils.log.error("No or bad arguments provided: {}", e.getMessage());
+			HelpFormatter formatter = new HelpFormatter();
+			formatter.setLeftPadding(2);
+			formatter.printHelp("concurrent-benchmark", options, true);
+		} catch (Exception e) {
+			LogUtils.log.error("Benchmark failed: {}", e.getMessage(), e);
+		}
+	}
+
+}
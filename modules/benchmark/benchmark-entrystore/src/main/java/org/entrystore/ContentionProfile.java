@@ -0,0 +1,141 @@
+package org.entrystore;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records lock contention with Java Flight Recorder and aggregates the events by the
+ * class of the contended monitor or lock and the EntryStore method that waited for it.
+ */
+public class ContentionProfile {
+
+	public static final String MONITOR_ENTER = "jdk.JavaMonitorEnter";
+
+	public static final String MONITOR_WAIT = "jdk.JavaMonitorWait";
+
+	public static final String THREAD_PARK = "jdk.ThreadPark";
+
+	/**
+	 * The contention of one lock, as caused at one code location.
+	 */
+	public static class Hotspot {
+
+		private final String event;
+
+		private final String lockClass;
+
+		private final String location;
+
+		private long count;
+
+		private Duration duration = Duration.ZERO;
+
+		Hotspot(String event, String lockClass, String location) {
+			this.event = event;
+			this.lockClass = lockClass;
+			this.location = location;
+		}
+
+		public String getEvent() {
+			return event;
+		}
+
+		public String getLockClass() {
+			return lockClass;
+		}
+
+		public String getLocation() {
+			return location;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public Duration getDuration() {
+			return duration;
+		}
+
+	}
+
+	private final Recording recording = new Recording();
+
+	/**
+	 * @param threshold Events that are shorter than the threshold are not recorded.
+	 */
+	public ContentionProfile(Duration threshold) {
+		recording.enable(MONITOR_ENTER).withThreshold(threshold).withStackTrace();
+		recording.enable(MONITOR_WAIT).withThreshold(threshold).withStackTrace();
+		recording.enable(THREAD_PARK).withThreshold(threshold).withStackTrace();
+		recording.setToDisk(true);
+	}
+
+	public void start() {
+		recording.start();
+	}
+
+	/**
+	 * Stops the recording, writes it to a file and aggregates the events.
+	 *
+	 * @return The hotspots, ordered by total duration in descending order.
+	 */
+	public List<Hotspot> stop(Path file) throws IOException {
+		recording.stop();
+		recording.dump(file);
+		recording.close();
+
+		Map<String, Hotspot> hotspots = new HashMap<>();
+		for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+			String name = event.getEventType().getName();
+			String lockClass = switch (name) {
+				case MONITOR_ENTER, MONITOR_WAIT -> className(event.getClass("monitorClass"));
+				case THREAD_PARK -> className(event.getClass("parkedClass"));
+				default -> null;
+			};
+			if (lockClass == null) {
+				continue;
+			}
+			String location = location(event);
+			Hotspot hotspot = hotspots.computeIfAbsent(name + "|" + lockClass + "|" + location, k -> new Hotspot(name, lockClass, location));
+			hotspot.count++;
+			hotspot.duration = hotspot.duration.plus(event.getDuration());
+		}
+
+		List<Hotspot> result = new ArrayList<>(hotspots.values());
+		result.sort(Comparator.comparing(Hotspot::getDuration).reversed());
+		return result;
+	}
+
+	private static String className(RecordedClass recordedClass) {
+		return recordedClass != null ? recordedClass.getName() : "unknown";
+	}
+
+	/**
+	 * @return The first EntryStore method on the stack, since the frames above it are
+	 * in the JDK or in libraries and tell little about which code path is contended.
+	 */
+	private static String location(RecordedEvent event) {
+		if (event.getStackTrace() == null) {
+			return "unknown";
+		}
+		for (RecordedFrame frame : event.getStackTrace().getFrames()) {
+			if (frame.isJavaFrame() && frame.getMethod().getType().getName().startsWith("org.entrystore.")) {
+				return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+			}
+		}
+		return "other";
+	}
+
+}
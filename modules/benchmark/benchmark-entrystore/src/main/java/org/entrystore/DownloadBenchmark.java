@@ -0,0 +1,158 @@
+package org.entrystore;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Measures the throughput of parallel downloads of a large binary resource from a
+ * running EntryStore instance, either as complete downloads or split into ranges.
+ *
+ * <pre>
+ * java -cp entrystore-benchmark-entrystore.jar org.entrystore.DownloadBenchmark \
+ *   -r http://localhost:8181/store/1/resource/1 -t 16 -n 10 -s 4
+ * </pre>
+ */
+public class DownloadBenchmark {
+
+	private static final HttpClient client = HttpClient.newBuilder()
+			.connectTimeout(Duration.ofSeconds(10))
+			.build();
+
+	private static long getContentLength(URI resource, String authorization) throws IOException, InterruptedException {
+		HttpRequest.Builder request = HttpRequest.newBuilder(resource).method("HEAD", HttpRequest.BodyPublishers.noBody());
+		if (authorization != null) {
+			request.header("Authorization", authorization);
+		}
+		HttpResponse<Void> response = client.send(request.build(), HttpResponse.BodyHandlers.discarding());
+		if (response.statusCode() != 200) {
+			throw new IOException("HEAD request failed with status " + response.statusCode());
+		}
+		return response.headers().firstValueAsLong("Content-Length")
+				.orElseThrow(() -> new IOException("Response has no Content-Length"));
+	}
+
+	/**
+	 * @return The number of bytes that have been received.
+	 */
+	private static long download(URI resource, String authorization, long first, long last) throws IOException, InterruptedException {
+		HttpRequest.Builder request = HttpRequest.newBuilder(resource).GET();
+		if (authorization != null) {
+			request.header("Authorization", authorization);
+		}
+		if (first >= 0) {
+			request.header("Range", "bytes=" + first + "-" + last);
+		}
+		HttpResponse<InputStream> response = client.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+		int expectedStatus = first >= 0 ? 206 : 200;
+		try (InputStream in = response.body()) {
+			if (response.statusCode() != expectedStatus) {
+				throw new IOException("Download failed with status " + response.statusCode() + ", expected " + expectedStatus);
+			}
+			byte[] buffer = new byte[64 * 1024];
+			long received = 0;
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				received += read;
+			}
+			return received;
+		}
+	}
+
+	private static void runBenchmark(URI resource, String authorization, int threads, int iterations, int segments) throws Exception {
+		long length = getContentLength(resource, authorization);
+		LogUtils.log.info("Downloading {} ({} bytes) {} times with {} threads in {} segments", resource, length, iterations, threads, segments);
+
+		AtomicLong received = new AtomicLong();
+		List<Future<?>> futures = new ArrayList<>();
+		long before = System.nanoTime();
+		try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+			for (int i = 0; i < iterations; i++) {
+				if (segments <= 1) {
+					futures.add(executor.submit(() -> received.addAndGet(download(resource, authorization, -1, -1))));
+				} else {
+					long segmentLength = (length + segments - 1) / segments;
+					for (long first = 0; first < length; first += segmentLength) {
+						long from = first;
+						long to = Math.min(first + segmentLength, length) - 1;
+						futures.add(executor.submit(() -> received.addAndGet(download(resource, authorization, from, to))));
+					}
+				}
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		}
+		long millis = Math.max(1, Duration.ofNanos(System.nanoTime() - before).toMillis());
+
+		if (received.get() != length * iterations) {
+			LogUtils.log.error("Received {} bytes, expected {}", received.get(), length * iterations);
+		}
+		LogUtils.log.info("Received {} bytes with {} requests in {} ms", received.get(), futures.size(), millis);
+		LogUtils.log.info("Throughput: {} MB/s", String.format("%.1f", received.get() / 1024.0 / 1024.0 / (millis / 1000.0)));
+	}
+
+	public static void main(String[] args) {
+		Option resourceOption = Option.builder("r").longOpt("resource").argName("URI").hasArg().required()
+				.desc("URI of the binary resource to download: @string.").build();
+		Option threadsOption = Option.builder("t").longOpt("threads").argName("THREADS").hasArg()
+				.desc("Number of parallel downloads: @int, default 8.").build();
+		Option iterationsOption = Option.builder("n").longOpt("iterations").argName("ITERATIONS").hasArg()
+				.desc("Number of times the resource is downloaded: @int, default 10.").build();
+		Option segmentsOption = Option.builder("s").longOpt("segments").argName("SEGMENTS").hasArg()
+				.desc("Number of ranges every download is split into, 1 for complete downloads: @int, default 1.").build();
+		Option userOption = Option.builder("u").longOpt("user").argName("USER:PASSWORD").hasArg()
+				.desc("Credentials for basic authentication: @string.").build();
+
+		Options options = new Options();
+		options.addOption(resourceOption);
+		options.addOption(threadsOption);
+		options.addOption(iterationsOption);
+		options.addOption(segmentsOption);
+		options.addOption(userOption);
+
+		try {
+			CommandLine commandLine = new DefaultParser().parse(options, args);
+			URI resource = URI.create(commandLine.getOptionValue(resourceOption));
+			int threads = Integer.parseInt(commandLine.getOptionValue(threadsOption, "8"));
+			int iterations = Integer.parseInt(commandLine.getOptionValue(iterationsOption, "10"));
+			int segments = Integer.parseInt(commandLine.getOptionValue(segmentsOption, "1"));
+			String authorization = null;
+			if (commandLine.hasOption(userOption)) {
+				authorization = "Basic " + Base64.getEncoder().encodeToString(commandLine.getOptionValue(userOption).getBytes(UTF_8));
+			}
+
+			LogUtils.logType("DOWNLOAD");
+			runBenchmark(resource, authorization, threads, iterations, segments);
+			LogUtils.logGoodbye();
+		} catch (ParseException | IllegalArgumentException e) {
+			LogUtils.log.error("No or bad arguments provided: {}", e.getMessage());
+			HelpFormatter formatter = new HelpFormatter();
+			formatter.setLeftPadding(2);
+			formatter.printHelp("download-benchmark", options, true);
+		} catch (Exception e) {
+			LogUtils.log.error("Benchmark failed: {}", e.getMessage(), e);
+		}
+	}
+
+}
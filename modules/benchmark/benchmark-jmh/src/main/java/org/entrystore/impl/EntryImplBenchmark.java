@@ -0,0 +1,46 @@
+package org.entrystore.impl;
+
+import org.entrystore.Entry;
+import org.entrystore.jmh.RepositoryState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading of entry information from the repository, as done on every cache miss.
+ * In this package since {@link EntryImpl#load()} is not public.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntryImplBenchmark {
+
+	private int next;
+
+	@Setup(Level.Iteration)
+	public void authenticate(RepositoryState repository) {
+		repository.authenticate();
+	}
+
+	@Benchmark
+	public EntryImpl load(RepositoryState repository) {
+		EntryImpl cached = (EntryImpl) repository.entries.get(next++ % repository.entries.size());
+		EntryImpl entry = new EntryImpl(cached.getId(), (ContextImpl) repository.context, repository.rm, cached.getRepository());
+		entry.load();
+		return entry;
+	}
+
+}
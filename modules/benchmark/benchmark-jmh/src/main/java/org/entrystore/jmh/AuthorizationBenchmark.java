@@ -0,0 +1,55 @@
+package org.entrystore.jmh;
+
+import org.entrystore.Entry;
+import org.entrystore.PrincipalManager;
+import org.entrystore.PrincipalManager.AccessProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Access control checks of a user who is granted access through the context.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthorizationBenchmark {
+
+	@Param({"ReadMetadata", "WriteResource"})
+	public String accessProperty;
+
+	private AccessProperty access;
+
+	private PrincipalManager pm;
+
+	private int next;
+
+	@Setup(Level.Iteration)
+	public void setUp(RepositoryState repository) {
+		repository.authenticate();
+		access = AccessProperty.valueOf(accessProperty);
+		pm = repository.rm.getPrincipalManager();
+	}
+
+	@Benchmark
+	public Entry checkAuthenticatedUserAuthorized(RepositoryState repository) {
+		Entry entry = repository.entries.get(next++ % repository.entries.size());
+		pm.checkAuthenticatedUserAuthorized(entry, access);
+		return entry;
+	}
+
+}
@@ -0,0 +1,48 @@
+package org.entrystore.jmh;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks with the GC profiler and writes the results as JSON, to be
+ * compared between commits with {@link CompareResults}. Accepts the same arguments as
+ * the JMH command line, e.g. to select benchmarks, stores and the result file:
+ *
+ * <pre>
+ * java -jar entrystore-benchmark-jmh.jar MetadataBenchmark -p store=memory,lmdb -rff before.json
+ * </pre>
+ */
+public class BenchmarkRunner {
+
+	private static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+		if (commandLineOptions.shouldHelp() || commandLineOptions.shouldList() || commandLineOptions.shouldListWithParams() ||
+				commandLineOptions.shouldListProfilers() || commandLineOptions.shouldListResultFormats()) {
+			Main.main(args);
+			return;
+		}
+
+		ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLineOptions);
+		boolean hasGCProfiler = commandLineOptions.getProfilers().stream()
+				.anyMatch(p -> GCProfiler.class.getName().equals(p.getKlass()) || "gc".equals(p.getKlass()));
+		if (!hasGCProfiler) {
+			options.addProfiler(GCProfiler.class);
+		}
+		if (!commandLineOptions.getResultFormat().hasValue()) {
+			options.resultFormat(ResultFormatType.JSON);
+		}
+		if (!commandLineOptions.getResult().hasValue()) {
+			options.result(DEFAULT_RESULT_FILE);
+		}
+
+		new Runner(options.build()).run();
+	}
+
+}
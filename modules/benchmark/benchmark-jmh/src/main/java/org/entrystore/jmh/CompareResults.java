@@ -0,0 +1,89 @@
+package org.entrystore.jmh;
+
+import org.entrystore.LogUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Compares two JSON result files of {@link BenchmarkRunner}, e.g. of two commits, and logs
+ * the change of the score and of the allocation rate per operation of every benchmark.
+ *
+ * <pre>
+ * java -cp entrystore-benchmark-jmh.jar org.entrystore.jmh.CompareResults before.json after.json
+ * </pre>
+ */
+public class CompareResults {
+
+	private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+	private record Result(double score, double error, String unit, double allocation) {
+	}
+
+	private static Map<String, Result> read(Path file) throws IOException {
+		Map<String, Result> results = new LinkedHashMap<>();
+		JSONArray array = new JSONArray(Files.readString(file, UTF_8));
+		for (int i = 0; i < array.length(); i++) {
+			JSONObject run = array.getJSONObject(i);
+			StringBuilder key = new StringBuilder(run.getString("benchmark"));
+			JSONObject params = run.optJSONObject("params");
+			if (params != null) {
+				new TreeMap<>(params.toMap()).forEach((name, value) -> key.append(' ').append(name).append('=').append(value));
+			}
+			JSONObject primary = run.getJSONObject("primaryMetric");
+			JSONObject secondary = run.optJSONObject("secondaryMetrics");
+			double allocation = Double.NaN;
+			if (secondary != null && secondary.has(ALLOCATION)) {
+				allocation = secondary.getJSONObject(ALLOCATION).getDouble("score");
+			}
+			results.put(key.toString(), new Result(primary.getDouble("score"), primary.optDouble("scoreError", Double.NaN),
+					primary.getString("scoreUnit"), allocation));
+		}
+		return results;
+	}
+
+	private static String change(double before, double after) {
+		if (Double.isNaN(before) || Double.isNaN(after) || before == 0) {
+			return "n/a";
+		}
+		return String.format("%+.1f%%", (after - before) / before * 100);
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			LogUtils.log.error("Usage: CompareResults <baseline.json> <current.json>");
+			return;
+		}
+		Map<String, Result> baseline = read(Path.of(args[0]));
+		Map<String, Result> current = read(Path.of(args[1]));
+
+		for (Map.Entry<String, Result> entry : current.entrySet()) {
+			Result after = entry.getValue();
+			Result before = baseline.get(entry.getKey());
+			if (before == null) {
+				LogUtils.log.info("{}: {} ± {} {} (new)", entry.getKey(),
+						String.format("%.3f", after.score()), String.format("%.3f", after.error()), after.unit());
+				continue;
+			}
+			LogUtils.log.info("{}: {} -> {} {} ({}), allocated {} -> {} B/op ({})", entry.getKey(),
+					String.format("%.3f", before.score()), String.format("%.3f", after.score()), after.unit(),
+					change(before.score(), after.score()),
+					String.format("%.0f", before.allocation()), String.format("%.0f", after.allocation()),
+					change(before.allocation(), after.allocation()));
+		}
+		for (String key : baseline.keySet()) {
+			if (!current.containsKey(key)) {
+				LogUtils.log.info("{}: removed", key);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,59 @@
+package org.entrystore.jmh;
+
+import org.entrystore.Entry;
+import org.entrystore.GraphType;
+import org.entrystore.List;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adding of entries to lists. Every entry can only be added once to a list, so a new list
+ * is created when all entries have been added. This happens once per {@code size} invocations,
+ * the cost of creating the list is included in the results but negligible.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListBenchmark {
+
+	private List list;
+
+	private int next;
+
+	@Setup(Level.Iteration)
+	public void setUp(RepositoryState repository) {
+		repository.authenticate();
+		list = createList(repository);
+		next = 0;
+	}
+
+	private List createList(RepositoryState repository) {
+		Entry listEntry = repository.context.createResource(null, GraphType.List, null, null);
+		return (List) listEntry.getResource();
+	}
+
+	@Benchmark
+	public List addChild(RepositoryState repository) {
+		if (next == repository.entries.size()) {
+			list = createList(repository);
+			next = 0;
+		}
+		list.addChild(repository.entries.get(next++).getEntryURI());
+		return list;
+	}
+
+}
@@ -0,0 +1,57 @@
+package org.entrystore.jmh;
+
+import org.eclipse.rdf4j.model.Model;
+import org.entrystore.Entry;
+import org.entrystore.Metadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading and writing of the local metadata of entries.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetadataBenchmark {
+
+	private int next;
+
+	@Setup(Level.Iteration)
+	public void authenticate(RepositoryState repository) {
+		repository.authenticate();
+	}
+
+	private Metadata nextMetadata(RepositoryState repository) {
+		Entry entry = repository.entries.get(next++ % repository.entries.size());
+		return entry.getLocalMetadata();
+	}
+
+	@Benchmark
+	public Model getGraph(RepositoryState repository) {
+		return nextMetadata(repository).getGraph();
+	}
+
+	/**
+	 * Replaces the metadata with itself, which includes reading it first.
+	 */
+	@Benchmark
+	public void setGraph(RepositoryState repository) {
+		Metadata metadata = nextMetadata(repository);
+		metadata.setGraph(metadata.getGraph());
+	}
+
+}
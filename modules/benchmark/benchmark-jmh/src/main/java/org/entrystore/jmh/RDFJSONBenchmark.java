@@ -0,0 +1,64 @@
+package org.entrystore.jmh;
+
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.entrystore.Entry;
+import org.entrystore.rest.util.RDFJSON;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of graphs to RDF/JSON, both of the metadata of single entries and of the
+ * metadata of all entries, which is similar to a large export or a recursive request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RDFJSONBenchmark {
+
+	private List<Model> graphs;
+
+	private Model mergedGraph;
+
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp(RepositoryState repository) {
+		repository.authenticate();
+		graphs = new ArrayList<>();
+		mergedGraph = new LinkedHashModel();
+		for (Entry entry : repository.entries) {
+			Model graph = entry.getMetadataGraph();
+			graphs.add(graph);
+			mergedGraph.addAll(graph);
+		}
+	}
+
+	@Benchmark
+	public JSONObject graphToRdfJsonObject() {
+		return RDFJSON.graphToRdfJsonObject(graphs.get(next++ % graphs.size()));
+	}
+
+	@Benchmark
+	public JSONObject mergedGraphToRdfJsonObject() {
+		return RDFJSON.graphToRdfJsonObject(mergedGraph);
+	}
+
+}
@@ -0,0 +1,148 @@
+package org.entrystore.jmh;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.vocabulary.DCTERMS;
+import org.entrystore.BenchmarkCommons;
+import org.entrystore.Context;
+import org.entrystore.Entry;
+import org.entrystore.GraphType;
+import org.entrystore.Metadata;
+import org.entrystore.PrincipalManager;
+import org.entrystore.User;
+import org.entrystore.config.Config;
+import org.entrystore.generator.ObjectGenerator;
+import org.entrystore.impl.RepositoryManagerImpl;
+import org.entrystore.mapper.ObjectMapper;
+import org.entrystore.repository.config.PropertiesConfiguration;
+import org.entrystore.repository.config.Settings;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.eclipse.rdf4j.model.util.Values.iri;
+import static org.eclipse.rdf4j.model.util.Values.literal;
+
+/**
+ * A repository with a context that is populated with fake persons and their addresses,
+ * shared by all threads of a benchmark. The entries are created and accessed by a user
+ * who administers the context, so that access control is evaluated as for regular users.
+ *
+ * <p>Benchmarks must call {@link #authenticate()} from each benchmark thread, since the
+ * authenticated user is bound to the current thread.</p>
+ */
+@State(Scope.Benchmark)
+public class RepositoryState {
+
+	@Param({BenchmarkCommons.MEMORY, BenchmarkCommons.NATIVE, BenchmarkCommons.LMDB})
+	public String store;
+
+	/**
+	 * The number of persons to generate, every person has an address in a separate entry.
+	 */
+	@Param({"500"})
+	public int size;
+
+	public RepositoryManagerImpl rm;
+
+	public Context context;
+
+	public URI userURI;
+
+	/**
+	 * The entries of the context, excluding the context itself.
+	 */
+	public List<Entry> entries;
+
+	private Path storePath;
+
+	private Config createConfiguration() {
+		Config config = new PropertiesConfiguration("EntryStore Configuration");
+		config.setProperty(Settings.STORE_TYPE, store);
+		if (!BenchmarkCommons.MEMORY.equals(store)) {
+			config.addProperty(Settings.STORE_PATH, storePath.toUri().toString());
+		}
+		if (BenchmarkCommons.NATIVE.equals(store)) {
+			config.addProperty(Settings.STORE_INDEXES, BenchmarkCommons.INDEXES);
+		}
+		config.setProperty(Settings.BASE_URL, BenchmarkCommons.BASE_URL);
+		config.setProperty(Settings.REPOSITORY_REWRITE_BASEREFERENCE, false);
+		config.setProperty(Settings.SOLR, "off");
+		return config;
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		storePath = Files.createTempDirectory("benchmark-store-");
+		rm = new RepositoryManagerImpl(BenchmarkCommons.BASE_URL, createConfiguration());
+
+		PrincipalManager pm = rm.getPrincipalManager();
+		pm.setAuthenticatedUserURI(pm.getAdminUser().getURI());
+		Entry contextEntry = rm.getContextManager().createResource(null, GraphType.Context, null, null);
+		rm.getContextManager().setName(contextEntry.getResource().getURI(), BenchmarkCommons.CONTEXT_ALIAS + "_1");
+		context = (Context) contextEntry.getResource();
+
+		Entry userEntry = pm.createResource(null, GraphType.User, null, null);
+		User user = (User) userEntry.getResource();
+		pm.setPrincipalName(userEntry.getResourceURI(), BenchmarkCommons.BENCHMARK_USER);
+		user.setSecret(BenchmarkCommons.BENCHMARK_USER_SECRET);
+		contextEntry.addAllowedPrincipalsFor(PrincipalManager.AccessProperty.Administer, user.getURI());
+		userURI = user.getURI();
+
+		authenticate();
+		for (Object person : ObjectGenerator.createPersonList(size, false)) {
+			ObjectMapper.mapObjectToContext(context, person);
+		}
+
+		entries = new ArrayList<>();
+		for (URI entryURI : context.getEntries()) {
+			Entry entry = context.getByEntryURI(entryURI);
+			addTitle(entry);
+			entries.add(entry);
+		}
+	}
+
+	/**
+	 * Adds a title to the metadata of an entry, to have something to sort after.
+	 */
+	private void addTitle(Entry entry) {
+		Metadata metadata = entry.getLocalMetadata();
+		Model graph = metadata.getGraph();
+		IRI resource = iri(entry.getResourceURI().toString());
+		String title = entry.getId();
+		for (Statement statement : graph.filter(resource, null, null)) {
+			if (statement.getObject().isLiteral()) {
+				title = statement.getObject().stringValue();
+				break;
+			}
+		}
+		graph.add(resource, DCTERMS.TITLE, literal(title, "en"));
+		metadata.setGraph(graph);
+	}
+
+	/**
+	 * Makes the benchmark user the authenticated user of the current thread.
+	 */
+	public void authenticate() {
+		rm.getPrincipalManager().setAuthenticatedUserURI(userURI);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		rm.shutdown();
+		FileUtils.deleteDirectory(storePath.toFile());
+	}
+
+}
@@ -0,0 +1,58 @@
+package org.entrystore.jmh;
+
+import org.apache.solr.common.SolrInputDocument;
+import org.entrystore.Entry;
+import org.entrystore.repository.util.SolrSearchIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction of the Solr documents of entries, without submitting them to Solr.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolrDocumentBenchmark {
+
+	private SolrSearchIndex index;
+
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp(RepositoryState repository) {
+		// no documents are submitted, so no Solr client is needed
+		index = new SolrSearchIndex(repository.rm, null);
+	}
+
+	@Setup(Level.Iteration)
+	public void authenticate(RepositoryState repository) {
+		repository.authenticate();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		index.shutdown();
+	}
+
+	@Benchmark
+	public SolrInputDocument constructSolrInputDocument(RepositoryState repository) {
+		Entry entry = repository.entries.get(next++ % repository.entries.size());
+		return index.constructSolrInputDocument(entry, false);
+	}
+
+}
@@ -0,0 +1,56 @@
+package org.entrystore.jmh;
+
+import org.entrystore.Entry;
+import org.entrystore.GraphType;
+import org.entrystore.repository.util.EntryUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sorting of all entries of the context after their titles, as done for sorted listings.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SortBenchmark {
+
+	private final Random random = new Random(42);
+
+	private List<Entry> entries;
+
+	@Setup(Level.Iteration)
+	public void authenticate(RepositoryState repository) {
+		repository.authenticate();
+	}
+
+	@Setup(Level.Invocation)
+	public void shuffle(RepositoryState repository) {
+		entries = new ArrayList<>(repository.entries);
+		Collections.shuffle(entries, random);
+	}
+
+	@Benchmark
+	public List<Entry> sortAfterTitle() {
+		EntryUtil.sortAfterTitle(entries, "en", true, GraphType.List);
+		return entries;
+	}
+
+}
@@ -0,0 +1,220 @@
+package org.entrystore.load;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.entrystore.BenchmarkCommons;
+import org.entrystore.LogUtils;
+import org.json.JSONObject;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Runs an end-to-end load test against the REST API. The test starts EntryStore with Jetty
+ * and an embedded Solr index on a temporary directory, seeds it with generated persons and
+ * lets many concurrent clients, each on its own virtual thread, send a configurable mix of
+ * requests in a closed loop. Requests that are sent during the warmup are not recorded.
+ *
+ * <p>The result contains latency percentiles, throughput and error rates per operation and
+ * the server-side request timers from <code>/management/metrics</code>. Client and server
+ * share the machine, so the numbers are meant for comparing revisions with each other.</p>
+ *
+ * <pre>
+ * java -jar entrystore-benchmark-load.jar -s native -u 2000 -c 128 -d 120 \
+ *   -m entry=40,list=15,search=15,metadata=10,upload=5,sparql=15 -o load-result.json
+ * </pre>
+ */
+public class LoadTest {
+
+	public static final String DEFAULT_MIX = "entry=40,list=15,search=15,metadata=10,upload=5,sparql=15";
+
+	private static Map<Operation, JSONObject> run(Workload workload, int clients, Duration warmup, Duration duration) throws Exception {
+		Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+		for (Operation operation : Operation.values()) {
+			stats.put(operation, new OperationStats());
+		}
+
+		long start = System.nanoTime();
+		long measureFrom = start + warmup.toNanos();
+		long end = measureFrom + duration.toNanos();
+		LogUtils.log.info("Running {} clients for {} s after a warmup of {} s", clients, duration.toSeconds(), warmup.toSeconds());
+
+		List<Future<?>> futures = new ArrayList<>();
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int i = 0; i < clients; i++) {
+				futures.add(executor.submit(() -> {
+					ThreadLocalRandom random = ThreadLocalRandom.current();
+					long now;
+					while ((now = System.nanoTime()) < end) {
+						Operation operation = workload.next(random);
+						boolean success;
+						try {
+							success = workload.execute(operation, random) / 100 == 2;
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							return;
+						} catch (Exception e) {
+							LogUtils.log.debug("Request of {} failed: {}", operation.getKey(), e.getMessage());
+							success = false;
+						}
+						if (now >= measureFrom) {
+							stats.get(operation).record(System.nanoTime() - now, success);
+						}
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		}
+
+		double seconds = duration.toNanos() / 1e9;
+		Map<Operation, JSONObject> result = new EnumMap<>(Operation.class);
+		for (Map.Entry<Operation, OperationStats> entry : stats.entrySet()) {
+			result.put(entry.getKey(), entry.getValue().summarize(seconds));
+		}
+		return result;
+	}
+
+	private static void report(Map<Operation, JSONObject> result) {
+		LogUtils.log.info(String.format("%-10s %9s %7s %8s %10s %10s %10s %10s", "operation", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+		long requests = 0;
+		long errors = 0;
+		double throughput = 0;
+		for (Map.Entry<Operation, JSONObject> entry : result.entrySet()) {
+			JSONObject s = entry.getValue();
+			if (s.getLong("requests") == 0) {
+				continue;
+			}
+			requests += s.getLong("requests");
+			errors += s.getLong("errors");
+			throughput += s.getDouble("throughput");
+			LogUtils.log.info(String.format("%-10s %9d %7d %8.1f %10.1f %10.1f %10.1f %10.1f", entry.getKey().getKey(),
+					s.getLong("requests"), s.getLong("errors"), s.getDouble("throughput"),
+					s.getDouble("p50"), s.getDouble("p95"), s.getDouble("p99"), s.getDouble("max")));
+		}
+		LogUtils.log.info("Total: {} requests, {} errors ({}), {} req/s", requests, errors,
+				String.format("%.2f%%", requests > 0 ? 100.0 * errors / requests : 0.0), String.format("%.1f", throughput));
+	}
+
+	private static JSONObject fetchServerMetrics(RestClient admin) {
+		try {
+			JSONObject metrics = admin.sendForJson("GET", "management/metrics", null, 200);
+			for (String timer : metrics.keySet()) {
+				LogUtils.log.info("Server timer {}: {}", timer, metrics.get(timer));
+			}
+			return metrics;
+		} catch (Exception e) {
+			LogUtils.log.warn("Unable to fetch server metrics: {}", e.getMessage());
+			return new JSONObject();
+		}
+	}
+
+	public static void main(String[] args) {
+		Option storeOption = Option.builder("s").longOpt("store").argName("STORE").hasArg()
+				.desc("Type of store: 'native' | 'memory' | 'lmdb', default memory.").build();
+		Option universeOption = Option.builder("u").longOpt("universe").argName("UNIVERSE").hasArg()
+				.desc("Number of persons to seed, every person has an address: @int, default 1000.").build();
+		Option clientsOption = Option.builder("c").longOpt("clients").argName("CLIENTS").hasArg()
+				.desc("Number of concurrent clients: @int, default 64.").build();
+		Option durationOption = Option.builder("d").longOpt("duration").argName("SECONDS").hasArg()
+				.desc("Length of the measurement: @int, default 60.").build();
+		Option warmupOption = Option.builder("w").longOpt("warmup").argName("SECONDS").hasArg()
+				.desc("Length of the warmup: @int, default 10.").build();
+		Option mixOption = Option.builder("m").longOpt("mix").argName("MIX").hasArg()
+				.desc("Weights of the operations entry, list, search, metadata, upload and sparql: @string, default " + DEFAULT_MIX + ".").build();
+		Option filesOption = Option.builder("f").longOpt("files").argName("FILES").hasArg()
+				.desc("Number of entries with binary resources: @int, default 20.").build();
+		Option uploadSizeOption = Option.builder("z").longOpt("upload-size").argName("KB").hasArg()
+				.desc("Size of uploaded files in KB: @int, default 64.").build();
+		Option portOption = Option.builder("p").longOpt("port").argName("PORT").hasArg()
+				.desc("Port of the server, 0 for a free port: @int, default 0.").build();
+		Option logLevelOption = Option.builder("l").longOpt("log-level").argName("LEVEL").hasArg()
+				.desc("Log level of the server: @string, default WARN.").build();
+		Option outputOption = Option.builder("o").longOpt("output").argName("FILE").hasArg()
+				.desc("File to write the results to as JSON: @string.").build();
+
+		Options options = new Options();
+		for (Option option : List.of(storeOption, universeOption, clientsOption, durationOption, warmupOption, mixOption,
+				filesOption, uploadSizeOption, portOption, logLevelOption, outputOption)) {
+			options.addOption(option);
+		}
+
+		LoadTestServer server = null;
+		try {
+			CommandLine commandLine = new DefaultParser().parse(options, args);
+			String store = commandLine.getOptionValue(storeOption, BenchmarkCommons.MEMORY);
+			if (!List.of(BenchmarkCommons.MEMORY, BenchmarkCommons.NATIVE, BenchmarkCommons.LMDB).contains(store)) {
+				throw new IllegalArgumentException("Unsupported store type: " + store);
+			}
+			int universe = Integer.parseInt(commandLine.getOptionValue(universeOption, "1000"));
+			int clients = Integer.parseInt(commandLine.getOptionValue(clientsOption, "64"));
+			Duration duration = Duration.ofSeconds(Long.parseLong(commandLine.getOptionValue(durationOption, "60")));
+			Duration warmup = Duration.ofSeconds(Long.parseLong(commandLine.getOptionValue(warmupOption, "10")));
+			Map<Operation, Integer> mix = Operation.parseMix(commandLine.getOptionValue(mixOption, DEFAULT_MIX));
+			int files = Integer.parseInt(commandLine.getOptionValue(filesOption, "20"));
+			int uploadSize = Integer.parseInt(commandLine.getOptionValue(uploadSizeOption, "64")) * 1024;
+			int port = Integer.parseInt(commandLine.getOptionValue(portOption, "0"));
+			if (universe < 1 || clients < 1 || files < 1 || duration.isZero()) {
+				throw new IllegalArgumentException("Universe, clients, files and duration must be larger than 0");
+			}
+
+			LogUtils.logType("LOAD TEST");
+			server = new LoadTestServer(store, port, commandLine.getOptionValue(logLevelOption, "WARN"));
+			RestClient admin = server.start();
+			Seeder.Dataset dataset = new Seeder(admin).seed(universe, files, uploadSize);
+			server.awaitIndexing(Duration.ofMinutes(5));
+
+			Map<Operation, JSONObject> result = run(new Workload(admin, dataset, mix, uploadSize), clients, warmup, duration);
+			report(result);
+			JSONObject serverMetrics = fetchServerMetrics(admin);
+
+			if (commandLine.hasOption(outputOption)) {
+				JSONObject output = new JSONObject();
+				output.put("store", store);
+				output.put("universe", universe);
+				output.put("clients", clients);
+				output.put("duration", duration.toSeconds());
+				output.put("mix", commandLine.getOptionValue(mixOption, DEFAULT_MIX));
+				JSONObject operations = new JSONObject();
+				result.forEach((operation, stats) -> operations.put(operation.getKey(), stats));
+				output.put("operations", operations);
+				output.put("server", serverMetrics);
+				Path file = Path.of(commandLine.getOptionValue(outputOption));
+				Files.writeString(file, output.toString(2), UTF_8);
+				LogUtils.log.info("Results written to {}", file.toAbsolutePath());
+			}
+		} catch (ParseException | IllegalArgumentException e) {
+			LogUtils.log.error("No or bad arguments provided: {}", e.getMessage());
+			HelpFormatter formatter = new HelpFormatter();
+			formatter.setLeftPadding(2);
+			formatter.printHelp("load-test", options, true);
+		} catch (Exception e) {
+			LogUtils.log.error("Load test failed: {}", e.getMessage(), e);
+		} finally {
+			if (server != null) {
+				try {
+					server.stop();
+				} catch (Exception e) {
+					LogUtils.log.warn("Unable to stop server: {}", e.getMessage());
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,158 @@
+package org.entrystore.load;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.entrystore.BenchmarkCommons;
+import org.entrystore.LogUtils;
+import org.entrystore.repository.config.Settings;
+import org.entrystore.rest.standalone.EntryStoreApplicationStandaloneJetty;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Properties;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Starts EntryStore with Jetty and an embedded Solr index in the current JVM. All data
+ * is kept in a temporary directory that is removed when the server is stopped.
+ */
+public class LoadTestServer {
+
+	public static final String ADMIN_PASSWORD = "adminpass";
+
+	private final String storeType;
+
+	private final String logLevel;
+
+	private int port;
+
+	private Path directory;
+
+	private RestClient admin;
+
+	/**
+	 * @param storeType One of the store types of {@link BenchmarkCommons}.
+	 * @param port      The port to listen on, or 0 to pick a free port.
+	 * @param logLevel  The log level of the server.
+	 */
+	public LoadTestServer(String storeType, int port, String logLevel) {
+		this.storeType = storeType;
+		this.port = port;
+		this.logLevel = logLevel;
+	}
+
+	private static int findFreePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+
+	private Path writeConfiguration(URI base) throws IOException {
+		Properties config = new Properties();
+		config.setProperty(Settings.BASE_URL, base.toString());
+		config.setProperty(Settings.STORE_TYPE, storeType);
+		if (!BenchmarkCommons.MEMORY.equals(storeType)) {
+			config.setProperty(Settings.STORE_PATH, Files.createDirectories(directory.resolve("store")).toUri().toString());
+		}
+		if (BenchmarkCommons.NATIVE.equals(storeType)) {
+			config.setProperty(Settings.STORE_INDEXES, BenchmarkCommons.INDEXES);
+		}
+		config.setProperty(Settings.DATA_FOLDER, Files.createDirectories(directory.resolve("data")).toString());
+		config.setProperty(Settings.SOLR, "on");
+		config.setProperty(Settings.SOLR_URL, Files.createDirectories(directory.resolve("solr")).toString());
+		config.setProperty(Settings.SOLR_REINDEX_ON_STARTUP, "off");
+		config.setProperty(Settings.REPOSITORY_PUBLIC, "on");
+		config.setProperty(Settings.REPOSITORY_PUBLIC_TYPE, BenchmarkCommons.MEMORY);
+		config.setProperty(Settings.METRICS, "on");
+		config.setProperty(Settings.AUTH_ADMIN_SECRET, ADMIN_PASSWORD);
+
+		Path file = directory.resolve("entrystore.properties");
+		try (Writer writer = Files.newBufferedWriter(file, UTF_8)) {
+			config.store(writer, "EntryStore load test");
+		}
+		return file;
+	}
+
+	/**
+	 * Starts the server and waits until it accepts requests.
+	 *
+	 * @return A client that is logged in as admin.
+	 */
+	public RestClient start() throws IOException, InterruptedException {
+		if (port == 0) {
+			port = findFreePort();
+		}
+		directory = Files.createTempDirectory("entrystore-load-");
+		URI base = URI.create("http://localhost:" + port + "/");
+		Path config = writeConfiguration(base);
+		LogUtils.log.info("Starting EntryStore on port {} with {} store in {}", port, storeType, directory);
+
+		EntryStoreApplicationStandaloneJetty.main(new String[]{
+				"-c", config.toUri().toString(),
+				"-p", Integer.toString(port),
+				"--log-level", logLevel});
+		// the server sets the root log level, but the progress of the load test should still be visible
+		Configurator.setLevel(LogUtils.class.getName(), Level.INFO);
+
+		admin = new RestClient(base);
+		long deadline = System.nanoTime() + Duration.ofMinutes(2).toNanos();
+		while (true) {
+			try {
+				admin.login("admin", ADMIN_PASSWORD);
+				return admin;
+			} catch (ConnectException e) {
+				if (System.nanoTime() > deadline) {
+					throw new IOException("EntryStore did not start within two minutes");
+				}
+				Thread.sleep(250);
+			}
+		}
+	}
+
+	/**
+	 * Waits until Solr has processed all submitted entries.
+	 */
+	public void awaitIndexing(Duration timeout) throws IOException, InterruptedException {
+		long deadline = System.nanoTime() + timeout.toNanos();
+		while (System.nanoTime() < deadline) {
+			JSONObject solr = admin.sendForJson("GET", "management/status?extended", null, 200).optJSONObject("solr");
+			if (solr == null || solr.optInt("postQueueSize", 0) == 0) {
+				return;
+			}
+			Thread.sleep(500);
+		}
+		LogUtils.log.warn("Solr did not finish indexing within {} seconds", timeout.toSeconds());
+	}
+
+	/**
+	 * Stops the server via the management API and removes all data.
+	 */
+	public void stop() throws IOException, InterruptedException {
+		if (admin != null) {
+			admin.exchange("POST", "management/shutdown", null, null);
+			long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+			while (System.nanoTime() < deadline) {
+				try {
+					admin.exchange("GET", "management/status", null, null);
+					Thread.sleep(250);
+				} catch (IOException e) {
+					// the connector has been stopped
+					break;
+				}
+			}
+		}
+		if (directory != null) {
+			FileUtils.deleteDirectory(directory.toFile());
+		}
+	}
+
+}
@@ -0,0 +1,66 @@
+package org.entrystore.load;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The kinds of requests a load test is composed of.
+ */
+public enum Operation {
+
+	ENTRY_GET("entry"),
+	LIST_PAGE("list"),
+	SEARCH("search"),
+	METADATA_PUT("metadata"),
+	FILE_UPLOAD("upload"),
+	SPARQL("sparql");
+
+	private final String key;
+
+	Operation(String key) {
+		this.key = key;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public static Operation fromKey(String key) {
+		for (Operation operation : values()) {
+			if (operation.key.equalsIgnoreCase(key)) {
+				return operation;
+			}
+		}
+		throw new IllegalArgumentException("Unknown operation: " + key);
+	}
+
+	/**
+	 * Parses a mix of operations and their relative weights.
+	 *
+	 * @param mix A comma separated list of key/weight pairs, e.g. "entry=80,search=20".
+	 */
+	public static Map<Operation, Integer> parseMix(String mix) {
+		Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+		for (String pair : mix.split(",")) {
+			if (pair.isBlank()) {
+				continue;
+			}
+			String[] kv = pair.split("=");
+			if (kv.length != 2) {
+				throw new IllegalArgumentException("Invalid operation weight: " + pair);
+			}
+			int weight = Integer.parseInt(kv[1].trim());
+			if (weight < 0) {
+				throw new IllegalArgumentException("Weight must not be negative: " + pair);
+			}
+			if (weight > 0) {
+				weights.put(fromKey(kv[0].trim()), weight);
+			}
+		}
+		if (weights.isEmpty()) {
+			throw new IllegalArgumentException("The mix must contain at least one operation");
+		}
+		return weights;
+	}
+
+}
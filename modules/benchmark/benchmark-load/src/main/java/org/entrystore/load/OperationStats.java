@@ -0,0 +1,69 @@
+package org.entrystore.load;
+
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the latencies and failures of one kind of operation. All latencies are kept
+ * to compute exact percentiles, which is affordable for the length of a load test.
+ */
+public class OperationStats {
+
+	private long[] latencies = new long[1024];
+
+	private int count;
+
+	private long errors;
+
+	/**
+	 * @param latencyNanos The time from sending the request until the response was received.
+	 * @param success      False if the request failed or returned an unexpected status.
+	 */
+	public synchronized void record(long latencyNanos, boolean success) {
+		if (count == latencies.length) {
+			latencies = Arrays.copyOf(latencies, count * 2);
+		}
+		latencies[count++] = latencyNanos;
+		if (!success) {
+			errors++;
+		}
+	}
+
+	/**
+	 * Summarizes the recorded requests, with latencies in milliseconds.
+	 *
+	 * @param seconds The length of the measurement, to compute the throughput.
+	 */
+	public synchronized JSONObject summarize(double seconds) {
+		long[] sorted = Arrays.copyOf(latencies, count);
+		Arrays.sort(sorted);
+		JSONObject result = new JSONObject();
+		result.put("requests", count);
+		result.put("errors", errors);
+		result.put("errorRate", count > 0 ? (double) errors / count : 0.0);
+		result.put("throughput", count / seconds);
+		result.put("p50", toMillis(percentile(sorted, 0.50)));
+		result.put("p95", toMillis(percentile(sorted, 0.95)));
+		result.put("p99", toMillis(percentile(sorted, 0.99)));
+		result.put("max", toMillis(count > 0 ? sorted[count - 1] : 0));
+		return result;
+	}
+
+	/**
+	 * @return The value of the nearest rank, or 0 if there are no values.
+	 */
+	static long percentile(long[] sorted, double percentile) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int rank = (int) Math.ceil(percentile * sorted.length);
+		return sorted[Math.max(0, rank - 1)];
+	}
+
+	private static double toMillis(long nanos) {
+		return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+}
@@ -0,0 +1,113 @@
+package org.entrystore.load;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A minimal client for the REST API of EntryStore that authenticates with a cookie
+ * and is safe to be shared by many threads.
+ */
+public class RestClient {
+
+	public static final String JSON = "application/json";
+
+	public static final String BINARY = "application/octet-stream";
+
+	private static final Duration TIMEOUT = Duration.ofSeconds(60);
+
+	private final HttpClient client = HttpClient.newBuilder()
+			.version(HttpClient.Version.HTTP_1_1)
+			.connectTimeout(Duration.ofSeconds(10))
+			.build();
+
+	private final URI base;
+
+	private String cookie;
+
+	/**
+	 * @param base The base URI of EntryStore, ending with a slash.
+	 */
+	public RestClient(URI base) {
+		this.base = base;
+	}
+
+	public URI getBase() {
+		return base;
+	}
+
+	public void login(String user, String password) throws IOException, InterruptedException {
+		String form = "auth_username=" + URLEncoder.encode(user, UTF_8) + "&auth_password=" + URLEncoder.encode(password, UTF_8);
+		HttpResponse<String> response = send("POST", "auth/cookie", "application/x-www-form-urlencoded", form);
+		if (response.statusCode() != 200) {
+			throw new IOException("Login of " + user + " failed with status " + response.statusCode());
+		}
+		for (String setCookie : response.headers().allValues("Set-Cookie")) {
+			if (setCookie.startsWith("auth_token=")) {
+				cookie = setCookie.split(";", 2)[0];
+			}
+		}
+		if (cookie == null) {
+			throw new IOException("Login response contains no auth_token cookie");
+		}
+	}
+
+	private HttpRequest request(String method, String path, String contentType, HttpRequest.BodyPublisher body) {
+		HttpRequest.Builder request = HttpRequest.newBuilder(base.resolve(path))
+				.timeout(TIMEOUT)
+				.header("Accept", JSON)
+				.method(method, body);
+		if (contentType != null) {
+			request.header("Content-Type", contentType);
+		}
+		if (cookie != null) {
+			request.header("Cookie", cookie);
+		}
+		return request.build();
+	}
+
+	/**
+	 * Sends a request and returns the response including the body.
+	 *
+	 * @param path A path relative to the base URI.
+	 * @param body The request body, or null if there is none.
+	 */
+	public HttpResponse<String> send(String method, String path, String contentType, String body) throws IOException, InterruptedException {
+		HttpRequest.BodyPublisher publisher = body != null ? HttpRequest.BodyPublishers.ofString(body) : HttpRequest.BodyPublishers.noBody();
+		return client.send(request(method, path, contentType, publisher), HttpResponse.BodyHandlers.ofString());
+	}
+
+	/**
+	 * Sends a request and discards the response body, to keep the load on the client low.
+	 *
+	 * @return The status code of the response.
+	 */
+	public int exchange(String method, String path, String contentType, byte[] body) throws IOException, InterruptedException {
+		HttpRequest.BodyPublisher publisher = body != null ? HttpRequest.BodyPublishers.ofByteArray(body) : HttpRequest.BodyPublishers.noBody();
+		return client.send(request(method, path, contentType, publisher), HttpResponse.BodyHandlers.discarding()).statusCode();
+	}
+
+	/**
+	 * Sends a request and parses the JSON response.
+	 *
+	 * @throws IOException If the request did not succeed with one of the expected status codes.
+	 */
+	public JSONObject sendForJson(String method, String path, String body, int... expectedStatus) throws IOException, InterruptedException {
+		HttpResponse<String> response = send(method, path, body != null ? JSON : null, body);
+		for (int status : expectedStatus) {
+			if (response.statusCode() == status) {
+				return response.body() == null || response.body().isBlank() ? new JSONObject() : new JSONObject(response.body());
+			}
+		}
+		throw new IOException(method + " " + path + " failed with status " + response.statusCode());
+	}
+
+}
@@ -0,0 +1,179 @@
+package org.entrystore.load;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.eclipse.rdf4j.model.vocabulary.DCTERMS;
+import org.eclipse.rdf4j.model.vocabulary.FOAF;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.entrystore.LogUtils;
+import org.entrystore.generator.ObjectGenerator;
+import org.entrystore.model.FakeAddress;
+import org.entrystore.model.FakePerson;
+import org.entrystore.rest.util.RDFJSON;
+import org.entrystore.vocabulary.BenchmarkOntology;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.eclipse.rdf4j.model.util.Values.iri;
+import static org.eclipse.rdf4j.model.util.Values.literal;
+
+/**
+ * Populates a context with persons and addresses from the {@link ObjectGenerator}, lists
+ * of persons and entries with binary resources, using the REST API only.
+ */
+public class Seeder {
+
+	public static final String CONTEXT_ID = "loadtest";
+
+	/**
+	 * The maximum number of persons in one list.
+	 */
+	public static final int LIST_SIZE = 500;
+
+	/**
+	 * The entries that have been created in the context.
+	 *
+	 * @param persons   The IDs of the person entries.
+	 * @param lastNames The last names of the persons, with the same order as the entries.
+	 * @param addresses The IDs of the address entries of the persons, with the same order as the entries.
+	 * @param lists     The IDs of the list entries.
+	 * @param listSizes The number of children of each list.
+	 * @param files     The IDs of the entries with a binary resource.
+	 */
+	public record Dataset(String contextId, List<String> persons, List<String> lastNames, List<String> addresses,
+						  List<String> lists, List<Integer> listSizes, List<String> files) {
+	}
+
+	private final RestClient client;
+
+	public Seeder(RestClient client) {
+		this.client = client;
+	}
+
+	public Dataset seed(int size, int files, int fileSize) throws IOException, InterruptedException {
+		createPublicContext();
+
+		List<String> persons = new ArrayList<>();
+		List<String> lastNames = new ArrayList<>();
+		List<String> addresses = new ArrayList<>();
+		for (Object object : ObjectGenerator.createPersonList(size, false)) {
+			if (object instanceof FakePerson person) {
+				String addressId = createEntry(addressMetadata(person.getAddress()));
+				String lastName = sanitize(person.getLastName());
+				persons.add(createEntry(personMetadata(person, lastName, addressId)));
+				lastNames.add(lastName);
+				addresses.add(addressId);
+				if (persons.size() % 100 == 0) {
+					LogUtils.log.info("Created {} persons", persons.size());
+				}
+			}
+		}
+
+		List<String> lists = new ArrayList<>();
+		List<Integer> listSizes = new ArrayList<>();
+		for (int first = 0; first < persons.size(); first += LIST_SIZE) {
+			List<String> children = persons.subList(first, Math.min(first + LIST_SIZE, persons.size()));
+			JSONObject body = new JSONObject().put("resource", new JSONArray(children));
+			lists.add(client.sendForJson("POST", CONTEXT_ID + "?graphtype=list", body.toString(), 201).getString("entryId"));
+			listSizes.add(children.size());
+		}
+
+		List<String> fileEntries = new ArrayList<>();
+		for (int i = 0; i < files; i++) {
+			String entryId = createEntry(null);
+			int status = client.exchange("PUT", CONTEXT_ID + "/resource/" + entryId, RestClient.BINARY, randomBytes(fileSize));
+			if (status / 100 != 2) {
+				throw new IOException("Upload of file failed with status " + status);
+			}
+			fileEntries.add(entryId);
+		}
+
+		LogUtils.log.info("Seeded context {} with {} persons, {} lists and {} files", CONTEXT_ID, persons.size(), lists.size(), fileEntries.size());
+		return new Dataset(CONTEXT_ID, persons, lastNames, addresses, lists, listSizes, fileEntries);
+	}
+
+	/**
+	 * Creates the context and makes it readable for guests, so that its entries are
+	 * included in the public repository which backs the SPARQL endpoint.
+	 */
+	private void createPublicContext() throws IOException, InterruptedException {
+		client.sendForJson("POST", "_contexts?graphtype=context&id=" + CONTEXT_ID, "{}", 201);
+		String entryPath = "_contexts/entry/" + CONTEXT_ID;
+		JSONObject info = client.sendForJson("GET", entryPath, null, 200).getJSONObject("info");
+		String base = client.getBase().toString();
+		JSONObject guest = new JSONObject().put("type", "uri").put("value", base + "_principals/resource/_guest");
+		for (String subject : List.of(base + "_contexts/metadata/" + CONTEXT_ID, base + CONTEXT_ID)) {
+			JSONObject properties = info.optJSONObject(subject);
+			if (properties == null) {
+				properties = new JSONObject();
+				info.put(subject, properties);
+			}
+			properties.append("http://entrystore.org/terms/read", guest);
+		}
+		client.sendForJson("PUT", entryPath, info.toString(), 200, 204);
+	}
+
+	/**
+	 * @param metadata The local metadata, or null to create an entry without metadata.
+	 * @return The ID of the new entry.
+	 */
+	private String createEntry(Model metadata) throws IOException, InterruptedException {
+		JSONObject body = new JSONObject();
+		if (metadata != null) {
+			body.put("metadata", RDFJSON.graphToRdfJsonObject(metadata));
+		}
+		return client.sendForJson("POST", CONTEXT_ID, body.toString(), 201).getString("entryId");
+	}
+
+	/**
+	 * @return The resource URI of an entry that has not been created yet, the server
+	 * replaces the placeholder "_newId" with the actual ID.
+	 */
+	private IRI newResource() {
+		return iri(client.getBase() + CONTEXT_ID + "/resource/_newId");
+	}
+
+	private Model addressMetadata(FakeAddress address) {
+		IRI resource = newResource();
+		Model model = new LinkedHashModel();
+		model.add(resource, RDF.TYPE, BenchmarkOntology.ADDRESS);
+		model.add(resource, DCTERMS.TITLE, literal(address.getStreet() + ", " + address.getCity()));
+		model.add(resource, BenchmarkOntology.HAS_STREET, literal(address.getStreet()));
+		model.add(resource, BenchmarkOntology.HAS_CITY, literal(address.getCity()));
+		model.add(resource, BenchmarkOntology.HAS_ZIP_CODE, literal(address.getZipCode()));
+		return model;
+	}
+
+	private Model personMetadata(FakePerson person, String lastName, String addressId) {
+		IRI resource = newResource();
+		Model model = new LinkedHashModel();
+		model.add(resource, RDF.TYPE, BenchmarkOntology.PERSON);
+		model.add(resource, DCTERMS.TITLE, literal(person.getFirstName() + " " + lastName));
+		model.add(resource, FOAF.FIRST_NAME, literal(person.getFirstName()));
+		model.add(resource, FOAF.LAST_NAME, literal(lastName));
+		model.add(resource, BenchmarkOntology.HAS_ITERATOR, literal(person.getIterator()));
+		model.add(resource, BenchmarkOntology.HAS_ADDRESS, iri(client.getBase() + CONTEXT_ID + "/resource/" + addressId));
+		return model;
+	}
+
+	/**
+	 * Removes characters that would have to be escaped in Solr and SPARQL queries.
+	 */
+	private static String sanitize(String name) {
+		String sanitized = name.replaceAll("[^\\p{L}]", "");
+		return sanitized.isEmpty() ? "Doe" : sanitized;
+	}
+
+	static byte[] randomBytes(int size) {
+		byte[] bytes = new byte[size];
+		ThreadLocalRandom.current().nextBytes(bytes);
+		return bytes;
+	}
+
+}
@@ -0,0 +1,130 @@
+package org.entrystore.load;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.eclipse.rdf4j.model.vocabulary.DCTERMS;
+import org.eclipse.rdf4j.model.vocabulary.FOAF;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.entrystore.rest.util.RDFJSON;
+import org.entrystore.vocabulary.BenchmarkOntology;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.eclipse.rdf4j.model.util.Values.iri;
+import static org.eclipse.rdf4j.model.util.Values.literal;
+
+/**
+ * Picks operations according to their weights and sends the corresponding requests
+ * for randomly chosen entries of the seeded dataset.
+ */
+public class Workload {
+
+	public static final int PAGE_SIZE = 20;
+
+	private final RestClient client;
+
+	private final Seeder.Dataset dataset;
+
+	private final Operation[] operations;
+
+	private final int[] cumulativeWeights;
+
+	private final int uploadSize;
+
+	public Workload(RestClient client, Seeder.Dataset dataset, Map<Operation, Integer> mix, int uploadSize) {
+		this.client = client;
+		this.dataset = dataset;
+		this.uploadSize = uploadSize;
+		this.operations = mix.keySet().toArray(new Operation[0]);
+		this.cumulativeWeights = new int[operations.length];
+		int sum = 0;
+		for (int i = 0; i < operations.length; i++) {
+			sum += mix.get(operations[i]);
+			cumulativeWeights[i] = sum;
+		}
+	}
+
+	public Operation next(Random random) {
+		int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+		for (int i = 0; i < cumulativeWeights.length; i++) {
+			if (value < cumulativeWeights[i]) {
+				return operations[i];
+			}
+		}
+		return operations[operations.length - 1];
+	}
+
+	private static int randomIndex(List<?> list, Random random) {
+		return random.nextInt(list.size());
+	}
+
+	private static String encode(String value) {
+		return URLEncoder.encode(value, UTF_8);
+	}
+
+	/**
+	 * @return The status code of the response.
+	 */
+	public int execute(Operation operation, Random random) throws IOException, InterruptedException {
+		String context = dataset.contextId();
+		switch (operation) {
+			case ENTRY_GET -> {
+				String entryId = dataset.persons().get(randomIndex(dataset.persons(), random));
+				return client.exchange("GET", context + "/entry/" + entryId + "?includeAll", null, null);
+			}
+			case LIST_PAGE -> {
+				int list = randomIndex(dataset.lists(), random);
+				int pages = (dataset.listSizes().get(list) + PAGE_SIZE - 1) / PAGE_SIZE;
+				int offset = random.nextInt(Math.max(1, pages)) * PAGE_SIZE;
+				return client.exchange("GET", context + "/entry/" + dataset.lists().get(list) +
+						"?includeAll&limit=" + PAGE_SIZE + "&offset=" + offset, null, null);
+			}
+			case SEARCH -> {
+				String lastName = dataset.lastNames().get(randomIndex(dataset.lastNames(), random));
+				return client.exchange("GET", "search?type=solr&limit=" + PAGE_SIZE +
+						"&query=" + encode("title:" + lastName), null, null);
+			}
+			case METADATA_PUT -> {
+				int person = randomIndex(dataset.persons(), random);
+				String entryId = dataset.persons().get(person);
+				byte[] body = RDFJSON.graphToRdfJson(personMetadata(person, random)).getBytes(UTF_8);
+				return client.exchange("PUT", context + "/metadata/" + entryId, RestClient.JSON, body);
+			}
+			case FILE_UPLOAD -> {
+				String entryId = dataset.files().get(randomIndex(dataset.files(), random));
+				return client.exchange("PUT", context + "/resource/" + entryId, RestClient.BINARY, Seeder.randomBytes(uploadSize));
+			}
+			case SPARQL -> {
+				String lastName = dataset.lastNames().get(randomIndex(dataset.lastNames(), random));
+				String query = "SELECT ?person ?city WHERE { ?person <" + FOAF.LAST_NAME + "> \"" + lastName + "\" ; <" +
+						BenchmarkOntology.HAS_ADDRESS + "> ?address . ?address <" + BenchmarkOntology.HAS_CITY + "> ?city } LIMIT " + PAGE_SIZE;
+				return client.exchange("GET", context + "/sparql?query=" + encode(query), null, null);
+			}
+			default -> throw new IllegalArgumentException("Unsupported operation: " + operation);
+		}
+	}
+
+	/**
+	 * Creates new metadata for a person that keeps the last name and the address, so that
+	 * the person is still found by searches and SPARQL queries.
+	 */
+	private Model personMetadata(int person, Random random) {
+		String base = client.getBase() + dataset.contextId() + "/resource/";
+		IRI resource = iri(base + dataset.persons().get(person));
+		String lastName = dataset.lastNames().get(person);
+		Model model = new LinkedHashModel();
+		model.add(resource, RDF.TYPE, BenchmarkOntology.PERSON);
+		model.add(resource, DCTERMS.TITLE, literal("Person " + lastName));
+		model.add(resource, FOAF.LAST_NAME, literal(lastName));
+		model.add(resource, BenchmarkOntology.HAS_ADDRESS, iri(base + dataset.addresses().get(person)));
+		model.add(resource, DCTERMS.DESCRIPTION, literal("Revision " + random.nextInt(1_000_000)));
+		return model;
+	}
+
+}
@@ -16,7 +16,6 @@
 
 package org.entrystore.harvesting.oaipmh.jobs;
 
-import ORG.oclc.oai.harvester2.verb.ListRecords;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.eclipse.rdf4j.model.IRI;
@@ -54,18 +53,29 @@ import java.net.UnknownHostException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ListRecordsJob implements Job, InterruptableJob {
 
 	private final Log log = LogFactory.getLog(ListRecordsJob.class);
 
-	// Parse XML Utils
-	private static XPathExpression expr;
+	private static final int QUEUE_CAPACITY = 8;
 
-	private static XPath xpath;
+	// XPath instances are not thread-safe
+	private static final ThreadLocal<XPath> xpath = ThreadLocal.withInitial(() -> {
+		XPath xp = XPathFactory.newInstance().newXPath();
+		xp.setNamespaceContext(createNamespace());
+		return xp;
+	});
 
 	private static boolean interrupted = false;
 
@@ -110,9 +120,6 @@ public class ListRecordsJob implements Job, InterruptableJob {
 		JobDataMap dataMap = jobContext.getJobDetail().getJobDataMap();
 		RepositoryManagerImpl rm = (RepositoryManagerImpl) dataMap.get("rm");
 		ContextManager cm = rm.getContextManager();
-		final PrincipalManager pm = rm.getPrincipalManager();
-
-		initXpath();
 
 		URI contextURI = (URI)dataMap.get("contextURI");
 		String contextId = contextURI.toString().substring(contextURI.toString().lastIndexOf("/")+1);
@@ -150,132 +157,164 @@ public class ListRecordsJob implements Job, InterruptableJob {
 		log.info("OAI-PMH until: " + until);
 		log.info("OAI-PMH set: " + set);
 
-		// Get the listrecord from the OAI-PMH target
-		ListRecords listRecords = null;
-		try {
-			listRecords = new ListRecords(target, from, until, set, metadataType);
-		} catch (UnknownHostException e) {
-			// TODO: handle exception write in the RDF tree
-			log.info("UnknownHostException since the target is unknown, the havester will be deleted");
-			jobContext.getScheduler().interrupt(jobContext.getJobDetail().getName(), jobContext.getJobDetail().getGroup());
-			return ;
-		}
+		int batchSize = rm.getConfiguration().getInt(Settings.HARVESTER_OAI_BATCH_SIZE, 50);
+		BlockingQueue<List<Element>> batches = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+		ListRecordsReader reader = new ListRecordsReader(target, from, until, set, metadataType, batchSize, batches);
 
-		ThreadPoolExecutor exService = null;
+		int threadCount = 0;
 		if ("on".equalsIgnoreCase(rm.getConfiguration().getString(Settings.HARVESTER_OAI_MULTITHREADED, "off"))) {
 			int cpuCount = Runtime.getRuntime().availableProcessors();
 			if (cpuCount == 1) {
 				log.info("Multi-threaded harvesting activated, but only one CPU found; continuing single-threaded");
 			} else {
-				int threadCount = cpuCount + 1;
+				threadCount = cpuCount + 1;
 				log.info("Creating executor for multi-threaded harvesting, using thread pool of " + threadCount + " (available CPUs + 1) threads");
-				exService = (ThreadPoolExecutor) Executors.newFixedThreadPool(threadCount);
 			}
 		} else {
 			log.info("Performing single-threaded harvesting");
 		}
 
 		Date before = new Date();
-		int j = 0;
-		while (listRecords != null) {
-			NodeList errors = listRecords.getErrors();
-			if (errors != null && errors.getLength() > 0) {
-				log.error("Found errors");
-				int length = errors.getLength();
-				for (int i = 0; i < length; ++i) {
-					Node item = errors.item(i);
-					System.out.println(item);
-				}
-				log.error("Error record: " + listRecords.toString());
-				break;
-			}
+		int count = harvest(rm, context, target, metadataType, reader, batches, threadCount);
+
+		Exception readerException = reader.getException();
+		if (readerException instanceof UnknownHostException) {
+			// TODO: handle exception write in the RDF tree
+			log.info("UnknownHostException since the target is unknown, the havester will be deleted");
+			jobContext.getScheduler().interrupt(jobContext.getJobDetail().getName(), jobContext.getJobDetail().getGroup());
+			return;
+		} else if (readerException != null) {
+			log.error("Harvesting stopped prematurely: " + readerException.getMessage());
+		}
 
-			//out.write(listRecords.toString().getBytes());
+		log.info("OAI-PMH harvester done with execution");
+		long diff = new Date().getTime() - before.getTime();
+		if (count > 0) {
+			log.info("Harvesting of " + count + " records took " + diff + " ms (average of " + diff/count + " ms per record)");
+		}
+	}
 
-			// Get the <Root>-element
-			final Element el = listRecords.getDocument().getDocumentElement();
-			if (el.getElementsByTagName("ListRecords").getLength() == 0) {
-				log.error("No ListRecords");
-				throw new Exception("No ListRecords");
-			}
+	/**
+	 * Runs the reader and creates entries from the records it puts into the queue.
+	 *
+	 * @param threadCount The number of harvesting threads, or 0 to create the entries in the calling thread.
+	 * @return The number of records that have been processed.
+	 */
+	int harvest(RepositoryManagerImpl rm, Context context, String target, String metadataType, ListRecordsReader reader, BlockingQueue<List<Element>> batches, int threadCount) throws InterruptedException {
+		final PrincipalManager pm = rm.getPrincipalManager();
+		vf = rm.getValueFactory();
+
+		ExecutorService exService = null;
+		Semaphore permits = null;
+		if (threadCount > 0) {
+			exService = Executors.newFixedThreadPool(threadCount);
+			// at most two batches per thread are in flight, the next batch is
+			// only submitted after a previous one has been processed
+			permits = new Semaphore(threadCount * 2);
+		}
 
-			// Get the <ListRecords> element
-			Element listRecordsElement = (Element) el.getElementsByTagName("ListRecords").item(0);
-			NodeList recordList = listRecordsElement.getElementsByTagName("record");
-			// old NodeList recordList = getRecords(listRecordsElement);
+		// The reader fetches and parses pages in its own thread, it prefetches
+		// the next page while the records of the current page are converted
+		Thread readerThread = new Thread(reader, "oai-pmh-reader-" + context.getEntry().getId());
+		readerThread.setDaemon(true);
+		readerThread.start();
 
-			// Create entries from the XML
-			for (int i = 0; i < recordList.getLength(); i++) {
-				final Element recordElement = (Element) recordList.item(i).cloneNode(true);
+		AtomicInteger j = new AtomicInteger();
+		try {
+			while (true) {
+				final List<Element> batch = batches.take();
+				if (batch == ListRecordsReader.END) {
+					break;
+				}
+				if (interrupted) {
+					reader.stop();
+					continue;
+				}
 
 				if (exService == null) {
-					try {
-						createEntry(context, recordElement, target, metadataType);
-					} catch (XPathExpressionException e) {
-						log.error(e.getMessage());
-					}
+					createEntries(rm, context, batch, target, metadataType, j);
 				} else {
-					exService.execute(new Runnable() {
-						public void run() {
+					permits.acquire();
+					final Semaphore finalPermits = permits;
+					try {
+						exService.execute(() -> {
 							try {
 								URI currentUser = pm.getAuthenticatedUserURI();
 								try {
 									pm.setAuthenticatedUserURI(pm.getAdminUser().getURI());
-									createEntry(context, recordElement, target, metadataType);
+									createEntries(rm, context, batch, target, metadataType, j);
 								} finally {
 									pm.setAuthenticatedUserURI(currentUser);
 								}
-							} catch (XPathExpressionException e) {
-								log.error(e.getMessage());
+							} finally {
+								finalPermits.release();
 							}
-						}
-					});
-					// not sure whether the following is necessary
-					while (exService.getQueue().size() > 250) {
-						log.info("Waiting before submitting additional Runnables, current queue size is " + exService.getQueue().size());
-						Thread.sleep(50);
-						log.info("Continuing, the current queue size is " + exService.getQueue().size());
+						});
+					} catch (RejectedExecutionException ree) {
+						permits.release();
+						throw ree;
 					}
 				}
-				log.debug("total index: " + j++);
 			}
-
-			// Check if there is any resumption token
-			String resumptionToken = listRecords.getResumptionToken();
-			if (resumptionToken == null || resumptionToken.length() == 0) {
-				listRecords = null;
-			} else {
-				log.info("Got resumption token");
-				listRecords = new ListRecords(target, resumptionToken);
+		} finally {
+			reader.stop();
+			if (readerThread.isAlive()) {
+				// unblocks the reader in case it waits for free space in the queue
+				readerThread.interrupt();
 			}
-		}
-
-		if (exService != null) {
-			while (exService.getQueue().size() > 0) {
-				log.info("Runnables left in queue: " + exService.getQueue().size() + ", waiting");
-				Thread.sleep(2000);
+			if (exService != null) {
+				exService.shutdown();
+				if (!exService.awaitTermination(1, TimeUnit.HOURS)) {
+					log.warn("Timeout while waiting for harvesting threads to finish");
+				}
 			}
-			exService.shutdown();
 		}
+		return j.get();
+	}
 
-		log.info("OAI-PMH harvester done with execution");
-		long diff = new Date().getTime() - before.getTime();
-		if (j > 0) {
-			log.info("Harvesting of " + j + " records took " + diff + " ms (average of " + diff/j + " ms per record)");
+	/**
+	 * Creates the entries of a batch in one repository transaction. If the transaction
+	 * fails, the records of the batch are written again in one transaction per record,
+	 * so that a failing record does not affect the other records of the batch.
+	 */
+	private void createEntries(RepositoryManagerImpl rm, Context context, List<Element> batch, String target, String metadataType, AtomicInteger counter) {
+		try {
+			rm.runInTransaction(() -> {
+				for (Element recordElement : batch) {
+					convertRecord(context, recordElement, target, metadataType);
+				}
+			});
+		} catch (RuntimeException e) {
+			log.warn("Unable to write batch of " + batch.size() + " records in one transaction, writing records one by one: " + e.getMessage());
+			for (Element recordElement : batch) {
+				try {
+					rm.runInTransaction(() -> convertRecord(context, recordElement, target, metadataType));
+				} catch (RuntimeException re) {
+					log.error("Unable to create entry from record: " + re.getMessage());
+				}
+			}
 		}
+		log.debug("total index: " + counter.addAndGet(batch.size()));
 	}
 
-	private static void initXpath() {
-		XPathFactory factory = XPathFactory.newInstance();
-		xpath = factory.newXPath();
-		xpath.setNamespaceContext(createNamespace());
+	private void convertRecord(Context context, Element recordElement, String target, String metadataType) {
+		try {
+			createEntry(context, recordElement, target, metadataType);
+		} catch (XPathExpressionException e) {
+			log.error(e.getMessage());
+		}
 	}
 
 	public void createEntry(Context context, Element recordElement, String target, String metadataType) throws XPathExpressionException {
 		String identifier = getIdentifier(recordElement);
 		String datestamp = getDatestamp(recordElement);
 
-		if (identifier == null) {
+		if (identifier == null || identifier.isBlank()) {
+			log.warn("Skipping record without identifier");
+			return;
+		}
+		if (isDeleted(recordElement)) {
+			log.debug("Skipping deleted record " + identifier);
 			return;
 		}
 
@@ -386,9 +425,13 @@ public class ListRecordsJob implements Job, InterruptableJob {
 		}
 	}
 
+	private static boolean isDeleted(Element el) throws XPathExpressionException {
+		XPathExpression expr = xpath.get().compile("oai:header/@status");
+		return "deleted".equals(expr.evaluate(el, XPathConstants.STRING));
+	}
+
 	private static String getDatestamp(Element el) throws XPathExpressionException {
-		initXpath();
-		expr = xpath.compile("oai:header/oai:datestamp");
+		XPathExpression expr = xpath.get().compile("oai:header/oai:datestamp");
 		return (String) expr.evaluate(el, XPathConstants.STRING);
 	}
 
@@ -406,19 +449,20 @@ public class ListRecordsJob implements Job, InterruptableJob {
 	}
 
 	private static Node getMetadataNode(Element el, String metadataType) throws XPathExpressionException {
-		initXpath();
+		XPathExpression expr;
 		if (metadataType.equals("oai_dc")) {
-			expr = xpath.compile("oai:metadata/oai_dc:dc");
+			expr = xpath.get().compile("oai:metadata/oai_dc:dc");
 		} else if (metadataType.equals("rdn_dc")) {
-			expr = xpath.compile("oai:metadata/rdn_dc:rdndc");
+			expr = xpath.get().compile("oai:metadata/rdn_dc:rdndc");
+		} else {
+			return null;
 		}
 		return (Node) expr.evaluate(el, XPathConstants.NODE);
 	}
 
 	private static NodeList getAboutNodes(Element el, String metadataType) throws XPathExpressionException {
-		initXpath();
 		if (metadataType.equals("oai_dc") || metadataType.equals("rdn_dc")) {
-			expr = xpath.compile("oai:about/oai_dc:dc");
+			XPathExpression expr = xpath.get().compile("oai:about/oai_dc:dc");
 			return (NodeList) expr.evaluate(el, XPathConstants.NODESET);
 		}
 
@@ -426,22 +470,23 @@ public class ListRecordsJob implements Job, InterruptableJob {
 	}
 
 	private static String getIdentifier(Element el) throws XPathExpressionException {
-		initXpath();
-		expr = xpath.compile("oai:header/oai:identifier");
+		XPathExpression expr = xpath.get().compile("oai:header/oai:identifier");
 		return (String) expr.evaluate(el, XPathConstants.STRING);
 	}
 
 	public static NodeList getRecords(Element el) throws XPathExpressionException {
-		expr = xpath.compile("oai:record");
+		XPathExpression expr = xpath.get().compile("oai:record");
 		return (NodeList) expr.evaluate(el, XPathConstants.NODESET);
 	}
 
 	private static String getResourceIdentifier(Element el, String metadataType) throws XPathExpressionException {
-		initXpath();
+		XPathExpression expr;
 		if (metadataType.equals("oai_dc")) {
-			expr = xpath.compile("oai:metadata/oai_dc:dc/dc:identifier");
+			expr = xpath.get().compile("oai:metadata/oai_dc:dc/dc:identifier");
 		} else if (metadataType.equals("rdn_dc")) {
-			expr = xpath.compile("oai:metadata/rdn_dc:rdndc/dc:identifier");
+			expr = xpath.get().compile("oai:metadata/rdn_dc:rdndc/dc:identifier");
+		} else {
+			return null;
 		}
 
 		// we only want URIs as identifiers and discard other strings
@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.harvesting.oaipmh.jobs;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import javax.xml.transform.dom.DOMResult;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Streams the pages of an OAI-PMH ListRecords response into a bounded queue.
+ *
+ * <p>Each page is parsed with StAX while it is being received and every
+ * <code>record</code> element is materialized as a small standalone DOM element,
+ * so there is never a DOM of the whole page in memory. Records are put into the
+ * queue in batches; the queue blocks the reader if the consumers fall behind.
+ * As soon as the resumption token of a page has been parsed the next page is
+ * requested, i.e., the following page is fetched while the records of the
+ * current page are still being converted.</p>
+ *
+ * <p>The end of the stream is signalled by putting {@link #END} into the queue.</p>
+ */
+public class ListRecordsReader implements Runnable {
+
+	private static final Log log = LogFactory.getLog(ListRecordsReader.class);
+
+	public static final List<Element> END = Collections.emptyList();
+
+	private static final String OAI_NS = "http://www.openarchives.org/OAI/2.0/";
+
+	private static final int MAX_RETRIES = 3;
+
+	private static final int DEFAULT_RETRY_AFTER_SECONDS = 10;
+
+	private static final int TIMEOUT = 60000;
+
+	private final String target;
+
+	private final String from;
+
+	private final String until;
+
+	private final String set;
+
+	private final String metadataPrefix;
+
+	private final int batchSize;
+
+	private final BlockingQueue<List<Element>> queue;
+
+	private final XMLInputFactory inputFactory;
+
+	private final XMLOutputFactory outputFactory;
+
+	private final DocumentBuilder documentBuilder;
+
+	private volatile Exception exception;
+
+	private volatile boolean stopped = false;
+
+	private int recordCount = 0;
+
+	private int pageCount = 0;
+
+	public ListRecordsReader(String target, String from, String until, String set, String metadataPrefix, int batchSize, BlockingQueue<List<Element>> queue) throws ParserConfigurationException {
+		this.target = target;
+		this.from = from;
+		this.until = until;
+		this.set = set;
+		this.metadataPrefix = metadataPrefix;
+		this.batchSize = Math.max(1, batchSize);
+		this.queue = queue;
+
+		inputFactory = XMLInputFactory.newInstance();
+		inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+		inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		outputFactory = XMLOutputFactory.newInstance();
+
+		DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+		dbf.setNamespaceAware(true);
+		documentBuilder = dbf.newDocumentBuilder();
+	}
+
+	public void run() {
+		try {
+			String url = createListRecordsURL();
+			while (url != null && !stopped) {
+				String resumptionToken = readPage(url);
+				pageCount++;
+				if (resumptionToken == null || resumptionToken.isEmpty()) {
+					url = null;
+				} else {
+					log.info("Got resumption token, requesting page " + (pageCount + 1));
+					url = target + "?verb=ListRecords&resumptionToken=" + URLEncoder.encode(resumptionToken, UTF_8);
+				}
+			}
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			exception = ie;
+		} catch (Exception e) {
+			exception = e;
+			log.error("Error when reading ListRecords response: " + e.getMessage());
+		} finally {
+			try {
+				queue.put(END);
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		log.info("Read " + recordCount + " records in " + pageCount + " pages");
+	}
+
+	/**
+	 * Stops the reader after the current page. Consumers must keep draining the
+	 * queue until {@link #END} has been received.
+	 */
+	public void stop() {
+		stopped = true;
+	}
+
+	/**
+	 * @return The exception that terminated the reader, or null if the reader
+	 * finished normally.
+	 */
+	public Exception getException() {
+		return exception;
+	}
+
+	public int getRecordCount() {
+		return recordCount;
+	}
+
+	private String createListRecordsURL() {
+		StringBuilder url = new StringBuilder(target);
+		url.append("?verb=ListRecords");
+		url.append("&metadataPrefix=").append(URLEncoder.encode(metadataPrefix, UTF_8));
+		if (from != null) {
+			url.append("&from=").append(URLEncoder.encode(from, UTF_8));
+		}
+		if (until != null) {
+			url.append("&until=").append(URLEncoder.encode(until, UTF_8));
+		}
+		if (set != null) {
+			url.append("&set=").append(URLEncoder.encode(set, UTF_8));
+		}
+		return url.toString();
+	}
+
+	/**
+	 * Reads one page and hands over its records to the queue.
+	 *
+	 * @return The resumption token of the page, or null if there is none.
+	 */
+	private String readPage(String url) throws IOException, XMLStreamException, InterruptedException {
+		log.debug("Requesting " + url);
+		HttpURLConnection con = openConnection(url);
+		try (InputStream in = getInputStream(con)) {
+			XMLEventReader reader = inputFactory.createXMLEventReader(in);
+			try {
+				boolean listRecordsFound = false;
+				String resumptionToken = null;
+				List<Element> batch = new ArrayList<>(batchSize);
+				while (reader.hasNext()) {
+					XMLEvent event = reader.nextEvent();
+					if (!event.isStartElement()) {
+						continue;
+					}
+					StartElement start = event.asStartElement();
+					QName name = start.getName();
+					if (!OAI_NS.equals(name.getNamespaceURI())) {
+						continue;
+					}
+					switch (name.getLocalPart()) {
+						case "ListRecords" -> listRecordsFound = true;
+						case "record" -> {
+							batch.add(readRecord(start, reader));
+							recordCount++;
+							if (batch.size() >= batchSize) {
+								queue.put(batch);
+								batch = new ArrayList<>(batchSize);
+							}
+						}
+						case "resumptionToken" -> resumptionToken = reader.getElementText().trim();
+						case "error" -> {
+							Attribute code = start.getAttributeByName(new QName("code"));
+							String message = reader.getElementText();
+							if (code != null && "noRecordsMatch".equals(code.getValue())) {
+								log.info("No records match the request: " + message);
+								return null;
+							}
+							throw new IOException("OAI-PMH error" + (code != null ? " " + code.getValue() : "") + ": " + message);
+						}
+						default -> {
+						}
+					}
+				}
+				if (!batch.isEmpty()) {
+					queue.put(batch);
+				}
+				if (!listRecordsFound) {
+					throw new IOException("No ListRecords element in response from " + url);
+				}
+				return resumptionToken;
+			} finally {
+				reader.close();
+			}
+		} finally {
+			con.disconnect();
+		}
+	}
+
+	/**
+	 * Copies the subtree of the current record into a DOM element of its own.
+	 */
+	private Element readRecord(StartElement start, XMLEventReader reader) throws XMLStreamException {
+		Document doc = documentBuilder.newDocument();
+		XMLEventWriter writer = outputFactory.createXMLEventWriter(new DOMResult(doc));
+		writer.add(start);
+		int depth = 1;
+		while (depth > 0 && reader.hasNext()) {
+			XMLEvent event = reader.nextEvent();
+			if (event.isStartElement()) {
+				depth++;
+			} else if (event.isEndElement()) {
+				depth--;
+			}
+			writer.add(event);
+		}
+		writer.close();
+		return doc.getDocumentElement();
+	}
+
+	private HttpURLConnection openConnection(String url) throws IOException, InterruptedException {
+		for (int attempt = 0; ; attempt++) {
+			HttpURLConnection con = (HttpURLConnection) URI.create(url).toURL().openConnection();
+			con.setRequestProperty("User-Agent", "EntryStore OAI-PMH Harvester");
+			con.setRequestProperty("Accept-Encoding", "gzip");
+			con.setConnectTimeout(TIMEOUT);
+			con.setReadTimeout(TIMEOUT);
+			int status = con.getResponseCode();
+			if (status == HttpURLConnection.HTTP_UNAVAILABLE && attempt < MAX_RETRIES) {
+				int retryAfter = DEFAULT_RETRY_AFTER_SECONDS;
+				String retryAfterHeader = con.getHeaderField("Retry-After");
+				if (retryAfterHeader != null) {
+					try {
+						retryAfter = Integer.parseInt(retryAfterHeader.trim());
+					} catch (NumberFormatException nfe) {
+						log.debug("Unable to parse Retry-After header: " + retryAfterHeader);
+					}
+				}
+				con.disconnect();
+				log.info("Target responded with 503, retrying in " + retryAfter + " seconds");
+				Thread.sleep(retryAfter * 1000L);
+				continue;
+			}
+			if (status != HttpURLConnection.HTTP_OK) {
+				con.disconnect();
+				throw new IOException("Target responded with HTTP status " + status + " for " + url);
+			}
+			return con;
+		}
+	}
+
+	private InputStream getInputStream(HttpURLConnection con) throws IOException {
+		InputStream in = new BufferedInputStream(con.getInputStream());
+		if ("gzip".equalsIgnoreCase(con.getContentEncoding())) {
+			in = new GZIPInputStream(in);
+		}
+		return in;
+	}
+
+}
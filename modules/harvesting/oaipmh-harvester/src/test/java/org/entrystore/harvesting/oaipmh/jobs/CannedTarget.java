@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.harvesting.oaipmh.jobs;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * OAI-PMH target that answers ListRecords requests with the canned pages
+ * list-records-1.xml and list-records-2.xml. The second page is returned for
+ * the resumption token of the first page.
+ */
+class CannedTarget implements AutoCloseable {
+
+	private final HttpServer server;
+
+	private final List<String> queries = new CopyOnWriteArrayList<>();
+
+	CannedTarget() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/oai", exchange -> {
+			String query = URLDecoder.decode(exchange.getRequestURI().getRawQuery(), UTF_8);
+			queries.add(query);
+			String page = query.contains("resumptionToken=page 2") ? "list-records-2.xml" : "list-records-1.xml";
+			byte[] body;
+			try (InputStream in = CannedTarget.class.getResourceAsStream(page)) {
+				body = in.readAllBytes();
+			}
+			exchange.getResponseHeaders().set("Content-Type", "text/xml; charset=UTF-8");
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.start();
+	}
+
+	String getURL() {
+		return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/oai";
+	}
+
+	/**
+	 * @return The decoded query strings of all requests, in the order they were received.
+	 */
+	List<String> getQueries() {
+		return queries;
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+	}
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.harvesting.oaipmh.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import org.entrystore.Context;
+import org.entrystore.Entry;
+import org.entrystore.EntryType;
+import org.entrystore.GraphType;
+import org.entrystore.PrincipalManager;
+import org.entrystore.config.Config;
+import org.entrystore.impl.RepositoryManagerImpl;
+import org.entrystore.impl.converters.ConverterManagerImpl;
+import org.entrystore.impl.converters.OAI_DC2RDFGraphConverter;
+import org.entrystore.repository.config.PropertiesConfiguration;
+import org.entrystore.repository.config.Settings;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Element;
+
+public class ListRecordsJobTest {
+
+	private RepositoryManagerImpl rm;
+
+	private Context context;
+
+	private CannedTarget target;
+
+	static String text(Element record, String localName) {
+		return record.getElementsByTagNameNS("*", localName).item(0).getTextContent();
+	}
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		Config config = new PropertiesConfiguration("EntryStore Configuration");
+		config.setProperty(Settings.STORE_TYPE, "memory");
+		config.setProperty(Settings.BASE_URL, "http://localhost:8181/");
+		config.setProperty(Settings.REPOSITORY_REWRITE_BASEREFERENCE, false);
+		config.setProperty(Settings.SOLR, "off");
+		rm = new RepositoryManagerImpl("http://localhost:8181/", config);
+		ConverterManagerImpl.register("oai_dc", new OAI_DC2RDFGraphConverter());
+
+		PrincipalManager pm = rm.getPrincipalManager();
+		pm.setAuthenticatedUserURI(pm.getAdminUser().getURI());
+		context = (Context) rm.getContextManager().createResource(null, GraphType.Context, null, null).getResource();
+		target = new CannedTarget();
+	}
+
+	@AfterEach
+	public void tearDown() {
+		target.close();
+		rm.shutdown();
+	}
+
+	private int harvest(int batchSize, int threadCount) throws Exception {
+		BlockingQueue<List<Element>> batches = new ArrayBlockingQueue<>(2);
+		ListRecordsReader reader = new ListRecordsReader(target.getURL(), null, null, null, "oai_dc", batchSize, batches);
+		int count = new ListRecordsJob().harvest(rm, context, target.getURL(), "oai_dc", reader, batches, threadCount);
+		assertNull(reader.getException());
+		return count;
+	}
+
+	private Set<Entry> getByIdentifier(String identifier) {
+		return context.getByExternalMdURI(URI.create(target.getURL() + "?verb=GetRecord&identifier=" + identifier + "&metadataPrefix=oai_dc"));
+	}
+
+	private void assertHarvested() {
+		for (int i = 1; i <= 3; i++) {
+			Set<Entry> entries = getByIdentifier("oai:test:" + i);
+			assertEquals(1, entries.size(), "Record " + i);
+			Entry entry = entries.iterator().next();
+			assertEquals(EntryType.Reference, entry.getEntryType());
+			assertEquals(URI.create("http://example.com/resource/" + i), entry.getResourceURI());
+			assertNotNull(entry.getCachedExternalMetadata());
+			assertTrue(entry.getCachedExternalMetadata().getGraph().size() > 0);
+		}
+		// the deleted and the malformed record
+		assertTrue(getByIdentifier("oai:test:4").isEmpty());
+		assertTrue(getByIdentifier("").isEmpty());
+		assertTrue(context.getByResourceURI(URI.create("http://example.com/resource/5")).isEmpty());
+	}
+
+	@Test
+	public void harvestsAllPagesSingleThreaded() throws Exception {
+		assertEquals(5, harvest(2, 0));
+		assertHarvested();
+	}
+
+	@Test
+	public void harvestsAllPagesMultiThreaded() throws Exception {
+		assertEquals(5, harvest(1, 3));
+		assertHarvested();
+	}
+
+	@Test
+	public void reharvestingDoesNotDuplicateEntries() throws Exception {
+		harvest(2, 0);
+		assertEquals(5, harvest(2, 0));
+		assertHarvested();
+	}
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.harvesting.oaipmh.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Element;
+
+public class ListRecordsReaderTest {
+
+	private CannedTarget target;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		target = new CannedTarget();
+	}
+
+	@AfterEach
+	public void tearDown() {
+		target.close();
+	}
+
+	private List<List<Element>> readAll(ListRecordsReader reader, BlockingQueue<List<Element>> queue) throws InterruptedException {
+		Thread thread = new Thread(reader);
+		thread.start();
+		List<List<Element>> batches = new ArrayList<>();
+		while (true) {
+			List<Element> batch = queue.poll(30, TimeUnit.SECONDS);
+			assertNotNull(batch, "Reader did not finish");
+			if (batch == ListRecordsReader.END) {
+				break;
+			}
+			batches.add(batch);
+		}
+		thread.join();
+		return batches;
+	}
+
+	@Test
+	public void followsResumptionToken() throws Exception {
+		BlockingQueue<List<Element>> queue = new ArrayBlockingQueue<>(2);
+		ListRecordsReader reader = new ListRecordsReader(target.getURL(), "2024-01-01", null, null, "oai_dc", 2, queue);
+		List<List<Element>> batches = readAll(reader, queue);
+
+		assertNull(reader.getException());
+		assertEquals(5, reader.getRecordCount());
+		// batches do not span pages
+		assertEquals(List.of(2, 2, 1), batches.stream().map(List::size).toList());
+
+		List<String> queries = target.getQueries();
+		assertEquals(2, queries.size());
+		assertTrue(queries.get(0).contains("verb=ListRecords"));
+		assertTrue(queries.get(0).contains("metadataPrefix=oai_dc"));
+		assertTrue(queries.get(0).contains("from=2024-01-01"));
+		assertEquals("verb=ListRecords&resumptionToken=page 2", queries.get(1));
+	}
+
+	@Test
+	public void recordsAreStandaloneElements() throws Exception {
+		BlockingQueue<List<Element>> queue = new ArrayBlockingQueue<>(8);
+		List<List<Element>> batches = readAll(new ListRecordsReader(target.getURL(), null, null, null, "oai_dc", 10, queue), queue);
+
+		List<Element> records = batches.stream().flatMap(List::stream).toList();
+		assertEquals(5, records.size());
+		for (Element record : records) {
+			assertEquals("record", record.getLocalName());
+			assertEquals(record, record.getOwnerDocument().getDocumentElement());
+		}
+		assertEquals("oai:test:1", ListRecordsJobTest.text(records.get(0), "identifier"));
+		assertEquals("deleted", ((Element) records.get(3).getElementsByTagNameNS("*", "header").item(0)).getAttribute("status"));
+	}
+
+	@Test
+	public void unreachableTargetIsReported() throws Exception {
+		String url = target.getURL();
+		target.close();
+		BlockingQueue<List<Element>> queue = new ArrayBlockingQueue<>(2);
+		ListRecordsReader reader = new ListRecordsReader(url, null, null, null, "oai_dc", 2, queue);
+
+		assertTrue(readAll(reader, queue).isEmpty());
+		assertNotNull(reader.getException());
+	}
+
+}
@@ -16,6 +16,8 @@
 
 package org.entrystore.rest.standalone;
 
+import org.entrystore.rest.util.FileRangeRepresentation;
+
 /**
  * Main class to start EntryStore using Jetty.
  *
@@ -23,4 +25,9 @@ package org.entrystore.rest.standalone;
  */
 public class EntryStoreApplicationStandaloneJetty extends EntryStoreApplicationStandalone {
 
+	public static void main(String[] args) {
+		FileRangeRepresentation.setFileTransfer(new JettyFileTransfer());
+		EntryStoreApplicationStandalone.main(args);
+	}
+
 }
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.rest.standalone;
+
+import org.eclipse.jetty.server.HttpOutput;
+import org.entrystore.rest.util.FileTransfer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes files to Jetty responses as memory-mapped buffers. Jetty passes buffers that
+ * are larger than its aggregation buffer directly to the socket, so the file content
+ * is sent from the page cache without being copied into the heap. Jetty does not
+ * expose the socket channel of a response, so sendfile cannot be used.
+ */
+public class JettyFileTransfer implements FileTransfer {
+
+	/**
+	 * Files are mapped in chunks of this size to limit the address space that is used
+	 * by parallel downloads of large files.
+	 */
+	private static final long CHUNK_SIZE = 16 * 1024 * 1024;
+
+	@Override
+	public void transfer(FileChannel file, long position, long count, OutputStream out) throws IOException {
+		if (!(out instanceof HttpOutput httpOutput)) {
+			DEFAULT.transfer(file, position, count, out);
+			return;
+		}
+		long end = position + count;
+		while (position < end) {
+			long length = Math.min(CHUNK_SIZE, end - position);
+			MappedByteBuffer buffer = file.map(FileChannel.MapMode.READ_ONLY, position, length);
+			httpOutput.write(buffer);
+			position += length;
+		}
+	}
+
+}
@@ -16,6 +16,8 @@
 
 package org.entrystore.rest;
 
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.TimeGauge;
 import lombok.Getter;
 import org.apache.commons.fileupload.servlet.FileCleanerCleanup;
 import org.apache.commons.io.FileCleaningTracker;
@@ -29,6 +31,7 @@ import org.entrystore.harvester.Harvester;
 import org.entrystore.harvester.factory.HarvesterFactoryException;
 import org.entrystore.harvesting.oaipmh.harvester.factory.OAIHarvesterFactory;
 import org.entrystore.impl.RepositoryManagerImpl;
+import org.entrystore.impl.StartupTracker;
 import org.entrystore.impl.converters.ConverterManagerImpl;
 import org.entrystore.impl.converters.OAI_DC2RDFGraphConverter;
 import org.entrystore.repository.backup.BackupScheduler;
@@ -89,6 +92,8 @@ import org.entrystore.rest.resources.TokenResource;
 import org.entrystore.rest.resources.UserResource;
 import org.entrystore.rest.resources.ValidatorResource;
 import org.entrystore.rest.util.CORSUtil;
+import org.entrystore.rest.util.PipelineExecutor;
+import org.entrystore.rest.util.jdil.JDILParser;
 import org.restlet.Application;
 import org.restlet.Component;
 import org.restlet.Context;
@@ -99,6 +104,7 @@ import org.restlet.data.ChallengeScheme;
 import org.restlet.data.Reference;
 import org.restlet.routing.Filter;
 import org.restlet.routing.Router;
+import org.restlet.routing.TemplateRoute;
 import org.restlet.security.ChallengeAuthenticator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -114,6 +120,7 @@ import java.util.Date;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Main class to start EntryStore as Restlet Application.
@@ -136,7 +143,7 @@ public class EntryStoreApplication extends Application {
 	/** Central point for accessing a repository */
 	private RepositoryManagerImpl rm;
 
-	private BackupScheduler backupScheduler;
+	private volatile BackupScheduler backupScheduler;
 	@Getter
 	private ArrayList<Harvester> harvesters = new ArrayList<>();
 	private final Component component;
@@ -150,6 +157,8 @@ public class EntryStoreApplication extends Application {
 	private final UserTempLockoutCache userTempLockoutCache;
 	@Getter
 	private final Set<String> reservedNames = new HashSet<>();
+	@Getter
+	private final PipelineExecutor pipelineExecutor;
 
 	public EntryStoreApplication(Context parentContext) {
 		this(null, parentContext, null);
@@ -168,7 +177,8 @@ public class EntryStoreApplication extends Application {
 
 		/*
 		 * should fix the hangs in Acrobat Reader that sometimes occur when
-		 * Acrobat tries to fetch parts of files
+		 * Acrobat tries to fetch parts of files; ranges of local files are
+		 * served by FileRangeRepresentation instead
 		 */
 		getRangeService().setEnabled(false);
 		log.warn("Restlet RangeService deactivated");
@@ -183,6 +193,7 @@ public class EntryStoreApplication extends Application {
 			log.info("EntryStore initialized with a ServletContextListener");
 			cm = rm.getContextManager();
 			pm = rm.getPrincipalManager();
+			JDILParser.setHttpClient(rm::getHttpClient);
 
 			Config config = rm.getConfiguration();
 			this.loginTokenCache = new LoginTokenCache(config);
@@ -249,6 +260,7 @@ public class EntryStoreApplication extends Application {
 			this.rm = new RepositoryManagerImpl(baseURI, confManager.getConfiguration());
 			this.cm = rm.getContextManager();
 			this.pm = rm.getPrincipalManager();
+			JDILParser.setHttpClient(rm::getHttpClient);
 			this.userTempLockoutCache = new UserTempLockoutCache(rm, pm);
 			this.loginTokenCache = new LoginTokenCache(confManager.getConfiguration());
 			Password.loadRules(config);
@@ -275,13 +287,26 @@ public class EntryStoreApplication extends Application {
 			// Load and start backup scheduler
 			boolean backup = "on".equalsIgnoreCase(rm.getConfiguration().getString(Settings.BACKUP_SCHEDULER, "off"));
 			if (backup) {
-				log.info("Starting backup scheduler");
-				startBackupScheduler();
+				log.info("Starting backup scheduler in the background");
+				rm.getStartupTracker().begin("backupScheduler", false);
+				Thread.ofPlatform().name("backup-scheduler-startup").daemon().start(() -> {
+					try {
+						startBackupScheduler();
+						rm.getStartupTracker().ready("backupScheduler");
+					} catch (RuntimeException e) {
+						log.error("Unable to start backup scheduler: {}", e.getMessage());
+						rm.getStartupTracker().failed("backupScheduler");
+					}
+				});
 			} else {
 				log.warn("Backup is disabled in configuration");
 			}
 
 		}
+		this.pipelineExecutor = new PipelineExecutor(rm.getConfiguration(), pm);
+		if (rm.getConfiguration().getBoolean(Settings.METRICS, false)) {
+			registerStartupMetrics();
+		}
 		startupDate = new Date();
 		log.info("EntryStore startup completed in {} ms", startupDate.getTime() - startupBegin.getTime());
 	}
@@ -297,7 +322,17 @@ public class EntryStoreApplication extends Application {
 	@Override
 	public synchronized Restlet createInboundRoot() {
 		Config config = rm.getConfiguration();
-		Router router = new Router(getContext());
+		Router router = new Router(getContext()) {
+			@Override
+			public Restlet getNext(Request request, Response response) {
+				Restlet next = super.getNext(request, response);
+				// expose the matched template so that metrics can be grouped by route
+				if (next instanceof TemplateRoute route) {
+					request.getAttributes().put(PerformanceMetricsFilter.ROUTE_ATTRIBUTE, route.getTemplate().getPattern());
+				}
+				return next;
+			}
+		};
 		//router.setDefaultMatchingMode(Template.MODE_STARTS_WITH);
 
 		boolean passwordAuthOff = "off".equalsIgnoreCase(config.getString(Settings.AUTH_PASSWORD, "on"));
@@ -393,6 +428,7 @@ public class EntryStoreApplication extends Application {
 		router.attach("/{context-id}/quota", QuotaResource.class);
 		router.attach("/{context-id}/lookup", LookupResource.class);
 		router.attach("/{context-id}/execute", ExecutionResource.class);
+		router.attach("/{context-id}/execute/{job-id}", ExecutionResource.class);
 		router.attach("/{context-id}/proxy", ProxyResource.class);
 
 		// principals scope
@@ -475,6 +511,17 @@ public class EntryStoreApplication extends Application {
 		return this.rm;
 	}
 
+	/**
+	 * Exposes the startup time of every subsystem, subsystems that are still starting
+	 * report the time that has passed so far.
+	 */
+	private void registerStartupMetrics() {
+		for (StartupTracker.Component component : rm.getStartupTracker().getComponents().values()) {
+			TimeGauge.builder("startup-" + component.getName(), component, TimeUnit.MILLISECONDS, StartupTracker.Component::getDuration)
+					.register(Metrics.globalRegistry);
+		}
+	}
+
 	private void startBackupScheduler() {
 		URI userURI = getPM().getAuthenticatedUserURI();
 		try {
@@ -527,6 +574,12 @@ public class EntryStoreApplication extends Application {
 	@Override
 	public synchronized void stop() throws Exception {
 		log.info("Shutting down");
+		if (loginTokenCache != null) {
+			loginTokenCache.close();
+		}
+		if (pipelineExecutor != null) {
+			pipelineExecutor.shutdown();
+		}
 		if (rm != null) {
 			rm.shutdown();
 		}
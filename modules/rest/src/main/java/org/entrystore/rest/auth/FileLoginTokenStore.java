@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.rest.auth;
+
+import org.entrystore.config.Config;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static org.entrystore.repository.config.Settings.AUTH_TOKEN_STORE_PATH;
+
+/**
+ * Embedded token store that keeps the tokens in a local file. The file contains one
+ * JSON object per line and is rewritten atomically with all valid tokens on every
+ * flush that has modifications. Not shared between nodes.
+ */
+public class FileLoginTokenStore extends WriteBehindLoginTokenStore {
+
+	private static final Logger log = LoggerFactory.getLogger(FileLoginTokenStore.class);
+
+	private final Path file;
+
+	private final Map<String, UserInfo> tokens = new ConcurrentHashMap<>();
+
+	public FileLoginTokenStore(Config config) throws IOException {
+		this(Path.of(config.getString(AUTH_TOKEN_STORE_PATH)));
+	}
+
+	public FileLoginTokenStore(Path file) throws IOException {
+		this.file = file;
+		if (Files.exists(file)) {
+			read();
+		} else if (file.getParent() != null) {
+			Files.createDirectories(file.getParent());
+		}
+	}
+
+	@Override
+	public Map<String, UserInfo> loadTokens() {
+		return new HashMap<>(tokens);
+	}
+
+	@Override
+	protected UserInfo readToken(String token) {
+		return tokens.get(token);
+	}
+
+	@Override
+	protected void write(Map<String, UserInfo> updated, Set<String> removed) throws IOException {
+		tokens.putAll(updated);
+		removed.forEach(tokens::remove);
+		LocalDateTime now = LocalDateTime.now();
+		tokens.values().removeIf(ui -> ui.getLoginExpiration() != null && ui.getLoginExpiration().isBefore(now));
+
+		Path tmp = file.resolveSibling("." + file.getFileName() + ".tmp");
+		try (BufferedWriter writer = Files.newBufferedWriter(tmp, UTF_8)) {
+			for (Map.Entry<String, UserInfo> e : tokens.entrySet()) {
+				JSONObject json = e.getValue().toJSON();
+				json.put("token", e.getKey());
+				writer.write(json.toString());
+				writer.newLine();
+			}
+		}
+		restrictPermissions(tmp);
+		try {
+			Files.move(tmp, file, REPLACE_EXISTING, ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tmp, file, REPLACE_EXISTING);
+		}
+		log.debug("Wrote {} login tokens to {}", tokens.size(), file);
+	}
+
+	@Override
+	public boolean isShared() {
+		return false;
+	}
+
+	private void read() throws IOException {
+		LocalDateTime now = LocalDateTime.now();
+		int expired = 0;
+		try (BufferedReader reader = Files.newBufferedReader(file, UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isBlank()) {
+					continue;
+				}
+				try {
+					JSONObject json = new JSONObject(line);
+					UserInfo userInfo = UserInfo.fromJSON(json);
+					if (userInfo.getLoginExpiration() != null && userInfo.getLoginExpiration().isBefore(now)) {
+						expired++;
+					} else {
+						tokens.put(json.getString("token"), userInfo);
+					}
+				} catch (JSONException | RuntimeException e) {
+					log.warn("Skipping invalid line in login token store {}: {}", file, e.getMessage());
+				}
+			}
+		}
+		log.info("Loaded {} login tokens from {}, skipped {} expired tokens", tokens.size(), file, expired);
+	}
+
+	private static void restrictPermissions(Path path) {
+		// tokens are credentials and should only be readable by the owner
+		try {
+			Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rw-------"));
+		} catch (UnsupportedOperationException | IOException e) {
+			log.debug("Unable to set permissions of {}: {}", path, e.getMessage());
+		}
+	}
+
+}
@@ -22,10 +22,22 @@ import org.restlet.Request;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
 import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
 import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -42,9 +54,144 @@ public class LoginTokenCache extends TokenCache<String, UserInfo> {
 	private final boolean configTokenUpdateExpiry;
 	public final int MAX_AGE_IN_SECONDS;
 
+	private final LoginTokenStore tokenStore;
+
+	private ScheduledExecutorService tokenStoreSync;
+
+	/**
+	 * Cached tokens by their key in a shared token store, used to apply the modifications
+	 * of other nodes. Tokens that are no longer cached are dropped on synchronization.
+	 */
+	private final Map<String, String> tokensByStoreKey = new ConcurrentHashMap<>();
+
 	public LoginTokenCache(Config config) {
 		this.configTokenUpdateExpiry = config.getBoolean(AUTH_COOKIE_REFRESH_EXPIRATION_ON_ACCESS, true);
 		this.MAX_AGE_IN_SECONDS = config.getInt(AUTH_TOKEN_MAX_AGE, config.getInt(AUTH_COOKIE_MAX_AGE, DEFAULT_MAX_AGE_IN_SECONDS));
+		this.tokenStore = createTokenStore(config);
+		if (tokenStore != null) {
+			try {
+				Map<String, UserInfo> tokens = tokenStore.loadTokens();
+				if (tokenStore.isShared()) {
+					// the shared store only knows hashes of the tokens, they are read when they are used
+					log.info("Found {} login tokens in shared token store", tokens.size());
+				} else {
+					tokens.forEach(super::putToken);
+					log.info("Restored {} login tokens from token store", tokens.size());
+				}
+			} catch (IOException e) {
+				log.error("Unable to restore login tokens: {}", e.getMessage());
+			}
+			Duration interval = config.getDuration(AUTH_TOKEN_STORE_SYNC_INTERVAL, Duration.ofSeconds(10));
+			tokenStoreSync = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "login-token-store");
+				t.setDaemon(true);
+				return t;
+			});
+			tokenStoreSync.scheduleWithFixedDelay(this::synchronizeTokenStore, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * @return The configured token store, or null if tokens are kept in memory only.
+	 */
+	private static LoginTokenStore createTokenStore(Config config) {
+		String type = config.getString(AUTH_TOKEN_STORE, "memory");
+		try {
+			if ("memory".equalsIgnoreCase(type)) {
+				return null;
+			} else if ("file".equalsIgnoreCase(type)) {
+				return new FileLoginTokenStore(config);
+			} else if ("repository".equalsIgnoreCase(type)) {
+				return new RepositoryLoginTokenStore(config);
+			} else {
+				return (LoginTokenStore) Class.forName(type).getConstructor(Config.class).newInstance(config);
+			}
+		} catch (IOException | ReflectiveOperationException | RuntimeException e) {
+			Throwable cause = e instanceof InvocationTargetException ? e.getCause() : e;
+			log.error("Unable to initialize login token store \"{}\", login tokens are kept in memory only: {}", type, cause.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Writes buffered modifications to the token store. If the store is shared, tokens
+	 * that have been removed by other nodes are removed from the cache and expirations
+	 * that have been extended by other nodes are taken over. Only modified tokens are
+	 * loaded if the store keeps track of modifications.
+	 */
+	void synchronizeTokenStore() {
+		LocalDateTime syncStart = LocalDateTime.now();
+		try {
+			tokenStore.flush();
+			if (!tokenStore.isShared()) {
+				return;
+			}
+			tokensByStoreKey.values().removeIf(token -> !tokenCache.containsKey(token));
+			Map<String, Optional<UserInfo>> modified = tokenStore.loadModifiedTokens();
+			if (modified == null) {
+				synchronizeAllTokens(tokenStore.loadTokens(), syncStart);
+				return;
+			}
+			for (Entry<String, Optional<UserInfo>> e : modified.entrySet()) {
+				String token = tokensByStoreKey.get(e.getKey());
+				if (token == null) {
+					// not cached on this node
+					continue;
+				}
+				if (e.getValue().isEmpty()) {
+					super.removeToken(token);
+				} else {
+					mergeToken(token, e.getValue().get());
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			log.error("Unable to synchronize login tokens with token store: {}", e.getMessage());
+		}
+	}
+
+	private void synchronizeAllTokens(Map<String, UserInfo> stored, LocalDateTime syncStart) {
+		for (Entry<String, String> e : tokensByStoreKey.entrySet()) {
+			UserInfo local = tokenCache.get(e.getValue());
+			if (local == null) {
+				continue;
+			}
+			UserInfo shared = stored.get(e.getKey());
+			if (shared != null) {
+				mergeToken(e.getValue(), shared);
+			} else if (local.getLoginTime().isBefore(syncStart)) {
+				// tokens created after the flush are not in the store yet
+				super.removeToken(e.getValue());
+			}
+		}
+	}
+
+	private void mergeToken(String token, UserInfo shared) {
+		UserInfo local = tokenCache.get(token);
+		if (local != null && shared.getLoginExpiration() != null && local.getLoginExpiration() != null &&
+				shared.getLoginExpiration().isAfter(local.getLoginExpiration())) {
+			local.setLoginExpiration(shared.getLoginExpiration());
+		}
+	}
+
+	private void indexStoreKey(String token) {
+		if (tokenStore != null && tokenStore.isShared()) {
+			tokensByStoreKey.put(tokenStore.getKey(token), token);
+		}
+	}
+
+	/**
+	 * Writes all buffered modifications and closes the token store.
+	 */
+	public void close() {
+		if (tokenStore == null) {
+			return;
+		}
+		tokenStoreSync.shutdown();
+		try {
+			tokenStore.close();
+		} catch (IOException e) {
+			log.error("Unable to close login token store: {}", e.getMessage());
+		}
 	}
 
 	public boolean isTokenUpdateExpiry() {
@@ -55,27 +202,71 @@ public class LoginTokenCache extends TokenCache<String, UserInfo> {
 		return MAX_AGE_IN_SECONDS;
 	}
 
-	public void cleanup() {
-		synchronized (tokenCache) {
-			tokenCache.entrySet().removeIf(userInfo -> userInfo.getValue().getLoginExpiration().isBefore(LocalDateTime.now()));
+	@Override
+	protected Instant getExpiration(UserInfo userInfo) {
+		LocalDateTime expiration = userInfo.getLoginExpiration();
+		return expiration != null ? expiration.atZone(ZoneId.systemDefault()).toInstant() : null;
+	}
+
+	@Override
+	public void putToken(String token, UserInfo userInfo) {
+		super.putToken(token, userInfo);
+		indexStoreKey(token);
+		if (tokenStore != null) {
+			tokenStore.putToken(token, userInfo);
+		}
+	}
+
+	@Override
+	public UserInfo getTokenValue(String token) {
+		UserInfo userInfo = super.getTokenValue(token);
+		if (userInfo == null && tokenStore != null && tokenStore.isShared()) {
+			// the token may have been created by another node
+			try {
+				userInfo = tokenStore.getToken(token);
+			} catch (IOException e) {
+				log.error("Unable to read login token from token store: {}", e.getMessage());
+			}
+			if (userInfo != null && userInfo.getLoginExpiration() != null && userInfo.getLoginExpiration().isBefore(LocalDateTime.now())) {
+				userInfo = null;
+			}
+			if (userInfo != null) {
+				super.putToken(token, userInfo);
+				indexStoreKey(token);
+			}
+		}
+		return userInfo;
+	}
+
+	@Override
+	protected void removeTokens(BiPredicate<String, UserInfo> condition) {
+		List<String> removed = new ArrayList<>();
+		super.removeTokens((token, userInfo) -> {
+			if (condition.test(token, userInfo)) {
+				removed.add(token);
+				return true;
+			}
+			return false;
+		});
+		if (tokenStore != null) {
+			removed.forEach(tokenStore::removeToken);
 		}
 	}
 
 	public void removeTokens(String userName) {
 		checkArgument(userName != null, "userName must not be null");
-		synchronized (tokenCache) {
-			tokenCache.entrySet().removeIf(userInfo -> userName.equals(userInfo.getValue().getUserName()));
-		}
+		removeTokens((token, userInfo) -> userName.equals(userInfo.getUserName()));
 	}
 
 	public void removeToken(String token) {
 		checkArgument(token != null, "token must not be null");
-		synchronized (tokenCache) {
-			if (tokenCache.containsKey(token)) {
-				tokenCache.remove(token);
-			} else {
-				log.warn("Token not found in cache");
+		if (tokenCache.containsKey(token)) {
+			super.removeToken(token);
+			if (tokenStore != null) {
+				tokenStore.removeToken(token);
 			}
+		} else {
+			log.warn("Token not found in cache");
 		}
 	}
 
@@ -84,15 +275,12 @@ public class LoginTokenCache extends TokenCache<String, UserInfo> {
 			log.warn("Token is null, authenticated via HTTP Basic?");
 			return;
 		}
-		synchronized (tokenCache) {
-			if (tokenCache.containsKey(token)) {
-				String userName = tokenCache.get(token).getUserName();
-				tokenCache.entrySet().removeIf(userInfo ->
-						(userName.equals(userInfo.getValue().getUserName()) && !token.equals(userInfo.getKey()))
-				);
-			} else {
-				log.warn("Token not found in cache");
-			}
+		UserInfo current = tokenCache.get(token);
+		if (current != null) {
+			String userName = current.getUserName();
+			removeTokens((t, userInfo) -> userName.equals(userInfo.getUserName()) && !token.equals(t));
+		} else {
+			log.warn("Token not found in cache");
 		}
 	}
 
@@ -100,28 +288,26 @@ public class LoginTokenCache extends TokenCache<String, UserInfo> {
 		if (oldUserName == null || newUserName == null) {
 			throw new IllegalArgumentException("Username must not be null");
 		}
-		synchronized (tokenCache) {
-			for (Entry<String, UserInfo> e : tokenCache.entrySet()) {
-				UserInfo oldUi = e.getValue();
-				if (oldUserName.equals(oldUi.userName)) {
-					UserInfo newUi = new UserInfo(newUserName, oldUi.getLoginTime(), oldUi.getLoginTokenMaxAge());
-					newUi.setLoginExpiration(oldUi.getLoginExpiration());
-					newUi.setLastAccessTime(oldUi.getLastAccessTime());
-					newUi.setLastUsedIpAddress(oldUi.getLastUsedIpAddress());
-					newUi.setLastUsedUserAgent(oldUi.getLastUsedUserAgent());
-					tokenCache.put(e.getKey(), newUi);
-				}
+		for (Entry<String, UserInfo> e : tokenCache.entrySet()) {
+			UserInfo oldUi = e.getValue();
+			if (oldUserName.equals(oldUi.userName)) {
+				UserInfo newUi = new UserInfo(newUserName, oldUi.getLoginTime(), oldUi.getLoginTokenMaxAge());
+				newUi.setLoginExpiration(oldUi.getLoginExpiration());
+				newUi.setLastAccessTime(oldUi.getLastAccessTime());
+				newUi.setLastUsedIpAddress(oldUi.getLastUsedIpAddress());
+				newUi.setLastUsedUserAgent(oldUi.getLastUsedUserAgent());
+				putToken(e.getKey(), newUi);
 			}
 		}
 	}
 
 	public Map<String, UserInfo> getTokens(String userName) {
 		checkArgument(userName != null, "Username must not be null");
-		synchronized (tokenCache) {
-			return tokenCache.entrySet().stream()
-					.filter(entry -> userName.equals(entry.getValue().getUserName()))
-					.collect(Collectors.toMap(Entry::getKey, Entry::getValue));
-		}
+		LocalDateTime now = LocalDateTime.now();
+		return tokenCache.entrySet().stream()
+				.filter(entry -> userName.equals(entry.getValue().getUserName()))
+				.filter(entry -> entry.getValue().getLoginExpiration() == null || !entry.getValue().getLoginExpiration().isBefore(now))
+				.collect(Collectors.toMap(Entry::getKey, Entry::getValue));
 	}
 
 	public UserInfo registerUserInteraction(String token, Request request) {
@@ -137,6 +323,10 @@ public class LoginTokenCache extends TokenCache<String, UserInfo> {
 		userInfo.setLastUsedIpAddress(HttpUtil.getClientIpAddress(request));
 		if (configTokenUpdateExpiry) {
 			userInfo.setLoginExpiration(userInfo.getLastAccessTime().plusSeconds(userInfo.getLoginTokenMaxAge()));
+			if (tokenStore != null) {
+				// buffered by the store, repeated refreshes of a token result in a single write
+				tokenStore.putToken(token, userInfo);
+			}
 		}
 		return userInfo;
 	}
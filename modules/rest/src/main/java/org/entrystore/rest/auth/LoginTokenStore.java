@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.rest.auth;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Persists the login tokens of {@link LoginTokenCache}, so that logged in users stay
+ * logged in across restarts and, with a shared store, across several nodes.
+ *
+ * <p>The cache keeps all tokens in memory and forwards modifications to the store.
+ * Implementations are expected to buffer modifications and to write them when
+ * {@link #flush()} is called, which happens periodically.</p>
+ *
+ * <p>Implementations can be configured by class name in
+ * <code>entrystore.auth.token-store</code> and need a public constructor with a
+ * {@link org.entrystore.config.Config} parameter.</p>
+ */
+public interface LoginTokenStore extends Closeable {
+
+	/**
+	 * @return All tokens in the store by their {@link #getKey(String) key}, used to
+	 * initialize the cache.
+	 */
+	Map<String, UserInfo> loadTokens() throws IOException;
+
+	/**
+	 * Used by the cache to synchronize with a shared store without loading all tokens.
+	 *
+	 * @return The tokens that have been modified since the previous call or since
+	 * {@link #loadTokens()} by their {@link #getKey(String) key}, an empty value marks
+	 * a removal. Null if the modifications are not known, in that case the cache loads
+	 * all tokens.
+	 */
+	default Map<String, Optional<UserInfo>> loadModifiedTokens() throws IOException {
+		return null;
+	}
+
+	/**
+	 * @return The key that identifies a token in {@link #loadTokens()} and
+	 * {@link #loadModifiedTokens()}, the token itself by default. Shared stores must not
+	 * keep tokens in plain text and identify them by a hash instead.
+	 */
+	default String getKey(String token) {
+		return token;
+	}
+
+	/**
+	 * Looks up a token that is not in the cache, e.g. because it was created by
+	 * another node.
+	 *
+	 * @return The token or null if it does not exist in the store.
+	 */
+	UserInfo getToken(String token) throws IOException;
+
+	/**
+	 * Adds or updates a token.
+	 */
+	void putToken(String token, UserInfo userInfo);
+
+	void removeToken(String token);
+
+	/**
+	 * Writes all buffered modifications.
+	 */
+	void flush() throws IOException;
+
+	/**
+	 * @return True if the store is shared with other nodes, in that case the cache
+	 * reconciles its tokens with the store after each flush. As shared stores only know
+	 * the keys of the tokens, the cache does not restore their tokens on startup but
+	 * reads them from the store when they are used.
+	 */
+	boolean isShared();
+
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.rest.auth;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.QueryLanguage;
+import org.eclipse.rdf4j.query.TupleQuery;
+import org.eclipse.rdf4j.query.TupleQueryResult;
+import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.RepositoryException;
+import org.eclipse.rdf4j.repository.RepositoryResult;
+import org.eclipse.rdf4j.repository.http.HTTPRepository;
+import org.entrystore.config.Config;
+import org.entrystore.impl.RepositoryProperties;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.eclipse.rdf4j.model.util.Values.iri;
+import static org.eclipse.rdf4j.model.util.Values.literal;
+import static org.entrystore.repository.config.Settings.AUTH_TOKEN_STORE_PASSWORD;
+import static org.entrystore.repository.config.Settings.AUTH_TOKEN_STORE_URL;
+import static org.entrystore.repository.config.Settings.AUTH_TOKEN_STORE_USER;
+
+/**
+ * Token store that keeps the tokens in an RDF4J repository, e.g. on an RDF4J server
+ * that is shared by several EntryStore nodes. Every token is stored as a JSON literal
+ * in a named graph of its own. The tokens themselves are never stored, as anyone with
+ * access to the repository or its backups could use them; the graph name is derived
+ * from a hash of the token, which is also the key of the token.
+ *
+ * <p>Every write records a modification time in the graph, and a removed token leaves a
+ * marker behind instead of an empty graph. Nodes synchronize by querying the graphs
+ * that have been modified since their previous synchronization. Expired tokens and old
+ * removal markers are swept periodically.</p>
+ */
+public class RepositoryLoginTokenStore extends WriteBehindLoginTokenStore {
+
+	private static final Logger log = LoggerFactory.getLogger(RepositoryLoginTokenStore.class);
+
+	private static final IRI loginToken = iri(RepositoryProperties.NSbase + "loginToken");
+
+	private static final IRI loginTokenModified = iri(RepositoryProperties.NSbase + "loginTokenModified");
+
+	private static final IRI loginTokenExpiration = iri(RepositoryProperties.NSbase + "loginTokenExpiration");
+
+	private static final IRI loginTokenRemoved = iri(RepositoryProperties.NSbase + "loginTokenRemoved");
+
+	private static final String GRAPH_PREFIX = "urn:entrystore:login-token:";
+
+	/**
+	 * Modifications are looked up with this overlap, as the modification times are set
+	 * by the clocks of the nodes and writes may take a moment until they are committed.
+	 */
+	private static final long CLOCK_SKEW = Duration.ofMinutes(1).toMillis();
+
+	private static final long REMOVAL_RETENTION = Duration.ofHours(1).toMillis();
+
+	private static final long SWEEP_INTERVAL = Duration.ofMinutes(10).toMillis();
+
+	private static final String MODIFIED_QUERY = "SELECT ?g ?json ?removed WHERE { GRAPH ?g { " +
+			"?g <" + loginTokenModified + "> ?modified . FILTER (?modified >= ?since) " +
+			"OPTIONAL { ?g <" + loginToken + "> ?json } " +
+			"OPTIONAL { ?g <" + loginTokenRemoved + "> ?removed } } }";
+
+	private static final String SWEEP_QUERY = "SELECT DISTINCT ?g WHERE { GRAPH ?g { " +
+			"{ ?g <" + loginTokenExpiration + "> ?expiration . FILTER (?expiration < ?now) } UNION " +
+			"{ ?g <" + loginTokenRemoved + "> ?removed ; <" + loginTokenModified + "> ?modified . FILTER (?modified < ?retention) } } }";
+
+	private final Repository repository;
+
+	private final boolean shutDownRepository;
+
+	/**
+	 * Time of the previous synchronization, or -1 if tokens have not been loaded yet.
+	 */
+	private volatile long lastSync = -1;
+
+	private volatile long lastSweep;
+
+	public RepositoryLoginTokenStore(Config config) {
+		String url = config.getString(AUTH_TOKEN_STORE_URL);
+		if (url == null) {
+			throw new IllegalArgumentException("Missing URL of token store repository: " + AUTH_TOKEN_STORE_URL);
+		}
+		HTTPRepository httpRepository = new HTTPRepository(url);
+		String user = config.getString(AUTH_TOKEN_STORE_USER);
+		if (user != null) {
+			httpRepository.setUsernameAndPassword(user, config.getString(AUTH_TOKEN_STORE_PASSWORD));
+		}
+		httpRepository.init();
+		this.repository = httpRepository;
+		this.shutDownRepository = true;
+		log.info("Using shared login token store at {}", url);
+	}
+
+	public RepositoryLoginTokenStore(Repository repository) {
+		this.repository = repository;
+		this.shutDownRepository = false;
+	}
+
+	@Override
+	public Map<String, UserInfo> loadTokens() throws IOException {
+		Map<String, UserInfo> result = new HashMap<>();
+		List<IRI> expired = new ArrayList<>();
+		long syncStart = System.currentTimeMillis();
+		LocalDateTime now = LocalDateTime.now();
+		try (RepositoryConnection rc = repository.getConnection()) {
+			try (RepositoryResult<Statement> rr = rc.getStatements(null, loginToken, null, false)) {
+				for (Statement st : rr) {
+					try {
+						JSONObject json = new JSONObject(st.getObject().stringValue());
+						UserInfo userInfo = UserInfo.fromJSON(json);
+						if (userInfo.getLoginExpiration() != null && userInfo.getLoginExpiration().isBefore(now)) {
+							if (st.getContext() instanceof IRI context) {
+								expired.add(context);
+							}
+						} else if (st.getContext() instanceof IRI context) {
+							result.put(getGraphKey(context), userInfo);
+						}
+					} catch (JSONException | RuntimeException e) {
+						log.warn("Skipping invalid login token in {}: {}", st.getContext(), e.getMessage());
+					}
+				}
+			}
+			if (!expired.isEmpty()) {
+				rc.clear(expired.toArray(new IRI[0]));
+				log.debug("Removed {} expired login tokens", expired.size());
+			}
+		} catch (RepositoryException e) {
+			throw new IOException("Unable to load login tokens: " + e.getMessage(), e);
+		}
+		lastSync = syncStart;
+		lastSweep = syncStart;
+		result.keySet().removeAll(getPendingRemovalKeys());
+		forgetMisses(result.keySet());
+		return result;
+	}
+
+	@Override
+	public Map<String, Optional<UserInfo>> loadModifiedTokens() throws IOException {
+		long syncStart = System.currentTimeMillis();
+		if (lastSync < 0 || syncStart - lastSync > REMOVAL_RETENTION - CLOCK_SKEW) {
+			// removal markers may have been swept since the previous synchronization
+			return null;
+		}
+		Map<String, Optional<UserInfo>> result = new HashMap<>();
+		try (RepositoryConnection rc = repository.getConnection()) {
+			TupleQuery query = rc.prepareTupleQuery(QueryLanguage.SPARQL, MODIFIED_QUERY);
+			query.setBinding("since", literal(lastSync - CLOCK_SKEW));
+			try (TupleQueryResult tqr = query.evaluate()) {
+				for (BindingSet bs : tqr) {
+					if (!(bs.getValue("g") instanceof IRI graph)) {
+						continue;
+					}
+					Value json = bs.getValue("json");
+					if (bs.getValue("removed") != null) {
+						result.put(getGraphKey(graph), Optional.empty());
+					} else if (json != null) {
+						try {
+							result.put(getGraphKey(graph), Optional.of(UserInfo.fromJSON(new JSONObject(json.stringValue()))));
+						} catch (JSONException | RuntimeException e) {
+							log.warn("Skipping invalid login token in {}: {}", graph, e.getMessage());
+						}
+					}
+				}
+			}
+			if (syncStart - lastSweep >= SWEEP_INTERVAL) {
+				sweep(rc, syncStart);
+				lastSweep = syncStart;
+			}
+		} catch (RepositoryException | QueryEvaluationException e) {
+			throw new IOException("Unable to load modified login tokens: " + e.getMessage(), e);
+		}
+		lastSync = syncStart;
+		result.keySet().removeAll(getPendingRemovalKeys());
+		forgetMisses(result.keySet());
+		return result;
+	}
+
+	/**
+	 * Removes expired tokens and removal markers that are older than the retention time.
+	 */
+	private void sweep(RepositoryConnection rc, long now) {
+		TupleQuery query = rc.prepareTupleQuery(QueryLanguage.SPARQL, SWEEP_QUERY);
+		query.setBinding("now", literal(now));
+		query.setBinding("retention", literal(now - REMOVAL_RETENTION));
+		List<IRI> graphs = new ArrayList<>();
+		try (TupleQueryResult tqr = query.evaluate()) {
+			for (BindingSet bs : tqr) {
+				if (bs.getValue("g") instanceof IRI graph) {
+					graphs.add(graph);
+				}
+			}
+		}
+		if (!graphs.isEmpty()) {
+			rc.clear(graphs.toArray(new IRI[0]));
+			log.debug("Swept {} expired login tokens and removal markers", graphs.size());
+		}
+	}
+
+	@Override
+	protected UserInfo readToken(String token) throws IOException {
+		try (RepositoryConnection rc = repository.getConnection();
+		     RepositoryResult<Statement> rr = rc.getStatements(null, loginToken, null, false, getGraph(token))) {
+			if (rr.hasNext()) {
+				return UserInfo.fromJSON(new JSONObject(rr.next().getObject().stringValue()));
+			}
+		} catch (RepositoryException | JSONException e) {
+			throw new IOException("Unable to read login token: " + e.getMessage(), e);
+		}
+		return null;
+	}
+
+	@Override
+	protected void write(Map<String, UserInfo> updated, Set<String> removed) throws IOException {
+		long modified = System.currentTimeMillis();
+		try (RepositoryConnection rc = repository.getConnection()) {
+			rc.begin();
+			try {
+				for (String token : removed) {
+					IRI graph = getGraph(token);
+					rc.clear(graph);
+					rc.add(graph, loginTokenRemoved, literal(true), graph);
+					rc.add(graph, loginTokenModified, literal(modified), graph);
+				}
+				for (Map.Entry<String, UserInfo> e : updated.entrySet()) {
+					IRI graph = getGraph(e.getKey());
+					rc.clear(graph);
+					rc.add(graph, loginToken, literal(e.getValue().toJSON().toString()), graph);
+					rc.add(graph, loginTokenModified, literal(modified), graph);
+					LocalDateTime expiration = e.getValue().getLoginExpiration();
+					if (expiration != null) {
+						rc.add(graph, loginTokenExpiration, literal(expiration.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()), graph);
+					}
+				}
+				rc.commit();
+			} catch (RepositoryException e) {
+				rc.rollback();
+				throw e;
+			}
+		} catch (RepositoryException e) {
+			throw new IOException("Unable to write login tokens: " + e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public boolean isShared() {
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			super.close();
+		} finally {
+			if (shutDownRepository) {
+				repository.shutDown();
+			}
+		}
+	}
+
+	@Override
+	public String getKey(String token) {
+		return DigestUtils.sha256Hex(token);
+	}
+
+	private IRI getGraph(String token) {
+		return iri(GRAPH_PREFIX + getKey(token));
+	}
+
+	private static String getGraphKey(IRI graph) {
+		return graph.stringValue().substring(GRAPH_PREFIX.length());
+	}
+
+}
@@ -17,7 +17,6 @@
 package org.entrystore.rest.auth;
 
 import java.time.Instant;
-import java.util.Map;
 
 /**
  * @author Hannes Ebner
@@ -35,20 +34,13 @@ public class SignupTokenCache extends TokenCache<String, SignupInfo> {
 		return instance;
 	}
 
-	public void cleanup() {
-		synchronized (tokenCache) {
-			for (Map.Entry<String, SignupInfo> e : tokenCache.entrySet()) {
-				if (e.getValue().getExpirationDate().isBefore(Instant.now())) {
-					tokenCache.remove(e.getKey());
-				}
-			}
-		}
+	@Override
+	protected Instant getExpiration(SignupInfo signupInfo) {
+		return signupInfo.getExpirationDate();
 	}
 
 	public void removeAllTokens(String userEmail) {
-		synchronized (tokenCache) {
-			tokenCache.entrySet().removeIf(userInfo -> userEmail.equals(userInfo.getValue().getEmail()));
-		}
+		removeTokens((token, signupInfo) -> userEmail.equals(signupInfo.getEmail()));
 	}
 
 }
@@ -16,44 +16,211 @@
 
 package org.entrystore.rest.auth;
 
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiPredicate;
 
 /**
+ * Cache of tokens that expire.
+ *
+ * <p>Lookups are served from a concurrent map without locking. Expiration times are
+ * kept in an ordered index, so expired tokens are removed without scanning all
+ * tokens: a sweep only looks at the tokens that are due. Sweeps run periodically in
+ * the background and are triggered by lookups once the earliest expiration has
+ * passed. Expired tokens are never returned, even if they have not been swept yet.</p>
+ *
+ * <p>The expiration of a token may be extended by modifying its value; the index is
+ * then updated lazily when the token becomes due.</p>
+ *
  * @author Hannes Ebner
  */
 public abstract class TokenCache<K, V> {
 
+	private static final Duration SWEEP_INTERVAL = Duration.ofMinutes(1);
+
+	private static final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "token-cache-sweeper");
+		t.setDaemon(true);
+		return t;
+	});
+
+	private static final AtomicLong sequence = new AtomicLong();
+
 	final protected Map<K, V> tokenCache = new ConcurrentHashMap<>();
 
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final TreeSet<Expiry<K>> expiryIndex = new TreeSet<>(Comparator.comparingLong(Expiry<K>::time).thenComparingLong(Expiry::sequence));
+
+	private final Map<K, Expiry<K>> indexedTokens = new HashMap<>();
+
+	private volatile long nextExpiration = Long.MAX_VALUE;
+
+	private record Expiry<K>(long time, long sequence, K key) {}
+
+	protected TokenCache() {
+		scheduleSweep(this);
+	}
+
+	/**
+	 * @return The expiration of a token, or null if it does not expire.
+	 */
+	protected abstract Instant getExpiration(V value);
+
 	public void putToken(K token, V value) {
-		synchronized (tokenCache) {
+		lock.lock();
+		try {
 			tokenCache.put(token, value);
+			index(token, getExpiration(value));
+		} finally {
+			lock.unlock();
 		}
 	}
 
 	public V getTokenValue(K token) {
-		cleanup();
-		return tokenCache.get(token);
+		long now = System.currentTimeMillis();
+		if (now >= nextExpiration) {
+			trySweep();
+		}
+		V value = tokenCache.get(token);
+		if (value == null || isExpired(value, now)) {
+			return null;
+		}
+		return value;
 	}
 
 	public void removeToken(K token) {
-		cleanup();
-		synchronized (tokenCache) {
+		lock.lock();
+		try {
 			tokenCache.remove(token);
+			unindex(token);
+		} finally {
+			lock.unlock();
 		}
 	}
 
 	public boolean hasToken(K token) {
-		cleanup();
-		return tokenCache.containsKey(token);
+		return getTokenValue(token) != null;
 	}
 
-	abstract void cleanup();
+	/**
+	 * Removes all tokens that have expired.
+	 */
+	public void cleanup() {
+		lock.lock();
+		try {
+			sweep();
+		} finally {
+			lock.unlock();
+		}
+	}
 
 	public int size() {
-		cleanup();
+		if (System.currentTimeMillis() >= nextExpiration) {
+			cleanup();
+		}
 		return tokenCache.size();
 	}
 
+	/**
+	 * Removes all tokens that match a condition. Requires a scan of all tokens and
+	 * should only be used for infrequent operations.
+	 */
+	protected void removeTokens(BiPredicate<K, V> condition) {
+		lock.lock();
+		try {
+			tokenCache.entrySet().removeIf(e -> {
+				if (condition.test(e.getKey(), e.getValue())) {
+					unindex(e.getKey());
+					return true;
+				}
+				return false;
+			});
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private boolean isExpired(V value, long now) {
+		Instant expiration = getExpiration(value);
+		return expiration != null && expiration.toEpochMilli() <= now;
+	}
+
+	private void trySweep() {
+		// lookups never wait for a sweep in progress
+		if (lock.tryLock()) {
+			try {
+				sweep();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	private void sweep() {
+		long now = System.currentTimeMillis();
+		while (!expiryIndex.isEmpty() && expiryIndex.first().time() <= now) {
+			Expiry<K> expiry = expiryIndex.pollFirst();
+			indexedTokens.remove(expiry.key());
+			V value = tokenCache.get(expiry.key());
+			if (value == null) {
+				continue;
+			}
+			if (isExpired(value, now)) {
+				tokenCache.remove(expiry.key());
+			} else {
+				// the expiration has been extended since the token was indexed
+				index(expiry.key(), getExpiration(value));
+			}
+		}
+		updateNextExpiration();
+	}
+
+	private void index(K token, Instant expiration) {
+		unindex(token);
+		if (expiration != null) {
+			Expiry<K> expiry = new Expiry<>(expiration.toEpochMilli(), sequence.incrementAndGet(), token);
+			expiryIndex.add(expiry);
+			indexedTokens.put(token, expiry);
+		}
+		updateNextExpiration();
+	}
+
+	private void unindex(K token) {
+		Expiry<K> expiry = indexedTokens.remove(token);
+		if (expiry != null) {
+			expiryIndex.remove(expiry);
+		}
+	}
+
+	private void updateNextExpiration() {
+		nextExpiration = expiryIndex.isEmpty() ? Long.MAX_VALUE : expiryIndex.first().time();
+	}
+
+	private static void scheduleSweep(TokenCache<?, ?> cache) {
+		// the task must not keep the cache from being garbage collected
+		WeakReference<TokenCache<?, ?>> ref = new WeakReference<>(cache);
+		ScheduledFuture<?>[] future = new ScheduledFuture<?>[1];
+		future[0] = sweeper.scheduleWithFixedDelay(() -> {
+			TokenCache<?, ?> c = ref.get();
+			if (c == null) {
+				future[0].cancel(false);
+			} else {
+				c.trySweep();
+			}
+		}, SWEEP_INTERVAL.toMillis(), SWEEP_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+	}
+
 }
@@ -16,6 +16,8 @@
 
 package org.entrystore.rest.auth;
 
+import org.json.JSONObject;
+
 import java.time.LocalDateTime;
 
 public class UserInfo {
@@ -92,4 +94,26 @@ public class UserInfo {
 		this.loginTokenMaxAge = loginTokenMaxAge;
 	}
 
-}
\ No newline at end of file
+	public JSONObject toJSON() {
+		JSONObject result = new JSONObject();
+		result.put("userName", userName);
+		result.put("loginTime", loginTime.toString());
+		result.put("loginTokenMaxAge", loginTokenMaxAge);
+		result.putOpt("loginExpiration", loginExpiration != null ? loginExpiration.toString() : null);
+		result.putOpt("lastAccessTime", lastAccessTime != null ? lastAccessTime.toString() : null);
+		result.putOpt("lastUsedIpAddress", lastUsedIpAddress);
+		result.putOpt("lastUsedUserAgent", lastUsedUserAgent);
+		return result;
+	}
+
+	public static UserInfo fromJSON(JSONObject json) {
+		return new UserInfo(json.getString("userName"),
+				LocalDateTime.parse(json.getString("loginTime")),
+				json.getInt("loginTokenMaxAge"),
+				json.has("loginExpiration") ? LocalDateTime.parse(json.getString("loginExpiration")) : null,
+				json.has("lastAccessTime") ? LocalDateTime.parse(json.getString("lastAccessTime")) : null,
+				json.optString("lastUsedIpAddress", null),
+				json.optString("lastUsedUserAgent", null));
+	}
+
+}
@@ -10,11 +10,10 @@ import org.slf4j.LoggerFactory;
 
 import java.net.URI;
 import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
 
 import static org.entrystore.repository.config.Settings.AUTH_TEMP_LOCKOUT_ADMIN;
@@ -33,7 +32,20 @@ public class UserTempLockoutCache {
 
 	private final PrincipalManager pm;
 
-	private final ConcurrentMap<String, UserTemporaryLockout> userTempLockoutMap = new ConcurrentHashMap<>();
+	private final LockoutCache userTempLockoutMap = new LockoutCache();
+
+	/**
+	 * Failed login attempts by user name. Entries expire when the lockout ends,
+	 * entries of users that are not locked out do not expire.
+	 */
+	private static class LockoutCache extends TokenCache<String, UserTemporaryLockout> {
+
+		@Override
+		protected Instant getExpiration(UserTemporaryLockout lockout) {
+			return lockout.disableUntil() != null ? lockout.disableUntil().atZone(ZoneId.systemDefault()).toInstant() : null;
+		}
+
+	}
 
 	public UserTempLockoutCache(RepositoryManager rm, PrincipalManager pm) {
 		Config config = rm.getConfiguration();
@@ -44,7 +56,7 @@ public class UserTempLockoutCache {
 	}
 
 	public void succeedLogin(String userName) {
-		userTempLockoutMap.remove(userName);
+		userTempLockoutMap.removeToken(userName);
 	}
 
 	public void failLogin(String userName) {
@@ -67,10 +79,10 @@ public class UserTempLockoutCache {
 			return;
 		}
 
-		UserTemporaryLockout lockoutEntry = userTempLockoutMap.getOrDefault(userName, new UserTemporaryLockout(user, 1, null));
-
-		if (lockoutEntry.disableUntil() != null && LocalDateTime.now().isAfter(lockoutEntry.disableUntil())) {
-			new UserTemporaryLockout(user, 1, null);
+		// expired lockouts are not returned, the count of failed logins starts over
+		UserTemporaryLockout lockoutEntry = userTempLockoutMap.getTokenValue(userName);
+		if (lockoutEntry == null) {
+			lockoutEntry = new UserTemporaryLockout(user, 1, null);
 		}
 
 		if (lockoutEntry.failedLogins() < this.configAllowedFailedLoginAttempts) {
@@ -80,7 +92,7 @@ public class UserTempLockoutCache {
 			lockoutEntry = new UserTemporaryLockout(user, lockoutEntry.failedLogins() + 1, lockedOutUntil);
 			log.warn("User [{}] failed too many login attempts and will be locked out until {}", userName, lockedOutUntil);
 		}
-		userTempLockoutMap.put(userName, lockoutEntry);
+		userTempLockoutMap.putToken(userName, lockoutEntry);
 		pm.setAuthenticatedUserURI(null);
 	}
 
@@ -89,22 +101,17 @@ public class UserTempLockoutCache {
 	}
 
 	public UserTemporaryLockout getLockedOutUser(String userName) {
-		UserTemporaryLockout lockedOutUser = userTempLockoutMap.get(userName);
+		UserTemporaryLockout lockedOutUser = userTempLockoutMap.getTokenValue(userName);
 		if (lockedOutUser == null || lockedOutUser.disableUntil() == null) {
 			return null;
-		} else if (LocalDateTime.now().isAfter(lockedOutUser.disableUntil())) {
-			log.info("User [{}] stopped being locked out", userName);
-			userTempLockoutMap.remove(userName);
-			return null;
-		} else {
-			return lockedOutUser;
 		}
+		return lockedOutUser;
 	}
 
 	public List<UserTemporaryLockout> getLockedOutUsers() {
-		List<UserTemporaryLockout> lockedOutUsers = userTempLockoutMap.entrySet().stream()
-				.filter(failedLoginCount -> userIsLockedOut(failedLoginCount.getValue().user().getName()))
-				.map(Map.Entry::getValue)
+		LocalDateTime now = LocalDateTime.now();
+		List<UserTemporaryLockout> lockedOutUsers = userTempLockoutMap.tokenCache.values().stream()
+				.filter(lockout -> lockout.disableUntil() != null && now.isBefore(lockout.disableUntil()))
 				.collect(Collectors.toList());
 		return lockedOutUsers;
 	}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.rest.auth;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Base class for token stores that buffer modifications. Several updates of the same
+ * token, e.g. expiration refreshes on every request, result in a single write.
+ *
+ * <p>Lookups of tokens that do not exist in the store are remembered for a short time,
+ * so that repeated requests with an unknown or revoked token do not hit the storage
+ * every time.</p>
+ */
+public abstract class WriteBehindLoginTokenStore implements LoginTokenStore {
+
+	/**
+	 * Pending modifications, an empty value marks a removal.
+	 */
+	private final Map<String, Optional<UserInfo>> pending = new ConcurrentHashMap<>();
+
+	private static final long MISS_TTL = Duration.ofSeconds(5).toMillis();
+
+	private static final int MAX_MISSES = 10000;
+
+	/**
+	 * Keys of tokens that were not found in the store, with the time until which this is assumed.
+	 */
+	private final Map<String, Long> misses = new ConcurrentHashMap<>();
+
+	private final Object flushLock = new Object();
+
+	@Override
+	public UserInfo getToken(String token) throws IOException {
+		Optional<UserInfo> modified = pending.get(token);
+		if (modified != null) {
+			return modified.orElse(null);
+		}
+		long now = System.currentTimeMillis();
+		String key = getKey(token);
+		Long missedUntil = misses.get(key);
+		if (missedUntil != null && missedUntil > now) {
+			return null;
+		}
+		UserInfo userInfo = readToken(token);
+		if (userInfo == null) {
+			if (misses.size() >= MAX_MISSES) {
+				// unknown tokens are client input, the remembered misses must not grow without bounds
+				misses.clear();
+			}
+			misses.put(key, now + MISS_TTL);
+		} else {
+			misses.remove(key);
+		}
+		return userInfo;
+	}
+
+	@Override
+	public void putToken(String token, UserInfo userInfo) {
+		pending.put(token, Optional.of(userInfo));
+		misses.remove(getKey(token));
+	}
+
+	@Override
+	public void removeToken(String token) {
+		pending.put(token, Optional.empty());
+	}
+
+	@Override
+	public void flush() throws IOException {
+		long now = System.currentTimeMillis();
+		misses.values().removeIf(missedUntil -> missedUntil <= now);
+		synchronized (flushLock) {
+			if (pending.isEmpty()) {
+				return;
+			}
+			Map<String, Optional<UserInfo>> batch = new HashMap<>(pending);
+			Map<String, UserInfo> updated = new HashMap<>();
+			Set<String> removed = new HashSet<>();
+			for (Map.Entry<String, Optional<UserInfo>> e : batch.entrySet()) {
+				if (e.getValue().isPresent()) {
+					updated.put(e.getKey(), e.getValue().get());
+				} else {
+					removed.add(e.getKey());
+				}
+			}
+			write(updated, removed);
+			// modifications that were made during the write are kept for the next flush; they are
+			// compared by identity, as a token may have been modified in place and put again
+			batch.forEach((token, written) -> pending.computeIfPresent(token, (t, current) -> current == written ? null : current));
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		flush();
+	}
+
+	/**
+	 * @return The keys of tokens whose removal has not been written yet. Such tokens must
+	 * not be handed to the cache when it synchronizes, as they would be restored.
+	 */
+	protected Set<String> getPendingRemovalKeys() {
+		Set<String> keys = new HashSet<>();
+		pending.forEach((token, modified) -> {
+			if (modified.isEmpty()) {
+				keys.add(getKey(token));
+			}
+		});
+		return keys;
+	}
+
+	/**
+	 * Forgets that tokens were not found, e.g. because they have been created by another node.
+	 */
+	protected void forgetMisses(Collection<String> keys) {
+		keys.forEach(misses::remove);
+	}
+
+	/**
+	 * Reads a token from the underlying storage.
+	 */
+	protected abstract UserInfo readToken(String token) throws IOException;
+
+	/**
+	 * Writes a batch of modifications to the underlying storage.
+	 */
+	protected abstract void write(Map<String, UserInfo> updated, Set<String> removed) throws IOException;
+
+}
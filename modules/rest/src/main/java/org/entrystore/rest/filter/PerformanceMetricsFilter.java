@@ -16,35 +16,169 @@
 
 package org.entrystore.rest.filter;
 
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static org.entrystore.repository.config.Settings.METRICS;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Timer;
-import io.micrometer.core.instrument.search.Search;
-import java.util.Arrays;
-import java.util.List;
-import org.entrystore.config.Config;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.entrystore.repository.util.RequestTimings;
 import org.entrystore.rest.EntryStoreApplication;
 import org.entrystore.rest.micrometer.EntryStoreSimpleMeterRegistry;
 import org.restlet.Request;
 import org.restlet.Response;
+import org.restlet.data.Method;
+import org.restlet.representation.Representation;
 import org.restlet.routing.Filter;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
- * Filter for gathering performance metrics
+ * Filter for gathering performance metrics. Requests are timed per route template, e.g.,
+ * "/{context-id}/entry/{entry-id}", method and status class, so that the number of meters
+ * does not grow with the number of requested entries. The time spent in the store, in Solr
+ * and in access control checks is recorded per route as well.
+ *
+ * <p>The meters of a route are created with the first request and are looked up without
+ * allocations afterwards.</p>
  */
 public class PerformanceMetricsFilter extends Filter {
 
-	final static private List<String> allowedTypes = List.of(
-			"resource",
-			"entry",
-			"metadata",
-			"search"
-	);
+	/**
+	 * Request attribute that contains the template of the route that handled the request.
+	 */
+	public static final String ROUTE_ATTRIBUTE = "org.entrystore.rest.route";
+
+	public static final String REQUESTS = "http.server.requests";
+
+	public static final String RESPONSE_SIZE = "http.server.response.size";
+
+	public static final String STORE_TIME = "http.server.requests.store";
+
+	public static final String SOLR_TIME = "http.server.requests.solr";
+
+	public static final String ACL_TIME = "http.server.requests.acl";
+
+	public static final String UNMATCHED_ROUTE = "unmatched";
+
+	private static final String[] METHODS = {"GET", "HEAD", "POST", "PUT", "DELETE", "OPTIONS", "PATCH", "OTHER"};
+
+	private static final String[] STATUS_CLASSES = {"unknown", "1xx", "2xx", "3xx", "4xx", "5xx"};
+
+	private static final Duration[] SERVICE_LEVEL_OBJECTIVES = {
+			Duration.ofMillis(10), Duration.ofMillis(25), Duration.ofMillis(50), Duration.ofMillis(100),
+			Duration.ofMillis(250), Duration.ofMillis(500), Duration.ofSeconds(1), Duration.ofMillis(2500),
+			Duration.ofSeconds(5), Duration.ofSeconds(10)
+	};
+
+	/**
+	 * Histograms are kept since startup instead of in a sliding window, since scrapers
+	 * such as Prometheus expect cumulative bucket counts.
+	 */
+	private static final Duration HISTOGRAM_EXPIRY = Duration.ofDays(3650);
+
+	private final MeterRegistry registry = Metrics.globalRegistry;
+
+	private final ConcurrentMap<String, RouteMeters> routes = new ConcurrentHashMap<>();
+
+	private volatile Boolean enabled;
+
+	/**
+	 * The meters of one route template.
+	 */
+	private final class RouteMeters {
+
+		private final String route;
+
+		/**
+		 * Indexed by method and status class.
+		 */
+		private final AtomicReferenceArray<Timer> requests = new AtomicReferenceArray<>(METHODS.length * STATUS_CLASSES.length);
+
+		/**
+		 * Indexed by method.
+		 */
+		private final AtomicReferenceArray<MethodMeters> methods = new AtomicReferenceArray<>(METHODS.length);
+
+		RouteMeters(String route) {
+			this.route = route;
+		}
+
+		Timer requests(int method, int statusClass) {
+			int index = method * STATUS_CLASSES.length + statusClass;
+			Timer timer = requests.get(index);
+			if (timer == null) {
+				// concurrent registrations of the same meter return the same instance
+				timer = Timer.builder(REQUESTS)
+						.tag("route", route)
+						.tag("method", METHODS[method])
+						.tag("status", STATUS_CLASSES[statusClass])
+						.publishPercentileHistogram()
+						.serviceLevelObjectives(SERVICE_LEVEL_OBJECTIVES)
+						.minimumExpectedValue(Duration.ofMillis(1))
+						.maximumExpectedValue(Duration.ofSeconds(60))
+						.distributionStatisticExpiry(HISTOGRAM_EXPIRY)
+						.register(registry);
+				requests.set(index, timer);
+			}
+			return timer;
+		}
+
+		MethodMeters method(int method) {
+			MethodMeters meters = methods.get(method);
+			if (meters == null) {
+				meters = new MethodMeters(route, METHODS[method]);
+				methods.compareAndSet(method, null, meters);
+				meters = methods.get(method);
+			}
+			return meters;
+		}
+
+	}
+
+	/**
+	 * The meters of one route template and method that do not depend on the status.
+	 */
+	private final class MethodMeters {
+
+		private final DistributionSummary responseSize;
+
+		private final Timer store;
+
+		private final Timer solr;
+
+		private final Timer acl;
+
+		MethodMeters(String route, String method) {
+			responseSize = DistributionSummary.builder(RESPONSE_SIZE)
+					.baseUnit("bytes")
+					.tag("route", route)
+					.tag("method", method)
+					.publishPercentileHistogram()
+					.minimumExpectedValue(64.0)
+					.maximumExpectedValue(1024.0 * 1024 * 1024)
+					.distributionStatisticExpiry(HISTOGRAM_EXPIRY)
+					.register(registry);
+			store = subTimer(STORE_TIME, route, method);
+			solr = subTimer(SOLR_TIME, route, method);
+			acl = subTimer(ACL_TIME, route, method);
+		}
+
+		private Timer subTimer(String name, String route, String method) {
+			return Timer.builder(name)
+					.tag("route", route)
+					.tag("method", method)
+					.publishPercentileHistogram()
+					.minimumExpectedValue(Duration.ofMillis(1))
+					.maximumExpectedValue(Duration.ofSeconds(60))
+					.distributionStatisticExpiry(HISTOGRAM_EXPIRY)
+					.register(registry);
+		}
 
-	static private final Logger log = LoggerFactory.getLogger(PerformanceMetricsFilter.class);
+	}
 
 	/**
 	 * Only use this constructor for JUnit tests, as it will disable all services of the Web Rest API!
@@ -56,67 +190,66 @@ public class PerformanceMetricsFilter extends Filter {
 
 	@Override
 	protected int doHandle(Request request, Response response) {
-
-		EntryStoreApplication app = getEntryStoreApplication();
-		Config config = app.getRM().getConfiguration();
-		boolean configEnableMetrics = config.getBoolean(METRICS, false);
-
-		if (!configEnableMetrics) {
+		if (!isEnabled()) {
 			return super.doHandle(request, response);
-//			return CONTINUE;
 		}
 
-		Timer.Sample sample = startTimer();
+		RequestTimings.reset();
+		long start = System.nanoTime();
 		int returnStatus = super.doHandle(request, response);
-		stopTimerAndRegisterMetrics(request, response, sample);
+		record(request, response, System.nanoTime() - start);
 		return returnStatus;
 	}
 
-	protected Timer.Sample startTimer() {
-		Timer.Sample sample = Timer.start(Metrics.globalRegistry);
-		return sample;
+	private boolean isEnabled() {
+		Boolean result = enabled;
+		if (result == null) {
+			EntryStoreApplication app = (EntryStoreApplication) getApplication();
+			result = app.getRM().getConfiguration().getBoolean(METRICS, false);
+			enabled = result;
+		}
+		return result;
 	}
 
-	protected void stopTimerAndRegisterMetrics(Request request, Response response, Timer.Sample sample) {
-		String type = extractType(request.getResourceRef().getPath());
-		if (type == null) {
-			return;
-		}
-		String method = request.getMethod().getName();
-		int statusCode = response.getStatus().getCode();
-		String mediaSubType;
-		if (response.getEntity() != null) {
-			mediaSubType = response.getEntity().getMediaType().getSubType();
-		} else {
-			mediaSubType = "none";
+	/**
+	 * Records a handled request, including the times that have been attributed to the
+	 * store, Solr and access control checks by the current thread.
+	 */
+	protected void record(Request request, Response response, long durationNanos) {
+		String route = request.getAttributes().get(ROUTE_ATTRIBUTE) instanceof String template && !template.isEmpty() ? template : UNMATCHED_ROUTE;
+		RouteMeters routeMeters = routes.get(route);
+		if (routeMeters == null) {
+			routeMeters = routes.computeIfAbsent(route, RouteMeters::new);
 		}
-		String metricName = String.format("%s-%s-%s-%d", method, type, mediaSubType, statusCode);
 
-		Search search = Metrics.globalRegistry.find(metricName);
-		if (search == null) {
-			Timer.builder(metricName).register(Metrics.globalRegistry);
+		int method = methodIndex(request.getMethod());
+		int code = response.getStatus().getCode();
+		int statusClass = (code >= 100 && code < 600) ? code / 100 : 0;
+		routeMeters.requests(method, statusClass).record(durationNanos, NANOSECONDS);
+
+		MethodMeters methodMeters = routeMeters.method(method);
+		Representation entity = response.getEntity();
+		long size = entity != null ? entity.getSize() : 0;
+		// the size of streamed representations is unknown
+		if (size >= 0) {
+			methodMeters.responseSize.record(size);
 		}
-		sample.stop(Metrics.globalRegistry.timer(metricName));
+		methodMeters.store.record(RequestTimings.get(RequestTimings.Category.STORE), NANOSECONDS);
+		methodMeters.solr.record(RequestTimings.get(RequestTimings.Category.SOLR), NANOSECONDS);
+		methodMeters.acl.record(RequestTimings.get(RequestTimings.Category.ACL), NANOSECONDS);
 	}
 
-	private EntryStoreApplication getEntryStoreApplication() {
-		EntryStoreApplication app = (EntryStoreApplication)getApplication();
-		return app;
+	private static int methodIndex(Method method) {
+		return switch (method.getName()) {
+			case "GET" -> 0;
+			case "HEAD" -> 1;
+			case "POST" -> 2;
+			case "PUT" -> 3;
+			case "DELETE" -> 4;
+			case "OPTIONS" -> 5;
+			case "PATCH" -> 6;
+			default -> 7;
+		};
 	}
 
-	private String extractType(String requestPath) {
-
-		if (requestPath.startsWith("/")) {
-			requestPath = requestPath.substring(1);
-		}
-
-		String[] split = requestPath.split("/");
-		String resourceType = (split.length == 1) ? split[0] : split[1];
-		if (log.isDebugEnabled()) {
-			log.debug("URI split into [{}] parts, choosing [{}] as type - {}",
-					split.length, resourceType, Arrays.toString(split));
-		}
-
-		return allowedTypes.contains(resourceType) ? resourceType : null;
-	}
 }
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.rest.micrometer;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Measurement;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.CountAtBucket;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes the meters of a registry in the Prometheus text exposition format (version 0.0.4),
+ * so that EntryStore can be scraped without depending on a Prometheus registry.
+ *
+ * <p>Timers and distribution summaries with a percentile histogram are written as histograms,
+ * others as summaries with the configured percentiles. Timers are written in seconds.</p>
+ */
+public final class PrometheusTextFormat {
+
+	/**
+	 * The lines of all meters with the same metric name, as each name may only have one type.
+	 */
+	private static final class Family {
+
+		private final String type;
+
+		private final StringBuilder samples = new StringBuilder();
+
+		Family(String type) {
+			this.type = type;
+		}
+
+	}
+
+	private final Map<String, Family> families = new TreeMap<>();
+
+	private PrometheusTextFormat() {
+	}
+
+	public static String write(MeterRegistry registry) {
+		PrometheusTextFormat format = new PrometheusTextFormat();
+		for (Meter meter : registry.getMeters()) {
+			format.add(meter);
+		}
+		StringBuilder result = new StringBuilder();
+		for (Map.Entry<String, Family> family : format.families.entrySet()) {
+			result.append("# TYPE ").append(family.getKey()).append(' ').append(family.getValue().type).append('\n');
+			result.append(family.getValue().samples);
+		}
+		return result.toString();
+	}
+
+	private void add(Meter meter) {
+		String name = sanitize(meter.getId().getName());
+		String labels = labels(meter);
+		if (meter instanceof Timer timer) {
+			addDistribution(name + "_seconds", labels, timer.takeSnapshot(), true);
+		} else if (meter instanceof DistributionSummary summary) {
+			String baseUnit = meter.getId().getBaseUnit();
+			addDistribution(baseUnit != null ? name + "_" + sanitize(baseUnit) : name, labels, summary.takeSnapshot(), false);
+		} else if (meter instanceof TimeGauge gauge) {
+			sample(name + "_seconds", "gauge", name + "_seconds", labels, gauge.value(SECONDS));
+		} else if (meter instanceof Gauge gauge) {
+			sample(name, "gauge", name, labels, gauge.value());
+		} else if (meter instanceof Counter counter) {
+			sample(name + "_total", "counter", name + "_total", labels, counter.count());
+		} else {
+			for (Measurement measurement : meter.measure()) {
+				String statistic = name + "_" + sanitize(measurement.getStatistic().getTagValueRepresentation());
+				sample(statistic, "untyped", statistic, labels, measurement.getValue());
+			}
+		}
+	}
+
+	private void addDistribution(String name, String labels, HistogramSnapshot snapshot, boolean seconds) {
+		CountAtBucket[] buckets = snapshot.histogramCounts();
+		if (buckets.length > 0) {
+			// the bucket counts of the snapshot are cumulative, as expected by Prometheus
+			for (CountAtBucket bucket : buckets) {
+				String le = "le=\"" + number(seconds ? bucket.bucket(SECONDS) : bucket.bucket()) + "\"";
+				sample(name, "histogram", name + "_bucket", join(labels, le), bucket.count());
+			}
+			sample(name, "histogram", name + "_bucket", join(labels, "le=\"+Inf\""), snapshot.count());
+			sample(name, "histogram", name + "_count", labels, snapshot.count());
+			sample(name, "histogram", name + "_sum", labels, seconds ? snapshot.total(SECONDS) : snapshot.total());
+		} else {
+			for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+				String quantile = "quantile=\"" + number(percentile.percentile()) + "\"";
+				sample(name, "summary", name, join(labels, quantile), seconds ? percentile.value(SECONDS) : percentile.value());
+			}
+			sample(name, "summary", name + "_count", labels, snapshot.count());
+			sample(name, "summary", name + "_sum", labels, seconds ? snapshot.total(SECONDS) : snapshot.total());
+		}
+		sample(name + "_max", "gauge", name + "_max", labels, seconds ? snapshot.max(SECONDS) : snapshot.max());
+	}
+
+	private void sample(String family, String type, String name, String labels, double value) {
+		StringBuilder samples = families.computeIfAbsent(family, f -> new Family(type)).samples;
+		samples.append(name);
+		if (!labels.isEmpty()) {
+			samples.append('{').append(labels).append('}');
+		}
+		samples.append(' ').append(number(value)).append('\n');
+	}
+
+	private static String labels(Meter meter) {
+		StringBuilder result = new StringBuilder();
+		for (Tag tag : meter.getId().getTagsAsIterable()) {
+			if (!result.isEmpty()) {
+				result.append(',');
+			}
+			result.append(sanitize(tag.getKey())).append("=\"").append(escape(tag.getValue())).append('"');
+		}
+		return result.toString();
+	}
+
+	private static String join(String labels, String label) {
+		return labels.isEmpty() ? label : labels + "," + label;
+	}
+
+	static String sanitize(String name) {
+		StringBuilder result = new StringBuilder(name.length());
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == ':' || (i > 0 && c >= '0' && c <= '9');
+			result.append(valid ? c : '_');
+		}
+		return result.toString();
+	}
+
+	static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+	static String number(double value) {
+		if (Double.isNaN(value)) {
+			return "NaN";
+		} else if (Double.isInfinite(value)) {
+			return value > 0 ? "+Inf" : "-Inf";
+		} else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+			return Long.toString((long) value);
+		}
+		return Double.toString(value);
+	}
+
+}
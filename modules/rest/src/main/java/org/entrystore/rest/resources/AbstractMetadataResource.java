@@ -39,7 +39,6 @@ import org.entrystore.repository.util.EntryUtil;
 import org.entrystore.repository.util.NS;
 import org.entrystore.rest.util.GraphUtil;
 import org.entrystore.rest.util.JSONErrorMessages;
-import org.entrystore.rest.util.Util;
 import org.restlet.data.Disposition;
 import org.restlet.data.MediaType;
 import org.restlet.data.Method;
@@ -108,6 +107,14 @@ public abstract class AbstractMetadataResource extends BaseResource {
 				return new JsonRepresentation(JSONErrorMessages.errorEntryNotFound);
 			}
 
+			// recursive responses are validated after the traversal
+			if (!parameters.containsKey("recursive")) {
+				Representation notModified = checkNotModified(getModificationDate());
+				if (notModified != null) {
+					return notModified;
+				}
+			}
+
 			Representation result;
 			if (Method.GET.equals(getRequest().getMethod())) {
 				MediaType preferredMediaType = getRequest().getClientInfo().getPreferredMediaType(supportedMediaTypes);
@@ -161,6 +168,16 @@ public abstract class AbstractMetadataResource extends BaseResource {
 					}
 
 					EntryUtil.TraversalResult travResult = traverse(entry.getEntryURI(), predicatesToFollow, blacklist, repositoryScope, depth, limit);
+
+					// the composite validator covers all traversed entries, the number of statements
+					// changes e.g. if a linked entry has been removed without modifying the others
+					Date latestModified = travResult.getLatestModified();
+					Object[] traversalState = {travResult.getGraph().size(), travResult.getAccessDenied().size()};
+					Representation notModified = checkNotModified(latestModified, traversalState);
+					if (notModified != null) {
+						return notModified;
+					}
+
 					if (graphQuery != null) {
 						Model graphQueryResult = applyGraphQuery(graphQuery, travResult.getGraph());
 						if (graphQueryResult != null) {
@@ -172,8 +189,9 @@ public abstract class AbstractMetadataResource extends BaseResource {
 					} else {
 						result = getRepresentation(travResult.getGraph(), prefFormat);
 					}
-					if (travResult.getLatestModified() != null) {
-						result.setModificationDate(travResult.getLatestModified());
+					if (latestModified != null) {
+						result.setModificationDate(latestModified);
+						result.setTag(createTag(latestModified, traversalState));
 					}
 				} else {
 					// MergedMetadataResource does not implement getMetadata()
@@ -221,7 +239,7 @@ public abstract class AbstractMetadataResource extends BaseResource {
 			Date lastMod = getModificationDate();
 			if (lastMod != null && result.getModificationDate() == null) {
 				result.setModificationDate(lastMod);
-				result.setTag(Util.createTag(lastMod));
+				result.setTag(createTag(lastMod));
 			}
 
 			return result;
@@ -19,10 +19,13 @@ package org.entrystore.rest.resources;
 
 import com.google.common.collect.Sets;
 import lombok.Getter;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.entrystore.AuthorizationException;
 import org.entrystore.ContextManager;
 import org.entrystore.Entry;
 import org.entrystore.PrincipalManager;
+import org.entrystore.PrincipalManager.AccessProperty;
 import org.entrystore.harvester.Harvester;
 import org.entrystore.impl.RepositoryManagerImpl;
 import org.entrystore.repository.RepositoryManager;
@@ -31,14 +34,17 @@ import org.entrystore.rest.EntryStoreApplication;
 import org.entrystore.rest.auth.UserTempLockoutCache;
 import org.entrystore.rest.util.CORSUtil;
 import org.entrystore.rest.util.JSONErrorMessages;
+import org.entrystore.rest.util.PipelineExecutor;
 import org.entrystore.rest.util.Util;
 import org.restlet.Context;
 import org.restlet.Request;
 import org.restlet.Response;
+import org.restlet.data.Conditions;
 import org.restlet.data.MediaType;
 import org.restlet.data.Method;
 import org.restlet.data.ServerInfo;
 import org.restlet.data.Status;
+import org.restlet.data.Tag;
 import org.restlet.ext.json.JsonRepresentation;
 import org.restlet.representation.EmptyRepresentation;
 import org.restlet.representation.Representation;
@@ -49,11 +55,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
 
 import static org.restlet.data.Status.CLIENT_ERROR_BAD_REQUEST;
 
@@ -82,6 +90,8 @@ public abstract class BaseResource extends ServerResource {
 
 	private static ServerInfo serverInfo;
 
+	private String variant;
+
 	@Override
 	public void init(Context c, Request request, Response response) {
 		parameters = Util.parseRequest(request.getResourceRef().getRemainingPart());
@@ -118,6 +128,7 @@ public abstract class BaseResource extends ServerResource {
 		}
 
 		Util.handleIfUnmodifiedSince(entry, getRequest());
+		Util.handleIfMatch(getRequest());
 	}
 
 	// TODO move this into a ServerInfoFilter that processes before the authentication mechanism
@@ -202,6 +213,10 @@ public abstract class BaseResource extends ServerResource {
 		return getEntryStoreApplication().getUserTempLockoutCache();
 	}
 
+	public PipelineExecutor getPipelineExecutor() {
+		return getEntryStoreApplication().getPipelineExecutor();
+	}
+
 	public EntryStoreApplication getEntryStoreApplication() {
 		return (EntryStoreApplication) getContext().getAttributes().get(EntryStoreApplication.KEY);
 	}
@@ -254,13 +269,100 @@ public abstract class BaseResource extends ServerResource {
 		Representation result = new EmptyRepresentation();
 		if (modificationDate != null) {
 			result.setModificationDate(modificationDate);
-			result.setTag(Util.createTag(modificationDate));
+			result.setTag(createTag(modificationDate));
 		} else {
 			log.warn("Last-Modified header could not be set because the entry does not have a modification date: {}", entry.getEntryURI());
 		}
 		return result;
 	}
 
+	/**
+	 * Validation phase of conditional GET and HEAD requests, to be called before a
+	 * representation is built. The validator is computed from the modification date,
+	 * the ACL version of the repository and the request (see {@link #createTag(Date, Object...)}),
+	 * so no graph has to be loaded to evaluate If-None-Match and If-Modified-Since.
+	 *
+	 * @param modificationDate The modification date of the requested resource.
+	 * @param state Additional state that the representation depends on.
+	 * @return An empty representation with status 304 if the client's representation is
+	 * still valid, or null if the representation has to be built.
+	 * @throws AuthorizationException If the user is not allowed to read the entry's metadata.
+	 */
+	protected Representation checkNotModified(Date modificationDate, Object... state) {
+		Method method = getRequest().getMethod();
+		if (modificationDate == null || !(Method.GET.equals(method) || Method.HEAD.equals(method))) {
+			return null;
+		}
+
+		Conditions conditions = getRequest().getConditions();
+		Tag tag = createTag(modificationDate, state);
+		boolean notModified = false;
+		if (conditions.getNoneMatch() != null && !conditions.getNoneMatch().isEmpty()) {
+			for (Tag noneMatch : conditions.getNoneMatch()) {
+				if (Tag.ALL.equals(noneMatch) || tag.getName().equals(noneMatch.getName())) {
+					notModified = true;
+					break;
+				}
+			}
+		} else if (conditions.getModifiedSince() != null) {
+			// HTTP dates have a resolution of seconds
+			long lastChange = Math.max(modificationDate.getTime(), getRM().getAclVersion());
+			notModified = lastChange / 1000 <= conditions.getModifiedSince().getTime() / 1000;
+		}
+
+		if (!notModified) {
+			// Restlet would otherwise compare If-Modified-Since with the modification
+			// date of the representation only, ignoring changes of access rights
+			conditions.setModifiedSince(null);
+			return null;
+		}
+
+		// the response discloses the modification date, which is part of the entry information
+		if (entry != null) {
+			getPM().checkAuthenticatedUserAuthorized(entry, AccessProperty.ReadMetadata);
+		}
+
+		getResponse().setStatus(Status.REDIRECTION_NOT_MODIFIED);
+		Representation result = new EmptyRepresentation();
+		result.setModificationDate(modificationDate);
+		result.setTag(tag);
+		return result;
+	}
+
+	/**
+	 * Creates the tag of a representation. Representations that are returned for
+	 * GET and HEAD requests depend on the access rights of the requesting user and
+	 * on the request parameters and accepted media types; this is reflected by a
+	 * variant in their tags. For all other methods the tag of the resource's state is
+	 * created, which is used to evaluate If-Match conditions.
+	 *
+	 * @param modificationDate The modification date of the requested resource.
+	 * @param state Additional state that the representation depends on.
+	 */
+	protected Tag createTag(Date modificationDate, Object... state) {
+		Method method = getRequest().getMethod();
+		if (!(Method.GET.equals(method) || Method.HEAD.equals(method))) {
+			return Util.createTag(modificationDate);
+		}
+		String v = getVariant();
+		if (state != null && state.length > 0) {
+			v = DigestUtils.md5Hex(v + Arrays.deepToString(state));
+		}
+		return Util.createTag(modificationDate, v);
+	}
+
+	private String getVariant() {
+		if (variant == null) {
+			StringBuilder sb = new StringBuilder();
+			sb.append(getRM().getAclVersion()).append('\n');
+			sb.append(getPM().getAuthenticatedUserURI()).append('\n');
+			sb.append(new TreeMap<>(parameters)).append('\n');
+			sb.append(getRequest().getClientInfo().getAcceptedMediaTypes());
+			variant = DigestUtils.md5Hex(sb.toString());
+		}
+		return variant;
+	}
+
 	protected String getMandatoryParameter(String parameter) throws JsonErrorException {
 		return Optional.ofNullable(parameters.get(parameter))
 			.orElseThrow(() -> {
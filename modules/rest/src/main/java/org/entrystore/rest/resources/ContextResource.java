@@ -26,6 +26,7 @@ import org.entrystore.AuthorizationException;
 import org.entrystore.Context;
 import org.entrystore.Entry;
 import org.entrystore.EntryType;
+import org.entrystore.EntryUpdate;
 import org.entrystore.GraphType;
 import org.entrystore.Group;
 import org.entrystore.List;
@@ -214,8 +215,12 @@ public class ContextResource extends BaseResource {
 			}
 
 			if (entry != null) {
-				ResourceType rt = getResourceType(parameters.get("informationresource"));
-				entry.setResourceType(rt);
+				// the types are set in one go to avoid separate transactions and events
+				EntryUpdate update = new EntryUpdate().setResourceType(getResourceType(parameters.get("informationresource")));
+				if (!EntryType.Local.equals(entry.getEntryType()) && parameters.containsKey("graphtype")) {
+					update.setGraphType(getGraphType(parameters.get("graphtype")));
+				}
+				entry.update(update);
 
 				String template = parameters.get("template");
 				if (template != null) {
@@ -313,10 +318,6 @@ public class ContextResource extends BaseResource {
 					setLocalMetadataGraph(entry);
 					setCachedMetadataGraph(entry);
 					setEntryGraph(entry);
-					if (parameters.containsKey("graphtype")) {
-						GraphType gt = getGraphType(parameters.get("graphtype"));
-						entry.setGraphType(gt);
-					}
 					if (parameters.containsKey("list")) {
 						try {
 							URI listURI = new URI((parameters.get("list")));
@@ -358,15 +359,8 @@ public class ContextResource extends BaseResource {
 				} else {
 					entry = context.createReference(parameters.get("id"), resourceURI, metadataURI, null);
 				}
-				ResourceType rt = getResourceType(parameters.get("informationresource"));
-				entry.setResourceType(rt);
-
 				setCachedMetadataGraph(entry);
 				setEntryGraph(entry);
-				if (parameters.containsKey("graphtype")) {
-					GraphType bt = getGraphType(parameters.get("graphtype"));
-					entry.setGraphType(bt);
-				}
 				if (parameters.containsKey("list")) {
 					try {
 						URI listURI = new URI((parameters.get("list")));
@@ -589,10 +583,6 @@ public class ContextResource extends BaseResource {
 		if (entry != null) {
 			setLocalMetadataGraph(entry);
 			setEntryGraph(entry);
-			if (parameters.containsKey("graphtype")) {
-				GraphType gt = getGraphType(parameters.get("graphtype"));
-				entry.setGraphType(gt);
-			}
 			if (parameters.containsKey("list")) {
 				try {
 					URI listURI = new URI((parameters.get("list")));
@@ -32,7 +32,6 @@ import org.entrystore.rest.serializer.ResourceJsonSerializer.ListParams;
 import org.entrystore.rest.util.GraphUtil;
 import org.entrystore.rest.util.JSONErrorMessages;
 import org.entrystore.rest.util.RDFJSON;
-import org.entrystore.rest.util.Util;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -133,6 +132,11 @@ public class EntryResource extends BaseResource {
 				return new JsonRepresentation(JSONErrorMessages.errorEntryNotFound);
 			}
 
+			Representation notModified = checkNotModified(entry.getModifiedDate());
+			if (notModified != null) {
+				return notModified;
+			}
+
 			// the check for resource safety is necessary to avoid an implicit
 			// getMetadata() in the case of a PUT on (not yet) existent metadata
 			// - this is e.g. the case if conditional requests are issued
@@ -151,7 +155,7 @@ public class EntryResource extends BaseResource {
 			Date lastMod = entry.getModifiedDate();
 			if (lastMod != null) {
 				result.setModificationDate(lastMod);
-				result.setTag(Util.createTag(lastMod));
+				result.setTag(createTag(lastMod));
 			}
 
 			return result;
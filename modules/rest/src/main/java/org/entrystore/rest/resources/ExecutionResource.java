@@ -23,27 +23,39 @@ import org.entrystore.EntryType;
 import org.entrystore.GraphType;
 import org.entrystore.PrincipalManager.AccessProperty;
 import org.entrystore.ResourceType;
+import org.entrystore.rest.util.PipelineExecutor;
+import org.entrystore.rest.util.PipelineExecutor.Job;
 import org.entrystore.transforms.Pipeline;
-import org.entrystore.transforms.TransformException;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.restlet.data.MediaType;
 import org.restlet.data.Status;
 import org.restlet.ext.json.JsonRepresentation;
+import org.restlet.representation.EmptyRepresentation;
 import org.restlet.representation.Representation;
+import org.restlet.resource.Delete;
+import org.restlet.resource.Get;
 import org.restlet.resource.Post;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
 
 
 /**
  * This resource executes pipelines etc.
+ *
+ * <p>Pipelines are run by the {@link PipelineExecutor}. Synchronous executions (default)
+ * wait for the result, asynchronous executions return the status of the queued job
+ * which can be fetched with GET on <code>/{context-id}/execute/{job-id}</code> and
+ * cancelled with DELETE on the same URI. GET on <code>/{context-id}/execute</code>
+ * lists the jobs of the context.</p>
  * 
  * @author Hannes Ebner
  */
@@ -53,14 +65,80 @@ public class ExecutionResource extends BaseResource {
 
 	List<MediaType> supportedMediaTypes = new ArrayList<MediaType>();
 
+	String jobId;
+
 	@Override
 	public void doInit() {
 		supportedMediaTypes.add(MediaType.APPLICATION_JSON);
+		jobId = (String) getRequest().getAttributes().get("job-id");
+	}
+
+	@Get
+	public Representation represent() {
+		if (context == null) {
+			getResponse().setStatus(Status.CLIENT_ERROR_NOT_FOUND);
+			return new EmptyRepresentation();
+		}
+
+		try {
+			getPM().checkAuthenticatedUserAuthorized(context.getEntry(), AccessProperty.WriteResource);
+		} catch (AuthorizationException e) {
+			return unauthorizedGET();
+		}
+
+		PipelineExecutor executor = getPipelineExecutor();
+		if (jobId != null) {
+			Job job = getJob();
+			if (job == null) {
+				getResponse().setStatus(Status.CLIENT_ERROR_NOT_FOUND);
+				return new EmptyRepresentation();
+			}
+			return new JsonRepresentation(job.toJSON());
+		}
+
+		JSONArray jobs = new JSONArray();
+		for (Job job : executor.getJobs(contextId)) {
+			jobs.put(job.toJSON());
+		}
+		JSONObject result = new JSONObject();
+		result.put("jobs", jobs);
+		return new JsonRepresentation(result);
+	}
+
+	@Delete
+	public void removeRepresentations() {
+		if (context == null || jobId == null) {
+			getResponse().setStatus(Status.CLIENT_ERROR_NOT_FOUND);
+			return;
+		}
+
+		try {
+			getPM().checkAuthenticatedUserAuthorized(context.getEntry(), AccessProperty.WriteResource);
+		} catch (AuthorizationException e) {
+			unauthorizedDELETE();
+			return;
+		}
+
+		Job job = getJob();
+		if (job == null) {
+			getResponse().setStatus(Status.CLIENT_ERROR_NOT_FOUND);
+		} else if (getPipelineExecutor().cancel(job)) {
+			getResponse().setEntity(new JsonRepresentation(job.toJSON()));
+			getResponse().setStatus(Status.SUCCESS_OK);
+		} else {
+			// the job has already finished
+			getResponse().setStatus(Status.CLIENT_ERROR_CONFLICT);
+		}
+	}
+
+	private Job getJob() {
+		Job job = getPipelineExecutor().getJob(jobId);
+		if (job != null && !contextId.equals(job.getContextId())) {
+			return null;
+		}
+		return job;
 	}
 
-	// TODO add support for GET to query currently running pipelines; this should
-	// be supported together with asynchronous processing of pipeline executions
-		
 	@Post
 	public void acceptRepresentation(Representation r) {
 		if (context == null) {
@@ -85,16 +163,17 @@ public class ExecutionResource extends BaseResource {
 
 		String pipeline;
 		String source = null;
-//		String destination;
-//		boolean async = false;
+		boolean async;
+		int priority;
 
 		try {
 			pipeline = request.getString("pipeline"); // Pipeline Entry URI
 			if (request.has("source")) {
 				source = request.getString("source"); // Data source Entry URI
 			}
-//			destination = request.getString("destination"); // Destination Entry URI
-//			async = "async".equalsIgnoreCase(request.getString("async")); // sync is default
+			// sync is default, "async" is accepted for compatibility with earlier drafts of the API
+			async = request.optBoolean("async", false) || "async".equalsIgnoreCase(request.optString("async"));
+			priority = request.optInt("priority", 0);
 		} catch (JSONException e) {
 			getResponse().setStatus(Status.CLIENT_ERROR_UNPROCESSABLE_ENTITY);
 			return;
@@ -163,24 +242,64 @@ public class ExecutionResource extends BaseResource {
 				return;
 			}
 
-			Set<Entry> processedEntries = null;
+			final Entry finalSourceEntry = sourceEntry;
+			final URI finalListURI = listURI;
+			Job job;
 			try {
-				processedEntries = new Pipeline(pipelineEntry).run(sourceEntry, listURI);
-			} catch (IllegalStateException iae) {
-				log.error(iae.getMessage());
-				getResponse().setStatus(Status.CLIENT_ERROR_BAD_REQUEST);
+				job = getPipelineExecutor().submit(contextId, pipelineEntry.getEntryURI(),
+						sourceEntry != null ? sourceEntry.getEntryURI() : null,
+						getPM().getAuthenticatedUserURI(), priority,
+						j -> {
+							Pipeline p = new Pipeline(pipelineEntry);
+							p.setProgressListener((completed, total) -> j.setProgress((double) completed / total));
+							Set<URI> result = new HashSet<>();
+							for (Entry e : p.run(finalSourceEntry, finalListURI)) {
+								result.add(e.getEntryURI());
+							}
+							return result;
+						});
+			} catch (RejectedExecutionException ree) {
+				log.warn("Unable to queue pipeline execution: {}", ree.getMessage());
+				getResponse().setStatus(Status.SERVER_ERROR_SERVICE_UNAVAILABLE);
 				return;
-			} catch (TransformException te) {
-				log.error(te.getMessage());
-				getResponse().setStatus(Status.SERVER_ERROR_INTERNAL);
+			}
+
+			if (async) {
+				getResponse().setLocationRef(getRequest().getResourceRef().getIdentifier() + "/" + job.getId());
+				getResponse().setEntity(new JsonRepresentation(job.toJSON()));
+				getResponse().setStatus(Status.SUCCESS_ACCEPTED);
+				return;
+			}
+
+			try {
+				job.await();
+			} catch (InterruptedException ie) {
+				getPipelineExecutor().cancel(job);
+				Thread.currentThread().interrupt();
+				getResponse().setStatus(Status.SERVER_ERROR_SERVICE_UNAVAILABLE);
 				return;
 			}
 
+			if (job.getStatus() != PipelineExecutor.Status.Done) {
+				Throwable failure = job.getFailure();
+				if (failure != null) {
+					log.error(failure.getMessage());
+				}
+				// pipelines without recognizable transforms are reported as bad requests
+				if (failure instanceof IllegalStateException) {
+					getResponse().setStatus(Status.CLIENT_ERROR_BAD_REQUEST);
+				} else {
+					getResponse().setStatus(Status.SERVER_ERROR_INTERNAL);
+				}
+				return;
+			}
+
+			Set<URI> processedEntries = job.getResult();
 			if (processedEntries != null && processedEntries.size() > 0) {
 				JSONObject result = new JSONObject();
 				JSONArray processedEntriesArr = new JSONArray();
-				for (Entry e : processedEntries) {
-					processedEntriesArr.put(e.getEntryURI().toString());
+				for (URI e : processedEntries) {
+					processedEntriesArr.put(e.toString());
 				}
 				try {
 					result.put("result", processedEntriesArr);
@@ -191,11 +310,6 @@ public class ExecutionResource extends BaseResource {
 				getResponse().setEntity(new JsonRepresentation(result));
 				getResponse().setStatus(Status.SUCCESS_CREATED);
 			}
-
-			// TODO support execution status for async executions; perhaps the thread executioner can be
-			// shared between listeners and pipelines? this would allow to set a reasonable maximum of
-			// concurrent threads per EntryStore instance
-
 		} catch(AuthorizationException e) {
 			log.debug("Unauthorized POST");
 			unauthorizedPOST();
@@ -18,20 +18,30 @@ package org.entrystore.rest.resources;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Meter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.TimeGauge;
 import io.micrometer.core.instrument.Timer;
 import io.micrometer.core.instrument.distribution.HistogramSnapshot;
 import io.micrometer.core.instrument.distribution.ValueAtPercentile;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
 import org.entrystore.AuthorizationException;
 import org.entrystore.PrincipalManager;
+import org.entrystore.rest.micrometer.PrometheusTextFormat;
 import org.json.JSONObject;
+import org.restlet.data.CharacterSet;
+import org.restlet.data.MediaType;
 import org.restlet.data.Status;
 import org.restlet.ext.json.JsonRepresentation;
 import org.restlet.representation.EmptyRepresentation;
 import org.restlet.representation.Representation;
+import org.restlet.representation.StringRepresentation;
 import org.restlet.resource.Get;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,11 +55,22 @@ public class PerformanceMetricsResource extends BaseResource {
 
 	static Logger log = LoggerFactory.getLogger(PerformanceMetricsResource.class);
 
+	List<MediaType> supportedMediaTypes = new ArrayList<>();
+
+	@Override
+	public void doInit() {
+		supportedMediaTypes.add(MediaType.APPLICATION_JSON);
+		supportedMediaTypes.add(MediaType.TEXT_PLAIN);
+	}
+
 	/**
 	 * <pre>
 	 * GET {baseURI}/metrics
 	 * </pre>
 	 *
+	 * <p>Returns the metrics in the Prometheus text format if text/plain is requested,
+	 * either with the format parameter or the Accept header.</p>
+	 *
 	 * @return performance metrics
 	 */
 	@Get
@@ -65,11 +86,21 @@ public class PerformanceMetricsResource extends BaseResource {
 				return new EmptyRepresentation();
 			}
 
+			MediaType preferredMediaType = getRequest().getClientInfo().getPreferredMediaType(supportedMediaTypes);
+			MediaType prefFormat = (format != null) ? format : preferredMediaType;
+			if (MediaType.TEXT_PLAIN.equals(prefFormat, true)) {
+				// scrapers assume version 0.0.4 of the format if the content type has no version
+				return new StringRepresentation(PrometheusTextFormat.write(registry), MediaType.TEXT_PLAIN, null, CharacterSet.UTF_8);
+			}
+
 			JSONObject result = new JSONObject();
 			for (Meter meter : registry.getMeters()) {
-				// We only expose the request timers for now
-				if (meter instanceof Timer timer) {
-					String timerName = timer.getId().getName();
+				// We only expose the request timers, the response sizes and the startup times for now
+				if (meter instanceof TimeGauge timeGauge) {
+					JSONObject gaugeData = new JSONObject();
+					gaugeData.put("duration", Math.round(timeGauge.value(MILLISECONDS)));
+					result.put(key(timeGauge), gaugeData);
+				} else if (meter instanceof Timer timer) {
 					HistogramSnapshot histogramSnapshot = timer.takeSnapshot();
 					JSONObject timerData = new JSONObject();
 					timerData.put("requests", histogramSnapshot.count());
@@ -79,7 +110,18 @@ public class PerformanceMetricsResource extends BaseResource {
 						timerData.put("percentile-" + valueAtPercentile.percentile(),
 								Math.round(valueAtPercentile.value(MILLISECONDS)));
 					}
-					result.put(timerName, timerData);
+					result.put(key(timer), timerData);
+				} else if (meter instanceof DistributionSummary summary) {
+					HistogramSnapshot histogramSnapshot = summary.takeSnapshot();
+					JSONObject summaryData = new JSONObject();
+					summaryData.put("count", histogramSnapshot.count());
+					summaryData.put("mean", Math.round(histogramSnapshot.mean()));
+					summaryData.put("max", Math.round(histogramSnapshot.max()));
+					for (ValueAtPercentile valueAtPercentile : histogramSnapshot.percentileValues()) {
+						summaryData.put("percentile-" + valueAtPercentile.percentile(),
+								Math.round(valueAtPercentile.value()));
+					}
+					result.put(key(summary), summaryData);
 				}
 			}
 			return new JsonRepresentation(result.toString(2));
@@ -91,4 +133,17 @@ public class PerformanceMetricsResource extends BaseResource {
 			return new EmptyRepresentation();
 		}
 	}
+
+	/**
+	 * @return The name of the meter followed by its tags, e.g., "http.server.requests{method=GET,route=/search,status=2xx}".
+	 */
+	private static String key(Meter meter) {
+		List<Tag> tags = meter.getId().getTags();
+		if (tags.isEmpty()) {
+			return meter.getId().getName();
+		}
+		return meter.getId().getName() + tags.stream()
+				.map(tag -> tag.getKey() + "=" + tag.getValue())
+				.collect(Collectors.joining(",", "{", "}"));
+	}
 }
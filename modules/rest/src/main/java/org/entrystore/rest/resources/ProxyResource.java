@@ -18,24 +18,28 @@ package org.entrystore.rest.resources;
 
 import com.google.common.base.Joiner;
 import org.apache.commons.lang.StringEscapeUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.util.EntityUtils;
 import org.entrystore.AuthorizationException;
 import org.entrystore.Entry;
 import org.entrystore.PrincipalManager;
+import org.entrystore.impl.RepositoryManagerImpl;
 import org.entrystore.repository.config.Settings;
-import org.restlet.Client;
-import org.restlet.Context;
-import org.restlet.Request;
-import org.restlet.Response;
-import org.restlet.data.Method;
-import org.restlet.data.Protocol;
-import org.restlet.data.Reference;
+import org.entrystore.rest.util.HttpUtil;
 import org.restlet.data.Status;
 import org.restlet.representation.Representation;
 import org.restlet.resource.Get;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.net.InetAddress;
+import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.UnknownHostException;
@@ -58,9 +62,7 @@ public class ProxyResource extends BaseResource {
 
 	static Logger log = LoggerFactory.getLogger(ProxyResource.class);
 
-	private Client client;
-
-	private Response clientResponse;
+	private CloseableHttpResponse clientResponse;
 
 	private static List<String> whitelistAnon;
 
@@ -154,42 +156,55 @@ public class ProxyResource extends BaseResource {
 
 		log.info("Received proxy request for " + extResourceURL);
 
-		clientResponse = getResourceFromURL(extResourceURL, 0);
-		Representation representation = null;
-		if (clientResponse != null && clientResponse.getStatus().isSuccess()) {
-			representation = clientResponse.getEntity();
-			getResponse().getHeaders().set("Content-Security-Policy", "script-src 'none'; form-action 'none';"); // XSS and SSRF protection
-			getResponse().setOnSent((request, response) -> {
-				try {
-					clientResponse.release();
-					client.stop();
-					client = null;
-				} catch (Exception e) {
-					log.error(e.getMessage());
-				}
-			});
-			if (Status.isConnectorError(clientResponse.getStatus().getCode())) {
-				log.debug("Proxy request to " + extResourceURL + " timed out");
-				getResponse().setStatus(Status.SERVER_ERROR_GATEWAY_TIMEOUT);
-				return null;
-			} else {
-				getResponse().setStatus(clientResponse.getStatus());
-			}
+		try {
+			clientResponse = getResourceFromURL(extResourceURL, 0);
+		} catch (SocketTimeoutException | ConnectTimeoutException e) {
+			log.debug("Proxy request to " + extResourceURL + " timed out");
+			getResponse().setStatus(Status.SERVER_ERROR_GATEWAY_TIMEOUT);
+			return null;
+		} catch (IOException e) {
+			log.debug("Proxy request to " + extResourceURL + " failed: " + e.getMessage());
+			getResponse().setStatus(Status.SERVER_ERROR_BAD_GATEWAY);
+			return null;
+		}
 
-			if (representation != null) {
-				return representation;
+		if (clientResponse == null) {
+			if (getResponse().getStatus().isSuccess()) {
+				getResponse().setStatus(Status.CLIENT_ERROR_BAD_REQUEST);
 			}
+			return null;
 		}
 
-		if (clientResponse == null) {
-			getResponse().setStatus(Status.CLIENT_ERROR_BAD_REQUEST);
-		} else {
-			getResponse().setStatus(clientResponse.getStatus());
+		// the connection is returned to the pool after the response has been sent
+		getResponse().setOnSent((request, response) -> closeClientResponse());
+		getResponse().setStatus(Status.valueOf(clientResponse.getStatusLine().getStatusCode()));
+		HttpEntity entity = clientResponse.getEntity();
+		if (Status.isSuccess(clientResponse.getStatusLine().getStatusCode()) && entity != null) {
+			getResponse().getHeaders().set("Content-Security-Policy", "script-src 'none'; form-action 'none';"); // XSS and SSRF protection
+			try {
+				return HttpUtil.toRepresentation(clientResponse, extResourceURL);
+			} catch (IOException e) {
+				log.debug("Unable to read response of proxy request to " + extResourceURL + ": " + e.getMessage());
+				getResponse().setStatus(Status.SERVER_ERROR_BAD_GATEWAY);
+			}
 		}
 
+		// error responses are not forwarded, consuming them allows to reuse the connection
+		EntityUtils.consumeQuietly(entity);
 		return null;
 	}
 
+	private void closeClientResponse() {
+		if (clientResponse != null) {
+			try {
+				clientResponse.close();
+			} catch (IOException e) {
+				log.error(e.getMessage());
+			}
+			clientResponse = null;
+		}
+	}
+
 	private boolean canReadContextResource(Entry contextEntry) {
 		try {
 			getPM().checkAuthenticatedUserAuthorized(contextEntry, PrincipalManager.AccessProperty.ReadResource);
@@ -199,21 +214,31 @@ public class ProxyResource extends BaseResource {
 		return true;
 	}
 	
-	private Response getResourceFromURL(String url, int loopCount) {
+	/**
+	 * Fetches a URL using the shared HTTP client. Redirects are followed manually so
+	 * that every location is checked against the blacklist.
+	 *
+	 * @return The response, or null if the request was not permitted or has been
+	 * redirected too often. In the former case the status of this resource's response is set.
+	 */
+	private CloseableHttpResponse getResourceFromURL(String url, int loopCount) throws IOException {
 		String host;
 		try {
 			host = new URI(url).getHost();
 		} catch (URISyntaxException e) {
 			log.debug(e.getMessage());
-			Response errorResponse = new Response(new Request());
-			errorResponse.setStatus(Status.CLIENT_ERROR_BAD_REQUEST);
-			return errorResponse;
+			getResponse().setStatus(Status.CLIENT_ERROR_BAD_REQUEST);
+			return null;
+		}
+
+		if (host == null) {
+			getResponse().setStatus(Status.CLIENT_ERROR_BAD_REQUEST);
+			return null;
 		}
 
 		if (!isWhitelisted(host) && isBlacklisted(host)) {
-			Response errorResponse = new Response(new Request());
-			errorResponse.setStatus(Status.CLIENT_ERROR_FORBIDDEN);
-			return errorResponse;
+			getResponse().setStatus(Status.CLIENT_ERROR_FORBIDDEN);
+			return null;
 		}
 
 		if (loopCount > 15) {
@@ -221,39 +246,40 @@ public class ProxyResource extends BaseResource {
 			return null;
 		}
 
-		if (client == null) {
-			client = new Client(Arrays.asList(Protocol.HTTP, Protocol.HTTPS));
-			client.setContext(new Context());
-			client.getContext().getParameters().set("connectTimeout", "30000");
-			client.getContext().getParameters().set("socketConnectTimeoutMs", "30000");
-			client.getContext().getParameters().set("socketTimeout", "60000");
-			client.getContext().getParameters().set("readTimeout", "60000");
-	        log.info("Initialized HTTP client for proxy requests");
+		HttpGet request;
+		try {
+			request = new HttpGet(url);
+		} catch (IllegalArgumentException iae) {
+			getResponse().setStatus(Status.CLIENT_ERROR_BAD_REQUEST);
+			return null;
 		}
-
-		Request request = new Request(Method.GET, url);
-		request.getClientInfo().setAcceptedMediaTypes(getRequest().getClientInfo().getAcceptedMediaTypes());
-		Response response = client.handle(request);
-		
-		if (response.getStatus().isRedirection()) {
-			Reference ref = response.getLocationRef();
-			response.getEntity().release();
-			if (ref != null) {
-				String refURL = ref.getIdentifier();
+		String accept = HttpUtil.toAcceptHeader(getRequest().getClientInfo().getAcceptedMediaTypes());
+		if (accept != null) {
+			request.setHeader(HttpHeaders.ACCEPT, accept);
+		}
+		CloseableHttpResponse response = ((RepositoryManagerImpl) getRM()).getHttpClient().execute(request);
+
+		if (Status.isRedirection(response.getStatusLine().getStatusCode())) {
+			Header location = response.getFirstHeader(HttpHeaders.LOCATION);
+			if (location != null) {
+				// the entity is consumed, so that the connection can be reused
+				EntityUtils.consumeQuietly(response.getEntity());
+				response.close();
+				String refURL;
+				try {
+					refURL = URI.create(url).resolve(location.getValue()).toString();
+				} catch (IllegalArgumentException iae) {
+					getResponse().setStatus(Status.CLIENT_ERROR_BAD_REQUEST);
+					return null;
+				}
 				log.debug("Request redirected to " + refURL);
 				return getResourceFromURL(refURL, ++loopCount);
 			}
 		}
 
-		if (response.getEntity() != null) {
-			if (response.getEntity().getLocationRef() != null && response.getEntity().getLocationRef().getBaseRef() == null) {
-				response.getEntity().getLocationRef().setBaseRef(url.substring(0, url.lastIndexOf("/") + 1));
-			}
-		}
-
 		return response;
 	}
-	
+
 	private String getTitle(String htmlString) {
 		htmlString = htmlString.replaceAll("\\s+", " ");
 		Pattern p = Pattern.compile("<title>(.*?)</title>", Pattern.CASE_INSENSITIVE);
@@ -22,6 +22,12 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.fileupload.FileItem;
 import org.apache.commons.fileupload.FileUploadException;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.util.EntityUtils;
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrQuery.ORDER;
 import org.apache.solr.client.solrj.util.ClientUtils;
@@ -32,6 +38,7 @@ import org.entrystore.Context;
 import org.entrystore.Data;
 import org.entrystore.Entry;
 import org.entrystore.EntryType;
+import org.entrystore.EntryUpdate;
 import org.entrystore.GraphType;
 import org.entrystore.Group;
 import org.entrystore.QuotaException;
@@ -40,8 +47,10 @@ import org.entrystore.ResourceType;
 import org.entrystore.User;
 import org.entrystore.impl.DataImpl;
 import org.entrystore.impl.ListImpl;
+import org.entrystore.impl.RepositoryManagerImpl;
 import org.entrystore.impl.RDFResource;
 import org.entrystore.impl.StringResource;
+import org.entrystore.impl.UploadManager;
 import org.entrystore.repository.RepositoryException;
 import org.entrystore.repository.config.Settings;
 import org.entrystore.repository.security.Password;
@@ -55,8 +64,11 @@ import org.entrystore.rest.auth.LoginTokenCache;
 import org.entrystore.rest.auth.UserTempLockoutCache;
 import org.entrystore.rest.serializer.ResourceJsonSerializer;
 import org.entrystore.rest.serializer.ResourceJsonSerializer.ListParams;
+import org.entrystore.rest.util.ByteRange;
 import org.entrystore.rest.util.Email;
+import org.entrystore.rest.util.FileRangeRepresentation;
 import org.entrystore.rest.util.GraphUtil;
+import org.entrystore.rest.util.HttpUtil;
 import org.entrystore.rest.util.JSONErrorMessages;
 import org.entrystore.rest.util.RDFJSON;
 import org.entrystore.rest.util.Syndication;
@@ -64,18 +76,17 @@ import org.entrystore.rest.util.Util;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
-import org.restlet.Client;
 import org.restlet.Request;
-import org.restlet.Response;
 import org.restlet.data.Disposition;
 import org.restlet.data.MediaType;
 import org.restlet.data.Method;
-import org.restlet.data.Protocol;
 import org.restlet.data.Reference;
+import org.restlet.data.ServerInfo;
 import org.restlet.data.Status;
+import org.restlet.engine.adapter.HttpResponse;
+import org.restlet.engine.util.DateUtils;
 import org.restlet.ext.json.JsonRepresentation;
 import org.restlet.representation.EmptyRepresentation;
-import org.restlet.representation.FileRepresentation;
 import org.restlet.representation.Representation;
 import org.restlet.representation.StringRepresentation;
 import org.restlet.resource.Delete;
@@ -163,6 +174,18 @@ public class ResourceResource extends BaseResource {
 				return new JsonRepresentation(JSONErrorMessages.errorEntryNotFound);
 			}
 
+			if (parameters.containsKey("upload")) {
+				return handleUpload();
+			}
+
+			// feeds depend on the search index and not on the entry
+			if (!parameters.containsKey("syndication")) {
+				Representation notModified = checkNotModified(entry.getModifiedDate());
+				if (notModified != null) {
+					return notModified;
+				}
+			}
+
 			Representation result;
 
 			// the check for resource safety is necessary to avoid an implicit
@@ -178,7 +201,7 @@ public class ResourceResource extends BaseResource {
 				Date lastMod = entry.getModifiedDate();
 				if (lastMod != null) {
 					result.setModificationDate(lastMod);
-					result.setTag(Util.createTag(lastMod));
+					result.setTag(createTag(lastMod));
 				}
 			}
 
@@ -196,8 +219,15 @@ public class ResourceResource extends BaseResource {
 		}
 
 		try {
+			if (parameters.containsKey("upload")) {
+				getResponse().setEntity(handleUpload());
+				return;
+			}
 			modifyResource();
-			entry.updateModificationDate();
+			if (entry.getGraphType() != GraphType.None) {
+				// uploaded data is registered as modification by Entry.update()
+				entry.updateModificationDate();
+			}
 			getResponse().setEntity(createEmptyRepresentationWithLastModified(entry.getModifiedDate()));
 		} catch (AuthorizationException e) {
 			unauthorizedPUT();
@@ -215,16 +245,20 @@ public class ResourceResource extends BaseResource {
 		EntryType entryType = entry.getEntryType();
 
 		try {
+			if (parameters.containsKey("upload")) {
+				getResponse().setEntity(handleUpload());
+				return;
+			}
 			if ((entryType == EntryType.Link || entryType == EntryType.Reference || entryType == EntryType.LinkReference)
 				&& "true".equalsIgnoreCase(parameters.get("proxy"))) {
 
-				final Response delResponse = deleteRemoteResource(entry.getResourceURI().toString(), 0);
+				final CloseableHttpResponse delResponse = deleteRemoteResource(entry.getResourceURI().toString(), 0);
 				if (delResponse != null) {
-					getResponse().setEntity(delResponse.getEntity());
-					getResponse().setStatus(delResponse.getStatus());
+					getResponse().setEntity(HttpUtil.toRepresentation(delResponse, entry.getResourceURI().toString()));
+					getResponse().setStatus(Status.valueOf(delResponse.getStatusLine().getStatusCode()));
 					getResponse().setOnSent((request, response) -> {
 						try {
-							delResponse.release();
+							delResponse.close();
 						} catch (Exception e) {
 							log.error(e.getMessage());
 						}
@@ -237,6 +271,9 @@ public class ResourceResource extends BaseResource {
 			}
 		} catch (AuthorizationException e) {
 			unauthorizedDELETE();
+		} catch (IOException e) {
+			log.warn("Unable to delete remote resource: {}", e.getMessage());
+			getResponse().setStatus(Status.SERVER_ERROR_BAD_GATEWAY);
 		}
 	}
 
@@ -250,7 +287,9 @@ public class ResourceResource extends BaseResource {
 		GraphType graphType = entry.getGraphType();
 
 		try {
-			if (graphType == GraphType.List
+			if (parameters.containsKey("upload")) {
+				getResponse().setEntity(handleUpload());
+			} else if (graphType == GraphType.List
 				&& parameters.containsKey("import")
 				&& MediaType.APPLICATION_ZIP.equals(getRequestEntity().getMediaType())) {
 
@@ -453,13 +492,13 @@ public class ResourceResource extends BaseResource {
 		return EMPTY_REPRESENTATION;
 	}
 
-	private FileRepresentation serializeFileRepresentationResourceNone(Entry entry) {
+	private Representation serializeFileRepresentationResourceNone(Entry entry) {
 		if (entry.getResourceType() == ResourceType.InformationResource) {
 			// Local data
 			File file = ((Data) entry.getResource()).getDataFile();
 			if (file != null) {
 				String medTyp = entry.getMimetype();
-				FileRepresentation rep;
+				MediaType mediaType = MediaType.ALL;
 				if (medTyp != null) {
 					try {
 						if (rewriteMediaTypeJavaScript) {
@@ -468,19 +507,46 @@ public class ResourceResource extends BaseResource {
 								medTyp = MediaType.TEXT_PLAIN.toString();
 							}
 						}
-						rep = new FileRepresentation(file, MediaType.valueOf(medTyp));
+						mediaType = MediaType.valueOf(medTyp);
 					} catch (IllegalArgumentException iae) {
 						log.warn("Invalid media type for {}: {}", entry.getEntryURI(), iae.getMessage());
-						rep = new FileRepresentation(file, MediaType.ALL);
 					}
+				}
+
+				DataImpl data = new DataImpl(entry);
+				String digest = data.readDigest();
+				if (digest != null) {
+					getResponse().getHeaders().set("Digest", "sha-256=" + digest);
 				} else {
-					rep = new FileRepresentation(file, MediaType.ALL);
+					log.debug("Digest does not exist for [{}]", entry.getResourceURI());
+				}
+
+				ServerInfo serverInfo = new ServerInfo();
+				serverInfo.setAgent(getServerInfo().getAgent());
+				serverInfo.setAcceptingRanges(true);
+				getResponse().setServerInfo(serverInfo);
+
+				List<ByteRange> ranges = null;
+				String rangeHeader = getRequest().getHeaders().getFirstValue(HttpHeaders.RANGE, true);
+				if (rangeHeader != null && isIfRangeSatisfied(entry, digest)) {
+					ranges = ByteRange.parse(rangeHeader, file.length());
+					if (ranges != null && ranges.isEmpty()) {
+						getResponse().setStatus(Status.CLIENT_ERROR_REQUESTED_RANGE_NOT_SATISFIABLE);
+						setHttpHeader(HttpHeaders.CONTENT_RANGE, ByteRange.toUnsatisfiedContentRange(file.length()));
+						return new EmptyRepresentation();
+					}
+				}
+
+				FileRangeRepresentation rep = new FileRangeRepresentation(file, mediaType, ranges);
+				if (ranges != null) {
+					getResponse().setStatus(Status.SUCCESS_PARTIAL_CONTENT);
 				}
+
 				String fileName = entry.getFilename();
 				if (fileName == null) {
 					fileName = entry.getId();
 				}
-				Disposition disp = rep.getDisposition();
+				Disposition disp = new Disposition();
 				disp.setFilename(fileName);
 				if (!getRM().getConfiguration().getBoolean(Settings.HTTP_ALLOW_CONTENT_DISPOSITION_INLINE, true)
 					|| parameters.containsKey("download")) {
@@ -488,14 +554,7 @@ public class ResourceResource extends BaseResource {
 				} else {
 					disp.setType(Disposition.TYPE_INLINE);
 				}
-
-				DataImpl data = new DataImpl(entry);
-				String digest = data.readDigest();
-				if (digest != null) {
-					getResponse().getHeaders().set("Digest", "sha-256=" + digest);
-				} else {
-					log.debug("Digest does not exist for [{}]", entry.getResourceURI());
-				}
+				rep.setDisposition(disp);
 
 				return rep;
 			}
@@ -509,6 +568,44 @@ public class ResourceResource extends BaseResource {
 		return null;
 	}
 
+	/**
+	 * Sets a header that Restlet only derives from its API, e.g., Content-Range from the range of
+	 * the entity, which cannot express an unsatisfied range. Such headers are dropped if set with
+	 * {@link org.restlet.Response#getHeaders()}, so they are added to the headers of the connector call.
+	 */
+	private void setHttpHeader(String name, String value) {
+		if (getResponse() instanceof HttpResponse httpResponse) {
+			httpResponse.getHttpCall().getResponseHeaders().set(name, value);
+		} else {
+			getResponse().getHeaders().set(name, value);
+		}
+	}
+
+	/**
+	 * A Range header is only evaluated if there is no If-Range header or if the
+	 * If-Range header matches the current ETag, the SHA-256 digest of the file or
+	 * the modification date of the entry.
+	 */
+	private boolean isIfRangeSatisfied(Entry entry, String digest) {
+		String ifRange = getRequest().getHeaders().getFirstValue(HttpHeaders.IF_RANGE, true);
+		if (ifRange == null) {
+			return true;
+		}
+		ifRange = ifRange.trim();
+		Date modified = entry.getModifiedDate();
+		if (ifRange.startsWith("\"")) {
+			// only strong entity tags may be used in If-Range
+			String tag = StringUtils.removeEnd(ifRange.substring(1), "\"");
+			return (modified != null && tag.equals(createTag(modified).getName())) ||
+				(digest != null && (tag.equals(digest) || tag.equals("sha-256=" + digest)));
+		} else if (ifRange.startsWith("W/")) {
+			return false;
+		}
+		Date date = DateUtils.parse(ifRange);
+		// HTTP dates have a resolution of seconds
+		return date != null && modified != null && modified.getTime() / 1000 == date.getTime() / 1000;
+	}
+
 	private JsonRepresentation serializeJsonRepresentationResourceList(Entry entry, ListParams listParams) {
 		JSONArray array = new JSONArray();
 		org.entrystore.List l = (org.entrystore.List) this.entry.getResource();
@@ -618,40 +715,30 @@ public class ResourceResource extends BaseResource {
 		}
 	}
 
-	private Response deleteRemoteResource(String url, int loopCount) {
+	private CloseableHttpResponse deleteRemoteResource(String url, int loopCount) throws IOException {
 		if (loopCount > 10) {
 			log.warn("More than 10 redirect loops detected, aborting");
 			return null;
 		}
 
-		Client client = new Client(Protocol.HTTP);
-		client.setContext(new org.restlet.Context());
-		client.getContext().getParameters().add("connectTimeout", "10000");
-		client.getContext().getParameters().add("readTimeout", "10000");
-		client.getContext().getParameters().set("socketTimeout", "10000");
-		client.getContext().getParameters().set("socketConnectTimeoutMs", "10000");
-		log.info("Initialized HTTP client for proxy request to delete remote resource");
-
-		Request request = new Request(Method.DELETE, url);
-		request.getClientInfo().setAcceptedMediaTypes(getRequest().getClientInfo().getAcceptedMediaTypes());
-		Response response = client.handle(request);
-
-		if (response.getStatus().isRedirection()) {
-			Reference ref = response.getLocationRef();
-			response.getEntity().release();
-			if (ref != null) {
-				String refURL = ref.getIdentifier();
+		HttpDelete request = new HttpDelete(url);
+		String accept = HttpUtil.toAcceptHeader(getRequest().getClientInfo().getAcceptedMediaTypes());
+		if (accept != null) {
+			request.setHeader(HttpHeaders.ACCEPT, accept);
+		}
+		CloseableHttpResponse response = ((RepositoryManagerImpl) getRM()).getHttpClient().execute(request);
+
+		if (Status.isRedirection(response.getStatusLine().getStatusCode())) {
+			Header location = response.getFirstHeader(HttpHeaders.LOCATION);
+			if (location != null) {
+				EntityUtils.consumeQuietly(response.getEntity());
+				response.close();
+				String refURL = URI.create(url).resolve(location.getValue()).toString();
 				log.info("Request redirected to " + refURL);
 				return deleteRemoteResource(refURL, ++loopCount);
 			}
 		}
 
-		if (response.getEntity() != null &&
-			response.getEntity().getLocationRef() != null &&
-			response.getEntity().getLocationRef().getBaseRef() == null) {
-
-			response.getEntity().getLocationRef().setBaseRef(url.substring(0, url.lastIndexOf("/") + 1));
-		}
 		return response;
 	}
 
@@ -783,6 +870,115 @@ public class ResourceResource extends BaseResource {
 		return recursiveEntries;
 	}
 
+	/**
+	 * Resumable uploads of the file of a local resource in chunks. Chunks are appended
+	 * in order, the offset of a chunk must be the number of bytes received so far.
+	 *
+	 * <pre>
+	 * POST {baseURI}/{context-id}/resource/{entry-id}?upload
+	 * PUT {baseURI}/{context-id}/resource/{entry-id}?upload={upload-id}&offset={offset}
+	 * GET {baseURI}/{context-id}/resource/{entry-id}?upload={upload-id}
+	 * POST {baseURI}/{context-id}/resource/{entry-id}?upload={upload-id}&commit[&digest={sha256}][&mimeType={type}][&filename={name}]
+	 * DELETE {baseURI}/{context-id}/resource/{entry-id}?upload={upload-id}
+	 * </pre>
+	 *
+	 * All requests except the commit and the deletion return the ID of the upload and
+	 * the offset of the next chunk as JSON. If a chunk is rejected with 409 (Conflict),
+	 * the upload is to be resumed at the returned offset.
+	 */
+	private Representation handleUpload() throws AuthorizationException {
+		UploadManager uploadManager = ((RepositoryManagerImpl) getRM()).getUploadManager();
+		if (uploadManager == null) {
+			getResponse().setStatus(Status.SERVER_ERROR_NOT_IMPLEMENTED);
+			return createUploadError("Resumable uploads are not available");
+		}
+
+		Method method = getRequest().getMethod();
+		String uploadId = parameters.get("upload");
+		UploadManager.Upload upload = null;
+		try {
+			if (Method.POST.equals(method) && StringUtils.isEmpty(uploadId)) {
+				upload = uploadManager.create(entry);
+				getResponse().setStatus(Status.SUCCESS_CREATED);
+				return createUploadState(upload);
+			}
+
+			upload = uploadManager.get(entry, uploadId);
+			if (upload == null) {
+				getResponse().setStatus(Status.CLIENT_ERROR_NOT_FOUND);
+				return createUploadError("Upload not found");
+			}
+
+			if (Method.GET.equals(method)) {
+				return createUploadState(upload);
+			} else if (Method.PUT.equals(method)) {
+				long offset = Long.parseLong(parameters.get("offset"));
+				Representation chunk = getRequestEntity();
+				try (InputStream in = (chunk != null && chunk.isAvailable()) ? chunk.getStream() : InputStream.nullInputStream()) {
+					uploadManager.append(upload, entry, offset, in);
+				}
+				return createUploadState(upload);
+			} else if (Method.POST.equals(method) && parameters.containsKey("commit")) {
+				String digest = uploadManager.commit(upload, entry, parameters.get("digest"));
+				EntryUpdate update = new EntryUpdate().setFileSize(((Data) entry.getResource()).getDataFile().length());
+				if (parameters.containsKey("mimeType")) {
+					update.setMimetype(parameters.get("mimeType"));
+				} else if (entry.getMimetype() == null) {
+					update.setMimetype(MediaType.APPLICATION_OCTET_STREAM.toString());
+				}
+				String name = parameters.get("filename");
+				if (name != null && !name.isBlank()) {
+					update.setFilename(Util.sanitizeFilename(name.trim()));
+				}
+				entry.update(update);
+
+				JSONObject result = new JSONObject();
+				result.put("success", "The file was uploaded");
+				result.put("format", HtmlEscapers.htmlEscaper().escape(entry.getMimetype()));
+				result.put("digest", digest);
+				return new JsonRepresentation(result);
+			} else if (Method.DELETE.equals(method)) {
+				uploadManager.abort(upload);
+				getResponse().setStatus(Status.SUCCESS_NO_CONTENT);
+				return null;
+			}
+
+			getResponse().setStatus(Status.CLIENT_ERROR_BAD_REQUEST);
+			return createUploadError("Unsupported upload request");
+		} catch (IllegalStateException ise) {
+			getResponse().setStatus(Status.CLIENT_ERROR_CONFLICT);
+			JSONObject result = new JSONObject();
+			result.put("error", ise.getMessage());
+			if (upload != null) {
+				result.put("offset", upload.getSize());
+			}
+			return new JsonRepresentation(result);
+		} catch (IllegalArgumentException iae) {
+			getResponse().setStatus(Status.CLIENT_ERROR_BAD_REQUEST);
+			return createUploadError(iae.getMessage());
+		} catch (QuotaException qe) {
+			getResponse().setStatus(Status.CLIENT_ERROR_REQUEST_ENTITY_TOO_LARGE);
+			return createUploadError(qe.getMessage());
+		} catch (IOException ioe) {
+			log.error("Upload to {} failed: {}", entry.getEntryURI(), ioe.getMessage());
+			getResponse().setStatus(Status.SERVER_ERROR_INTERNAL);
+			return createUploadError(ioe.getMessage());
+		}
+	}
+
+	private Representation createUploadState(UploadManager.Upload upload) {
+		JSONObject result = new JSONObject();
+		result.put("upload", upload.getId());
+		result.put("offset", upload.getSize());
+		return new JsonRepresentation(result);
+	}
+
+	private Representation createUploadError(String error) {
+		JSONObject result = new JSONObject();
+		result.put("error", error);
+		return new JsonRepresentation(result);
+	}
+
 	/**
 	 * Set a resource to an entry.
 	 */
@@ -868,16 +1064,17 @@ public class ResourceResource extends BaseResource {
 						}
 
 						((Data) entry.getResource()).setData(item.getInputStream());
-						entry.setFileSize(((Data) entry.getResource()).getDataFile().length());
+						EntryUpdate update = new EntryUpdate().setFileSize(((Data) entry.getResource()).getDataFile().length());
 						String mimeType = item.getContentType();
 						if (parameters.containsKey("mimeType")) {
 							mimeType = parameters.get("mimeType");
 						}
-						entry.setMimetype(mimeType);
+						update.setMimetype(mimeType);
 						String name = item.getName();
 						if (name != null && !name.isEmpty()) {
-							entry.setFilename(Util.sanitizeFilename(name.trim()));
+							update.setFilename(Util.sanitizeFilename(name.trim()));
 						}
+						entry.update(update);
 					}
 				} catch (FileUploadException e) {
 					error = e.getMessage();
@@ -893,21 +1090,22 @@ public class ResourceResource extends BaseResource {
 				Request req = getRequest();
 				try {
 					((Data) entry.getResource()).setData(req.getEntity().getStream());
-					entry.setFileSize(((Data) entry.getResource()).getDataFile().length());
+					EntryUpdate update = new EntryUpdate().setFileSize(((Data) entry.getResource()).getDataFile().length());
 					String mimeType = MediaType.APPLICATION_OCTET_STREAM.toString();
 					if (parameters.containsKey("mimeType")) {
 						mimeType = parameters.get("mimeType");
 					} else if (mediaType != null) {
 						mimeType = mediaType.toString();
 					}
-					entry.setMimetype(mimeType);
+					update.setMimetype(mimeType);
 					Disposition disp = req.getEntity().getDisposition();
 					if (disp != null) {
 						String name = disp.getFilename();
 						if (name != null && !name.isEmpty()) {
-							entry.setFilename(Util.sanitizeFilename(name.trim()));
+							update.setFilename(Util.sanitizeFilename(name.trim()));
 						}
 					}
+					entry.update(update);
 				} catch (QuotaException qe) {
 					error = qe.getMessage();
 					getResponse().setStatus(Status.CLIENT_ERROR_REQUEST_ENTITY_TOO_LARGE);
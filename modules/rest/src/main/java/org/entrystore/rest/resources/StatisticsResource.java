@@ -30,8 +30,11 @@ import org.entrystore.ContextManager;
 import org.entrystore.Entry;
 import org.entrystore.GraphType;
 import org.entrystore.PrincipalManager;
+import org.entrystore.PrincipalManager.AccessProperty;
 import org.entrystore.User;
 import org.entrystore.config.Config;
+import org.entrystore.impl.ContextStatistics;
+import org.entrystore.impl.ContextStatisticsManager;
 import org.entrystore.repository.config.ConfigurationManager;
 import org.entrystore.repository.util.EntryUtil;
 import org.entrystore.repository.util.NS;
@@ -112,7 +115,14 @@ public class StatisticsResource extends BaseResource {
 			JSONObject result = new JSONObject();
 
 			try {
-				if ("properties".equals(statType)) {
+				ContextStatistics materialized = getMaterializedStatistics();
+				if (materialized != null && "properties".equals(statType)) {
+					result = toPropertyStatistics(materialized);
+				} else if (materialized != null && "ontology".equals(statType)) {
+					result = toOntologyStatistics(materialized);
+				} else if (materialized != null && "keywords".equals(statType)) {
+					result = toKeywordStatistics(materialized);
+				} else if ("properties".equals(statType)) {
 					Date before = new Date();
 					result = getPropertyStatistics(context);
 					Date after = new Date();
@@ -153,6 +163,82 @@ public class StatisticsResource extends BaseResource {
 		}
 	}
 	
+	/**
+	 * Returns the materialized statistics of the context, or null if the statistics have to
+	 * be computed by a full scan of the context. A full scan is necessary if materialized
+	 * statistics are disabled, if the completeness of profiles is requested, or if the
+	 * label mapping maps several properties to the same label.
+	 */
+	private ContextStatistics getMaterializedStatistics() throws JSONException {
+		ContextStatisticsManager statisticsManager = getRM().getStatisticsManager();
+		if (statisticsManager == null || parameters.containsKey("profile")) {
+			return null;
+		}
+		Map<String, String> labelMap = getLabels(labels);
+		if (labelMap != null && new HashSet<>(labelMap.values()).size() < labelMap.size()) {
+			return null;
+		}
+
+		if (parameters.containsKey("recompute")) {
+			getPM().checkAuthenticatedUserAuthorized(context.getEntry(), AccessProperty.Administer);
+			Date before = new Date();
+			ContextStatistics result = statisticsManager.recompute(context);
+			log.info("Recomputation of statistics of context {} took {} ms", context.getEntry().getId(), new Date().getTime() - before.getTime());
+			return result;
+		}
+		return statisticsManager.getStatistics(context);
+	}
+
+	private JSONObject toPropertyStatistics(ContextStatistics stats) throws JSONException {
+		Map<String, String> labelMap = getLabels(labels);
+		JSONObject result = new JSONObject();
+		result.put("entryCount", stats.getEntryCount());
+		result.put("entryCountValidated", 0);
+		JSONArray propertyUsageArray = new JSONArray();
+		for (Map.Entry<String, ContextStatistics.Usage> usage : stats.getPropertyUsage().entrySet()) {
+			String property = usage.getKey();
+			if (labelMap != null && labelMap.containsKey(property)) {
+				property = labelMap.get(property);
+			}
+			JSONObject propStats = new JSONObject();
+			propStats.put("property", property);
+			propStats.put("statements", usage.getValue().getStatements());
+			propStats.put("usedInCount", usage.getValue().getEntries());
+			propertyUsageArray.put(propStats);
+		}
+		result.put("propertyUsage", propertyUsageArray);
+		return result;
+	}
+
+	private JSONObject toOntologyStatistics(ContextStatistics stats) throws JSONException {
+		JSONObject result = new JSONObject();
+		result.put("entryCount", stats.getEntryCount());
+		result.put("entryCountWithOntologyTerm", stats.getEntryCountWithOntologyTerm());
+		result.put("predicateUsage", toUsageArray(stats.getOntologyPredicateUsage()));
+		result.put("ontologyTermUsage", toUsageArray(stats.getOntologyTermUsage()));
+		return result;
+	}
+
+	private JSONObject toKeywordStatistics(ContextStatistics stats) throws JSONException {
+		JSONObject result = new JSONObject();
+		result.put("entryCount", stats.getEntryCount());
+		result.put("entryCountWithKeyword", stats.getEntryCountWithKeyword());
+		result.put("keywordUsage", toUsageArray(stats.getKeywordUsage()));
+		return result;
+	}
+
+	private JSONArray toUsageArray(Map<String, ContextStatistics.Usage> usageMap) throws JSONException {
+		JSONArray usageArray = new JSONArray();
+		for (Map.Entry<String, ContextStatistics.Usage> usage : usageMap.entrySet()) {
+			JSONObject stats = new JSONObject();
+			stats.put("title", usage.getKey());
+			stats.put("totalCount", usage.getValue().getStatements());
+			stats.put("usedInCount", usage.getValue().getEntries());
+			usageArray.put(stats);
+		}
+		return usageArray;
+	}
+
 	public JSONObject getPropertyStatistics(Context context) {
 		JSONObject result = new JSONObject();
 		ValueFactory vf = getRM().getValueFactory();
@@ -26,9 +26,12 @@ import org.eclipse.rdf4j.repository.RepositoryResult;
 import org.entrystore.AuthorizationException;
 import org.entrystore.PrincipalManager;
 import org.entrystore.config.Config;
+import org.entrystore.impl.RepositoryManagerImpl;
+import org.entrystore.impl.StartupTracker;
 import org.entrystore.repository.backup.BackupScheduler;
 import org.entrystore.repository.config.Settings;
 import org.entrystore.repository.security.Password;
+import org.entrystore.repository.util.PooledHttpClient;
 import org.entrystore.repository.util.SolrSearchIndex;
 import org.entrystore.repository.util.URISplit;
 import org.entrystore.rest.EntryStoreApplication;
@@ -86,6 +89,22 @@ public class StatusResource extends BaseResource  {
 		MediaType prefFormat = (format != null) ? format : preferredMediaType;
 
 		try {
+			// probes for liveness and readiness do not require authentication
+			if (parameters.containsKey("live")) {
+				if (getRM() != null && ((RepositoryManagerImpl) getRM()).isAlive()) {
+					return new StringRepresentation("LIVE", MediaType.TEXT_PLAIN);
+				}
+				getResponse().setStatus(Status.SERVER_ERROR_SERVICE_UNAVAILABLE);
+				return new StringRepresentation("DOWN", MediaType.TEXT_PLAIN);
+			}
+			if (parameters.containsKey("ready")) {
+				if (getRM() != null && ((RepositoryManagerImpl) getRM()).isReady()) {
+					return new StringRepresentation("READY", MediaType.TEXT_PLAIN);
+				}
+				getResponse().setStatus(Status.SERVER_ERROR_SERVICE_UNAVAILABLE);
+				return new StringRepresentation("NOT READY", MediaType.TEXT_PLAIN);
+			}
+
 			if (parameters.containsKey("extended")) {
 				JSONObject result = new JSONObject();
 				try {
@@ -148,22 +167,55 @@ public class StatusResource extends BaseResource  {
 					solr.put("postQueueSize", searchIndex.getPostQueueSize());
 					solr.put("deleteQueueSize", searchIndex.getDeleteQueueSize());
 					solr.put("indexingContexts", searchIndex.getIndexingContexts());
+					solr.put("rebuilding", searchIndex.isRebuilding());
 					result.put("solr", solr);
 
+					// Startup
+					JSONObject startup = new JSONObject();
+					startup.put("ready", ((RepositoryManagerImpl) getRM()).isReady());
+					JSONObject startupComponents = new JSONObject();
+					for (StartupTracker.Component component : ((RepositoryManagerImpl) getRM()).getStartupTracker().getComponents().values()) {
+						JSONObject startupComponent = new JSONObject();
+						startupComponent.put("state", component.getState().name().toLowerCase());
+						startupComponent.put("critical", component.isCritical());
+						startupComponent.put("duration", component.getDuration());
+						startupComponents.put(component.getName(), startupComponent);
+					}
+					startup.put("components", startupComponents);
+					result.put("startup", startup);
+
 					// Backup
 					JSONObject backup = new JSONObject();
 					backup.put("active", config.getBoolean(Settings.BACKUP_SCHEDULER, false));
 					backup.put("format", config.getString(Settings.BACKUP_FORMAT, "unconfigured"));
 					backup.put("maintenance", config.getBoolean(Settings.BACKUP_MAINTENANCE, false));
 					backup.put("cronExpression", config.getString(Settings.BACKUP_CRONEXP, config.getString(Settings.BACKUP_TIMEREGEXP_DEPRECATED, "unconfigured")));
+					backup.put("incremental", config.getBoolean(Settings.BACKUP_INCREMENTAL, false));
+					backup.put("snapshot", config.getBoolean(Settings.BACKUP_SNAPSHOT, false));
 					if (BackupScheduler.getInstance(getRM()) != null) {
 						backup.put("cronExpressionResolved", BackupScheduler.getInstance(getRM()).getCronExpression());
+						if (BackupScheduler.getInstance(getRM()).getIncrementalCronExpression() != null) {
+							backup.put("incrementalCronExpressionResolved", BackupScheduler.getInstance(getRM()).getIncrementalCronExpression());
+						}
 					}
 					backup.put("maintenanceExpiresAfterDays", config.getString(Settings.BACKUP_MAINTENANCE_EXPIRES_AFTER_DAYS, "unconfigured"));
 					backup.put("maintenanceLowerLimit", config.getString(Settings.BACKUP_MAINTENANCE_LOWER_LIMIT, "unconfigured"));
 					backup.put("maintenanceUpperLimit", config.getString(Settings.BACKUP_MAINTENANCE_UPPER_LIMIT, "unconfigured"));
 					result.put("backup", backup);
 
+					// HTTP client for outgoing requests
+					JSONObject httpClient = new JSONObject();
+					PooledHttpClient pooledHttpClient = ((RepositoryManagerImpl) getRM()).getHttpClient();
+					httpClient.put("requestCount", pooledHttpClient.getRequestCount());
+					httpClient.put("connectionCount", pooledHttpClient.getConnectionCount());
+					httpClient.put("connectionReuse", pooledHttpClient.getConnectionReuse());
+					httpClient.put("averageLatency", pooledHttpClient.getAverageLatency());
+					httpClient.put("maxLatency", pooledHttpClient.getMaxLatency());
+					httpClient.put("leasedConnections", pooledHttpClient.getPoolStatistics().getLeased());
+					httpClient.put("availableConnections", pooledHttpClient.getPoolStatistics().getAvailable());
+					httpClient.put("pendingRequests", pooledHttpClient.getPoolStatistics().getPending());
+					result.put("httpClient", httpClient);
+
 					// JVM
 					JSONObject jvm = new JSONObject();
 					jvm.put("totalMemory", Runtime.getRuntime().totalMemory());
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.rest.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A range of bytes of a file, as requested with the HTTP Range header (RFC 9110, section 14).
+ *
+ * @param first The index of the first byte.
+ * @param last  The index of the last byte, inclusive.
+ */
+public record ByteRange(long first, long last) {
+
+	/**
+	 * Requests with more ranges than this are answered with the full representation,
+	 * to not be abused for amplification.
+	 */
+	public static final int MAX_RANGES = 32;
+
+	public long length() {
+		return last - first + 1;
+	}
+
+	/**
+	 * @return The value of a Content-Range header for this range.
+	 */
+	public String toContentRange(long completeLength) {
+		return "bytes " + first + "-" + last + "/" + completeLength;
+	}
+
+	/**
+	 * @return The value of the Content-Range header of a 416 response, which tells the client
+	 * the complete length so that it can retry with a satisfiable range.
+	 */
+	public static String toUnsatisfiedContentRange(long completeLength) {
+		return "bytes */" + completeLength;
+	}
+
+	/**
+	 * Parses the value of a Range header. Overlapping and adjacent ranges are coalesced.
+	 *
+	 * @param header The value of the Range header.
+	 * @param completeLength The length of the file.
+	 * @return The satisfiable ranges, sorted by their first byte. An empty list if none of the
+	 * ranges is satisfiable, or null if the header is invalid or has to be ignored, in
+	 * which case the full representation should be sent.
+	 */
+	public static List<ByteRange> parse(String header, long completeLength) {
+		if (header == null) {
+			return null;
+		}
+		String value = header.trim();
+		if (!value.regionMatches(true, 0, "bytes=", 0, 6)) {
+			return null;
+		}
+
+		String[] specs = value.substring(6).split(",");
+		if (specs.length > MAX_RANGES) {
+			return null;
+		}
+
+		List<ByteRange> ranges = new ArrayList<>(specs.length);
+		for (String spec : specs) {
+			spec = spec.trim();
+			int dash = spec.indexOf('-');
+			if (dash < 0) {
+				return null;
+			}
+			try {
+				String firstStr = spec.substring(0, dash).trim();
+				String lastStr = spec.substring(dash + 1).trim();
+				if (firstStr.isEmpty()) {
+					// suffix range, e.g. "-500" for the last 500 bytes
+					long suffixLength = Long.parseLong(lastStr);
+					if (suffixLength < 0) {
+						return null;
+					}
+					if (suffixLength > 0 && completeLength > 0) {
+						ranges.add(new ByteRange(Math.max(0, completeLength - suffixLength), completeLength - 1));
+					}
+				} else {
+					long first = Long.parseLong(firstStr);
+					long last = lastStr.isEmpty() ? Long.MAX_VALUE : Long.parseLong(lastStr);
+					if (first < 0 || last < first) {
+						return null;
+					}
+					if (first < completeLength) {
+						ranges.add(new ByteRange(first, Math.min(last, completeLength - 1)));
+					}
+				}
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+
+		return coalesce(ranges);
+	}
+
+	private static List<ByteRange> coalesce(List<ByteRange> ranges) {
+		if (ranges.size() < 2) {
+			return ranges;
+		}
+		ranges.sort(Comparator.comparingLong(ByteRange::first));
+		List<ByteRange> result = new ArrayList<>(ranges.size());
+		ByteRange current = ranges.getFirst();
+		for (ByteRange next : ranges.subList(1, ranges.size())) {
+			if (next.first() <= current.last() + 1) {
+				current = new ByteRange(current.first(), Math.max(current.last(), next.last()));
+			} else {
+				result.add(current);
+				current = next;
+			}
+		}
+		result.add(current);
+		return result;
+	}
+
+}
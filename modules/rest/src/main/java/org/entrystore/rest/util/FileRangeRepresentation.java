@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.rest.util;
+
+import org.restlet.data.MediaType;
+import org.restlet.data.Parameter;
+import org.restlet.data.Range;
+import org.restlet.representation.OutputRepresentation;
+import org.restlet.util.Series;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Representation of a file or of ranges of a file. The bytes are transferred from the
+ * file channel to the response without being copied into the heap, see {@link FileTransfer}.
+ *
+ * <p>A single range is sent with a Content-Range header, multiple ranges are sent as
+ * multipart/byteranges. The Range service of Restlet is deactivated, so ranges are
+ * only supported where this representation is used.</p>
+ */
+public class FileRangeRepresentation extends OutputRepresentation {
+
+	private static volatile FileTransfer fileTransfer = FileTransfer.DEFAULT;
+
+	private final File file;
+
+	private final long completeLength;
+
+	private final List<ByteRange> ranges;
+
+	private final MediaType partMediaType;
+
+	private final String boundary;
+
+	/**
+	 * Creates a representation of the complete file.
+	 */
+	public FileRangeRepresentation(File file, MediaType mediaType) {
+		this(file, mediaType, null);
+	}
+
+	/**
+	 * @param ranges The satisfiable and coalesced ranges to send, see {@link ByteRange#parse(String, long)},
+	 *               or null for the complete file.
+	 */
+	public FileRangeRepresentation(File file, MediaType mediaType, List<ByteRange> ranges) {
+		super(mediaType);
+		this.file = file;
+		this.completeLength = file.length();
+		this.ranges = ranges;
+		this.partMediaType = mediaType;
+		setModificationDate(new Date(file.lastModified()));
+
+		if (ranges == null || ranges.isEmpty()) {
+			this.boundary = null;
+			setSize(completeLength);
+		} else if (ranges.size() == 1) {
+			this.boundary = null;
+			ByteRange range = ranges.getFirst();
+			// the size is the complete length, Restlet derives Content-Length and Content-Range from the range
+			setSize(completeLength);
+			setRange(new Range(range.first(), range.length()));
+		} else {
+			this.boundary = UUID.randomUUID().toString().replace("-", "");
+			Series<Parameter> parameters = new Series<>(Parameter.class);
+			parameters.add("boundary", boundary);
+			setMediaType(new MediaType("multipart/byteranges", parameters));
+			setSize(getMultipartLength());
+		}
+	}
+
+	/**
+	 * Registers the way files are written to responses, e.g. by a server connector.
+	 */
+	public static void setFileTransfer(FileTransfer transfer) {
+		fileTransfer = transfer != null ? transfer : FileTransfer.DEFAULT;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public List<ByteRange> getRanges() {
+		return ranges;
+	}
+
+	@Override
+	public void write(OutputStream out) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (boundary == null) {
+				ByteRange range = (ranges == null || ranges.isEmpty()) ? new ByteRange(0, completeLength - 1) : ranges.getFirst();
+				fileTransfer.transfer(channel, range.first(), range.length(), out);
+			} else {
+				for (ByteRange range : ranges) {
+					out.write(getPartHeader(range));
+					fileTransfer.transfer(channel, range.first(), range.length(), out);
+				}
+				out.write(getClosingBoundary());
+			}
+			out.flush();
+		}
+	}
+
+	@Override
+	public void write(WritableByteChannel target) throws IOException {
+		if (boundary != null) {
+			super.write(target);
+			return;
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteRange range = (ranges == null || ranges.isEmpty()) ? new ByteRange(0, completeLength - 1) : ranges.getFirst();
+			FileTransfer.transferTo(channel, range.first(), range.length(), target);
+		}
+	}
+
+	private byte[] getPartHeader(ByteRange range) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("\r\n--").append(boundary).append("\r\n");
+		if (partMediaType != null) {
+			sb.append("Content-Type: ").append(partMediaType).append("\r\n");
+		}
+		sb.append("Content-Range: ").append(range.toContentRange(completeLength)).append("\r\n\r\n");
+		return sb.toString().getBytes(US_ASCII);
+	}
+
+	private byte[] getClosingBoundary() {
+		return ("\r\n--" + boundary + "--\r\n").getBytes(US_ASCII);
+	}
+
+	private long getMultipartLength() {
+		long length = getClosingBoundary().length;
+		for (ByteRange range : ranges) {
+			length += getPartHeader(range).length + range.length();
+		}
+		return length;
+	}
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.rest.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes a region of a file to the output stream of a response. Server connectors
+ * that are able to send files without copying them through user space can register
+ * their own implementation with {@link FileRangeRepresentation#setFileTransfer(FileTransfer)}.
+ */
+public interface FileTransfer {
+
+	/**
+	 * Transfers the file region using {@link FileChannel#transferTo(long, long, WritableByteChannel)},
+	 * which uses sendfile if the target is a socket channel.
+	 */
+	FileTransfer DEFAULT = (file, position, count, out) -> transferTo(file, position, count, Channels.newChannel(out));
+
+	void transfer(FileChannel file, long position, long count, OutputStream out) throws IOException;
+
+	static void transferTo(FileChannel file, long position, long count, WritableByteChannel target) throws IOException {
+		long end = position + count;
+		while (position < end) {
+			long transferred = file.transferTo(position, end - position, target);
+			if (transferred <= 0) {
+				if (position >= file.size()) {
+					throw new IOException("File has been truncated during transfer");
+				}
+				continue;
+			}
+			position += transferred;
+		}
+	}
+
+}
@@ -22,23 +22,32 @@ import static org.restlet.engine.header.HeaderConstants.HEADER_X_FORWARDED_FOR;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.net.URI;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.StringJoiner;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.ContentType;
 import org.entrystore.rest.EntryStoreApplication;
 import org.restlet.Client;
 import org.restlet.Context;
 import org.restlet.Request;
 import org.restlet.Response;
+import org.restlet.data.CharacterSet;
 import org.restlet.data.MediaType;
 import org.restlet.data.Method;
 import org.restlet.data.Preference;
 import org.restlet.data.Protocol;
 import org.restlet.data.Reference;
+import org.restlet.representation.InputRepresentation;
 import org.restlet.representation.Representation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -139,6 +148,57 @@ public class HttpUtil {
 		return response;
 	}
 
+	/**
+	 * Converts the accepted media types of a Restlet request into the value of an Accept
+	 * header, e.g. to forward them with requests of the pooled HTTP client.
+	 *
+	 * @return The header value or null if no media types are provided.
+	 */
+	public static String toAcceptHeader(List<Preference<MediaType>> acceptedMediaTypes) {
+		if (acceptedMediaTypes == null || acceptedMediaTypes.isEmpty()) {
+			return null;
+		}
+		StringJoiner accept = new StringJoiner(", ");
+		for (Preference<MediaType> preference : acceptedMediaTypes) {
+			if (preference.getQuality() < 1.0f) {
+				accept.add(preference.getMetadata().getName() + ";q=" + preference.getQuality());
+			} else {
+				accept.add(preference.getMetadata().getName());
+			}
+		}
+		return accept.toString();
+	}
+
+	/**
+	 * Wraps the entity of a response of the pooled HTTP client into a representation.
+	 * The content is streamed from the connection, so the response must not be closed
+	 * before the representation has been written.
+	 *
+	 * @param url The requested URL, used to resolve a relative Content-Location.
+	 * @return The representation or null if the response does not have an entity.
+	 */
+	public static Representation toRepresentation(HttpResponse response, String url) throws IOException {
+		HttpEntity entity = response.getEntity();
+		if (entity == null) {
+			return null;
+		}
+		ContentType contentType = ContentType.get(entity);
+		MediaType mediaType = contentType != null ? MediaType.valueOf(contentType.getMimeType()) : MediaType.APPLICATION_OCTET_STREAM;
+		Representation representation = new InputRepresentation(entity.getContent(), mediaType, entity.getContentLength());
+		if (contentType != null && contentType.getCharset() != null) {
+			representation.setCharacterSet(CharacterSet.valueOf(contentType.getCharset().name()));
+		}
+		Header contentLocation = response.getFirstHeader(HttpHeaders.CONTENT_LOCATION);
+		if (contentLocation != null) {
+			try {
+				representation.setLocationRef(URI.create(url).resolve(contentLocation.getValue()).toString());
+			} catch (IllegalArgumentException iae) {
+				log.debug("Ignoring invalid Content-Location header: " + contentLocation.getValue());
+			}
+		}
+		return representation;
+	}
+
 	public static void setTimeouts(long timeout) {
 		String timeoutStr = Long.toString(timeout);
 		client.getContext().getParameters().set("connectTimeout", timeoutStr);
@@ -0,0 +1,439 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.rest.util;
+
+import org.entrystore.PrincipalManager;
+import org.entrystore.config.Config;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.entrystore.repository.config.Settings.PIPELINE_EXECUTOR_CONTEXT_LIMIT;
+import static org.entrystore.repository.config.Settings.PIPELINE_EXECUTOR_JOB_RETENTION;
+import static org.entrystore.repository.config.Settings.PIPELINE_EXECUTOR_QUEUE_SIZE;
+import static org.entrystore.repository.config.Settings.PIPELINE_EXECUTOR_THREADS;
+
+/**
+ * Executes pipelines outside of request threads. Jobs are queued by priority and run
+ * by a bounded pool of workers, with a limit of concurrently running jobs per context.
+ * Finished jobs are kept for a while so that their status can be queried.
+ */
+public class PipelineExecutor {
+
+	private static final Logger log = LoggerFactory.getLogger(PipelineExecutor.class);
+
+	public enum Status {
+		Queued, Running, Done, Failed, Cancelled
+	}
+
+	/**
+	 * The work of a job, returns the URIs of the processed entries.
+	 */
+	@FunctionalInterface
+	public interface Task {
+		Set<URI> run(Job job) throws Exception;
+	}
+
+	public class Job {
+
+		private final String id = UUID.randomUUID().toString();
+
+		private final long sequence = sequenceCounter.incrementAndGet();
+
+		private final String contextId;
+
+		private final URI pipelineURI;
+
+		private final URI sourceURI;
+
+		private final URI userURI;
+
+		private final int priority;
+
+		private final Task task;
+
+		private final Instant submitted = Instant.now();
+
+		private final CountDownLatch finished = new CountDownLatch(1);
+
+		private volatile Status status = Status.Queued;
+
+		private volatile Instant started;
+
+		private volatile Instant ended;
+
+		private volatile double progress;
+
+		private volatile Set<URI> result;
+
+		private volatile Throwable failure;
+
+		private Thread worker;
+
+		private Job(String contextId, URI pipelineURI, URI sourceURI, URI userURI, int priority, Task task) {
+			this.contextId = contextId;
+			this.pipelineURI = pipelineURI;
+			this.sourceURI = sourceURI;
+			this.userURI = userURI;
+			this.priority = priority;
+			this.task = task;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public String getContextId() {
+			return contextId;
+		}
+
+		public Status getStatus() {
+			return status;
+		}
+
+		public Set<URI> getResult() {
+			return result;
+		}
+
+		public Throwable getFailure() {
+			return failure;
+		}
+
+		/**
+		 * @param progress A value between 0 and 1.
+		 */
+		public void setProgress(double progress) {
+			this.progress = Math.max(0, Math.min(1, progress));
+		}
+
+		public double getProgress() {
+			return progress;
+		}
+
+		/**
+		 * @return The time the job has been running, or has been waiting if not started yet.
+		 */
+		public Duration getDuration() {
+			Instant from = started != null ? started : submitted;
+			Instant to = ended != null ? ended : Instant.now();
+			return Duration.between(from, to);
+		}
+
+		/**
+		 * Blocks until the job has finished, failed or has been cancelled.
+		 */
+		public void await() throws InterruptedException {
+			finished.await();
+		}
+
+		public boolean isFinished() {
+			return finished.getCount() == 0;
+		}
+
+		public JSONObject toJSON() {
+			JSONObject json = new JSONObject();
+			json.put("id", id);
+			json.put("status", status.name().toLowerCase());
+			json.put("priority", priority);
+			json.put("pipeline", pipelineURI.toString());
+			if (sourceURI != null) {
+				json.put("source", sourceURI.toString());
+			}
+			json.put("progress", progress);
+			json.put("submitted", submitted.toString());
+			if (started != null) {
+				json.put("started", started.toString());
+			}
+			if (ended != null) {
+				json.put("finished", ended.toString());
+			}
+			json.put("duration", getDuration().toMillis());
+			if (result != null) {
+				JSONArray resultArr = new JSONArray();
+				for (URI uri : result) {
+					resultArr.put(uri.toString());
+				}
+				json.put("result", resultArr);
+			}
+			if (failure != null && failure.getMessage() != null) {
+				json.put("error", failure.getMessage());
+			}
+			return json;
+		}
+
+		private void run() {
+			synchronized (PipelineExecutor.this) {
+				if (status != Status.Running) {
+					// cancelled after being handed over to a worker
+					jobFinished(this);
+					return;
+				}
+				worker = Thread.currentThread();
+			}
+			URI currentUser = pm != null ? pm.getAuthenticatedUserURI() : null;
+			try {
+				if (pm != null) {
+					pm.setAuthenticatedUserURI(userURI);
+				}
+				log.info("Starting pipeline job {} with pipeline {}", id, pipelineURI);
+				Set<URI> processed = task.run(this);
+				synchronized (PipelineExecutor.this) {
+					if (status == Status.Running) {
+						result = processed != null ? processed : Collections.emptySet();
+						progress = 1;
+						status = Status.Done;
+					}
+				}
+				log.info("Finished pipeline job {} in {} ms", id, getDuration().toMillis());
+			} catch (Throwable t) {
+				boolean cancelled;
+				synchronized (PipelineExecutor.this) {
+					cancelled = status == Status.Cancelled;
+					if (!cancelled) {
+						failure = t;
+						status = Status.Failed;
+					}
+				}
+				if (cancelled) {
+					log.info("Pipeline job {} was cancelled", id);
+				} else {
+					log.error("Pipeline job {} failed: {}", id, t.getMessage());
+				}
+			} finally {
+				if (pm != null) {
+					pm.setAuthenticatedUserURI(currentUser);
+				}
+				synchronized (PipelineExecutor.this) {
+					worker = null;
+					// clear the interrupt flag of a cancelled job before the worker is reused
+					Thread.interrupted();
+				}
+				jobFinished(this);
+			}
+		}
+
+	}
+
+	private final AtomicLong sequenceCounter = new AtomicLong();
+
+	private final PrincipalManager pm;
+
+	private final int threads;
+
+	private final int queueSize;
+
+	private final int contextLimit;
+
+	private final Duration retention;
+
+	private final ExecutorService workers;
+
+	private final PriorityQueue<Job> queue = new PriorityQueue<>(
+			Comparator.comparingInt((Job j) -> j.priority).reversed().thenComparingLong(j -> j.sequence));
+
+	private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+	private final Map<String, AtomicInteger> runningPerContext = new HashMap<>();
+
+	private int running = 0;
+
+	public PipelineExecutor(Config config, PrincipalManager pm) {
+		this(config.getInt(PIPELINE_EXECUTOR_THREADS, 2),
+				config.getInt(PIPELINE_EXECUTOR_QUEUE_SIZE, 100),
+				config.getInt(PIPELINE_EXECUTOR_CONTEXT_LIMIT, 1),
+				config.getDuration(PIPELINE_EXECUTOR_JOB_RETENTION, Duration.ofHours(1)),
+				pm);
+	}
+
+	public PipelineExecutor(int threads, int queueSize, int contextLimit, Duration retention, PrincipalManager pm) {
+		if (threads < 1 || contextLimit < 1) {
+			throw new IllegalArgumentException("Number of threads and context limit must be at least 1");
+		}
+		this.threads = threads;
+		this.queueSize = queueSize;
+		this.contextLimit = contextLimit;
+		this.retention = retention;
+		this.pm = pm;
+		AtomicInteger threadCounter = new AtomicInteger();
+		this.workers = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "pipeline-executor-" + threadCounter.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		log.info("Pipeline executor started with {} threads, queue size {} and a limit of {} running jobs per context", threads, queueSize, contextLimit);
+	}
+
+	/**
+	 * Queues a job for execution.
+	 *
+	 * @param priority Jobs with a higher priority are started first.
+	 * @throws RejectedExecutionException If the queue is full or the executor has been shut down.
+	 */
+	public Job submit(String contextId, URI pipelineURI, URI sourceURI, URI userURI, int priority, Task task) {
+		Job job = new Job(contextId, pipelineURI, sourceURI, userURI, priority, task);
+		synchronized (this) {
+			if (workers.isShutdown()) {
+				throw new RejectedExecutionException("Pipeline executor has been shut down");
+			}
+			if (queue.size() >= queueSize) {
+				throw new RejectedExecutionException("Pipeline queue is full");
+			}
+			removeExpiredJobs();
+			jobs.put(job.id, job);
+			queue.add(job);
+			log.debug("Queued pipeline job {} for context {}, {} jobs in queue", job.id, contextId, queue.size());
+			dispatch();
+		}
+		return job;
+	}
+
+	public Job getJob(String jobId) {
+		return jobs.get(jobId);
+	}
+
+	/**
+	 * @return The jobs of a context, most recently submitted first.
+	 */
+	public List<Job> getJobs(String contextId) {
+		List<Job> result = new ArrayList<>();
+		synchronized (this) {
+			removeExpiredJobs();
+			for (Job job : jobs.values()) {
+				if (job.contextId.equals(contextId)) {
+					result.add(job);
+				}
+			}
+		}
+		result.sort(Comparator.comparingLong((Job j) -> j.sequence).reversed());
+		return result;
+	}
+
+	/**
+	 * Cancels a job. A queued job is removed from the queue, a running job is interrupted;
+	 * pipelines check for interruption between their steps.
+	 *
+	 * @return False if the job has already finished.
+	 */
+	public synchronized boolean cancel(Job job) {
+		if (job.status == Status.Queued) {
+			queue.remove(job);
+			job.status = Status.Cancelled;
+			job.ended = Instant.now();
+			job.failure = new CancellationException("Cancelled before execution");
+			job.finished.countDown();
+			return true;
+		} else if (job.status == Status.Running) {
+			job.status = Status.Cancelled;
+			job.failure = new CancellationException("Cancelled during execution");
+			if (job.worker != null) {
+				job.worker.interrupt();
+			}
+			return true;
+		}
+		return false;
+	}
+
+	public synchronized int getQueueSize() {
+		return queue.size();
+	}
+
+	public synchronized int getRunningCount() {
+		return running;
+	}
+
+	public void shutdown() {
+		synchronized (this) {
+			for (Job job : new ArrayList<>(queue)) {
+				cancel(job);
+			}
+			workers.shutdownNow();
+		}
+		try {
+			if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+				log.warn("Pipeline executor did not terminate in time");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Starts queued jobs in order of priority as long as workers are available,
+	 * skipping jobs of contexts that have reached their limit.
+	 */
+	private void dispatch() {
+		Iterator<Job> it = queue.stream().sorted(queue.comparator()).iterator();
+		while (running < threads && it.hasNext()) {
+			Job job = it.next();
+			AtomicInteger contextRunning = runningPerContext.computeIfAbsent(job.contextId, k -> new AtomicInteger());
+			if (contextRunning.get() >= contextLimit) {
+				continue;
+			}
+			queue.remove(job);
+			contextRunning.incrementAndGet();
+			running++;
+			job.status = Status.Running;
+			job.started = Instant.now();
+			workers.execute(job::run);
+		}
+	}
+
+	private void jobFinished(Job job) {
+		synchronized (this) {
+			job.ended = Instant.now();
+			running--;
+			AtomicInteger contextRunning = runningPerContext.get(job.contextId);
+			if (contextRunning != null && contextRunning.decrementAndGet() <= 0) {
+				runningPerContext.remove(job.contextId);
+			}
+			job.finished.countDown();
+			if (!workers.isShutdown()) {
+				dispatch();
+			}
+		}
+	}
+
+	private void removeExpiredJobs() {
+		Instant threshold = Instant.now().minus(retention);
+		jobs.values().removeIf(j -> j.isFinished() && j.ended != null && j.ended.isBefore(threshold));
+	}
+
+}
@@ -33,9 +33,11 @@ import org.slf4j.LoggerFactory;
 
 import javax.servlet.ServletContext;
 import java.net.URLDecoder;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -222,6 +224,39 @@ public class Util {
 		return new Tag(Long.toString(date.getTime()), false);
 	}
 
+	/**
+	 * Creates a tag for a variant of a representation, e.g., depending on the requested
+	 * format or on the access rights of the requesting user.
+	 */
+	public static Tag createTag(Date date, String variant) {
+		return new Tag(date.getTime() + "-" + variant, false);
+	}
+
+	/**
+	 * Tags of representations that are sent in responses to GET requests contain a
+	 * variant (see {@link #createTag(Date, String)}), whereas the tags of the resource's
+	 * state that If-Match conditions of modifying requests are evaluated against only
+	 * contain the modification date. We strip the variant of If-Match tags so that tags
+	 * of GET responses can be used for optimistic locking.
+	 */
+	public static void handleIfMatch(Request request) {
+		if (request != null && !request.getMethod().isSafe()) {
+			List<Tag> match = request.getConditions().getMatch();
+			if (match != null && !match.isEmpty()) {
+				List<Tag> stripped = new ArrayList<>(match.size());
+				for (Tag tag : match) {
+					String name = tag.getName();
+					if (name != null && name.indexOf('-') > 0) {
+						stripped.add(new Tag(name.substring(0, name.indexOf('-')), tag.isWeak()));
+					} else {
+						stripped.add(tag);
+					}
+				}
+				request.getConditions().setMatch(stripped);
+			}
+		}
+	}
+
 	public static String sanitizeFilename(String filename) {
 		String fileExt = FilenameUtils.getExtension(filename);
 		if (fileExt != null && dangerousFileExtensions.contains(fileExt.toLowerCase())) {
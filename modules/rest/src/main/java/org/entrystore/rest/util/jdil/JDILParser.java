@@ -19,10 +19,13 @@ package org.entrystore.rest.util.jdil;
 import java.io.*;
 import java.net.*;
 import java.util.*;
+import java.util.function.Supplier;
 
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.entrystore.repository.util.PooledHttpClient;
 import org.json.*;
-import org.restlet.*;
-import org.restlet.data.*;
 
 /**
  * A class providing a few static methods for parsing org.json datastructures as JDIL.
@@ -32,6 +35,16 @@ import org.restlet.data.*;
  */
 
 public class JDILParser {
+
+	private static volatile Supplier<PooledHttpClient> httpClient;
+
+	/**
+	 * Sets the client that is used to GET namespace definitions, usually the shared
+	 * client of the repository manager.
+	 */
+	public static void setHttpClient(Supplier<PooledHttpClient> client) {
+		httpClient = client;
+	}
 	
 	/**
 	 * An interface meant to detect whether or not it is appropriate to interpret string values
@@ -210,11 +223,11 @@ public class JDILParser {
 	/**
 	 * Attempts to GET <code>URIString</code> and return the result as text. 
 	 * 
-	 * @param URIString a String representing an URI with scheme specified 
-	 * (e.g. "file://path" rather than just "path")
+	 * @param URIString a String representing an HTTP(S) URI
+	 * (e.g. "http://example.com/ns" rather than just "example.com/ns")
 	 * @return text representing the content of <code>URIString</code>
 	 * @throws JDILException if unable to GET content of <code>URIString</code>
-	 * @throws IOException if underlying restlet fails (ask restlet documentation for details *haha*)
+	 * @throws IOException if the request fails
 	 * @throws URISyntaxException if <code>URIString</code> is an URI with invalid syntax
 	 */
 	private static String getURIContentAsText(String URIString) throws JDILException, IOException, URISyntaxException{
@@ -222,14 +235,21 @@ public class JDILParser {
 		if(scheme == null){
 			throw new JDILException("No scheme given in URI "+URIString);
 		}else{
-			Client client = new Client(new Protocol(scheme));
-			Request request = new Request(Method.GET, URIString);
-			Response response = client.handle(request);
-			if(response.getStatus().equals(Status.SUCCESS_OK) && response.isEntityAvailable()){ /* did the request succeed and yield data? */
-				return response.getEntity().getText();
-			}else{
-				throw new JDILException("Unable to GET URI "+URIString);
-			} 
+			Supplier<PooledHttpClient> client = httpClient;
+			if(!"http".equalsIgnoreCase(scheme) && !"https".equalsIgnoreCase(scheme)){
+				throw new JDILException("Unsupported scheme in URI "+URIString);
+			}
+			if(client == null){
+				throw new JDILException("No HTTP client available to GET URI "+URIString);
+			}
+			try(CloseableHttpResponse response = client.get().execute(new HttpGet(URIString))){
+				if(response.getStatusLine().getStatusCode() == 200 && response.getEntity() != null){ /* did the request succeed and yield data? */
+					return EntityUtils.toString(response.getEntity());
+				}else{
+					EntityUtils.consume(response.getEntity());
+					throw new JDILException("Unable to GET URI "+URIString);
+				}
+			}
 		}
 	}
 
@@ -0,0 +1,216 @@
+package org.entrystore.rest.auth;
+
+import org.eclipse.rdf4j.common.iteration.Iterations;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.sail.SailRepository;
+import org.eclipse.rdf4j.sail.memory.MemoryStore;
+import org.entrystore.config.Config;
+import org.entrystore.repository.config.PropertiesConfiguration;
+import org.entrystore.repository.config.Settings;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LoginTokenStoreTest {
+
+	@TempDir
+	Path tempDir;
+
+	private static UserInfo createUserInfo(String userName, LocalDateTime expiration) {
+		UserInfo userInfo = new UserInfo(userName, LocalDateTime.now(), 3600);
+		userInfo.setLoginExpiration(expiration);
+		userInfo.setLastAccessTime(userInfo.getLoginTime());
+		return userInfo;
+	}
+
+	@Test
+	public void tokensSurviveRestart() {
+		Config config = new PropertiesConfiguration("EntryStore Configuration");
+		config.setProperty(Settings.AUTH_TOKEN_STORE, "file");
+		config.setProperty(Settings.AUTH_TOKEN_STORE_PATH, tempDir.resolve("tokens.jsonl").toString());
+
+		LoginTokenCache cache = new LoginTokenCache(config);
+		cache.putToken("valid", createUserInfo("Donald", LocalDateTime.now().plusHours(1)));
+		cache.putToken("removed", createUserInfo("Donald", LocalDateTime.now().plusHours(1)));
+		cache.removeToken("removed");
+		cache.close();
+
+		LoginTokenCache restarted = new LoginTokenCache(config);
+		assertThat(restarted.getTokenValue("valid")).isNotNull();
+		assertThat(restarted.getTokenValue("valid").getUserName()).isEqualTo("Donald");
+		assertThat(restarted.getTokenValue("removed")).isNull();
+		restarted.close();
+	}
+
+	@Test
+	public void expiredTokensAreNotRestored() throws IOException {
+		Path file = tempDir.resolve("tokens.jsonl");
+		FileLoginTokenStore store = new FileLoginTokenStore(file);
+		UserInfo expiring = createUserInfo("Donald", LocalDateTime.now().plusHours(1));
+		store.putToken("expiring", expiring);
+		store.putToken("valid", createUserInfo("Daisy", LocalDateTime.now().plusHours(1)));
+		store.close();
+
+		expiring.setLoginExpiration(LocalDateTime.now().minusMinutes(1));
+		store = new FileLoginTokenStore(file);
+		store.putToken("expiring", expiring);
+		store.close();
+
+		assertThat(new FileLoginTokenStore(file).loadTokens()).containsOnlyKeys("valid");
+	}
+
+	@Test
+	public void sharedStoreBatchesWrites() throws IOException {
+		Repository repository = new SailRepository(new MemoryStore());
+		repository.init();
+		try {
+			RepositoryLoginTokenStore node1 = new RepositoryLoginTokenStore(repository);
+			RepositoryLoginTokenStore node2 = new RepositoryLoginTokenStore(repository);
+			UserInfo userInfo = createUserInfo("Donald", LocalDateTime.now().plusHours(1));
+			node1.putToken("token", userInfo);
+			assertThat(node2.loadTokens()).isEmpty();
+
+			for (int i = 0; i < 10; i++) {
+				userInfo.setLoginExpiration(userInfo.getLoginExpiration().plusMinutes(1));
+				node1.putToken("token", userInfo);
+			}
+			node1.flush();
+			assertThat(node2.getToken("token").getLoginExpiration()).isEqualTo(userInfo.getLoginExpiration());
+			assertThat(node2.loadTokens()).containsOnlyKeys(node2.getKey("token"));
+
+			node2.removeToken("token");
+			node2.flush();
+			assertThat(node1.getToken("token")).isNull();
+		} finally {
+			repository.shutDown();
+		}
+	}
+
+	@Test
+	public void sharedStoreLoadsModifiedTokens() throws IOException {
+		Repository repository = new SailRepository(new MemoryStore());
+		repository.init();
+		try {
+			RepositoryLoginTokenStore node1 = new RepositoryLoginTokenStore(repository);
+			RepositoryLoginTokenStore node2 = new RepositoryLoginTokenStore(repository);
+			node1.putToken("removed", createUserInfo("Donald", LocalDateTime.now().plusHours(1)));
+			node1.flush();
+			// modifications are unknown until all tokens have been loaded once
+			assertThat(node2.loadModifiedTokens()).isNull();
+			assertThat(node2.loadTokens()).containsOnlyKeys(node2.getKey("removed"));
+
+			node1.putToken("created", createUserInfo("Daisy", LocalDateTime.now().plusHours(1)));
+			node1.removeToken("removed");
+			node1.flush();
+			Map<String, Optional<UserInfo>> modified = node2.loadModifiedTokens();
+			assertThat(modified).containsOnlyKeys(node2.getKey("created"), node2.getKey("removed"));
+			assertThat(modified.get(node2.getKey("created"))).hasValueSatisfying(ui -> assertThat(ui.getUserName()).isEqualTo("Daisy"));
+			assertThat(modified.get(node2.getKey("removed"))).isEmpty();
+			assertThat(node2.loadTokens()).containsOnlyKeys(node2.getKey("created"));
+
+			// a removal that has not been written yet is not undone by a synchronization
+			node2.removeToken("created");
+			assertThat(node2.loadModifiedTokens()).doesNotContainKey(node2.getKey("created"));
+		} finally {
+			repository.shutDown();
+		}
+	}
+
+	@Test
+	public void missesAreCachedUntilTokenIsModified() throws IOException {
+		Repository repository = new SailRepository(new MemoryStore());
+		repository.init();
+		try {
+			RepositoryLoginTokenStore node1 = new RepositoryLoginTokenStore(repository);
+			RepositoryLoginTokenStore node2 = new RepositoryLoginTokenStore(repository);
+			node2.loadTokens();
+			assertThat(node2.getToken("token")).isNull();
+
+			node1.putToken("token", createUserInfo("Donald", LocalDateTime.now().plusHours(1)));
+			node1.flush();
+			assertThat(node2.getToken("token")).isNull();
+
+			// the synchronization reveals the token
+			assertThat(node2.loadModifiedTokens()).containsKey(node2.getKey("token"));
+			assertThat(node2.getToken("token")).isNotNull();
+		} finally {
+			repository.shutDown();
+		}
+	}
+
+	@Test
+	public void sharedStoreDoesNotContainTokens() throws IOException {
+		Repository repository = new SailRepository(new MemoryStore());
+		repository.init();
+		try {
+			RepositoryLoginTokenStore store = new RepositoryLoginTokenStore(repository);
+			String live = "live-3f9c2a";
+			String revoked = "revoked-7b41d0";
+			store.putToken(live, createUserInfo("Donald", LocalDateTime.now().plusHours(1)));
+			store.putToken(revoked, createUserInfo("Donald", LocalDateTime.now().plusHours(1)));
+			store.flush();
+			store.removeToken(revoked);
+			store.flush();
+
+			try (RepositoryConnection rc = repository.getConnection()) {
+				List<Statement> statements = Iterations.asList(rc.getStatements(null, null, null, false));
+				assertThat(statements).isNotEmpty();
+				assertThat(statements).allSatisfy(st -> assertThat(st.toString()).doesNotContain(live, revoked));
+			}
+			assertThat(new RepositoryLoginTokenStore(repository).getToken(live).getUserName()).isEqualTo("Donald");
+		} finally {
+			repository.shutDown();
+		}
+	}
+
+	@Test
+	public void modificationsDuringWriteAreKept() throws IOException {
+		UserInfo userInfo = createUserInfo("Donald", LocalDateTime.now().plusHours(1));
+		List<Map<String, UserInfo>> writes = new ArrayList<>();
+		WriteBehindLoginTokenStore store = new WriteBehindLoginTokenStore() {
+			@Override
+			protected void write(Map<String, UserInfo> updated, Set<String> removed) {
+				writes.add(Map.copyOf(updated));
+				if (writes.size() == 1) {
+					// a request refreshes the expiration of the same instance while it is written
+					userInfo.setLoginExpiration(userInfo.getLoginExpiration().plusMinutes(1));
+					putToken("token", userInfo);
+				}
+			}
+
+			@Override
+			protected UserInfo readToken(String token) {
+				return null;
+			}
+
+			@Override
+			public Map<String, UserInfo> loadTokens() {
+				return Map.of();
+			}
+
+			@Override
+			public boolean isShared() {
+				return false;
+			}
+		};
+		store.putToken("token", userInfo);
+		store.flush();
+		store.flush();
+		store.flush();
+		assertThat(writes).hasSize(2);
+		assertThat(writes.get(1)).containsOnlyKeys("token");
+	}
+
+}
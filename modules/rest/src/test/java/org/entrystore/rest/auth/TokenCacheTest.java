@@ -0,0 +1,52 @@
+package org.entrystore.rest.auth;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenCacheTest {
+
+	static class ExpiringTokenCache extends TokenCache<String, AtomicReference<Instant>> {
+
+		@Override
+		protected Instant getExpiration(AtomicReference<Instant> value) {
+			return value.get();
+		}
+
+	}
+
+	@Test
+	public void expiredTokensAreRemoved() throws InterruptedException {
+		ExpiringTokenCache cache = new ExpiringTokenCache();
+		cache.putToken("expiring", new AtomicReference<>(Instant.now().plusMillis(100)));
+		cache.putToken("valid", new AtomicReference<>(Instant.now().plusSeconds(3600)));
+		cache.putToken("permanent", new AtomicReference<>(null));
+		assertThat(cache.size()).isEqualTo(3);
+
+		Thread.sleep(150);
+
+		assertThat(cache.getTokenValue("expiring")).isNull();
+		assertThat(cache.hasToken("valid")).isTrue();
+		assertThat(cache.hasToken("permanent")).isTrue();
+		assertThat(cache.size()).isEqualTo(2);
+	}
+
+	@Test
+	public void extendedTokensAreKept() throws InterruptedException {
+		ExpiringTokenCache cache = new ExpiringTokenCache();
+		AtomicReference<Instant> expiration = new AtomicReference<>(Instant.now().plusMillis(100));
+		cache.putToken("token", expiration);
+		expiration.set(Instant.now().plusSeconds(3600));
+
+		Thread.sleep(150);
+
+		assertThat(cache.hasToken("token")).isTrue();
+		assertThat(cache.size()).isEqualTo(1);
+		cache.removeToken("token");
+		assertThat(cache.hasToken("token")).isFalse();
+	}
+
+}
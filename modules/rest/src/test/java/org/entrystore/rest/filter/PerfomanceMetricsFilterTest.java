@@ -1,28 +1,29 @@
 package org.entrystore.rest.filter;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.restlet.data.MediaType.APPLICATION_JSON;
-import static org.restlet.data.MediaType.TEXT_PLAIN;
 import static org.restlet.data.Method.GET;
 import static org.restlet.data.Method.PUT;
 import static org.restlet.data.Status.CLIENT_ERROR_FORBIDDEN;
+import static org.restlet.data.Status.CLIENT_ERROR_NOT_FOUND;
 import static org.restlet.data.Status.SUCCESS_OK;
 
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Meter;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Timer;
 import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
-import java.util.List;
-import org.entrystore.rest.auth.AbstractAuthTest;
+import org.entrystore.repository.util.RequestTimings;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.restlet.Request;
 import org.restlet.Response;
-import org.restlet.data.MediaType;
 import org.restlet.data.Method;
 import org.restlet.data.Status;
+import org.restlet.representation.StringRepresentation;
 
 @ExtendWith(MockitoExtension.class)
 class PerfomanceMetricsFilterTest {
@@ -34,48 +35,71 @@ class PerfomanceMetricsFilterTest {
 		for (Meter meter : Metrics.globalRegistry.getMeters()) {
 			Metrics.globalRegistry.remove(meter);
 		}
+		RequestTimings.reset();
 	}
 
 	@Test
-	void testDifferentResourceTypes() {
-		callFilter(filter, GET, "http://uri:0/search?type=solr&query=title:Bamse", APPLICATION_JSON, SUCCESS_OK);
-		callFilter(filter, GET, "http://uri:0/search/?type=solr&query=title:Bamse", APPLICATION_JSON, SUCCESS_OK);
-		callFilter(filter, GET, "http://uri:0/search", APPLICATION_JSON, SUCCESS_OK);
-		callFilter(filter, GET, "http://uri:0/_contexts/resource/1", APPLICATION_JSON, SUCCESS_OK);
-		callFilter(filter, GET, "http://uri:0/_contexts/does-not-exist/1", APPLICATION_JSON, SUCCESS_OK);
-		callFilter(filter, GET, "http://uri:0/does-not-exist", APPLICATION_JSON, SUCCESS_OK);
+	void testRequestsOfSameRouteShareTimer() {
+		callFilter(GET, "http://uri:0/1/entry/1", "/{context-id}/entry/{entry-id}", SUCCESS_OK);
+		callFilter(GET, "http://uri:0/1/entry/2", "/{context-id}/entry/{entry-id}", SUCCESS_OK);
+		callFilter(GET, "http://uri:0/2/entry/3", "/{context-id}/entry/{entry-id}", SUCCESS_OK);
 
 		CompositeMeterRegistry registry = Metrics.globalRegistry;
-		assertThat(registry.getMeters()).hasSize(2)
-				.extracting(meter -> meter.getId().getName())
-				.containsExactlyInAnyOrder(
-						"GET-search-json-200",
-						"GET-resource-json-200");
+		Timer timer = registry.get(PerformanceMetricsFilter.REQUESTS)
+				.tag("route", "/{context-id}/entry/{entry-id}")
+				.tag("method", "GET")
+				.tag("status", "2xx")
+				.timer();
+		assertThat(timer.count()).isEqualTo(3);
+		assertThat(registry.find(PerformanceMetricsFilter.REQUESTS).timers()).hasSize(1);
 	}
 
 	@Test
-	void testDifferentMethodsAndResourceTypesAndMediaTypesAndStatuses() {
-		callFilter(filter, GET, "http://uri:0/search?type=solr&query=title:Bamse", APPLICATION_JSON, SUCCESS_OK);
-		callFilter(filter, GET, "http://uri:0/search/?type=solr&query=title:Bamse", TEXT_PLAIN, SUCCESS_OK);
-		callFilter(filter, GET, "http://uri:0/search", APPLICATION_JSON, CLIENT_ERROR_FORBIDDEN);
-		callFilter(filter, PUT, "http://uri:0/_contexts/resource/1", APPLICATION_JSON, SUCCESS_OK);
+	void testDifferentMethodsAndStatuses() {
+		callFilter(GET, "http://uri:0/search?type=solr&query=title:Bamse", "/search", SUCCESS_OK);
+		callFilter(GET, "http://uri:0/search", "/search", CLIENT_ERROR_FORBIDDEN);
+		callFilter(PUT, "http://uri:0/1/resource/1", "/{context-id}/resource/{entry-id}", SUCCESS_OK);
+		callFilter(GET, "http://uri:0/does-not-exist", null, CLIENT_ERROR_NOT_FOUND);
 
 		CompositeMeterRegistry registry = Metrics.globalRegistry;
-		assertThat(registry.getMeters()).hasSize(4)
-				.extracting(meter -> meter.getId().getName())
+		assertThat(registry.find(PerformanceMetricsFilter.REQUESTS).timers())
+				.extracting(timer -> timer.getId().getTag("method") + " " +
+						timer.getId().getTag("route") + " " +
+						timer.getId().getTag("status"))
 				.containsExactlyInAnyOrder(
-						"GET-search-json-200",
-						"GET-search-plain-200",
-						"GET-search-json-403",
-						"PUT-resource-json-200");
+						"GET /search 2xx",
+						"GET /search 4xx",
+						"PUT /{context-id}/resource/{entry-id} 2xx",
+						"GET unmatched 4xx");
+	}
+
+	@Test
+	void testResponseSizeAndSubTimers() {
+		RequestTimings.add(RequestTimings.Category.SOLR, System.nanoTime() - MILLISECONDS.toNanos(5));
+		callFilter(GET, "http://uri:0/search", "/search", SUCCESS_OK);
+
+		CompositeMeterRegistry registry = Metrics.globalRegistry;
+		DistributionSummary size = registry.get(PerformanceMetricsFilter.RESPONSE_SIZE)
+				.tag("route", "/search")
+				.summary();
+		assertThat(size.count()).isEqualTo(1);
+		assertThat(size.totalAmount()).isEqualTo(2.0);
+
+		Timer solr = registry.get(PerformanceMetricsFilter.SOLR_TIME).tag("route", "/search").timer();
+		assertThat(solr.totalTime(MILLISECONDS)).isGreaterThanOrEqualTo(5.0);
+		Timer store = registry.get(PerformanceMetricsFilter.STORE_TIME).tag("route", "/search").timer();
+		assertThat(store.count()).isEqualTo(1);
+		assertThat(store.totalTime(MILLISECONDS)).isEqualTo(0.0);
 	}
 
-	private void callFilter(PerformanceMetricsFilter filter, Method method, String uri, MediaType mediaType, Status status) {
+	private void callFilter(Method method, String uri, String route, Status status) {
 		Request request = new Request(method, uri);
+		if (route != null) {
+			request.getAttributes().put(PerformanceMetricsFilter.ROUTE_ATTRIBUTE, route);
+		}
 		Response response = new Response(request);
-		response.setEntity(null, mediaType);
+		response.setEntity(new StringRepresentation("{}", APPLICATION_JSON));
 		response.setStatus(status);
-		Timer.Sample timer = filter.startTimer();
-		filter.stopTimerAndRegisterMetrics(request, response, timer);
+		filter.record(request, response, MILLISECONDS.toNanos(10));
 	}
 }
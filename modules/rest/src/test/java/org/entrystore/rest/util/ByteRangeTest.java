@@ -0,0 +1,38 @@
+package org.entrystore.rest.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ByteRangeTest {
+
+	@Test
+	void parseSingleRanges() {
+		assertThat(ByteRange.parse("bytes=0-99", 1000)).containsExactly(new ByteRange(0, 99));
+		assertThat(ByteRange.parse("bytes=900-", 1000)).containsExactly(new ByteRange(900, 999));
+		assertThat(ByteRange.parse("bytes=-100", 1000)).containsExactly(new ByteRange(900, 999));
+		assertThat(ByteRange.parse("bytes=500-5000", 1000)).containsExactly(new ByteRange(500, 999));
+	}
+
+	@Test
+	void parseMultipleRanges() {
+		assertThat(ByteRange.parse("bytes=500-599, 0-10,5-20", 1000))
+				.containsExactly(new ByteRange(0, 20), new ByteRange(500, 599));
+	}
+
+	@Test
+	void unsatisfiableRanges() {
+		assertThat(ByteRange.parse("bytes=1000-", 1000)).isEmpty();
+		assertThat(ByteRange.parse("bytes=-0", 1000)).isEmpty();
+		assertThat(ByteRange.toUnsatisfiedContentRange(1000)).isEqualTo("bytes */1000");
+	}
+
+	@Test
+	void invalidRangesAreIgnored() {
+		assertThat(ByteRange.parse("items=0-1", 1000)).isNull();
+		assertThat(ByteRange.parse("bytes=abc", 1000)).isNull();
+		assertThat(ByteRange.parse("bytes=5-1", 1000)).isNull();
+		assertThat(ByteRange.parse("bytes=" + "1-1,".repeat(ByteRange.MAX_RANGES) + "1-1", 1000)).isNull();
+	}
+
+}
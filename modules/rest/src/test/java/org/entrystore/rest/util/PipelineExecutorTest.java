@@ -0,0 +1,130 @@
+package org.entrystore.rest.util;
+
+import org.entrystore.rest.util.PipelineExecutor.Job;
+import org.entrystore.rest.util.PipelineExecutor.Status;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PipelineExecutorTest {
+
+	private static final URI pipelineURI = URI.create("http://localhost/store/1/entry/pipeline");
+
+	private PipelineExecutor executor;
+
+	@AfterEach
+	public void tearDown() {
+		if (executor != null) {
+			executor.shutdown();
+		}
+	}
+
+	private static PipelineExecutor.Task blockingTask(CountDownLatch release) {
+		return job -> {
+			release.await();
+			return Set.of(pipelineURI);
+		};
+	}
+
+	@Test
+	public void runsJobAndReportsResult() throws InterruptedException {
+		executor = new PipelineExecutor(1, 10, 1, Duration.ofHours(1), null);
+		Job job = executor.submit("1", pipelineURI, null, null, 0, j -> {
+			j.setProgress(0.5);
+			return Set.of(pipelineURI);
+		});
+		job.await();
+		assertThat(job.getStatus()).isEqualTo(Status.Done);
+		assertThat(job.getProgress()).isEqualTo(1.0);
+		assertThat(job.getResult()).containsExactly(pipelineURI);
+		assertThat(job.toJSON().getString("status")).isEqualTo("done");
+		assertThat(executor.getJobs("1")).containsExactly(job);
+	}
+
+	@Test
+	public void reportsFailure() throws InterruptedException {
+		executor = new PipelineExecutor(1, 10, 1, Duration.ofHours(1), null);
+		Job job = executor.submit("1", pipelineURI, null, null, 0, j -> {
+			throw new IllegalStateException("Pipeline has no recognizable transforms.");
+		});
+		job.await();
+		assertThat(job.getStatus()).isEqualTo(Status.Failed);
+		assertThat(job.getFailure()).isInstanceOf(IllegalStateException.class);
+		assertThat(job.toJSON().getString("error")).isEqualTo("Pipeline has no recognizable transforms.");
+	}
+
+	@Test
+	public void limitsConcurrencyPerContextAndOrdersByPriority() throws InterruptedException {
+		executor = new PipelineExecutor(2, 10, 1, Duration.ofHours(1), null);
+		CountDownLatch release = new CountDownLatch(1);
+		List<String> order = new CopyOnWriteArrayList<>();
+
+		Job blocking = executor.submit("1", pipelineURI, null, null, 0, blockingTask(release));
+		Job low = executor.submit("1", pipelineURI, null, null, 0, j -> {
+			order.add("low");
+			return null;
+		});
+		Job high = executor.submit("1", pipelineURI, null, null, 10, j -> {
+			order.add("high");
+			return null;
+		});
+		Job otherContext = executor.submit("2", pipelineURI, null, null, 0, j -> Set.of());
+
+		// the second worker is free, but only for jobs of other contexts
+		otherContext.await();
+		assertThat(blocking.getStatus()).isEqualTo(Status.Running);
+		assertThat(low.getStatus()).isEqualTo(Status.Queued);
+		assertThat(high.getStatus()).isEqualTo(Status.Queued);
+
+		release.countDown();
+		low.await();
+		high.await();
+		assertThat(order).containsExactly("high", "low");
+	}
+
+	@Test
+	public void cancelsQueuedAndRunningJobs() throws InterruptedException {
+		executor = new PipelineExecutor(1, 10, 1, Duration.ofHours(1), null);
+		CountDownLatch started = new CountDownLatch(1);
+		Job running = executor.submit("1", pipelineURI, null, null, 0, j -> {
+			started.countDown();
+			Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+			return null;
+		});
+		Job queued = executor.submit("1", pipelineURI, null, null, 0, j -> Set.of());
+		started.await();
+
+		assertThat(executor.cancel(queued)).isTrue();
+		assertThat(queued.getStatus()).isEqualTo(Status.Cancelled);
+		assertThat(queued.isFinished()).isTrue();
+
+		assertThat(executor.cancel(running)).isTrue();
+		running.await();
+		assertThat(running.getStatus()).isEqualTo(Status.Cancelled);
+		assertThat(executor.cancel(running)).isFalse();
+		assertThat(executor.getRunningCount()).isZero();
+	}
+
+	@Test
+	public void rejectsJobsWhenQueueIsFull() {
+		executor = new PipelineExecutor(1, 1, 1, Duration.ofHours(1), null);
+		CountDownLatch release = new CountDownLatch(1);
+		executor.submit("1", pipelineURI, null, null, 0, blockingTask(release));
+		executor.submit("1", pipelineURI, null, null, 0, blockingTask(release));
+		assertThatThrownBy(() -> executor.submit("1", pipelineURI, null, null, 0, blockingTask(release)))
+				.isInstanceOf(RejectedExecutionException.class);
+		release.countDown();
+	}
+
+}
@@ -1,8 +1,13 @@
 package org.entrystore.rest.util;
 
 import org.junit.jupiter.api.Test;
+import org.restlet.Request;
+import org.restlet.data.Method;
+import org.restlet.data.Tag;
 
+import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -80,4 +85,28 @@ class UtilTest {
 			.isEqualTo(expected);
 	}
 
+	@Test
+	void handleIfMatchStripsVariant() {
+		Date modified = new Date();
+		Request request = new Request(Method.PUT, "http://localhost/store/1/entry/1");
+		request.getConditions().setMatch(List.of(Util.createTag(modified, "abc"), Tag.ALL));
+
+		Util.handleIfMatch(request);
+
+		assertThat(request.getConditions().getMatch())
+				.extracting(Tag::getName)
+				.containsExactly(Util.createTag(modified).getName(), Tag.ALL.getName());
+	}
+
+	@Test
+	void handleIfMatchIgnoresSafeMethods() {
+		Tag tag = Util.createTag(new Date(), "abc");
+		Request request = new Request(Method.GET, "http://localhost/store/1/entry/1");
+		request.getConditions().setMatch(List.of(tag));
+
+		Util.handleIfMatch(request);
+
+		assertThat(request.getConditions().getMatch()).containsExactly(tag);
+	}
+
 }
@@ -82,6 +82,16 @@ public class Pipeline {
 
 	private static Map<String, Class<?>> format2Class = null;
 
+	private ProgressListener progressListener;
+
+	/**
+	 * Is notified after each completed step of a pipeline execution. The merging of
+	 * the result into the context counts as the last step.
+	 */
+	public interface ProgressListener {
+		void progress(int completedSteps, int totalSteps);
+	}
+
     /**
      *
      * @param entry must be a Pipeline, i.e. the GraphType must be Pipeline.
@@ -95,6 +105,10 @@ public class Pipeline {
         return this.entry;
     }
 
+	public void setProgressListener(ProgressListener progressListener) {
+		this.progressListener = progressListener;
+	}
+
 	private void detectTransforms() {
 		Model graph = ((RDFResource) this.entry.getResource()).getGraph();
 
@@ -169,8 +183,10 @@ public class Pipeline {
 		if (tsteps.size() == 0) {
 			throw new IllegalStateException("Pipeline has no recognizable transforms.");
 		}
+		int totalSteps = tsteps.size() + 1;
 		Transform first = tsteps.get(0);
 		Object result = first.transform(this, sourceEntry);
+		stepCompleted(1, totalSteps);
 		for (int idx = 1; idx < tsteps.size(); idx++) {
             if (result instanceof Model) {
                 result = tsteps.get(idx).transform(this, (Model) result);
@@ -179,23 +195,41 @@ public class Pipeline {
             } else {
                 throw new IllegalStateException("Transform result must be either Graph or Entry.");
             }
+			stepCompleted(idx + 1, totalSteps);
 		}
 
         if (result instanceof Model) {
             Model graph = (Model) result;
             Graph2Entries g2e = new Graph2Entries(this.entry.getContext());
+            Set<Entry> merged;
             if (detectDestination) {
-                return g2e.merge(graph, null, null);
+                merged = g2e.merge(graph, null, null);
             } else {
-                return g2e.merge(graph, destination, listIRI);
+                merged = g2e.merge(graph, destination, listIRI);
             }
+            stepCompleted(totalSteps, totalSteps);
+            return merged;
         } else if (result instanceof Entry) {
+            stepCompleted(totalSteps, totalSteps);
             return new HashSet<Entry>(Arrays.asList((Entry) result));
         } else {
             throw new IllegalStateException("Transform result must be either Graph or Entry.");
         }
 	}
 
+	/**
+	 * Reports the progress and aborts the execution between two steps if the executing
+	 * thread has been interrupted, e.g. because the execution has been cancelled.
+	 */
+	private void stepCompleted(int completedSteps, int totalSteps) throws TransformException {
+		if (progressListener != null) {
+			progressListener.progress(completedSteps, totalSteps);
+		}
+		if (completedSteps < totalSteps && Thread.currentThread().isInterrupted()) {
+			throw new TransformException("Pipeline execution of " + entry.getEntryURI() + " was interrupted");
+		}
+	}
+
 	private static synchronized void loadTransforms() {
 		if (type2Class == null || format2Class == null) {
 			type2Class = new HashMap<String, Class<?>>();
@@ -21,5 +21,12 @@ package org.entrystore.transforms;
  */
 public class TransformException extends Exception {
 
+	public TransformException() {
+		super();
+	}
+
+	public TransformException(String message) {
+		super(message);
+	}
 
 }
\ No newline at end of file
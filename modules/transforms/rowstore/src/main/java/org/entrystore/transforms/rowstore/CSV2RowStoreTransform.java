@@ -17,6 +17,14 @@
 package org.entrystore.transforms.rowstore;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.http.Header;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.util.EntityUtils;
 import org.eclipse.rdf4j.model.Model;
 import org.eclipse.rdf4j.model.ValueFactory;
 import org.eclipse.rdf4j.model.impl.LinkedHashModel;
@@ -26,24 +34,24 @@ import org.entrystore.Entry;
 import org.entrystore.GraphType;
 import org.entrystore.ResourceType;
 import org.entrystore.config.Config;
+import org.entrystore.impl.RepositoryManagerImpl;
 import org.entrystore.impl.RepositoryProperties;
 import org.entrystore.repository.config.Settings;
+import org.entrystore.repository.util.PooledHttpClient;
 import org.entrystore.transforms.Pipeline;
 import org.entrystore.transforms.Transform;
+import org.entrystore.transforms.TransformException;
 import org.entrystore.transforms.TransformParameters;
-import org.restlet.Client;
-import org.restlet.Request;
-import org.restlet.Response;
 import org.restlet.data.MediaType;
 import org.restlet.data.Method;
-import org.restlet.data.Protocol;
 import org.restlet.data.Status;
-import org.restlet.representation.InputRepresentation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.time.Duration;
 import java.util.Set;
 
 /**
@@ -56,8 +64,10 @@ public class CSV2RowStoreTransform extends Transform {
 
 	private static Logger log = LoggerFactory.getLogger(CSV2RowStoreTransform.class);
 
+	private static final Duration ROWSTORE_TIMEOUT = Duration.ofSeconds(10);
+
 	@Override
-	public Object transform(Pipeline pipeline, Entry sourceEntry) {
+	public Object transform(Pipeline pipeline, Entry sourceEntry) throws TransformException {
 		ValueFactory vf = SimpleValueFactory.getInstance();
 		Config conf = pipeline.getEntry().getRepositoryManager().getConfiguration();
 		String action = getArguments().getOrDefault("action", "create").toLowerCase();
@@ -75,7 +85,8 @@ public class CSV2RowStoreTransform extends Transform {
 		}
 
 		Entry result = null;
-		Response httpResponse = null;
+		PooledHttpClient client = ((RepositoryManagerImpl) pipeline.getEntry().getRepositoryManager()).getHttpClient();
+		CloseableHttpResponse httpResponse = null;
 		try {
 			if ("create".equalsIgnoreCase(action)) {
 				String datasetsUrl = conf.getString(Settings.ROWSTORE_URL);
@@ -83,12 +94,13 @@ public class CSV2RowStoreTransform extends Transform {
 					datasetsUrl += "/";
 				}
 				datasetsUrl += "datasets";
-				httpResponse = sendData(Method.POST, datasetsUrl, data, MediaType.TEXT_CSV);
-				if (!Status.SUCCESS_ACCEPTED.equals(httpResponse.getStatus())) {
+				httpResponse = sendData(client, Method.POST, datasetsUrl, data, MediaType.TEXT_CSV);
+				Header location = httpResponse.getFirstHeader("Location");
+				if (Status.SUCCESS_ACCEPTED.getCode() != httpResponse.getStatusLine().getStatusCode() || location == null) {
 					log.error("Dataset could not be created in RowStore");
 					return null;
 				}
-				String datasetURL = httpResponse.getLocationRef().toString();
+				String datasetURL = URI.create(datasetsUrl).resolve(location.getValue()).toString();
 				String datasetInfoURL = datasetURL + "/info";
 
 				Entry newEntry = pipeline.getEntry().getContext().createReference(null, URI.create(datasetURL), URI.create(datasetInfoURL), null);
@@ -117,26 +129,26 @@ public class CSV2RowStoreTransform extends Transform {
 				Model datasetEntryGraph = new LinkedHashModel(datasetEntry.getGraph());
 
 				if ("replace".equalsIgnoreCase(action)) {
-					httpResponse = sendData(Method.PUT, datasetURL, data, MediaType.TEXT_CSV);
+					httpResponse = sendData(client, Method.PUT, datasetURL, data, MediaType.TEXT_CSV);
 					datasetEntryGraph.remove(null, RepositoryProperties.pipelineData, null);
 					datasetEntryGraph.add(vf.createIRI(datasetEntry.getEntryURI().toString()), RepositoryProperties.pipelineData, vf.createIRI(sourceURI));
 					datasetEntry.setGraph(datasetEntryGraph);
 				} else if ("append".equalsIgnoreCase(action)) {
-					httpResponse = sendData(Method.POST, datasetURL, data, MediaType.TEXT_CSV);
+					httpResponse = sendData(client, Method.POST, datasetURL, data, MediaType.TEXT_CSV);
 					datasetEntryGraph.add(vf.createIRI(datasetEntry.getEntryURI().toString()), RepositoryProperties.pipelineData, vf.createIRI(sourceURI));
 					datasetEntry.setGraph(datasetEntryGraph);
 				} else if ("setalias".equalsIgnoreCase(action)) {
 					String datasetAliasURL = datasetURL + (datasetURL.endsWith("/") ? "" : "/") + "aliases";
 					String alias = getArguments().get("alias");
 					if (alias == null || alias.length() == 0) {
-						httpResponse = sendData(Method.DELETE, datasetAliasURL, null, null);
+						httpResponse = sendData(client, Method.DELETE, datasetAliasURL, null, null);
 					} else {
 						String jsonArray = "[\"" + alias + "\"]";
-						httpResponse = sendData(Method.PUT, datasetAliasURL, IOUtils.toInputStream(jsonArray), MediaType.APPLICATION_JSON);
+						httpResponse = sendData(client, Method.PUT, datasetAliasURL, IOUtils.toInputStream(jsonArray), MediaType.APPLICATION_JSON);
 					}
 				}
 
-				if (!Status.isSuccess(httpResponse.getStatus().getCode())) {
+				if (!Status.isSuccess(httpResponse.getStatusLine().getStatusCode())) {
 					log.error("Dataset could not be modified");
 					return null;
 				}
@@ -150,34 +162,46 @@ public class CSV2RowStoreTransform extends Transform {
 			} else {
 				log.warn("Unable to process unknown action " + action);
 			}
+		} catch (IOException e) {
+			log.error("Request to RowStore failed: {}", e.getMessage());
+			throw new TransformException("Request to RowStore failed: " + e.getMessage());
 		} finally {
 			if (httpResponse != null) {
-				httpResponse.release();
+				try {
+					// the entity is consumed, so that the connection can be reused
+					EntityUtils.consumeQuietly(httpResponse.getEntity());
+					httpResponse.close();
+				} catch (IOException e) {
+					log.warn("Unable to close RowStore response: {}", e.getMessage());
+				}
 			}
 		}
 
 		return result;
 	}
 
-	private Response sendData(Method method, String url, InputStream data, MediaType mediaType) {
+	/**
+	 * Sends data to RowStore. The data is streamed using chunked transfer encoding,
+	 * i.e. it is not buffered in memory before sending.
+	 */
+	private CloseableHttpResponse sendData(PooledHttpClient client, Method method, String url, InputStream data, MediaType mediaType) throws IOException {
 		if (method == null || url == null) {
 			throw new IllegalArgumentException("Arguments must not be null");
 		}
 
-		Client client = new Client(Protocol.HTTP);
-		client.setContext(new org.restlet.Context());
-		client.getContext().getParameters().add("connectTimeout", "10000");
-		client.getContext().getParameters().add("readTimeout", "10000");
-		client.getContext().getParameters().set("socketTimeout", "10000");
-		client.getContext().getParameters().set("socketConnectTimeoutMs", "10000");
-		log.info("Initialized HTTP client for RowStore Transform");
-
-		Request request = new Request(method, url);
-		if (data != null) {
-			request.setEntity(new InputRepresentation(data, mediaType));
+		HttpRequestBase request;
+		if (Method.DELETE.equals(method)) {
+			request = new HttpDelete(url);
+		} else {
+			HttpEntityEnclosingRequestBase entityRequest = Method.PUT.equals(method) ? new HttpPut(url) : new HttpPost(url);
+			if (data != null) {
+				entityRequest.setEntity(PooledHttpClient.createStreamingEntity(data, mediaType != null ? mediaType.toString() : null));
+			}
+			request = entityRequest;
 		}
+		request.setConfig(client.getRequestConfig(ROWSTORE_TIMEOUT));
 
-		return client.handle(request);
+		return client.execute(request);
 	}
 
-}
\ No newline at end of file
+}
@@ -95,6 +95,15 @@ public class CSVQueryExecutionFactory {
 		return create(table, QueryFactory.create(query));
 	}
 
+	/**
+	 * Creates an execution that sees the given results of previous queries instead of
+	 * the statically set previous results, can be used by several threads at once.
+	 */
+	public static QueryExecution create(TableData table, Query query, Model previousResults) {
+		modifyQuery(query, table);
+		return QueryExecutionFactory.create(query, previousResults);
+	}
+
 	public static Reader createReader(InputStream inputStream) {
 		return new CharsetDetectingReader(inputStream);
 	}
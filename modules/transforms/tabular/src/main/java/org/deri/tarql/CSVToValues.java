@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import au.com.bytecode.opencsv.CSVReader;
 
@@ -47,7 +48,8 @@ public class CSVToValues {
 	protected final Reader reader;
 	protected final boolean varsFromHeader;
 	protected final List<Var> vars = new ArrayList<Var>();
-	protected int rownum;
+	protected int rownum = 1;
+	private boolean headerProcessed = false;
 	
 	/**
 	 * @param reader Reader over the contents of a CSV file
@@ -60,46 +62,36 @@ public class CSVToValues {
 	
 	public TableData read() {
 		List<Binding> bindings = new ArrayList<Binding>();
+		read(Integer.MAX_VALUE, chunk -> bindings.addAll(chunk.getRows()));
+		return createTable(bindings);
+	}
+
+	/**
+	 * Reads the rows in chunks, only the rows of the current chunk are kept in memory.
+	 *
+	 * @param chunkSize Maximum number of rows per chunk
+	 * @param handler Is called with each chunk of rows, all chunks have the same variables
+	 *                unless a later chunk contains rows with more columns
+	 */
+	public void read(int chunkSize, Consumer<TableData> handler) {
 		try {
 			CSVReader csv = new CSVReader(reader);
-			String[] row;
 			try {
-				if (varsFromHeader) {
-					while ((row = csv.readNext()) != null) {
-						boolean foundValidColumnName = false;
-						for (int i = 0; i < row.length; i++) {
-							if (toVar(row[i]) == null) continue;
-							foundValidColumnName = true;
-						}
-						// If row was empty or didn't contain anything usable
-						// as column name, then try next row
-						if (!foundValidColumnName) continue;
-						for (int i = 0; i < row.length; i++) {
-							Var var = toVar(row[i]);
-							if (var == null || vars.contains(var) || var.equals(TarqlQuery.ROWNUM)) {
-								getVar(i);
-							} else {
-								vars.add(var);
-							}
+				List<Binding> bindings = new ArrayList<Binding>();
+				String[] row;
+				while ((row = csv.readNext()) != null) {
+					Binding binding = processRow(row);
+					if (binding != null) {
+						bindings.add(binding);
+						if (bindings.size() >= chunkSize) {
+							handler.accept(createTable(bindings));
+							bindings = new ArrayList<Binding>();
 						}
-						break;
 					}
 				}
-				rownum = 1;
-				while ((row = csv.readNext()) != null) {
-					// Skip rows without data
-					if (isEmpty(row)) continue;
-					bindings.add(toBinding(row));
-					rownum++;
-				}
-				vars.add(TarqlQuery.ROWNUM);
-				//Make sure variables exists for all columns even if no data is available, otherwise ARQ will complain.
-				for(int i=0;i<vars.size();i++) {
-					if (vars.get(i) == null) {
-						getVar(i);
-					}
+				if (!bindings.isEmpty()) {
+					handler.accept(createTable(bindings));
 				}
-				return new TableData(vars, bindings);
 			} finally {
 				csv.close();
 			}
@@ -107,6 +99,59 @@ public class CSVToValues {
 			throw new JenaException(ex);
 		}
 	}
+
+	/**
+	 * Processes a row of the source, which is either the header row or a data row.
+	 *
+	 * @return A binding for the row or null if the row does not contain data
+	 */
+	protected Binding processRow(String[] row) {
+		if (!headerProcessed) {
+			if (varsFromHeader) {
+				// Rows are skipped until a row with usable column names is found
+				headerProcessed = readHeader(row);
+				return null;
+			}
+			headerProcessed = true;
+		}
+		// Skip rows without data
+		if (isEmpty(row)) return null;
+		Binding binding = toBinding(row);
+		rownum++;
+		return binding;
+	}
+
+	private boolean readHeader(String[] row) {
+		boolean foundValidColumnName = false;
+		for (int i = 0; i < row.length; i++) {
+			if (toVar(row[i]) == null) continue;
+			foundValidColumnName = true;
+		}
+		// If row was empty or didn't contain anything usable
+		// as column name, then try next row
+		if (!foundValidColumnName) return false;
+		for (int i = 0; i < row.length; i++) {
+			Var var = toVar(row[i]);
+			if (var == null || vars.contains(var) || var.equals(TarqlQuery.ROWNUM)) {
+				getVar(i);
+			} else {
+				vars.add(var);
+			}
+		}
+		return true;
+	}
+
+	protected TableData createTable(List<Binding> bindings) {
+		//Make sure variables exists for all columns even if no data is available, otherwise ARQ will complain.
+		for (int i = 0; i < vars.size(); i++) {
+			if (vars.get(i) == null) {
+				getVar(i);
+			}
+		}
+		List<Var> tableVars = new ArrayList<Var>(vars);
+		tableVars.add(TarqlQuery.ROWNUM);
+		return new TableData(tableVars, bindings);
+	}
 	
 	protected Var toVar(String s) {
 		if (s == null) return null;
@@ -21,6 +21,7 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.apache.poi.hssf.usermodel.HSSFSheet;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
@@ -31,7 +32,6 @@ import org.apache.poi.ss.usermodel.Row;
 
 import com.hp.hpl.jena.shared.JenaException;
 import com.hp.hpl.jena.sparql.algebra.table.TableData;
-import com.hp.hpl.jena.sparql.core.Var;
 import com.hp.hpl.jena.sparql.engine.binding.Binding;
 
 public class XLSToValues extends CSVToValues {
@@ -71,10 +71,9 @@ public class XLSToValues extends CSVToValues {
 	}
 	
 	
-	public TableData read() {
+	@Override
+	public void read(int chunkSize, Consumer<TableData> handler) {
 		try {
-			List<Binding> bindings = new ArrayList<Binding>();		        
-
 			// Read workbook into HSSFWorkbook
 			HSSFWorkbook workbook = new HSSFWorkbook(this.is); 
 	        HSSFSheet sheet = workbook.getSheetAt(this.sheet);
@@ -84,47 +83,21 @@ public class XLSToValues extends CSVToValues {
 	        // To iterate over the rows
 	        Iterator<Row> rowIterator = sheet.iterator();
 
-			String[] row;
 			try {
-				if (varsFromHeader) {
-					while (rowIterator.hasNext()) {
-						row = getRow(rowIterator.next());						
-						boolean foundValidColumnName = false;
-						for (int i = 0; i < row.length; i++) {
-							if (toVar(row[i]) == null) continue;
-							foundValidColumnName = true;
-						}
-						// If row was empty or didn't contain anything usable
-						// as column name, then try next row
-						if (!foundValidColumnName) continue;
-						for (int i = 0; i < row.length; i++) {
-							Var var = toVar(row[i]);
-							if (var == null || vars.contains(var) || var.equals(TarqlQuery.ROWNUM)) {
-								getVar(i);
-							} else {
-								vars.add(var);
-							}
+				List<Binding> bindings = new ArrayList<Binding>();
+				while (rowIterator.hasNext()) {
+					Binding binding = processRow(getRow(rowIterator.next()));
+					if (binding != null) {
+						bindings.add(binding);
+						if (bindings.size() >= chunkSize) {
+							handler.accept(createTable(bindings));
+							bindings = new ArrayList<Binding>();
 						}
-						break;
 					}
 				}
-				rownum = 1;
-				while (rowIterator.hasNext()) {
-					row = getRow(rowIterator.next());					
-					// Skip rows without data
-					if (isEmpty(row)) continue;
-					bindings.add(toBinding(row));
-					rownum++;
-				}
-				
-				vars.add(TarqlQuery.ROWNUM);
-				//Make sure variables exists for all columns even if no data is available, otherwise ARQ will complain.
-				for(int i=0;i<vars.size();i++) {
-					if (vars.get(i) == null) {
-						getVar(i);
-					}
+				if (!bindings.isEmpty()) {
+					handler.accept(createTable(bindings));
 				}
-				return new TableData(vars, bindings);
 			} finally {
 				this.is.close();
 			}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deri.tarql;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.poi.ooxml.util.SAXHelper;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import com.hp.hpl.jena.shared.JenaException;
+import com.hp.hpl.jena.sparql.algebra.table.TableData;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+
+/**
+ * Reads XLSX files with the streaming (SAX) API of POI, i.e. without loading the
+ * whole workbook into memory. Formulas are read as their cached results.
+ */
+public class XLSXToValues extends CSVToValues {
+
+	private final File file;
+	private int sheet = 0;
+
+	public XLSXToValues(File file, boolean varsFromHeader) {
+		super(null, varsFromHeader);
+		this.file = file;
+	}
+
+	public XLSXToValues(File file, boolean varsFromHeader, int sheetNr) {
+		super(null, varsFromHeader);
+		this.file = file;
+		this.sheet = sheetNr;
+	}
+
+	@Override
+	public void read(int chunkSize, Consumer<TableData> handler) {
+		try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+			XSSFReader xssfReader = new XSSFReader(pkg);
+			ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+			StylesTable styles = xssfReader.getStylesTable();
+			XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) xssfReader.getSheetsData();
+			int index = 0;
+			while (sheets.hasNext()) {
+				try (InputStream sheetData = sheets.next()) {
+					if (index++ != this.sheet) {
+						continue;
+					}
+					RowHandler rowHandler = new RowHandler(chunkSize, handler);
+					XMLReader parser = SAXHelper.newXMLReader();
+					parser.setContentHandler(new XSSFSheetXMLHandler(styles, null, strings, rowHandler, new DataFormatter(true), false));
+					parser.parse(new InputSource(sheetData));
+					rowHandler.flush();
+					return;
+				}
+			}
+			throw new JenaException("Sheet " + this.sheet + " does not exist");
+		} catch (IOException | OpenXML4JException | SAXException | ParserConfigurationException ex) {
+			throw new JenaException(ex);
+		}
+	}
+
+	private class RowHandler implements SheetContentsHandler {
+
+		private final int chunkSize;
+		private final Consumer<TableData> handler;
+		private List<Binding> bindings = new ArrayList<Binding>();
+		private final List<String> cells = new ArrayList<String>();
+		private int currentColumn;
+
+		RowHandler(int chunkSize, Consumer<TableData> handler) {
+			this.chunkSize = chunkSize;
+			this.handler = handler;
+		}
+
+		@Override
+		public void startRow(int rowNum) {
+			cells.clear();
+			currentColumn = -1;
+		}
+
+		@Override
+		public void endRow(int rowNum) {
+			Binding binding = processRow(cells.toArray(new String[0]));
+			if (binding != null) {
+				bindings.add(binding);
+				if (bindings.size() >= chunkSize) {
+					flush();
+				}
+			}
+		}
+
+		@Override
+		public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+			// Empty cells are not part of the sheet data, so the column is taken from the reference
+			int column = cellReference != null ? new CellReference(cellReference).getCol() : currentColumn + 1;
+			while (cells.size() < column) {
+				cells.add(null);
+			}
+			cells.add(formattedValue);
+			currentColumn = column;
+		}
+
+		@Override
+		public void headerFooter(String text, boolean isHeader, String tagName) {
+		}
+
+		void flush() {
+			if (!bindings.isEmpty()) {
+				handler.accept(createTable(bindings));
+				bindings = new ArrayList<Binding>();
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2007-2024 MetaSolutions AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.entrystore.transforms.tabular;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryExecution;
+import com.hp.hpl.jena.query.ResultSetFormatter;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.sparql.algebra.table.TableData;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import org.deri.tarql.CSVQueryExecutionFactory;
+import org.deri.tarql.CSVToValues;
+import org.deri.tarql.TarqlQuery;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.rio.RDFHandler;
+import org.entrystore.transforms.TransformException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Evaluates a Tarql query over a tabular source, either on the whole table at once or
+ * chunk by chunk. Chunks can be evaluated by several threads; the results are written
+ * in the order of the chunks, so the result does not depend on the number of threads.
+ */
+class TabularExecution {
+
+	private static final Logger log = LoggerFactory.getLogger(TabularExecution.class);
+
+	private static final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	private final TarqlQuery query;
+
+	private final int chunkSize;
+
+	private final int threads;
+
+	/**
+	 * @param chunkSize Number of rows per chunk, Integer.MAX_VALUE to evaluate the whole table at once
+	 * @param threads Number of threads that evaluate chunks
+	 */
+	TabularExecution(TarqlQuery query, int chunkSize, int threads) {
+		if (chunkSize < 1 || threads < 1) {
+			throw new IllegalArgumentException("Chunk size and number of threads must be at least 1");
+		}
+		this.query = query;
+		this.chunkSize = chunkSize;
+		this.threads = threads;
+	}
+
+	/**
+	 * Writes the statements of each chunk to the sink as soon as the chunk and all
+	 * chunks before it have been transformed, so that the executor does not keep the
+	 * results of more than a few chunks in memory.
+	 */
+	void execute(CSVToValues source, RDFHandler sink) throws TransformException {
+		long before = System.currentTimeMillis();
+		int[] rows = new int[1];
+		long[] statements = new long[1];
+		ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads, new ChunkThreadFactory()) : null;
+		Deque<Future<List<Statement>>> pending = new ArrayDeque<>();
+		try {
+			sink.startRDF();
+			source.read(chunkSize, chunk -> {
+				if (Thread.currentThread().isInterrupted()) {
+					throw new ChunkException("Tabular transform was interrupted after " + rows[0] + " rows", null);
+				}
+				rows[0] += chunk.getRows().size();
+				if (executor == null) {
+					statements[0] += write(transformChunk(chunk), sink);
+				} else {
+					pending.add(executor.submit(() -> transformChunk(chunk)));
+					// only a limited number of chunks is kept in memory
+					while (pending.size() > threads * 2) {
+						statements[0] += write(await(pending.poll()), sink);
+					}
+				}
+			});
+			while (!pending.isEmpty()) {
+				statements[0] += write(await(pending.poll()), sink);
+			}
+			sink.endRDF();
+		} catch (ChunkException ce) {
+			log.error(ce.getMessage());
+			throw new TransformException(ce.getMessage());
+		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+		}
+		log.info("Transformed {} rows into {} statements in {} ms", rows[0], statements[0], System.currentTimeMillis() - before);
+	}
+
+	private static int write(List<Statement> statements, RDFHandler sink) {
+		for (Statement statement : statements) {
+			sink.handleStatement(statement);
+		}
+		return statements.size();
+	}
+
+	private List<Statement> transformChunk(TableData chunk) {
+		Model chunkModel = ModelFactory.createDefaultModel();
+		try {
+			executeQuery(chunk, query, chunkModel);
+			return toStatements(chunkModel);
+		} finally {
+			chunkModel.close();
+		}
+	}
+
+	private List<Statement> await(Future<List<Statement>> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new ChunkException("Tabular transform was interrupted", ie);
+		} catch (ExecutionException ee) {
+			throw new ChunkException("Unable to transform chunk: " + ee.getCause().getMessage(), ee.getCause());
+		}
+	}
+
+	/**
+	 * Executes the queries of a Tarql query one after another. Each query sees the
+	 * results of the previous queries; they are queried in place and the results of a
+	 * query are added after its execution, instead of copying all previous results.
+	 */
+	static void executeQuery(TableData table, TarqlQuery query, Model resultModel) {
+		for (Query q : query.getQueries()) {
+			Model queryResults = ModelFactory.createDefaultModel();
+			// the query is modified to include the table, so a copy is used for every execution
+			processResults(CSVQueryExecutionFactory.create(table, q.cloneQuery(), resultModel), queryResults);
+			resultModel.add(queryResults);
+			queryResults.close();
+		}
+	}
+
+	private static void processResults(QueryExecution ex, Model resultModel) {
+		if (ex.getQuery().isSelectType()) {
+			log.info(ResultSetFormatter.asText(ex.execSelect()));
+		} else if (ex.getQuery().isAskType()) {
+			log.info(ResultSetFormatter.asText(ex.execSelect()));
+		} else if (ex.getQuery().isConstructType()) {
+			ex.execConstruct(resultModel);
+		} else {
+			log.error("Only query forms CONSTRUCT, SELECT and ASK are supported");
+		}
+	}
+
+	/**
+	 * Converts the triples of a Jena model to RDF4J statements. Jena blank node labels are
+	 * unique within the JVM, so blank nodes of different chunks do not collide.
+	 */
+	static List<Statement> toStatements(Model model) {
+		List<Statement> statements = new ArrayList<>((int) model.size());
+		ExtendedIterator<Triple> triples = model.getGraph().find(Node.ANY, Node.ANY, Node.ANY);
+		try {
+			while (triples.hasNext()) {
+				Triple t = triples.next();
+				statements.add(vf.createStatement((Resource) toValue(t.getSubject()), vf.createIRI(t.getPredicate().getURI()), toValue(t.getObject())));
+			}
+		} finally {
+			triples.close();
+		}
+		return statements;
+	}
+
+	private static Value toValue(Node node) {
+		if (node.isURI()) {
+			return vf.createIRI(node.getURI());
+		} else if (node.isBlank()) {
+			return vf.createBNode(node.getBlankNodeLabel());
+		}
+		String lang = node.getLiteralLanguage();
+		if (lang != null && !lang.isEmpty()) {
+			return vf.createLiteral(node.getLiteralLexicalForm(), lang);
+		}
+		String datatype = node.getLiteralDatatypeURI();
+		if (datatype != null) {
+			return vf.createLiteral(node.getLiteralLexicalForm(), vf.createIRI(datatype));
+		}
+		return vf.createLiteral(node.getLiteralLexicalForm());
+	}
+
+	/**
+	 * Used to abort reading the source from within the chunk handler.
+	 */
+	private static class ChunkException extends RuntimeException {
+		ChunkException(String message, Throwable cause) {
+			super(message, cause);
+		}
+	}
+
+	private static class ChunkThreadFactory implements ThreadFactory {
+		private final AtomicInteger counter = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "tabular-transform-" + counter.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+
+}
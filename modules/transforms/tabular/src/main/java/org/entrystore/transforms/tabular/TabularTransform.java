@@ -16,83 +16,83 @@
 
 package org.entrystore.transforms.tabular;
 
-import com.hp.hpl.jena.query.Query;
-import com.hp.hpl.jena.query.QueryExecution;
-import com.hp.hpl.jena.query.ResultSetFormatter;
-import com.hp.hpl.jena.rdf.model.Model;
-import com.hp.hpl.jena.rdf.model.ModelFactory;
 import com.hp.hpl.jena.shared.NotFoundException;
-import com.hp.hpl.jena.sparql.algebra.table.TableData;
 import org.deri.tarql.CSVQueryExecutionFactory;
 import org.deri.tarql.CSVToValues;
 import org.deri.tarql.TarqlParser;
 import org.deri.tarql.TarqlQuery;
 import org.deri.tarql.XLSToValues;
+import org.deri.tarql.XLSXToValues;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.eclipse.rdf4j.rio.helpers.StatementCollector;
 import org.entrystore.Data;
 import org.entrystore.Entry;
 import org.entrystore.transforms.Pipeline;
 import org.entrystore.transforms.Transform;
+import org.entrystore.transforms.TransformException;
 import org.entrystore.transforms.TransformParameters;
-import org.openrdf.model.Graph;
-import org.openrdf.rio.RDFHandlerException;
-import org.openrdf.rio.RDFParseException;
-import org.openrdf.rio.helpers.StatementCollector;
-import org.openrdf.rio.ntriples.NTriplesParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.io.File;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
 
 /**
- * Supports transforming from csv or xls files to RDF via a Tarql string.
- * Two parameters are supported, tarqlstring and sheetnr.
+ * Supports transforming from csv, xls or xlsx files to RDF via a Tarql string.
+ * The parameters tarqlstring and sheetnr are supported, as well as streaming,
+ * chunksize, parallel and threads.
+ *
+ * <p>With streaming set to true the source is read and transformed in chunks of
+ * chunksize rows (default 1000), so that only the rows of the current chunk and the
+ * resulting statements are kept in memory. Chained queries only see the results of
+ * previous queries for the rows of the same chunk. XLSX files are always read with
+ * a streaming reader.</p>
+ *
+ * <p>With parallel set to true (implies streaming) the chunks are transformed by
+ * several threads, by default one per available processor.</p>
  * 
  * @author Matthias Palmér
  * @author Hannes Ebner
  */
-@TransformParameters(type="tabular", extensions={"csv", "xls"})
+@TransformParameters(type="tabular", extensions={"csv", "xls", "xlsx"})
 public class TabularTransform extends Transform {
 
 	private static Logger log = LoggerFactory.getLogger(TabularTransform.class);
 
-	public Object transform(Pipeline pipeline, Entry sourceEntry) {
+	private static final int DEFAULT_CHUNK_SIZE = 1000;
+
+	public Object transform(Pipeline pipeline, Entry sourceEntry) throws TransformException {
 		if (sourceEntry == null) {
 			throw new IllegalStateException("TabularTransform requires a sourceEntry");
 		}
 
 		// TODO add support for non-local resources
         String mimetype = sourceEntry.getMimetype();
-        InputStream data = ((Data) sourceEntry.getResource()).getData();
-
+        Data data = (Data) sourceEntry.getResource();
 
         try {
-			TableData table;
-			if (isCSV(mimetype)) {
-				Reader reader = CSVQueryExecutionFactory.createReader(data);
-				table = new CSVToValues(reader, false).read();
-			} else {
-				//TODO extract sheetNr from args..
-				String sheetNrStr = getArguments().get("sheetnr");
-				int sheetNr = 0;
-				if (sheetNrStr != null) {
-					sheetNr = Integer.parseInt(sheetNrStr);
-				}
-				table = new XLSToValues(data, false, sheetNr).read();
-			}
-
+			CSVToValues source = createSource(data, mimetype);
 			String tarqlstr = getArguments().get("tarqlstring");
 			TarqlQuery q = new TarqlParser(new StringReader(tarqlstr)).getResult();
-			Model resultModel = ModelFactory.createDefaultModel();
-			executeQuery(table, q, resultModel);
 
-			if (!resultModel.isEmpty()) {
-				return model2Graph(resultModel, q.getPrologue().getBaseURI());
+			boolean parallel = "true".equalsIgnoreCase(getArguments().get("parallel"));
+			int chunkSize = Integer.MAX_VALUE;
+			int threads = 1;
+			if (parallel || "true".equalsIgnoreCase(getArguments().get("streaming"))) {
+				chunkSize = getIntArgument("chunksize", DEFAULT_CHUNK_SIZE);
+			}
+			if (parallel) {
+				threads = getIntArgument("threads", Runtime.getRuntime().availableProcessors());
+			}
+
+			// the pipeline passes models between its steps, so the statements are collected here
+			Model result = new LinkedHashModel();
+			new TabularExecution(q, chunkSize, threads).execute(source, new StatementCollector(result));
+			if (!result.isEmpty()) {
+				return result;
 			}
 		} catch (NotFoundException ex) {
 			log.error("Not found: " + ex.getMessage());
@@ -100,50 +100,32 @@ public class TabularTransform extends Transform {
 		return null;
 	}
 
-	private boolean isCSV(String mimetype) {
-		return mimetype.toLowerCase().contains("csv");
+	private int getIntArgument(String name, int defaultValue) {
+		String value = getArguments().get(name);
+		return value != null ? Integer.parseInt(value) : defaultValue;
 	}
 
-	private Graph model2Graph(Model model, String baseUri) {
-		ByteArrayOutputStream out = new ByteArrayOutputStream();
-		model.write(out, "N-TRIPLE", baseUri);
-		StatementCollector collector = new StatementCollector();
-		try {
-			ByteArrayInputStream bais = new ByteArrayInputStream(out.toByteArray());
-			NTriplesParser parser = new NTriplesParser();
-			parser.setRDFHandler(collector);
-			parser.parse(new InputStreamReader(bais), "");
-		} catch (RDFHandlerException rdfe) {
-			log.error(rdfe.getMessage());
-		} catch (RDFParseException rdfpe) {
-			log.error(rdfpe.getMessage());
-		} catch (IOException ioe) {
-			log.error(ioe.getMessage());
+	private CSVToValues createSource(Data data, String mimetype) {
+		if (isCSV(mimetype)) {
+			Reader reader = CSVQueryExecutionFactory.createReader(data.getData());
+			return new CSVToValues(reader, false);
 		}
-		return new org.openrdf.model.impl.LinkedHashModel(collector.getStatements());
-	}
 
-	private void executeQuery(TableData table, TarqlQuery query, Model resultModel) {
-		for (Query q : query.getQueries()) {
-			Model previousResults = ModelFactory.createDefaultModel();
-			previousResults.add(resultModel);
-			CSVQueryExecutionFactory.setPreviousResults(previousResults);
-			processResults(CSVQueryExecutionFactory.create(table, q), resultModel);
-			CSVQueryExecutionFactory.resetPreviousResults();
+		int sheetNr = getIntArgument("sheetnr", 0);
+		File file = data.getDataFile();
+		if (isXLSX(mimetype) && file != null) {
+			return new XLSXToValues(file, false, sheetNr);
 		}
+		InputStream is = data.getData();
+		return new XLSToValues(is, false, sheetNr);
 	}
 
-	private void processResults(QueryExecution ex, Model resultModel) {
-		if (ex.getQuery().isSelectType()) {
-			log.info(ResultSetFormatter.asText(ex.execSelect()));
-		} else if (ex.getQuery().isAskType()) {
-			log.info(ResultSetFormatter.asText(ex.execSelect()));
-		} else if (ex.getQuery().isConstructType()) {
-			resultModel.setNsPrefixes(resultModel);
-			ex.execConstruct(resultModel);
-		} else {
-			log.error("Only query forms CONSTRUCT, SELECT and ASK are supported");
-		}
+	private boolean isCSV(String mimetype) {
+		return mimetype.toLowerCase().contains("csv");
+	}
+
+	private boolean isXLSX(String mimetype) {
+		return mimetype.toLowerCase().contains("openxmlformats-officedocument.spreadsheetml");
 	}
 
-}
\ No newline at end of file
+}
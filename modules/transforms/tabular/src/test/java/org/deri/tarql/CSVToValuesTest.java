@@ -0,0 +1,73 @@
+package org.deri.tarql;
+
+import com.hp.hpl.jena.sparql.algebra.table.TableData;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CSVToValuesTest {
+
+	private static List<TableData> readChunks(String csv, int chunkSize) {
+		List<TableData> chunks = new ArrayList<>();
+		new CSVToValues(new StringReader(csv), true).read(chunkSize, chunks::add);
+		return chunks;
+	}
+
+	private static String value(Binding binding, String var) {
+		return binding.get(Var.alloc(var)).getLiteralLexicalForm();
+	}
+
+	@Test
+	public void rowsAreSplitIntoChunks() {
+		List<TableData> chunks = readChunks("id,name\n1,a\n2,b\n3,c\n4,d\n5,e\n", 2);
+
+		assertThat(chunks).extracting(chunk -> chunk.getRows().size()).containsExactly(2, 2, 1);
+		for (TableData chunk : chunks) {
+			assertThat(chunk.getVars()).containsExactly(Var.alloc("id"), Var.alloc("name"), TarqlQuery.ROWNUM);
+		}
+		Binding last = chunks.get(2).getRows().get(0);
+		assertThat(value(last, "id")).isEqualTo("5");
+		assertThat(value(last, "ROWNUM")).isEqualTo("5");
+	}
+
+	@Test
+	public void rowCrossingChunkBoundaryIsNotSplit() {
+		// the second row spans several lines and is the last row of the first chunk
+		List<TableData> chunks = readChunks("id,name\n1,a\n2,\"b\nb\nb\"\n3,c\n", 2);
+
+		assertThat(chunks).hasSize(2);
+		assertThat(value(chunks.get(0).getRows().get(1), "name")).isEqualTo("b\nb\nb");
+		Binding next = chunks.get(1).getRows().get(0);
+		assertThat(value(next, "id")).isEqualTo("3");
+		assertThat(value(next, "ROWNUM")).isEqualTo("3");
+	}
+
+	@Test
+	public void quotedNewlineIsPartOfValue() {
+		TableData table = new CSVToValues(new StringReader("id,text\n1,\"first line\nsecond line\"\n"), true).read();
+
+		assertThat(table.getRows()).hasSize(1);
+		assertThat(value(table.getRows().get(0), "text")).isEqualTo("first line\nsecond line");
+	}
+
+	@Test
+	public void emptyRowsAreSkipped() {
+		List<TableData> chunks = readChunks("id,name\n,\n1,a\n\n2,b\n", 1);
+
+		assertThat(chunks).hasSize(2);
+		assertThat(value(chunks.get(1).getRows().get(0), "ROWNUM")).isEqualTo("2");
+	}
+
+	@Test
+	public void emptySourceHasNoChunks() {
+		assertThat(readChunks("", 10)).isEmpty();
+		assertThat(new CSVToValues(new StringReader(""), true).read().getRows()).isEmpty();
+	}
+
+}
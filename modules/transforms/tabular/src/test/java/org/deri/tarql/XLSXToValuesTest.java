@@ -0,0 +1,143 @@
+package org.deri.tarql;
+
+import com.hp.hpl.jena.sparql.algebra.table.TableData;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class XLSXToValuesTest {
+
+	private static final String SHEET_CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml";
+
+	private static final String NS = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+
+	private static final String REL_NS = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+	@TempDir
+	Path folder;
+
+	/**
+	 * Writes a minimal workbook with inline strings, one sheet per element of <code>sheets</code>.
+	 * Each sheet is given as rows of cells, null cells are omitted like in files written by Excel.
+	 */
+	private File createWorkbook(String[][]... sheets) throws IOException {
+		File file = folder.resolve("test.xlsx").toFile();
+		StringBuilder contentTypes = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+				"<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">" +
+				"<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>" +
+				"<Default Extension=\"xml\" ContentType=\"application/xml\"/>" +
+				"<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>");
+		StringBuilder workbook = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+				"<workbook xmlns=\"" + NS + "\" xmlns:r=\"" + REL_NS + "\"><sheets>");
+		StringBuilder workbookRels = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+				"<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">");
+		for (int i = 1; i <= sheets.length; i++) {
+			contentTypes.append("<Override PartName=\"/xl/worksheets/sheet").append(i).append(".xml\" ContentType=\"").append(SHEET_CONTENT_TYPE).append("\"/>");
+			workbook.append("<sheet name=\"Sheet").append(i).append("\" sheetId=\"").append(i).append("\" r:id=\"rId").append(i).append("\"/>");
+			workbookRels.append("<Relationship Id=\"rId").append(i).append("\" Type=\"").append(REL_NS).append("/worksheet\" Target=\"worksheets/sheet").append(i).append(".xml\"/>");
+		}
+		contentTypes.append("</Types>");
+		workbook.append("</sheets></workbook>");
+		workbookRels.append("</Relationships>");
+
+		try (OutputStream out = Files.newOutputStream(file.toPath()); ZipOutputStream zip = new ZipOutputStream(out)) {
+			write(zip, "[Content_Types].xml", contentTypes.toString());
+			write(zip, "_rels/.rels", "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+					"<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">" +
+					"<Relationship Id=\"rId1\" Type=\"" + REL_NS + "/officeDocument\" Target=\"xl/workbook.xml\"/>" +
+					"</Relationships>");
+			write(zip, "xl/workbook.xml", workbook.toString());
+			write(zip, "xl/_rels/workbook.xml.rels", workbookRels.toString());
+			for (int i = 0; i < sheets.length; i++) {
+				write(zip, "xl/worksheets/sheet" + (i + 1) + ".xml", sheetXml(sheets[i]));
+			}
+		}
+		return file;
+	}
+
+	private static String sheetXml(String[][] rows) {
+		StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><worksheet xmlns=\"" + NS + "\"><sheetData>");
+		for (int r = 0; r < rows.length; r++) {
+			xml.append("<row r=\"").append(r + 1).append("\">");
+			for (int c = 0; c < rows[r].length; c++) {
+				if (rows[r][c] != null) {
+					xml.append("<c r=\"").append(CSVToValues.getColumnName(c).toUpperCase()).append(r + 1).append("\" t=\"inlineStr\"><is><t>")
+							.append(rows[r][c]).append("</t></is></c>");
+				}
+			}
+			xml.append("</row>");
+		}
+		return xml.append("</sheetData></worksheet>").toString();
+	}
+
+	private static void write(ZipOutputStream zip, String name, String content) throws IOException {
+		zip.putNextEntry(new ZipEntry(name));
+		zip.write(content.getBytes(UTF_8));
+		zip.closeEntry();
+	}
+
+	private static List<TableData> readChunks(XLSXToValues source, int chunkSize) {
+		List<TableData> chunks = new ArrayList<>();
+		source.read(chunkSize, chunks::add);
+		return chunks;
+	}
+
+	private static String value(Binding binding, String var) {
+		return binding.get(Var.alloc(var)).getLiteralLexicalForm();
+	}
+
+	@Test
+	public void rowsAreReadInChunks() throws IOException {
+		File file = createWorkbook(new String[][]{
+				{"id", "name"}, {"1", "a"}, {"2", "b"}, {"3", "c"}
+		});
+		List<TableData> chunks = readChunks(new XLSXToValues(file, true), 2);
+
+		assertThat(chunks).extracting(chunk -> chunk.getRows().size()).containsExactly(2, 1);
+		Binding last = chunks.get(1).getRows().get(0);
+		assertThat(value(last, "name")).isEqualTo("c");
+		assertThat(value(last, "ROWNUM")).isEqualTo("3");
+	}
+
+	@Test
+	public void omittedCellsKeepTheirColumn() throws IOException {
+		File file = createWorkbook(new String[][]{
+				{"id", "name", "value"}, {"1", null, "x"}
+		});
+		Binding row = new XLSXToValues(file, true).read().getRows().get(0);
+
+		assertThat(row.contains(Var.alloc("name"))).isFalse();
+		assertThat(value(row, "value")).isEqualTo("x");
+	}
+
+	@Test
+	public void readsSelectedSheet() throws IOException {
+		File file = createWorkbook(new String[][]{{"id"}, {"1"}}, new String[][]{{"id"}, {"2"}, {"3"}});
+		TableData table = new XLSXToValues(file, true, 1).read();
+
+		assertThat(table.getRows()).extracting(row -> value(row, "id")).containsExactly("2", "3");
+	}
+
+	@Test
+	public void emptySheetHasNoRows() throws IOException {
+		File file = createWorkbook(new String[][]{{"id"}, {"1"}}, new String[0][]);
+
+		assertThat(readChunks(new XLSXToValues(file, true, 1), 10)).isEmpty();
+		assertThat(new XLSXToValues(file, true, 1).read().getRows()).isEmpty();
+	}
+
+}
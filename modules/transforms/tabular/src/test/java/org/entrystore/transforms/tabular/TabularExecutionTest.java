@@ -0,0 +1,144 @@
+package org.entrystore.transforms.tabular;
+
+import org.deri.tarql.CSVToValues;
+import org.deri.tarql.TarqlParser;
+import org.deri.tarql.TarqlQuery;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.eclipse.rdf4j.rio.helpers.AbstractRDFHandler;
+import org.eclipse.rdf4j.rio.helpers.StatementCollector;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TabularExecutionTest {
+
+	private static final Logger log = LoggerFactory.getLogger(TabularExecutionTest.class);
+
+	private static final String TARQL =
+			"PREFIX ex: <http://example.com/>\n" +
+			"CONSTRUCT { ?uri ex:name ?b ; ex:value ?c }\n" +
+			"WHERE { BIND (URI(CONCAT('http://example.com/item/', ?a)) AS ?uri) }\n" +
+			"CONSTRUCT { ?s ex:copy ?o }\n" +
+			"WHERE { ?s ex:name ?o }";
+
+	/**
+	 * Generates CSV rows on the fly, so that large sources do not have to be kept in memory.
+	 */
+	private static Reader generateCSV(int rows) {
+		return generateCSV(rows, new AtomicInteger());
+	}
+
+	/**
+	 * @param rowsRead Counts the rows that have been read from the source.
+	 */
+	private static Reader generateCSV(int rows, AtomicInteger rowsRead) {
+		return new Reader() {
+			private int row = 0;
+			private String line = "";
+			private int pos = 0;
+
+			@Override
+			public int read(char[] cbuf, int off, int len) {
+				if (pos == line.length()) {
+					if (row == rows) {
+						return -1;
+					}
+					line = row + ",Name " + row + "," + (row * 7 % 1000) + "\n";
+					pos = 0;
+					row++;
+					rowsRead.incrementAndGet();
+				}
+				int n = Math.min(len, line.length() - pos);
+				line.getChars(pos, pos + n, cbuf, off);
+				pos += n;
+				return n;
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+	}
+
+	private static TarqlQuery parse() {
+		return new TarqlParser(new StringReader(TARQL)).getResult();
+	}
+
+	private static Model execute(TabularExecution execution, Reader csv) throws Exception {
+		Model result = new LinkedHashModel();
+		execution.execute(new CSVToValues(csv, false), new StatementCollector(result));
+		return result;
+	}
+
+	private static List<String> toStrings(Model model) {
+		List<String> result = new ArrayList<>();
+		for (Statement s : model) {
+			result.add(s.getSubject() + " " + s.getPredicate() + " " + s.getObject());
+		}
+		return result;
+	}
+
+	@Test
+	public void chainedQueriesSeePreviousResults() throws Exception {
+		Model result = execute(new TabularExecution(parse(), Integer.MAX_VALUE, 1), generateCSV(10));
+		assertThat(result).hasSize(30);
+	}
+
+	@Test
+	public void parallelResultEqualsSequentialResult() throws Exception {
+		Model sequential = execute(new TabularExecution(parse(), Integer.MAX_VALUE, 1), generateCSV(5000));
+		Model chunked = execute(new TabularExecution(parse(), 100, 1), generateCSV(5000));
+		Model parallel = execute(new TabularExecution(parse(), 100, 4), generateCSV(5000));
+		assertThat(sequential).hasSize(5000 * 3);
+		assertThat(chunked).hasSameSizeAs(sequential);
+		assertThat(toStrings(chunked)).containsExactlyInAnyOrderElementsOf(toStrings(sequential));
+		assertThat(toStrings(parallel)).containsExactlyElementsOf(toStrings(chunked));
+	}
+
+	@Test
+	public void chunksAreWrittenBeforeTheSourceHasBeenRead() throws Exception {
+		for (int threads : new int[]{1, 4}) {
+			AtomicInteger rowsRead = new AtomicInteger();
+			AtomicInteger rowsReadAtFirstStatement = new AtomicInteger(-1);
+			new TabularExecution(parse(), 100, threads).execute(new CSVToValues(generateCSV(50000, rowsRead), false), new AbstractRDFHandler() {
+				@Override
+				public void handleStatement(Statement st) {
+					rowsReadAtFirstStatement.compareAndSet(-1, rowsRead.get());
+				}
+			});
+			assertThat(rowsRead.get()).isEqualTo(50000);
+			assertThat(rowsReadAtFirstStatement.get()).isBetween(1, 49999);
+		}
+	}
+
+	/**
+	 * Run with -Dentrystore.benchmark=true, the number of rows can be set with
+	 * -Dentrystore.benchmark.rows (default 2000000).
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "entrystore.benchmark", matches = "true")
+	public void benchmark() throws Exception {
+		int rows = Integer.getInteger("entrystore.benchmark.rows", 2000000);
+		int processors = Runtime.getRuntime().availableProcessors();
+		for (int threads : new int[]{1, processors}) {
+			long before = System.currentTimeMillis();
+			Model result = execute(new TabularExecution(parse(), 5000, threads), generateCSV(rows));
+			long duration = System.currentTimeMillis() - before;
+			assertThat(result).hasSize(rows * 3);
+			log.info("{} rows, {} threads: {} statements in {} ms ({} rows/s)",
+					rows, threads, result.size(), duration, rows * 1000L / Math.max(1, duration));
+		}
+	}
+
+}